@@ -0,0 +1,70 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.benchmarks;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.CodeListPayloads;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrSaxaprserAcronymExtractor;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrType;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.SaxParserPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.SAXException;
+
+/**
+ * {@link MdrSaxaprserAcronymExtractor#parseDocument(String)} on FLUXMDRReturnMessage payloads of growing size.
+ * The stop-on-match extractor should stay flat whatever the size, the full scan shows the cost of reading the whole code list.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx1g"})
+@State(Scope.Benchmark)
+public class AcronymExtractionBenchmark {
+
+    @Param({"1024", "102400", "1048576", "10485760", "52428800"})
+    private int payloadSize;
+
+    private String response;
+
+    private MdrSaxaprserAcronymExtractor stopOnMatchExtractor;
+
+    private MdrSaxaprserAcronymExtractor fullScanExtractor;
+
+    @Setup
+    public void setup() {
+        response = CodeListPayloads.createResponseMessage(payloadSize);
+        stopOnMatchExtractor = new MdrSaxaprserAcronymExtractor(MdrType.MDR_RESPONSE);
+        fullScanExtractor = new MdrSaxaprserAcronymExtractor(MdrType.MDR_RESPONSE, new SaxParserPool(), false);
+    }
+
+    @Benchmark
+    public String parseDocumentStopOnMatch() throws SAXException {
+        stopOnMatchExtractor.parseDocument(response);
+        return stopOnMatchExtractor.getUuidValue();
+    }
+
+    @Benchmark
+    public String parseDocumentFullScan() throws SAXException {
+        fullScanExtractor.parseDocument(response);
+        return fullScanExtractor.getUuidValue();
+    }
+}
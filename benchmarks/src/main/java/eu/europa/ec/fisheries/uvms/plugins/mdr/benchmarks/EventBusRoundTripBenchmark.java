@@ -0,0 +1,118 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.benchmarks;
+
+import eu.europa.ec.fisheries.schema.exchange.common.v1.AcknowledgeType;
+import eu.europa.ec.fisheries.schema.exchange.common.v1.AcknowledgeTypeType;
+import eu.europa.ec.fisheries.schema.exchange.plugin.v1.ExchangePluginMethod;
+import eu.europa.ec.fisheries.schema.exchange.plugin.v1.PluginBaseRequest;
+import eu.europa.ec.fisheries.schema.exchange.plugin.v1.SetMdrPluginRequest;
+import eu.europa.ec.fisheries.schema.exchange.registry.v1.ExchangeRegistryBaseRequest;
+import eu.europa.ec.fisheries.schema.exchange.registry.v1.ExchangeRegistryMethod;
+import eu.europa.ec.fisheries.schema.exchange.registry.v1.RegisterServiceResponse;
+import eu.europa.ec.fisheries.uvms.exchange.model.exception.ExchangeModelMarshallException;
+import eu.europa.ec.fisheries.uvms.exchange.model.mapper.JAXBMarshaller;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.CodeListPayloads;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.mapper.EventBusMessageReader;
+import java.util.concurrent.TimeUnit;
+import javax.jms.TextMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JAXB round trips of the two event bus listeners.
+ * <p>
+ * The {@code legacy} benchmarks are the former listener path, a {@link JAXBMarshaller} unmarshal to the base type to read the method
+ * followed by a second one to the concrete type. The {@code reader} benchmarks are the current {@link EventBusMessageReader} path.
+ * The SET_MDR_REQUEST payload is sized by {@code payloadSize}, the registration acknowledge is always small.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+@State(Scope.Benchmark)
+public class EventBusRoundTripBenchmark {
+
+    @Param({"1024", "102400", "1048576", "10485760", "52428800"})
+    private int payloadSize;
+
+    private SetMdrPluginRequest mdrRequest;
+
+    private String mdrRequestText;
+
+    private TextMessage mdrRequestMessage;
+
+    private String ackText;
+
+    private TextMessage ackMessage;
+
+    @Setup
+    public void setup() throws ExchangeModelMarshallException {
+        mdrRequest = new SetMdrPluginRequest();
+        mdrRequest.setMethod(ExchangePluginMethod.SET_MDR_REQUEST);
+        mdrRequest.setFr("XEU");
+        mdrRequest.setRequest(CodeListPayloads.createResponseMessage(payloadSize));
+        mdrRequestText = JAXBMarshaller.marshallJaxBObjectToString(mdrRequest);
+        mdrRequestMessage = TextMessages.of(mdrRequestText);
+
+        AcknowledgeType ack = new AcknowledgeType();
+        ack.setType(AcknowledgeTypeType.OK);
+        RegisterServiceResponse registerResponse = new RegisterServiceResponse();
+        registerResponse.setMethod(ExchangeRegistryMethod.REGISTER_SERVICE);
+        registerResponse.setAck(ack);
+        ackText = JAXBMarshaller.marshallJaxBObjectToString(registerResponse);
+        ackMessage = TextMessages.of(ackText);
+    }
+
+    @Benchmark
+    public String marshalMdrRequest() throws ExchangeModelMarshallException {
+        return JAXBMarshaller.marshallJaxBObjectToString(mdrRequest);
+    }
+
+    @Benchmark
+    public SetMdrPluginRequest legacyMdrRequest() throws ExchangeModelMarshallException {
+        PluginBaseRequest baseRequest = JAXBMarshaller.unmarshallTextMessage(mdrRequestMessage, PluginBaseRequest.class);
+        if (baseRequest.getMethod() != ExchangePluginMethod.SET_MDR_REQUEST) {
+            throw new IllegalStateException(String.valueOf(baseRequest.getMethod()));
+        }
+        return JAXBMarshaller.unmarshallTextMessage(mdrRequestMessage, SetMdrPluginRequest.class);
+    }
+
+    @Benchmark
+    public SetMdrPluginRequest readerMdrRequest() throws ExchangeModelMarshallException {
+        if (ExchangePluginMethod.fromValue(EventBusMessageReader.peekMethod(mdrRequestText)) != ExchangePluginMethod.SET_MDR_REQUEST) {
+            throw new IllegalStateException(mdrRequestText.substring(0, 200));
+        }
+        return EventBusMessageReader.read(mdrRequestText, SetMdrPluginRequest.class);
+    }
+
+    @Benchmark
+    public RegisterServiceResponse legacyAck() throws ExchangeModelMarshallException {
+        JAXBMarshaller.unmarshallTextMessage(ackMessage, ExchangeRegistryBaseRequest.class);
+        return JAXBMarshaller.unmarshallTextMessage(ackMessage, RegisterServiceResponse.class);
+    }
+
+    @Benchmark
+    public RegisterServiceResponse readerAck() throws ExchangeModelMarshallException {
+        ExchangeRegistryMethod.fromValue(EventBusMessageReader.peekMethod(ackText));
+        return EventBusMessageReader.read(ackText, RegisterServiceResponse.class);
+    }
+}
@@ -0,0 +1,55 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.benchmarks;
+
+import java.io.File;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of {@code benchmarks.jar} : runs the plugin suites with the GC profiler and writes the results as JSON by default,
+ * so that two runs (before / after a change, or two releases) can be diffed.
+ * <p>
+ * Usage : {@code java -jar benchmarks/target/benchmarks.jar [JMH options] [benchmark regexp]}.
+ * Without a regexp every suite of the plugin is run. The results go to {@code jmh-result.json} unless {@code -rf} / {@code -rff} are given.
+ */
+public final class MdrPluginBenchmarks {
+
+    private static final String ALL_SUITES = "eu\\.europa\\.ec\\.fisheries\\.uvms\\.plugins\\.mdr\\..*";
+
+    private static final String DEFAULT_RESULT_FILE = "jmh-result.json";
+
+    private MdrPluginBenchmarks() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class);
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(ALL_SUITES);
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(new File(DEFAULT_RESULT_FILE).getAbsolutePath());
+        }
+        new Runner(options.build()).run();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.benchmarks;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.mapper.FluxMessagePropertiesMapper;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Envelope properties built for every MDR query forwarded to the bridge, see {@link FluxMessagePropertiesMapper}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessagePropertiesBenchmark {
+
+    private static final long TIMEOUT_MILLIS = 60 * 60 * 1000L;
+
+    @Benchmark
+    @Threads(4)
+    public Map<String, String> createMessagePropertiesMap() {
+        String businessUuid = FluxMessagePropertiesMapper.createBusinessUUID();
+        return FluxMessagePropertiesMapper.createMessagePropertiesMap("XEU", businessUuid, new Date(System.currentTimeMillis() + TIMEOUT_MILLIS));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String createStringDate() {
+        return FluxMessagePropertiesMapper.createStringDate(new Date(System.currentTimeMillis() + TIMEOUT_MILLIS));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String createBusinessUUID() {
+        return FluxMessagePropertiesMapper.createBusinessUUID();
+    }
+}
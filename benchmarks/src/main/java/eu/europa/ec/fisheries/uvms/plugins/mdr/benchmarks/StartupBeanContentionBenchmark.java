@@ -0,0 +1,100 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.benchmarks;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.PluginToEventBusTopicProducer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.service.FileHandlerBean;
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reads every listener makes from the {@link StartupBean} per message, by concurrent consumers.
+ * <p>
+ * {@code containerWriteLock} serializes the reads through one write lock, as the container did while the bean used the default
+ * container managed concurrency, {@code lockFree} calls the bean directly. Run with {@code -t 1}, {@code -t 4}, {@code -t 15}, ...
+ * to see how the throughput scales with the MDB pool size, the default thread count is the default pool size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(15)
+@State(Scope.Benchmark)
+public class StartupBeanContentionBenchmark {
+
+    private final Lock containerLock = new ReentrantReadWriteLock().writeLock();
+
+    private StartupBean startup;
+
+    @Setup
+    public void startBean() throws ReflectiveOperationException {
+        startup = new StartupBean();
+        inject(startup, "fileHandler", new FileHandlerBean());
+        inject(startup, "messageProducer", new PluginToEventBusTopicProducer() {
+            @Override
+            public String sendEventBusMessage(String text, String serviceName) {
+                return null;
+            }
+        });
+        startup.startup();
+    }
+
+    @Benchmark
+    public void containerWriteLock(Blackhole blackhole) {
+        containerLock.lock();
+        try {
+            blackhole.consume(startup.getRegisterClassName());
+        } finally {
+            containerLock.unlock();
+        }
+        containerLock.lock();
+        try {
+            blackhole.consume(startup.getPluginResponseSubscriptionName());
+        } finally {
+            containerLock.unlock();
+        }
+        containerLock.lock();
+        try {
+            blackhole.consume(startup.getConfiguration().getBridgeRatePerSecond());
+        } finally {
+            containerLock.unlock();
+        }
+    }
+
+    @Benchmark
+    public void lockFree(Blackhole blackhole) {
+        blackhole.consume(startup.getRegisterClassName());
+        blackhole.consume(startup.getPluginResponseSubscriptionName());
+        blackhole.consume(startup.getConfiguration().getBridgeRatePerSecond());
+    }
+
+    private static void inject(Object bean, String fieldName, Object value) throws ReflectiveOperationException {
+        Field field = StartupBean.class.getDeclaredField(fieldName);
+        field.setAccessible(true);
+        field.set(bean, value);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.Map;
+import javax.jms.TextMessage;
+
+/**
+ * In-memory {@link TextMessage} for the code paths which take a JMS message, only the body and the string properties are backed.
+ */
+public final class TextMessages {
+
+    private TextMessages() {
+    }
+
+    public static TextMessage of(String text) {
+        return of(text, Collections.<String, String>emptyMap());
+    }
+
+    public static TextMessage of(final String text, final Map<String, String> properties) {
+        return (TextMessage) Proxy.newProxyInstance(TextMessages.class.getClassLoader(), new Class<?>[]{TextMessage.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getText":
+                    return text;
+                case "getStringProperty":
+                    return properties.get(args[0]);
+                case "propertyExists":
+                    return properties.containsKey(args[0]);
+                case "getPropertyNames":
+                    return Collections.enumeration(properties.keySet());
+                case "toString":
+                    return "TextMessage[" + text.length() + " chars]";
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
@@ -0,0 +1,57 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.loadgen;
+
+import javax.jms.TextMessage;
+
+/**
+ * A message queued on an {@link InMemoryDestination}.
+ */
+final class Delivery {
+
+    /**
+     * Value of {@link #getOriginNanos()} for messages not measured end to end.
+     */
+    static final long NO_ORIGIN = Long.MIN_VALUE;
+
+    private final TextMessage message;
+    private final long intendedNanos;
+    private final boolean measured;
+    private final long originNanos;
+
+    /**
+     * @param intendedNanos when the message should have been sent according to the rate, latencies are measured from there
+     * @param measured false for the messages sent during the warmup
+     * @param originNanos intended send time of the SET_MDR_REQUEST a FLUX response answers, or {@link #NO_ORIGIN}
+     */
+    Delivery(TextMessage message, long intendedNanos, boolean measured, long originNanos) {
+        this.message = message;
+        this.intendedNanos = intendedNanos;
+        this.measured = measured;
+        this.originNanos = originNanos;
+    }
+
+    TextMessage getMessage() {
+        return message;
+    }
+
+    long getIntendedNanos() {
+        return intendedNanos;
+    }
+
+    boolean isMeasured() {
+        return measured;
+    }
+
+    long getOriginNanos() {
+        return originNanos;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.loadgen;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.CodeListPayloads;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.benchmarks.TextMessages;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.constants.FluxConnectionConstants;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionPlan;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrField;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrFieldExtractor;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.TextMessage;
+
+/**
+ * Answers every query sent to the bridge queue with an OK FLUXMDRReturnMessage, as FLUX TL would, sized from the {@link PayloadSizeMix}.
+ * <p>
+ * The response references the MDRQuery/ID and carries the BUSINESS_UUID of the query. Responses are built from one template per size,
+ * so answering costs a copy of the payload rather than generating a code list.
+ */
+final class FluxTlSimulator implements MessageListener {
+
+    private static final MdrFieldExtractor FIELD_EXTRACTOR = new MdrFieldExtractor();
+
+    private static final String UUID_PLACEHOLDER = "00000000-0000-4000-8000-000000000000";
+
+    private final InMemoryBroker broker;
+    private final PayloadSizeMix sizeMix;
+    private final ConcurrentMap<String, Long> originsByQueryUuid;
+    private final Map<Integer, String[]> templates = new HashMap<>();
+
+    /**
+     * @param originsByQueryUuid intended send time of the measured SET_MDR_REQUESTs by MDRQuery/ID
+     */
+    FluxTlSimulator(InMemoryBroker broker, PayloadSizeMix sizeMix, ConcurrentMap<String, Long> originsByQueryUuid) {
+        this.broker = broker;
+        this.sizeMix = sizeMix;
+        this.originsByQueryUuid = originsByQueryUuid;
+        for (int size : sizeMix.getSizes()) {
+            String template = CodeListPayloads.createResponseMessage(size, UUID_PLACEHOLDER);
+            int placeholder = template.indexOf(UUID_PLACEHOLDER);
+            templates.put(size, new String[]{template.substring(0, placeholder), template.substring(placeholder + UUID_PLACEHOLDER.length())});
+        }
+    }
+
+    @Override
+    public void onMessage(Message message) {
+        try {
+            String query = ((TextMessage) message).getText();
+            String queryUuid = FIELD_EXTRACTOR.extract(query, MdrExtractionPlan.ROUTING_FIELDS).get(MdrField.MESSAGE_UUID);
+            Long origin = queryUuid == null ? null : originsByQueryUuid.remove(queryUuid);
+            String[] template = templates.get(sizeMix.next(ThreadLocalRandom.current()));
+            String response = template[0] + (queryUuid == null ? UUID_PLACEHOLDER : queryUuid) + template[1];
+            Map<String, String> properties = Collections.singletonMap(FluxConnectionConstants.BUSINESS_UUID,
+                    message.getStringProperty(FluxConnectionConstants.BUSINESS_UUID));
+            broker.send(InMemoryBroker.FLUX_RESPONSE, new Delivery(TextMessages.of(response, properties), System.nanoTime(),
+                    origin != null, origin == null ? Delivery.NO_ORIGIN : origin));
+        } catch (JMSException | MdrExtractionException e) {
+            throw new IllegalStateException("Could not answer the MDR query.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
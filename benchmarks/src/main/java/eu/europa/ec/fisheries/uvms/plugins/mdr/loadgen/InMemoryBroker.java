@@ -0,0 +1,120 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.loadgen;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Histogram;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.jms.MessageListener;
+
+/**
+ * In-memory JMS stand-in of the harness.
+ * <p>
+ * Inbound destinations are {@link InMemoryDestination}s bound to a listener. Outbound messages of the plugin producers
+ * only go through {@link #recordSent(String, String)}, which counts them per destination, unless a producer stand-in
+ * forwards them to an inbound destination (the bridge queue to the FLUX TL simulator).
+ */
+final class InMemoryBroker {
+
+    static final String EVENT_BUS = "eventBus";
+    static final String EVENT_BUS_ACK = "eventBusAck";
+    static final String FLUX_RESPONSE = "fluxMdrRemoteMessageIn";
+    static final String FLUX_TL = "fluxTl";
+
+    static final String BRIDGE_OUT = "bridge";
+    static final String EXCHANGE_OUT = "exchange";
+    static final String EVENT_BUS_OUT = "eventBusTopic";
+
+    private final Map<String, InMemoryDestination> destinations = new LinkedHashMap<>();
+    private final ConcurrentMap<String, LongAdder> sentMessages = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> sentChars = new ConcurrentHashMap<>();
+
+    synchronized InMemoryDestination bind(String name, MessageListener listener, int consumers, int capacity, Histogram roundTrip) {
+        InMemoryDestination destination = new InMemoryDestination(name, listener, consumers, capacity, roundTrip);
+        destinations.put(name, destination);
+        return destination;
+    }
+
+    void send(String name, Delivery delivery) throws InterruptedException {
+        InMemoryDestination destination;
+        synchronized (this) {
+            destination = destinations.get(name);
+        }
+        if (destination == null) {
+            throw new IllegalArgumentException("No listener bound to " + name);
+        }
+        destination.send(delivery);
+    }
+
+    void recordSent(String sink, String text) {
+        sentMessages.computeIfAbsent(sink, key -> new LongAdder()).increment();
+        sentChars.computeIfAbsent(sink, key -> new LongAdder()).add(text == null ? 0 : text.length());
+    }
+
+    /**
+     * Waits until every inbound destination has processed all its messages.
+     *
+     * @return false on timeout
+     */
+    boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (System.nanoTime() < deadline) {
+            boolean idle = true;
+            for (InMemoryDestination destination : getDestinations()) {
+                idle &= destination.isIdle();
+            }
+            if (idle) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+
+    void stop() {
+        for (InMemoryDestination destination : getDestinations()) {
+            destination.stop();
+        }
+    }
+
+    synchronized List<InMemoryDestination> getDestinations() {
+        return new ArrayList<>(destinations.values());
+    }
+
+    /**
+     * @return the number of messages sent per outbound destination
+     */
+    Map<String, Long> getSentMessages() {
+        return sum(sentMessages);
+    }
+
+    /**
+     * @return the characters sent per outbound destination
+     */
+    Map<String, Long> getSentChars() {
+        return sum(sentChars);
+    }
+
+    private static Map<String, Long> sum(Map<String, LongAdder> adders) {
+        Map<String, Long> sums = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> adder : adders.entrySet()) {
+            sums.put(adder.getKey(), adder.getValue().sum());
+        }
+        return sums;
+    }
+}
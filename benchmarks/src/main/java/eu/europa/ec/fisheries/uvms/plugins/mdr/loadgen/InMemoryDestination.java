@@ -0,0 +1,158 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.loadgen;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Histogram;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.jms.MessageListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * In-memory stand-in of a JMS destination : a bounded queue drained by a fixed number of consumer threads, as an MDB pool would.
+ * <p>
+ * Senders block while the queue is full. A listener calling {@code setRollbackOnly()} on its message driven context gets the
+ * message queued again, as the broker would redeliver it. For measured messages the service time (inside {@code onMessage})
+ * and the response time (from the intended send time to the end of {@code onMessage}) are recorded in microseconds.
+ */
+final class InMemoryDestination {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InMemoryDestination.class);
+
+    private static final ThreadLocal<Boolean> ROLLBACK_ONLY = new ThreadLocal<>();
+
+    private final String name;
+    private final MessageListener listener;
+    private final BlockingQueue<Delivery> queue;
+    private final List<Thread> consumers = new ArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Histogram roundTrip;
+
+    private final Histogram serviceTime = new Histogram();
+    private final Histogram responseTime = new Histogram();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder redelivered = new LongAdder();
+
+    private volatile boolean running = true;
+
+    /**
+     * @param roundTrip where the end to end latency of FLUX responses is recorded, null when the destination carries none
+     */
+    InMemoryDestination(String name, MessageListener listener, int consumerCount, int capacity, Histogram roundTrip) {
+        this.name = name;
+        this.listener = listener;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.roundTrip = roundTrip;
+        for (int i = 0; i < consumerCount; i++) {
+            Thread consumer = new Thread(this::consume, name + "-consumer-" + i);
+            consumer.setDaemon(true);
+            consumers.add(consumer);
+            consumer.start();
+        }
+    }
+
+    static void setRollbackOnly() {
+        ROLLBACK_ONLY.set(Boolean.TRUE);
+    }
+
+    static boolean getRollbackOnly() {
+        return Boolean.TRUE.equals(ROLLBACK_ONLY.get());
+    }
+
+    void send(Delivery delivery) throws InterruptedException {
+        inFlight.incrementAndGet();
+        queue.put(delivery);
+    }
+
+    boolean isIdle() {
+        return inFlight.get() == 0;
+    }
+
+    void stop() {
+        running = false;
+        for (Thread consumer : consumers) {
+            consumer.interrupt();
+        }
+    }
+
+    private void consume() {
+        while (running) {
+            Delivery delivery;
+            try {
+                delivery = queue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (delivery != null) {
+                dispatch(delivery);
+            }
+        }
+    }
+
+    private void dispatch(Delivery delivery) {
+        ROLLBACK_ONLY.remove();
+        long start = System.nanoTime();
+        try {
+            listener.onMessage(delivery.getMessage());
+        } catch (RuntimeException e) {
+            failed.increment();
+            LOG.warn("Listener of {} failed.", name, e);
+        }
+        long end = System.nanoTime();
+        if (getRollbackOnly()) {
+            redelivered.increment();
+            if (queue.offer(delivery)) {
+                return;
+            }
+            LOG.warn("Could not redeliver a message on {}, the queue is full.", name);
+        }
+        inFlight.decrementAndGet();
+        if (delivery.isMeasured()) {
+            completed.increment();
+            serviceTime.record(TimeUnit.NANOSECONDS.toMicros(end - start));
+            responseTime.record(TimeUnit.NANOSECONDS.toMicros(end - delivery.getIntendedNanos()));
+            if (roundTrip != null && delivery.getOriginNanos() != Delivery.NO_ORIGIN) {
+                roundTrip.record(TimeUnit.NANOSECONDS.toMicros(end - delivery.getOriginNanos()));
+            }
+        }
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Histogram getServiceTime() {
+        return serviceTime;
+    }
+
+    Histogram getResponseTime() {
+        return responseTime;
+    }
+
+    long getCompleted() {
+        return completed.sum();
+    }
+
+    long getFailed() {
+        return failed.sum();
+    }
+
+    long getRedelivered() {
+        return redelivered.sum();
+    }
+}
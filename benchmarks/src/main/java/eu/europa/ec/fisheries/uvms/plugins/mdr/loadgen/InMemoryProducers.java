@@ -0,0 +1,86 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.loadgen;
+
+import eu.europa.ec.fisheries.uvms.commons.message.api.MessageException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.benchmarks.TextMessages;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.FluxBridgeProducer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.PluginToEventBusTopicProducer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.PluginToExchangeProducer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.jms.Destination;
+
+/**
+ * Stand-ins of the plugin producers sending to the {@link InMemoryBroker} instead of a JMS connection.
+ */
+final class InMemoryProducers {
+
+    private static final AtomicLong MESSAGE_IDS = new AtomicLong();
+
+    private InMemoryProducers() {
+    }
+
+    /**
+     * @return a bridge producer handing the queries to the FLUX TL simulator
+     */
+    static FluxBridgeProducer bridge(final InMemoryBroker broker) {
+        return new FluxBridgeProducer() {
+            @Override
+            public String sendModuleMessage(String text, Destination replyTo) throws MessageException {
+                return sendModuleMessageWithProps(text, replyTo, Collections.<String, String>emptyMap());
+            }
+
+            @Override
+            public String sendModuleMessageWithProps(String text, Destination replyTo, Map<String, String> properties) throws MessageException {
+                broker.recordSent(InMemoryBroker.BRIDGE_OUT, text);
+                try {
+                    broker.send(InMemoryBroker.FLUX_TL, new Delivery(TextMessages.of(text, new HashMap<>(properties)), System.nanoTime(), false, Delivery.NO_ORIGIN));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new MessageException("Interrupted while sending to the bridge queue.", e);
+                }
+                return nextMessageId();
+            }
+        };
+    }
+
+    static PluginToExchangeProducer exchange(final InMemoryBroker broker) {
+        return new PluginToExchangeProducer() {
+            @Override
+            public String sendModuleMessage(String text, Destination replyTo) {
+                broker.recordSent(InMemoryBroker.EXCHANGE_OUT, text);
+                return nextMessageId();
+            }
+
+            @Override
+            public String sendModuleMessageWithProps(String text, Destination replyTo, Map<String, String> properties) {
+                return sendModuleMessage(text, replyTo);
+            }
+        };
+    }
+
+    static PluginToEventBusTopicProducer eventBus(final InMemoryBroker broker) {
+        return new PluginToEventBusTopicProducer() {
+            @Override
+            public String sendEventBusMessage(String text, String serviceName) {
+                broker.recordSent(InMemoryBroker.EVENT_BUS_OUT, text);
+                return nextMessageId();
+            }
+        };
+    }
+
+    private static String nextMessageId() {
+        return "ID:harness-" + MESSAGE_IDS.incrementAndGet();
+    }
+}
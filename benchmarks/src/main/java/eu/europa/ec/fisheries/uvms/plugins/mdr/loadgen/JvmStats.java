@@ -0,0 +1,100 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.loadgen;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Heap and garbage collection figures of the measurement window, read from the platform MXBeans.
+ * <p>
+ * {@link #start()} resets the peak usage of the heap pools and remembers the collector counters, {@link #stop()} takes the
+ * deltas. The peak is the sum of the pool peaks, which may not have been reached at the same time : it is an upper bound.
+ */
+final class JvmStats {
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final Map<String, long[]> collectionsAtStart = new LinkedHashMap<>();
+    private final Map<String, long[]> collections = new LinkedHashMap<>();
+
+    private long heapUsedAtStart;
+    private long heapUsedAtEnd;
+    private long heapPeak;
+    private long heapCommitted;
+    private long heapMax;
+
+    void start() {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collectionsAtStart.put(collector.getName(), new long[]{collector.getCollectionCount(), collector.getCollectionTime()});
+        }
+        heapUsedAtStart = memory.getHeapMemoryUsage().getUsed();
+    }
+
+    void stop() {
+        MemoryUsage heap = memory.getHeapMemoryUsage();
+        heapUsedAtEnd = heap.getUsed();
+        heapCommitted = heap.getCommitted();
+        heapMax = heap.getMax();
+        heapPeak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                heapPeak += pool.getPeakUsage().getUsed();
+            }
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            long[] start = collectionsAtStart.get(collector.getName());
+            long count = collector.getCollectionCount() - (start == null ? 0 : start[0]);
+            long millis = collector.getCollectionTime() - (start == null ? 0 : start[1]);
+            collections.put(collector.getName(), new long[]{count, millis});
+        }
+    }
+
+    long getHeapUsedAtStart() {
+        return heapUsedAtStart;
+    }
+
+    long getHeapUsedAtEnd() {
+        return heapUsedAtEnd;
+    }
+
+    long getHeapPeak() {
+        return heapPeak;
+    }
+
+    long getHeapCommitted() {
+        return heapCommitted;
+    }
+
+    /**
+     * @return the maximum heap size, -1 if undefined
+     */
+    long getHeapMax() {
+        return heapMax;
+    }
+
+    /**
+     * @return per collector, the number of collections and the accumulated collection time in milliseconds
+     */
+    Map<String, long[]> getCollections() {
+        return collections;
+    }
+}
@@ -0,0 +1,168 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.loadgen;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Options of a {@link MdrLoadHarness} run, parsed from the command line.
+ */
+public final class LoadProfile {
+
+    static final String USAGE = "Usage : java -cp benchmarks.jar " + MdrLoadHarness.class.getName() + " [options]\n"
+            + "  --rate N            SET_MDR_REQUEST messages per second, 0 to send as fast as the plugin takes them (default 50)\n"
+            + "  --duration S        measured seconds (default 60)\n"
+            + "  --warmup S          seconds run before measuring (default 10)\n"
+            + "  --consumers N       consumers per destination, as the MDB pool size (default 15)\n"
+            + "  --sizes MIX         FLUX response sizes in characters, size:weight,... (default 1024:70,102400:25,5242880:5)\n"
+            + "  --acronyms N        distinct code lists requested, 0 for a new one per request (default 0)\n"
+            + "  --ack-ratio R       share of registration acknowledges among the event bus messages (default 0.01)\n"
+            + "  --replay DIR        replay the recorded messages of DIR instead of synthesizing requests\n"
+            + "  --set KEY=VALUE     overrides a plugin setting, e.g. --set RESPONSE_PIPELINE_ENABLED=true (repeatable)\n"
+            + "  --json FILE         also writes the report as JSON\n"
+            + "  --seed N            seed of the synthetic stream (default 42)\n";
+
+    private double rate = 50;
+    private int durationSeconds = 60;
+    private int warmupSeconds = 10;
+    private int consumers = 15;
+    private PayloadSizeMix sizeMix = PayloadSizeMix.parse("1024:70,102400:25,5242880:5");
+    private int acronyms;
+    private double ackRatio = 0.01;
+    private Path replayDirectory;
+    private final Map<String, String> settings = new LinkedHashMap<>();
+    private Path jsonOutput;
+    private long seed = 42;
+
+    private LoadProfile() {
+    }
+
+    /**
+     * @throws IllegalArgumentException when an option is unknown or its value is invalid
+     */
+    public static LoadProfile parse(String[] args) {
+        LoadProfile profile = new LoadProfile();
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value of " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--rate":
+                    profile.rate = Double.parseDouble(value);
+                    break;
+                case "--duration":
+                    profile.durationSeconds = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    profile.warmupSeconds = Integer.parseInt(value);
+                    break;
+                case "--consumers":
+                    profile.consumers = Integer.parseInt(value);
+                    break;
+                case "--sizes":
+                    profile.sizeMix = PayloadSizeMix.parse(value);
+                    break;
+                case "--acronyms":
+                    profile.acronyms = Integer.parseInt(value);
+                    break;
+                case "--ack-ratio":
+                    profile.ackRatio = Double.parseDouble(value);
+                    break;
+                case "--replay":
+                    profile.replayDirectory = Paths.get(value);
+                    break;
+                case "--set":
+                    int separator = value.indexOf('=');
+                    if (separator < 1) {
+                        throw new IllegalArgumentException("Expected KEY=VALUE after --set : " + value);
+                    }
+                    profile.settings.put(value.substring(0, separator), value.substring(separator + 1));
+                    break;
+                case "--json":
+                    profile.jsonOutput = Paths.get(value);
+                    break;
+                case "--seed":
+                    profile.seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+        if (profile.rate < 0 || profile.durationSeconds < 1 || profile.warmupSeconds < 0 || profile.consumers < 1
+                || profile.acronyms < 0 || profile.ackRatio < 0 || profile.ackRatio > 1) {
+            throw new IllegalArgumentException("Invalid option value");
+        }
+        return profile;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getConsumers() {
+        return consumers;
+    }
+
+    public PayloadSizeMix getSizeMix() {
+        return sizeMix;
+    }
+
+    public int getAcronyms() {
+        return acronyms;
+    }
+
+    public double getAckRatio() {
+        return ackRatio;
+    }
+
+    /**
+     * @return the directory of recorded messages, null for a synthetic stream
+     */
+    public Path getReplayDirectory() {
+        return replayDirectory;
+    }
+
+    public Map<String, String> getSettings() {
+        return Collections.unmodifiableMap(settings);
+    }
+
+    /**
+     * @return the JSON report file, null for the console report only
+     */
+    public Path getJsonOutput() {
+        return jsonOutput;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public String toString() {
+        return "rate=" + (rate == 0 ? "unthrottled" : rate + "/s") + ", duration=" + durationSeconds + "s, warmup=" + warmupSeconds
+                + "s, consumers=" + consumers + ", sizes=" + sizeMix + ", acronyms=" + (acronyms == 0 ? "unique" : acronyms)
+                + ", ackRatio=" + ackRatio + (replayDirectory == null ? "" : ", replay=" + replayDirectory) + ", settings=" + settings;
+    }
+}
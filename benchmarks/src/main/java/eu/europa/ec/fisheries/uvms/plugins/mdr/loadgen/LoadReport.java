@@ -0,0 +1,199 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.loadgen;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.HistogramSnapshot;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Outcome of a harness run, printed as text and optionally written as JSON for comparisons between runs.
+ * <p>
+ * Latencies are in microseconds. The service time of a message runs from the moment a consumer takes it to the end of
+ * {@code onMessage}, its response time from its intended send time, so that a backlog shows as latency instead of lowering the
+ * send rate. The plugin counters cover the whole run, the warmup included.
+ */
+final class LoadReport {
+
+    private final LoadProfile profile;
+    private final double measuredSeconds;
+    private final boolean drained;
+    private final List<DestinationStats> destinations = new ArrayList<>();
+    private final HistogramSnapshot roundTrip;
+    private final Map<String, Long> generated;
+    private final Map<String, Long> sentMessages;
+    private final Map<String, Long> sentChars;
+    private final JvmStats jvm;
+    private final Map<String, Long> pluginCounters;
+    private final int unansweredQueries;
+
+    LoadReport(LoadProfile profile, double measuredSeconds, boolean drained, InMemoryBroker broker, HistogramSnapshot roundTrip,
+               Map<String, Long> generated, JvmStats jvm, Map<String, Long> pluginCounters, int unansweredQueries) {
+        this.profile = profile;
+        this.measuredSeconds = measuredSeconds;
+        this.drained = drained;
+        for (InMemoryDestination destination : broker.getDestinations()) {
+            destinations.add(new DestinationStats(destination));
+        }
+        this.roundTrip = roundTrip;
+        this.generated = generated;
+        this.sentMessages = broker.getSentMessages();
+        this.sentChars = broker.getSentChars();
+        this.jvm = jvm;
+        this.pluginCounters = pluginCounters;
+        this.unansweredQueries = unansweredQueries;
+    }
+
+    void print(PrintStream out) {
+        out.println("Profile : " + profile);
+        out.println(String.format(Locale.ROOT, "Measured %.1f s%s", measuredSeconds, drained ? "" : " (NOT DRAINED, results are partial)"));
+        out.println();
+        out.println(String.format(Locale.ROOT, "%-24s %10s %10s %7s %7s   %-40s %-40s", "destination", "completed", "msgs/s", "failed",
+                "redeliv", "service us p50/p90/p99/max", "response us p50/p90/p99/max"));
+        for (DestinationStats stats : destinations) {
+            out.println(String.format(Locale.ROOT, "%-24s %10d %10.1f %7d %7d   %-40s %-40s", stats.name, stats.completed,
+                    throughput(stats.completed), stats.failed, stats.redelivered, percentiles(stats.serviceTime),
+                    percentiles(stats.responseTime)));
+        }
+        out.println();
+        out.println(String.format(Locale.ROOT, "Round trip SET_MDR_REQUEST to processed response : %d, us %s", roundTrip.getCount(),
+                percentiles(roundTrip)));
+        out.println("Queries never answered : " + unansweredQueries);
+        out.println("Generated : " + generated);
+        out.println("Sent by the plugin (messages) : " + sentMessages);
+        out.println("Sent by the plugin (chars) : " + sentChars);
+        out.println();
+        out.println(String.format(Locale.ROOT, "Heap MB : start %.1f, end %.1f, peak <= %.1f, committed %.1f, max %s", mb(jvm.getHeapUsedAtStart()),
+                mb(jvm.getHeapUsedAtEnd()), mb(jvm.getHeapPeak()), mb(jvm.getHeapCommitted()),
+                jvm.getHeapMax() < 0 ? "undefined" : String.format(Locale.ROOT, "%.1f", mb(jvm.getHeapMax()))));
+        for (Map.Entry<String, long[]> collector : jvm.getCollections().entrySet()) {
+            out.println(String.format(Locale.ROOT, "GC %-24s %6d collections %8d ms", collector.getKey(), collector.getValue()[0],
+                    collector.getValue()[1]));
+        }
+        out.println();
+        out.println("Plugin counters : " + pluginCounters);
+    }
+
+    void writeJson(Path file) throws IOException {
+        StringBuilder json = new StringBuilder(4096);
+        json.append("{\n");
+        json.append("  \"profile\": ").append(quote(profile.toString())).append(",\n");
+        json.append("  \"measuredSeconds\": ").append(number(measuredSeconds)).append(",\n");
+        json.append("  \"drained\": ").append(drained).append(",\n");
+        json.append("  \"destinations\": [");
+        for (int i = 0; i < destinations.size(); i++) {
+            DestinationStats stats = destinations.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"name\": ").append(quote(stats.name))
+                    .append(", \"completed\": ").append(stats.completed)
+                    .append(", \"throughput\": ").append(number(throughput(stats.completed)))
+                    .append(", \"failed\": ").append(stats.failed)
+                    .append(", \"redelivered\": ").append(stats.redelivered)
+                    .append(", \"serviceMicros\": ").append(histogram(stats.serviceTime))
+                    .append(", \"responseMicros\": ").append(histogram(stats.responseTime)).append('}');
+        }
+        json.append("\n  ],\n");
+        json.append("  \"roundTripMicros\": ").append(histogram(roundTrip)).append(",\n");
+        json.append("  \"unansweredQueries\": ").append(unansweredQueries).append(",\n");
+        json.append("  \"generated\": ").append(counters(generated)).append(",\n");
+        json.append("  \"sentMessages\": ").append(counters(sentMessages)).append(",\n");
+        json.append("  \"sentChars\": ").append(counters(sentChars)).append(",\n");
+        json.append("  \"heap\": {\"usedAtStart\": ").append(jvm.getHeapUsedAtStart())
+                .append(", \"usedAtEnd\": ").append(jvm.getHeapUsedAtEnd())
+                .append(", \"peak\": ").append(jvm.getHeapPeak())
+                .append(", \"committed\": ").append(jvm.getHeapCommitted())
+                .append(", \"max\": ").append(jvm.getHeapMax()).append("},\n");
+        json.append("  \"gc\": {");
+        boolean first = true;
+        for (Map.Entry<String, long[]> collector : jvm.getCollections().entrySet()) {
+            json.append(first ? "" : ", ").append(quote(collector.getKey()))
+                    .append(": {\"count\": ").append(collector.getValue()[0])
+                    .append(", \"millis\": ").append(collector.getValue()[1]).append('}');
+            first = false;
+        }
+        json.append("},\n");
+        json.append("  \"pluginCounters\": ").append(counters(pluginCounters)).append('\n');
+        json.append("}\n");
+        Files.write(file, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private double throughput(long completed) {
+        return measuredSeconds <= 0 ? 0 : completed / measuredSeconds;
+    }
+
+    private static String percentiles(HistogramSnapshot snapshot) {
+        return snapshot.getP50() + "/" + snapshot.getP90() + "/" + snapshot.getP99() + "/" + snapshot.getMax();
+    }
+
+    private static String histogram(HistogramSnapshot snapshot) {
+        return "{\"count\": " + snapshot.getCount() + ", \"mean\": " + number(snapshot.getMean()) + ", \"p50\": " + snapshot.getP50()
+                + ", \"p90\": " + snapshot.getP90() + ", \"p99\": " + snapshot.getP99() + ", \"max\": " + snapshot.getMax() + "}";
+    }
+
+    private static String counters(Map<String, Long> counters) {
+        StringBuilder json = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            json.append(first ? "" : ", ").append(quote(counter.getKey())).append(": ").append(counter.getValue());
+            first = false;
+        }
+        return json.append('}').toString();
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static double mb(long bytes) {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    private static final class DestinationStats {
+
+        private final String name;
+        private final long completed;
+        private final long failed;
+        private final long redelivered;
+        private final HistogramSnapshot serviceTime;
+        private final HistogramSnapshot responseTime;
+
+        private DestinationStats(InMemoryDestination destination) {
+            name = destination.getName();
+            completed = destination.getCompleted();
+            failed = destination.getFailed();
+            redelivered = destination.getRedelivered();
+            serviceTime = destination.getServiceTime().snapshot();
+            responseTime = destination.getResponseTime().snapshot();
+        }
+    }
+}
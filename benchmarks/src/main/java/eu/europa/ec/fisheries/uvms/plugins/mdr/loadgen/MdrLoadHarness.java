@@ -0,0 +1,114 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.loadgen;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.consumer.FluxMdrRemoteMessageConsumer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.consumer.MdrPluginAckEventBusListener;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.consumer.PluginNameEventBusListener;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Histogram;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load and replay harness : runs the three message listeners of the plugin against an in-memory JMS stand-in and reports
+ * throughput, latency percentiles and heap/GC figures.
+ * <p>
+ * {@code java -cp benchmarks/target/benchmarks.jar eu.europa.ec.fisheries.uvms.plugins.mdr.loadgen.MdrLoadHarness --rate 200 --duration 120}
+ * <p>
+ * The event bus receives synthesized SET_MDR_REQUESTs (or the messages recorded in the {@code --replay} directory) at a fixed rate,
+ * the queries the plugin sends to the bridge queue are answered by the {@link FluxTlSimulator} on the FLUX response queue with the
+ * configured size mix, and the messages the plugin sends to Exchange and to the event bus topic are only counted.
+ * The rate is held from the intended send times, a message sent late because the plugin pushed back keeps its intended time as
+ * the start of its latency. Run with the same heap settings as the server, {@code -Xmx}, {@code -XX:+UseG1GC}, ... for the heap
+ * and GC figures to be meaningful.
+ * <p>
+ * Limitations : the beans run without a container, so there are no transactions, interceptors nor pool limits other than the consumer
+ * count, and the timers only fire at a fixed period. The round trip is only measured for synthesized requests.
+ */
+public final class MdrLoadHarness {
+
+    private static final int QUEUE_CAPACITY = 1000;
+    private static final long DRAIN_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    private MdrLoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadProfile profile;
+        try {
+            profile = LoadProfile.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadProfile.USAGE);
+            System.exit(2);
+            return;
+        }
+        LoadReport report = run(profile);
+        report.print(System.out);
+        if (profile.getJsonOutput() != null) {
+            report.writeJson(profile.getJsonOutput());
+        }
+        // The plugin beans may have left non daemon threads behind.
+        System.exit(0);
+    }
+
+    static LoadReport run(LoadProfile profile) throws Exception {
+        InMemoryBroker broker = new InMemoryBroker();
+        ConcurrentMap<String, Long> originsByQueryUuid = new ConcurrentHashMap<>();
+        Histogram roundTrip = new Histogram();
+        try (PluginHarness plugin = new PluginHarness(broker, profile.getSettings())) {
+            int consumers = profile.getConsumers();
+            broker.bind(InMemoryBroker.EVENT_BUS, plugin.get(PluginNameEventBusListener.class), consumers, QUEUE_CAPACITY, null);
+            broker.bind(InMemoryBroker.EVENT_BUS_ACK, plugin.get(MdrPluginAckEventBusListener.class), consumers, QUEUE_CAPACITY, null);
+            broker.bind(InMemoryBroker.FLUX_RESPONSE, plugin.get(FluxMdrRemoteMessageConsumer.class), consumers, QUEUE_CAPACITY, roundTrip);
+            broker.bind(InMemoryBroker.FLUX_TL, new FluxTlSimulator(broker, profile.getSizeMix(), originsByQueryUuid), consumers,
+                    QUEUE_CAPACITY, null);
+
+            MessageStream stream = profile.getReplayDirectory() == null ? new SyntheticStream(profile, originsByQueryUuid)
+                    : new RecordedStream(profile.getReplayDirectory());
+            JvmStats jvm = new JvmStats();
+
+            long intervalNanos = profile.getRate() == 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / profile.getRate());
+            long start = System.nanoTime();
+            long measureFrom = start + TimeUnit.SECONDS.toNanos(profile.getWarmupSeconds());
+            long end = measureFrom + TimeUnit.SECONDS.toNanos(profile.getDurationSeconds());
+            boolean measuring = false;
+            long intended = start;
+            for (long now = System.nanoTime(); now < end; now = System.nanoTime()) {
+                if (!measuring && now >= measureFrom) {
+                    measuring = true;
+                    jvm.start();
+                }
+                if (intervalNanos == 0) {
+                    intended = now;
+                } else if (intended > now) {
+                    LockSupport.parkNanos(intended - now);
+                    continue;
+                }
+                stream.sendNext(broker, intended, intended >= measureFrom);
+                intended += intervalNanos;
+            }
+            boolean drained = broker.awaitIdle(DRAIN_TIMEOUT_MILLIS);
+            double measuredSeconds = (System.nanoTime() - measureFrom) / 1e9;
+            if (!measuring) {
+                jvm.start();
+            }
+            jvm.stop();
+            return new LoadReport(profile, measuredSeconds, drained, broker, roundTrip.snapshot(), stream.getSent(), jvm,
+                    plugin.get(PluginMetrics.class).getCounters(), originsByQueryUuid.size());
+        } finally {
+            broker.stop();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.loadgen;
+
+import java.util.Random;
+
+/**
+ * Weighted mix of FLUX response sizes, written {@code size:weight,size:weight,...} with sizes in characters,
+ * e.g. {@code 1024:70,102400:25,5242880:5} for mostly small code lists and a few SPECIES sized ones.
+ */
+public final class PayloadSizeMix {
+
+    private final int[] sizes;
+    private final long[] cumulativeWeights;
+
+    private PayloadSizeMix(int[] sizes, long[] cumulativeWeights) {
+        this.sizes = sizes;
+        this.cumulativeWeights = cumulativeWeights;
+    }
+
+    public static PayloadSizeMix parse(String mix) {
+        String[] entries = mix.split(",");
+        int[] sizes = new int[entries.length];
+        long[] cumulativeWeights = new long[entries.length];
+        long total = 0;
+        for (int i = 0; i < entries.length; i++) {
+            String[] sizeAndWeight = entries[i].trim().split(":");
+            sizes[i] = Integer.parseInt(sizeAndWeight[0].trim());
+            int weight = sizeAndWeight.length > 1 ? Integer.parseInt(sizeAndWeight[1].trim()) : 1;
+            if (sizes[i] < 1 || weight < 1) {
+                throw new IllegalArgumentException("Invalid payload size mix entry : " + entries[i]);
+            }
+            total += weight;
+            cumulativeWeights[i] = total;
+        }
+        return new PayloadSizeMix(sizes, cumulativeWeights);
+    }
+
+    public int next(Random random) {
+        long draw = (long) (random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (draw < cumulativeWeights[i]) {
+                return sizes[i];
+            }
+        }
+        return sizes[sizes.length - 1];
+    }
+
+    public int[] getSizes() {
+        return sizes.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder mix = new StringBuilder();
+        long previous = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            if (i > 0) {
+                mix.append(',');
+            }
+            mix.append(sizes[i]).append(':').append(cumulativeWeights[i] - previous);
+            previous = cumulativeWeights[i];
+        }
+        return mix.toString();
+    }
+}
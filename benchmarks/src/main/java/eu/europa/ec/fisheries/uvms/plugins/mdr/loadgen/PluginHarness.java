@@ -0,0 +1,289 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.loadgen;
+
+import eu.europa.ec.fisheries.schema.exchange.service.v1.SettingListType;
+import eu.europa.ec.fisheries.schema.exchange.service.v1.SettingType;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.cache.MdrResponseCache;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.consumer.EventBusAckHandler;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.consumer.EventBusRequestHandler;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.consumer.FluxMdrRemoteMessageConsumer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.consumer.FluxMdrResponseProcessor;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.consumer.MdrPluginAckEventBusListener;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.consumer.PluginNameEventBusListener;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.consumer.ResponseProcessingPipeline;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrCorrelationIndex;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrRequestCoalescer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.dedup.InboundDeduplicator;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.delta.MdrDeltaSync;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.lifecycle.PluginLifecycle;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.ReliableOutbox;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.ExchangeStreamingProducer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.FluxBridgeBatchProducer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.FluxBridgeRateLimiter;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.service.ExchangePluginServiceBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.service.FileHandlerBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.service.FluxMdrRequestServiceBean;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.MessageDrivenContext;
+import javax.ejb.Schedule;
+import javax.ejb.Timeout;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The plugin beans wired together outside of a container, around the producer stand-ins of an {@link InMemoryBroker}.
+ * <p>
+ * Every {@code @EJB} and {@code @Resource} field is set to the bean of a matching type, {@code @PostConstruct} methods are called
+ * in dependency order once the settings overrides are applied and {@code @PreDestroy} methods in reverse order on {@link #close()}.
+ * {@code @Schedule} methods run every N seconds when scheduled on every N-th second, every minute otherwise.
+ * Each bean gets its own {@link TimerService} whose single action timers call the {@code @Timeout} method of the bean.
+ * Each bean exists once : the stateless beans only hold references to other beans, so one instance serves all the consumers like the pool would.
+ * The batching mode needs a real JMS connection factory and stays disabled, {@code setRollbackOnly()} makes the
+ * {@link InMemoryDestination} redeliver the message.
+ */
+final class PluginHarness implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PluginHarness.class);
+
+    private final List<Object> beans = new ArrayList<>();
+    private final List<Object> started = new ArrayList<>();
+    private final ExecutorService executor = Executors.newCachedThreadPool(daemonThreads());
+    private final ScheduledExecutorService timers = Executors.newSingleThreadScheduledExecutor(daemonThreads());
+
+    PluginHarness(InMemoryBroker broker, Map<String, String> settings) {
+        beans.add(InMemoryProducers.bridge(broker));
+        beans.add(InMemoryProducers.exchange(broker));
+        beans.add(InMemoryProducers.eventBus(broker));
+        beans.add(managedExecutor(executor));
+        beans.add(managedThreadFactory());
+        beans.add(messageDrivenContext());
+        // Lifecycle order : a bean only depends on the beans before it.
+        List<Object> managed = new ArrayList<>();
+        Collections.addAll(managed, new PluginMetrics(), new FileHandlerBean(), new StartupBean(), new MdrCorrelationIndex(),
+                new MdrRequestCoalescer(), new FluxBridgeBatchProducer(), new FluxBridgeRateLimiter(), new ExchangeStreamingProducer(),
+                new MdrResponseCache(), new MdrDeltaSync(), new InboundDeduplicator(), new ExchangePluginServiceBean(), new ReliableOutbox(),
+                new FluxMdrRequestServiceBean(), new PluginLifecycle(),
+                new FluxMdrResponseProcessor(), new ResponseProcessingPipeline(), new EventBusRequestHandler(), new EventBusAckHandler(),
+                new PluginNameEventBusListener(), new FluxMdrRemoteMessageConsumer(), new MdrPluginAckEventBusListener());
+        beans.addAll(managed);
+        for (Object bean : beans) {
+            inject(bean);
+        }
+        for (Object bean : managed) {
+            invoke(bean, PostConstruct.class);
+            started.add(bean);
+            if (bean instanceof StartupBean) {
+                applySettings((StartupBean) bean, settings);
+            }
+        }
+        for (Object bean : managed) {
+            schedule(bean);
+        }
+    }
+
+    <T> T get(Class<T> type) {
+        for (Object bean : beans) {
+            if (type.isInstance(bean)) {
+                return type.cast(bean);
+            }
+        }
+        throw new IllegalArgumentException("No bean of type " + type.getName());
+    }
+
+    @Override
+    public void close() {
+        for (int i = started.size() - 1; i >= 0; i--) {
+            invoke(started.get(i), PreDestroy.class);
+        }
+        started.clear();
+        timers.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    private static void applySettings(StartupBean startup, Map<String, String> settings) {
+        SettingListType settingList = new SettingListType();
+        for (Map.Entry<String, String> setting : settings.entrySet()) {
+            SettingType settingType = new SettingType();
+            settingType.setKey(startup.getRegisterClassName() + "." + setting.getKey());
+            settingType.setValue(setting.getValue());
+            settingList.getSetting().add(settingType);
+        }
+        startup.updateSettings(settingList);
+    }
+
+    private void inject(Object bean) {
+        for (Class<?> type = bean.getClass(); type != Object.class; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (!field.isAnnotationPresent(EJB.class) && !field.isAnnotationPresent(Resource.class)) {
+                    continue;
+                }
+                if (field.getType() == TimerService.class) {
+                    set(bean, field, timerService(bean));
+                    continue;
+                }
+                for (Object candidate : beans) {
+                    if (field.getType().isInstance(candidate)) {
+                        set(bean, field, candidate);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private void schedule(final Object bean) {
+        for (final Method method : bean.getClass().getDeclaredMethods()) {
+            Schedule schedule = method.getAnnotation(Schedule.class);
+            if (schedule == null || method.getParameterTypes().length > 0) {
+                continue;
+            }
+            long periodSeconds = schedule.second().startsWith("*/") ? Long.parseLong(schedule.second().substring(2)) : 60;
+            timers.scheduleAtFixedRate(() -> {
+                try {
+                    method.setAccessible(true);
+                    method.invoke(bean);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    LOG.warn("Timer {} failed.", method, e);
+                }
+            }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private TimerService timerService(final Object bean) {
+        return (TimerService) Proxy.newProxyInstance(PluginHarness.class.getClassLoader(), new Class<?>[]{TimerService.class},
+                (proxy, method, args) -> {
+                    if (!"createSingleActionTimer".equals(method.getName()) || !(args[1] instanceof TimerConfig)) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    final Timer timer = timer(((TimerConfig) args[1]).getInfo());
+                    timers.schedule(() -> fire(bean, timer), (Long) args[0], TimeUnit.MILLISECONDS);
+                    return timer;
+                });
+    }
+
+    private static Timer timer(final Serializable info) {
+        return (Timer) Proxy.newProxyInstance(PluginHarness.class.getClassLoader(), new Class<?>[]{Timer.class},
+                (proxy, method, args) -> {
+                    if ("getInfo".equals(method.getName())) {
+                        return info;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static void fire(Object bean, Timer timer) {
+        for (Method method : bean.getClass().getDeclaredMethods()) {
+            if (method.isAnnotationPresent(Timeout.class)) {
+                try {
+                    method.setAccessible(true);
+                    method.invoke(bean, timer);
+                } catch (IllegalAccessException | InvocationTargetException e) {
+                    LOG.warn("Timer {} failed.", method, e);
+                }
+            }
+        }
+    }
+
+    private static void set(Object bean, Field field, Object value) {
+        try {
+            field.setAccessible(true);
+            field.set(bean, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Could not inject " + field, e);
+        }
+    }
+
+    private static void invoke(Object bean, Class<? extends java.lang.annotation.Annotation> lifecycle) {
+        for (Method method : bean.getClass().getDeclaredMethods()) {
+            if (method.isAnnotationPresent(lifecycle) && method.getParameterTypes().length == 0) {
+                try {
+                    method.setAccessible(true);
+                    method.invoke(bean);
+                } catch (IllegalAccessException e) {
+                    throw new IllegalStateException("Could not call " + method, e);
+                } catch (InvocationTargetException e) {
+                    throw new IllegalStateException(method + " failed.", e.getCause());
+                }
+            }
+        }
+    }
+
+    private static ManagedExecutorService managedExecutor(final ExecutorService executor) {
+        return (ManagedExecutorService) Proxy.newProxyInstance(PluginHarness.class.getClassLoader(), new Class<?>[]{ManagedExecutorService.class},
+                (proxy, method, args) -> {
+                    try {
+                        return method.invoke(executor, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static ManagedThreadFactory managedThreadFactory() {
+        final ThreadFactory threads = daemonThreads();
+        return (ManagedThreadFactory) Proxy.newProxyInstance(PluginHarness.class.getClassLoader(), new Class<?>[]{ManagedThreadFactory.class},
+                (proxy, method, args) -> {
+                    if ("newThread".equals(method.getName())) {
+                        return threads.newThread((Runnable) args[0]);
+                    }
+                    return method.invoke(threads, args);
+                });
+    }
+
+    private static MessageDrivenContext messageDrivenContext() {
+        return (MessageDrivenContext) Proxy.newProxyInstance(PluginHarness.class.getClassLoader(), new Class<?>[]{MessageDrivenContext.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setRollbackOnly":
+                            InMemoryDestination.setRollbackOnly();
+                            return null;
+                        case "getRollbackOnly":
+                            return InMemoryDestination.getRollbackOnly();
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+    private static ThreadFactory daemonThreads() {
+        final ThreadFactory defaults = Executors.defaultThreadFactory();
+        return runnable -> {
+            Thread thread = defaults.newThread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,95 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.loadgen;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.benchmarks.TextMessages;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Replays recorded message bodies, one file per message, in file name order and from the start again once all were sent.
+ * <p>
+ * The destination is given by the file name prefix : {@code ack} for the registration acknowledges of the event bus,
+ * {@code eventbus} for the other event bus messages (SET_MDR_REQUEST, SET_CONFIG, ...) and {@code flux} for FLUX MDR responses,
+ * e.g. {@code 0001-eventbus-species.xml}. Other files are ignored. Recorded responses carry no BUSINESS_UUID and are not
+ * measured end to end, the queries replayed on the event bus are still answered by the {@link FluxTlSimulator}.
+ */
+final class RecordedStream implements MessageStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RecordedStream.class);
+
+    private final List<String> destinations = new ArrayList<>();
+    private final List<String> texts = new ArrayList<>();
+    private final Map<String, Long> sent = new TreeMap<>();
+    private int next;
+
+    RecordedStream(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                if (Files.isRegularFile(entry)) {
+                    files.add(entry);
+                }
+            }
+        }
+        Collections.sort(files);
+        for (Path file : files) {
+            String name = file.getFileName().toString().toLowerCase();
+            String destination = destinationOf(name.substring(name.indexOf('-') + 1));
+            if (destination == null) {
+                LOG.warn("Ignoring {}, its name does not tell the destination.", file);
+                continue;
+            }
+            destinations.add(destination);
+            texts.add(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        }
+        if (texts.isEmpty()) {
+            throw new IllegalArgumentException("No recorded message in " + directory);
+        }
+    }
+
+    @Override
+    public void sendNext(InMemoryBroker broker, long intendedNanos, boolean measured) throws InterruptedException {
+        int index = next;
+        next = (next + 1) % texts.size();
+        String destination = destinations.get(index);
+        sent.merge(destination, 1L, Long::sum);
+        broker.send(destination, new Delivery(TextMessages.of(texts.get(index)), intendedNanos, measured, Delivery.NO_ORIGIN));
+    }
+
+    @Override
+    public Map<String, Long> getSent() {
+        return new TreeMap<>(sent);
+    }
+
+    private static String destinationOf(String name) {
+        if (name.startsWith("ack")) {
+            return InMemoryBroker.EVENT_BUS_ACK;
+        }
+        if (name.startsWith("eventbus")) {
+            return InMemoryBroker.EVENT_BUS;
+        }
+        if (name.startsWith("flux")) {
+            return InMemoryBroker.FLUX_RESPONSE;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.loadgen;
+
+import eu.europa.ec.fisheries.schema.exchange.common.v1.AcknowledgeType;
+import eu.europa.ec.fisheries.schema.exchange.common.v1.AcknowledgeTypeType;
+import eu.europa.ec.fisheries.schema.exchange.plugin.v1.ExchangePluginMethod;
+import eu.europa.ec.fisheries.schema.exchange.plugin.v1.SetMdrPluginRequest;
+import eu.europa.ec.fisheries.schema.exchange.registry.v1.ExchangeRegistryMethod;
+import eu.europa.ec.fisheries.schema.exchange.registry.v1.RegisterServiceResponse;
+import eu.europa.ec.fisheries.uvms.exchange.model.exception.ExchangeModelMarshallException;
+import eu.europa.ec.fisheries.uvms.exchange.model.mapper.JAXBMarshaller;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.CodeListPayloads;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.benchmarks.TextMessages;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Synthesized traffic : SET_MDR_REQUESTs from Exchange for OBJ_DATA_ALL code lists, interleaved with registration acknowledges.
+ * <p>
+ * Every request has a new MDRQuery/ID. The requested code list is new for every request by default, so that nothing is coalesced
+ * or answered from the response cache, or drawn from a fixed number of acronyms to exercise them. The intended send time of the
+ * measured requests is kept by MDRQuery/ID for the {@link FluxTlSimulator}, to measure the round trip up to the processed response.
+ */
+final class SyntheticStream implements MessageStream {
+
+    private static final String UUID_PLACEHOLDER = "00000000-0000-4000-8000-000000000000";
+    private static final String ACRONYM_PLACEHOLDER = "MDR_HARNESS_ACRONYM";
+
+    private final String requestTemplate;
+    private final String ackText;
+    private final Random random;
+    private final int acronyms;
+    private final double ackRatio;
+    private final ConcurrentMap<String, Long> originsByQueryUuid;
+
+    private long requests;
+    private long acks;
+
+    SyntheticStream(LoadProfile profile, ConcurrentMap<String, Long> originsByQueryUuid) throws ExchangeModelMarshallException {
+        SetMdrPluginRequest request = new SetMdrPluginRequest();
+        request.setMethod(ExchangePluginMethod.SET_MDR_REQUEST);
+        request.setFr("XEU");
+        request.setRequest(CodeListPayloads.createQueryMessage(UUID_PLACEHOLDER, ACRONYM_PLACEHOLDER, "OBJ_DATA_ALL"));
+        requestTemplate = JAXBMarshaller.marshallJaxBObjectToString(request);
+
+        AcknowledgeType ack = new AcknowledgeType();
+        ack.setType(AcknowledgeTypeType.OK);
+        RegisterServiceResponse registerResponse = new RegisterServiceResponse();
+        registerResponse.setMethod(ExchangeRegistryMethod.REGISTER_SERVICE);
+        registerResponse.setAck(ack);
+        ackText = JAXBMarshaller.marshallJaxBObjectToString(registerResponse);
+
+        random = new Random(profile.getSeed());
+        acronyms = profile.getAcronyms();
+        ackRatio = profile.getAckRatio();
+        this.originsByQueryUuid = originsByQueryUuid;
+    }
+
+    @Override
+    public void sendNext(InMemoryBroker broker, long intendedNanos, boolean measured) throws InterruptedException {
+        if (random.nextDouble() < ackRatio) {
+            acks++;
+            broker.send(InMemoryBroker.EVENT_BUS_ACK, new Delivery(TextMessages.of(ackText), intendedNanos, measured, Delivery.NO_ORIGIN));
+            return;
+        }
+        String queryUuid = UUID.randomUUID().toString();
+        String acronym = "HARNESS_" + (acronyms == 0 ? requests : random.nextInt(acronyms));
+        requests++;
+        if (measured) {
+            originsByQueryUuid.put(queryUuid, intendedNanos);
+        }
+        String text = requestTemplate.replace(UUID_PLACEHOLDER, queryUuid).replace(ACRONYM_PLACEHOLDER, acronym);
+        broker.send(InMemoryBroker.EVENT_BUS, new Delivery(TextMessages.of(text), intendedNanos, measured, Delivery.NO_ORIGIN));
+    }
+
+    @Override
+    public Map<String, Long> getSent() {
+        Map<String, Long> sent = new TreeMap<>();
+        sent.put(InMemoryBroker.EVENT_BUS, requests);
+        sent.put(InMemoryBroker.EVENT_BUS_ACK, acks);
+        return sent;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.mapper;
+
+import eu.europa.ec.fisheries.uvms.exchange.model.exception.ExchangeModelMarshallException;
+import eu.europa.ec.fisheries.uvms.exchange.model.mapper.ExchangeModuleRequestMapper;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.CodeListPayloads;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import javax.xml.stream.XMLStreamException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Allocation per forwarded FLUX MDR response : the String based {@link ExchangeModuleRequestMapper#createFluxMdrSyncEntityResponse(String, String)}
+ * path against the {@link FluxMdrSyncResponseWriter}.
+ * Run with {@link #main(String[])}, which adds the GC profiler ; compare the {@code gc.alloc.rate.norm} (bytes per operation) figures.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xmx1g"})
+@State(Scope.Benchmark)
+public class FluxMdrForwardingBenchmark {
+
+    @Param({"1024", "102400", "1048576", "10485760", "52428800"})
+    private int payloadSize;
+
+    private String response;
+
+    private final OutputStream discardingStream = new OutputStream() {
+        @Override
+        public void write(int b) {
+            // Only the allocations on the way to the stream are measured.
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            // Only the allocations on the way to the stream are measured.
+        }
+    };
+
+    @Setup
+    public void setup() {
+        response = CodeListPayloads.createResponseMessage(payloadSize);
+    }
+
+    @Benchmark
+    public byte[] mapperToTextMessage() throws ExchangeModelMarshallException {
+        // A TextMessage body ends up encoded on the wire, the getBytes stands for that copy.
+        return ExchangeModuleRequestMapper.createFluxMdrSyncEntityResponse(response, "flux").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public OutputStream streamingWriter() throws XMLStreamException {
+        FluxMdrSyncResponseWriter.write(response, "flux", discardingStream);
+        return discardingStream;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FluxMdrForwardingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,113 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.CodeListPayloads;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import javax.xml.parsers.SAXParserFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * Compares the pooled {@link MdrSaxaprserAcronymExtractor} with the former per-call parser construction
+ * and with the StAX fast path on FLUXMDRQueryMessage payloads. Run with {@link #main(String[])} or through the JMH runner.
+ * Kept in the extractor package to reach the package-private {@link MdrUuidExtractionHandler}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MdrSaxParserBenchmark {
+
+    private static final String[] ACRONYMS = {"FA_REASON_DEPARTURE", "FLUX_GP_PARTY", "SPECIES", "LOCATION", "GEAR_TYPE", "VESSEL_TYPE", "FA_CATCH_TYPE", "EFFORT_ZONE"};
+
+    private static final String[] QUERY_TYPES = {"OBJ_DATA_ALL", "OBJ_DESC", "OBJ_DATA_ACTIVE"};
+
+    private String[] payloads;
+
+    private byte[][] rawPayloads;
+
+    private MdrSaxaprserAcronymExtractor pooledExtractor;
+
+    private MdrStaxUuidExtractor staxExtractor;
+
+    @Setup
+    public void setup() {
+        payloads = new String[ACRONYMS.length * QUERY_TYPES.length];
+        int index = 0;
+        for (String acronym : ACRONYMS) {
+            for (String queryType : QUERY_TYPES) {
+                payloads[index++] = CodeListPayloads.createQueryMessage(UUID.randomUUID().toString(), acronym, queryType);
+            }
+        }
+        rawPayloads = new byte[payloads.length][];
+        for (int i = 0; i < payloads.length; i++) {
+            rawPayloads[i] = payloads[i].getBytes(StandardCharsets.UTF_8);
+        }
+        pooledExtractor = new MdrSaxaprserAcronymExtractor(MdrType.MDR_QUERY);
+        staxExtractor = new MdrStaxUuidExtractor(MdrType.MDR_QUERY);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String pooledParser() throws MdrExtractionException {
+        return pooledExtractor.parse(nextPayload()).getUuid();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String staxFastPathOnBytes() throws MdrExtractionException {
+        return staxExtractor.parse(rawPayloads[ThreadLocalRandom.current().nextInt(rawPayloads.length)]).getUuid();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String perCallParser() throws Exception {
+        MdrUuidExtractionHandler handler = new MdrUuidExtractionHandler(MdrType.MDR_QUERY, true);
+        handler.reset();
+        SAXParserFactory factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            factory.newSAXParser().parse(new InputSource(new StringReader(nextPayload())), handler);
+        } catch (SAXException e) {
+            // The handler stops the parse once the UUID was found.
+        }
+        return handler.getUuidValue();
+    }
+
+    private String nextPayload() {
+        return payloads[ThreadLocalRandom.current().nextInt(payloads.length)];
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MdrSaxParserBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,412 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.lifecycle.OverflowPolicy;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.FsyncPolicy;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Typed view of the plugin settings, parsed once per settings change.
+ * <p>
+ * The values are read from a {@link PluginState} when it is built, so the beans read plain fields on the hot path and a
+ * SET_CONFIG is seen as a whole by the next reader. Missing, malformed or out of range values fall back to the default
+ * with a warning.
+ */
+public final class PluginConfiguration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PluginConfiguration.class);
+
+    public static final String FLUX_TODT_MINUTES = "FLUX_TODT_MINUTES";
+
+    public static final String REGISTRATION_RETRY_INITIAL_SECONDS = "REGISTRATION_RETRY_INITIAL_SECONDS";
+    public static final String REGISTRATION_RETRY_MAX_SECONDS = "REGISTRATION_RETRY_MAX_SECONDS";
+
+    public static final String DEFERRED_REQUESTS_CAPACITY = "DEFERRED_REQUESTS_CAPACITY";
+    public static final String DEFERRED_REQUESTS_OVERFLOW = "DEFERRED_REQUESTS_OVERFLOW";
+    public static final String DEFERRED_REQUESTS_RELEASE_PER_SECOND = "DEFERRED_REQUESTS_RELEASE_PER_SECOND";
+    public static final String DEFERRED_REQUESTS_DIRECTORY = "DEFERRED_REQUESTS_DIRECTORY";
+
+    public static final String BRIDGE_BATCHING_ENABLED = "BRIDGE_BATCHING_ENABLED";
+    public static final String BRIDGE_BATCH_SIZE = "BRIDGE_BATCH_SIZE";
+    public static final String BRIDGE_BATCH_LINGER_MS = "BRIDGE_BATCH_LINGER_MS";
+    public static final String BRIDGE_RATE_PER_SECOND = "BRIDGE_RATE_PER_SECOND";
+    public static final String BRIDGE_RATE_BURST = "BRIDGE_RATE_BURST";
+
+    public static final String EXCHANGE_STREAMING_ENABLED = "EXCHANGE_STREAMING_ENABLED";
+    public static final String EXCHANGE_STREAMING_THRESHOLD_CHARS = "EXCHANGE_STREAMING_THRESHOLD_CHARS";
+    public static final String EXCHANGE_COMPRESSION_ENABLED = "EXCHANGE_COMPRESSION_ENABLED";
+    public static final String EXCHANGE_COMPRESSION_THRESHOLD_CHARS = "EXCHANGE_COMPRESSION_THRESHOLD_CHARS";
+
+    public static final String RESPONSE_PIPELINE_ENABLED = "RESPONSE_PIPELINE_ENABLED";
+    public static final String RESPONSE_PIPELINE_SMALL_THREADS = "RESPONSE_PIPELINE_SMALL_THREADS";
+    public static final String RESPONSE_PIPELINE_LARGE_THREADS = "RESPONSE_PIPELINE_LARGE_THREADS";
+    public static final String RESPONSE_PIPELINE_QUEUE_CAPACITY = "RESPONSE_PIPELINE_QUEUE_CAPACITY";
+    public static final String RESPONSE_PIPELINE_LARGE_THRESHOLD_CHARS = "RESPONSE_PIPELINE_LARGE_THRESHOLD_CHARS";
+    public static final String RESPONSE_PIPELINE_SUBMIT_TIMEOUT_MS = "RESPONSE_PIPELINE_SUBMIT_TIMEOUT_MS";
+
+    public static final String RESPONSE_CACHE_ENABLED = "RESPONSE_CACHE_ENABLED";
+    public static final String RESPONSE_CACHE_DIRECTORY = "RESPONSE_CACHE_DIRECTORY";
+    public static final String RESPONSE_CACHE_STALENESS_SECONDS = "RESPONSE_CACHE_STALENESS_SECONDS";
+    public static final String RESPONSE_CACHE_SEGMENT_SIZE_BYTES = "RESPONSE_CACHE_SEGMENT_SIZE_BYTES";
+    public static final String RESPONSE_CACHE_MAX_SEGMENTS = "RESPONSE_CACHE_MAX_SEGMENTS";
+
+    public static final String DELTA_SYNC_ENABLED = "DELTA_SYNC_ENABLED";
+
+    public static final String INBOUND_DEDUP_ENABLED = "INBOUND_DEDUP_ENABLED";
+    public static final String INBOUND_DEDUP_WINDOW_SECONDS = "INBOUND_DEDUP_WINDOW_SECONDS";
+    public static final String INBOUND_DEDUP_MAX_ENTRIES = "INBOUND_DEDUP_MAX_ENTRIES";
+
+    public static final String OUTBOX_ENABLED = "OUTBOX_ENABLED";
+    public static final String OUTBOX_DIRECTORY = "OUTBOX_DIRECTORY";
+    public static final String OUTBOX_FSYNC = "OUTBOX_FSYNC";
+    public static final String OUTBOX_SEGMENT_SIZE_BYTES = "OUTBOX_SEGMENT_SIZE_BYTES";
+    public static final String OUTBOX_RETRY_INITIAL_SECONDS = "OUTBOX_RETRY_INITIAL_SECONDS";
+    public static final String OUTBOX_RETRY_MAX_SECONDS = "OUTBOX_RETRY_MAX_SECONDS";
+
+    private static final int DEFAULT_FLUX_TODT_MINUTES = 3 * 60;
+    private static final int DEFAULT_REGISTRATION_RETRY_INITIAL_SECONDS = 1;
+    private static final int DEFAULT_REGISTRATION_RETRY_MAX_SECONDS = 5 * 60;
+    private static final int DEFAULT_DEFERRED_REQUESTS_CAPACITY = 10000;
+    private static final int DEFAULT_DEFERRED_REQUESTS_RELEASE_PER_SECOND = 50;
+    private static final int DEFAULT_BRIDGE_BATCH_SIZE = 50;
+    private static final int DEFAULT_BRIDGE_BATCH_LINGER_MS = 20;
+    private static final int DEFAULT_BRIDGE_RATE_BURST = 10;
+    private static final int DEFAULT_EXCHANGE_STREAMING_THRESHOLD = 1024 * 1024;
+    private static final int DEFAULT_EXCHANGE_COMPRESSION_THRESHOLD = 64 * 1024;
+    private static final int DEFAULT_RESPONSE_PIPELINE_SMALL_THREADS = 4;
+    private static final int DEFAULT_RESPONSE_PIPELINE_LARGE_THREADS = 1;
+    private static final int DEFAULT_RESPONSE_PIPELINE_QUEUE_CAPACITY = 50;
+    private static final int DEFAULT_RESPONSE_PIPELINE_LARGE_THRESHOLD = 1024 * 1024;
+    private static final int DEFAULT_RESPONSE_PIPELINE_SUBMIT_TIMEOUT_MS = 5000;
+    private static final int DEFAULT_RESPONSE_CACHE_STALENESS_SECONDS = 24 * 60 * 60;
+    private static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int DEFAULT_RESPONSE_CACHE_MAX_SEGMENTS = 8;
+    private static final int DEFAULT_INBOUND_DEDUP_WINDOW_SECONDS = 10 * 60;
+    private static final int DEFAULT_INBOUND_DEDUP_MAX_ENTRIES = 4096;
+    private static final int MAX_INBOUND_DEDUP_ENTRIES = 1 << 28;
+    private static final int DEFAULT_OUTBOX_RETRY_INITIAL_SECONDS = 5;
+    private static final int DEFAULT_OUTBOX_RETRY_MAX_SECONDS = 5 * 60;
+
+    private final int fluxTodtMinutes;
+
+    private final int registrationRetryInitialSeconds;
+    private final int registrationRetryMaxSeconds;
+
+    private final int deferredRequestsCapacity;
+    private final OverflowPolicy deferredRequestsOverflow;
+    private final int deferredRequestsReleasePerSecond;
+    private final String deferredRequestsDirectory;
+
+    private final boolean bridgeBatchingEnabled;
+    private final int bridgeBatchSize;
+    private final int bridgeBatchLingerMillis;
+    private final int bridgeRatePerSecond;
+    private final int bridgeRateBurst;
+
+    private final boolean exchangeStreamingEnabled;
+    private final int exchangeStreamingThresholdChars;
+    private final boolean exchangeCompressionEnabled;
+    private final int exchangeCompressionThresholdChars;
+
+    private final boolean responsePipelineEnabled;
+    private final int responsePipelineSmallThreads;
+    private final int responsePipelineLargeThreads;
+    private final int responsePipelineQueueCapacity;
+    private final int responsePipelineLargeThresholdChars;
+    private final int responsePipelineSubmitTimeoutMillis;
+
+    private final boolean responseCacheEnabled;
+    private final String responseCacheDirectory;
+    private final int responseCacheStalenessSeconds;
+    private final int responseCacheSegmentSize;
+    private final int responseCacheMaxSegments;
+
+    private final boolean deltaSyncEnabled;
+
+    private final boolean inboundDedupEnabled;
+    private final int inboundDedupWindowSeconds;
+    private final int inboundDedupMaxEntries;
+
+    private final boolean outboxEnabled;
+    private final String outboxDirectory;
+    private final FsyncPolicy outboxFsync;
+    private final int outboxSegmentSize;
+    private final int outboxRetryInitialSeconds;
+    private final int outboxRetryMaxSeconds;
+
+    PluginConfiguration(PluginState settings) {
+        fluxTodtMinutes = readInt(settings, FLUX_TODT_MINUTES, DEFAULT_FLUX_TODT_MINUTES, 1, Integer.MAX_VALUE);
+
+        registrationRetryInitialSeconds = readInt(settings, REGISTRATION_RETRY_INITIAL_SECONDS, DEFAULT_REGISTRATION_RETRY_INITIAL_SECONDS, 1, Integer.MAX_VALUE);
+        registrationRetryMaxSeconds = Math.max(registrationRetryInitialSeconds,
+                readInt(settings, REGISTRATION_RETRY_MAX_SECONDS, DEFAULT_REGISTRATION_RETRY_MAX_SECONDS, 1, Integer.MAX_VALUE));
+
+        deferredRequestsCapacity = readInt(settings, DEFERRED_REQUESTS_CAPACITY, DEFAULT_DEFERRED_REQUESTS_CAPACITY, 1, Integer.MAX_VALUE);
+        deferredRequestsOverflow = readEnum(settings, DEFERRED_REQUESTS_OVERFLOW, OverflowPolicy.class, OverflowPolicy.REDELIVER);
+        deferredRequestsReleasePerSecond = readInt(settings, DEFERRED_REQUESTS_RELEASE_PER_SECOND, DEFAULT_DEFERRED_REQUESTS_RELEASE_PER_SECOND, 1, Integer.MAX_VALUE);
+        deferredRequestsDirectory = readString(settings, DEFERRED_REQUESTS_DIRECTORY);
+
+        bridgeBatchingEnabled = readBoolean(settings, BRIDGE_BATCHING_ENABLED);
+        bridgeBatchSize = readInt(settings, BRIDGE_BATCH_SIZE, DEFAULT_BRIDGE_BATCH_SIZE, 1, Integer.MAX_VALUE);
+        bridgeBatchLingerMillis = readInt(settings, BRIDGE_BATCH_LINGER_MS, DEFAULT_BRIDGE_BATCH_LINGER_MS, 0, Integer.MAX_VALUE);
+        bridgeRatePerSecond = readInt(settings, BRIDGE_RATE_PER_SECOND, 0, 0, Integer.MAX_VALUE);
+        bridgeRateBurst = readInt(settings, BRIDGE_RATE_BURST, DEFAULT_BRIDGE_RATE_BURST, 1, Integer.MAX_VALUE);
+
+        exchangeStreamingEnabled = readBoolean(settings, EXCHANGE_STREAMING_ENABLED);
+        exchangeStreamingThresholdChars = readInt(settings, EXCHANGE_STREAMING_THRESHOLD_CHARS, DEFAULT_EXCHANGE_STREAMING_THRESHOLD, 0, Integer.MAX_VALUE);
+        exchangeCompressionEnabled = readBoolean(settings, EXCHANGE_COMPRESSION_ENABLED);
+        exchangeCompressionThresholdChars = readInt(settings, EXCHANGE_COMPRESSION_THRESHOLD_CHARS, DEFAULT_EXCHANGE_COMPRESSION_THRESHOLD, 0, Integer.MAX_VALUE);
+
+        responsePipelineEnabled = readBoolean(settings, RESPONSE_PIPELINE_ENABLED);
+        responsePipelineSmallThreads = readInt(settings, RESPONSE_PIPELINE_SMALL_THREADS, DEFAULT_RESPONSE_PIPELINE_SMALL_THREADS, 1, Integer.MAX_VALUE);
+        responsePipelineLargeThreads = readInt(settings, RESPONSE_PIPELINE_LARGE_THREADS, DEFAULT_RESPONSE_PIPELINE_LARGE_THREADS, 1, Integer.MAX_VALUE);
+        responsePipelineQueueCapacity = readInt(settings, RESPONSE_PIPELINE_QUEUE_CAPACITY, DEFAULT_RESPONSE_PIPELINE_QUEUE_CAPACITY, 1, Integer.MAX_VALUE);
+        responsePipelineLargeThresholdChars = readInt(settings, RESPONSE_PIPELINE_LARGE_THRESHOLD_CHARS, DEFAULT_RESPONSE_PIPELINE_LARGE_THRESHOLD, 0, Integer.MAX_VALUE);
+        responsePipelineSubmitTimeoutMillis = readInt(settings, RESPONSE_PIPELINE_SUBMIT_TIMEOUT_MS, DEFAULT_RESPONSE_PIPELINE_SUBMIT_TIMEOUT_MS, 0, Integer.MAX_VALUE);
+
+        responseCacheEnabled = readBoolean(settings, RESPONSE_CACHE_ENABLED);
+        responseCacheDirectory = readString(settings, RESPONSE_CACHE_DIRECTORY);
+        responseCacheStalenessSeconds = readInt(settings, RESPONSE_CACHE_STALENESS_SECONDS, DEFAULT_RESPONSE_CACHE_STALENESS_SECONDS, 0, Integer.MAX_VALUE);
+        responseCacheSegmentSize = readInt(settings, RESPONSE_CACHE_SEGMENT_SIZE_BYTES, DEFAULT_SEGMENT_SIZE, 1, Integer.MAX_VALUE);
+        responseCacheMaxSegments = readInt(settings, RESPONSE_CACHE_MAX_SEGMENTS, DEFAULT_RESPONSE_CACHE_MAX_SEGMENTS, 1, Integer.MAX_VALUE);
+
+        deltaSyncEnabled = readBoolean(settings, DELTA_SYNC_ENABLED);
+
+        inboundDedupEnabled = readBoolean(settings, INBOUND_DEDUP_ENABLED);
+        inboundDedupWindowSeconds = readInt(settings, INBOUND_DEDUP_WINDOW_SECONDS, DEFAULT_INBOUND_DEDUP_WINDOW_SECONDS, 1, Integer.MAX_VALUE);
+        inboundDedupMaxEntries = readInt(settings, INBOUND_DEDUP_MAX_ENTRIES, DEFAULT_INBOUND_DEDUP_MAX_ENTRIES, 1, MAX_INBOUND_DEDUP_ENTRIES);
+
+        outboxEnabled = readBoolean(settings, OUTBOX_ENABLED);
+        outboxDirectory = readString(settings, OUTBOX_DIRECTORY);
+        outboxFsync = readEnum(settings, OUTBOX_FSYNC, FsyncPolicy.class, FsyncPolicy.INTERVAL);
+        outboxSegmentSize = readInt(settings, OUTBOX_SEGMENT_SIZE_BYTES, DEFAULT_SEGMENT_SIZE, 1, Integer.MAX_VALUE);
+        outboxRetryInitialSeconds = readInt(settings, OUTBOX_RETRY_INITIAL_SECONDS, DEFAULT_OUTBOX_RETRY_INITIAL_SECONDS, 0, Integer.MAX_VALUE);
+        outboxRetryMaxSeconds = Math.max(outboxRetryInitialSeconds,
+                readInt(settings, OUTBOX_RETRY_MAX_SECONDS, DEFAULT_OUTBOX_RETRY_MAX_SECONDS, 0, Integer.MAX_VALUE));
+    }
+
+    private static boolean readBoolean(PluginState settings, String key) {
+        return Boolean.parseBoolean(StringUtils.trim(settings.getSetting(key)));
+    }
+
+    /**
+     * @return the trimmed value of the setting, or null when it is missing or blank
+     */
+    private static String readString(PluginState settings, String key) {
+        String value = settings.getSetting(key);
+        return StringUtils.isBlank(value) ? null : value.trim();
+    }
+
+    private static int readInt(PluginState settings, String key, int defaultValue, int min, int max) {
+        String value = settings.getSetting(key);
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            int parsed = Integer.parseInt(value.trim());
+            if (parsed >= min && parsed <= max) {
+                return parsed;
+            }
+            LOG.warn("Setting {} is out of range [{}, {}] : {}. Using default value {}.", key, min, max, value, defaultValue);
+        } catch (NumberFormatException e) {
+            LOG.warn("Setting {} is not a number : {}. Using default value {}.", key, value, defaultValue);
+        }
+        return defaultValue;
+    }
+
+    private static <E extends Enum<E>> E readEnum(PluginState settings, String key, Class<E> type, E defaultValue) {
+        String value = readString(settings, key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(type, value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            LOG.warn("Setting {} is unknown : {}. Using default value {}.", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return how long FLUX TL may take to deliver an MDR query and its response
+     */
+    public int getFluxTodtMinutes() {
+        return fluxTodtMinutes;
+    }
+
+    public int getRegistrationRetryInitialSeconds() {
+        return registrationRetryInitialSeconds;
+    }
+
+    /**
+     * @return the longest delay between two registration attempts
+     */
+    public int getRegistrationRetryMaxSeconds() {
+        return registrationRetryMaxSeconds;
+    }
+
+    /**
+     * @return how many MDR requests are kept while the plugin is stopped
+     */
+    public int getDeferredRequestsCapacity() {
+        return deferredRequestsCapacity;
+    }
+
+    public OverflowPolicy getDeferredRequestsOverflow() {
+        return deferredRequestsOverflow;
+    }
+
+    /**
+     * @return how many buffered MDR requests are sent per second once the plugin is started again
+     */
+    public int getDeferredRequestsReleasePerSecond() {
+        return deferredRequestsReleasePerSecond;
+    }
+
+    /**
+     * @return the configured directory of the deferred MDR requests journal, null for the default one
+     */
+    public String getDeferredRequestsDirectory() {
+        return deferredRequestsDirectory;
+    }
+
+    public boolean isBridgeBatchingEnabled() {
+        return bridgeBatchingEnabled;
+    }
+
+    public int getBridgeBatchSize() {
+        return bridgeBatchSize;
+    }
+
+    public int getBridgeBatchLingerMillis() {
+        return bridgeBatchLingerMillis;
+    }
+
+    /**
+     * @return the maximum number of messages sent to the bridge queue per second, 0 when not limited
+     */
+    public int getBridgeRatePerSecond() {
+        return bridgeRatePerSecond;
+    }
+
+    public int getBridgeRateBurst() {
+        return bridgeRateBurst;
+    }
+
+    public boolean isExchangeStreamingEnabled() {
+        return exchangeStreamingEnabled;
+    }
+
+    public int getExchangeStreamingThresholdChars() {
+        return exchangeStreamingThresholdChars;
+    }
+
+    public boolean isExchangeCompressionEnabled() {
+        return exchangeCompressionEnabled;
+    }
+
+    public int getExchangeCompressionThresholdChars() {
+        return exchangeCompressionThresholdChars;
+    }
+
+    public boolean isResponsePipelineEnabled() {
+        return responsePipelineEnabled;
+    }
+
+    public int getResponsePipelineSmallThreads() {
+        return responsePipelineSmallThreads;
+    }
+
+    public int getResponsePipelineLargeThreads() {
+        return responsePipelineLargeThreads;
+    }
+
+    public int getResponsePipelineQueueCapacity() {
+        return responsePipelineQueueCapacity;
+    }
+
+    public int getResponsePipelineLargeThresholdChars() {
+        return responsePipelineLargeThresholdChars;
+    }
+
+    public int getResponsePipelineSubmitTimeoutMillis() {
+        return responsePipelineSubmitTimeoutMillis;
+    }
+
+    public boolean isResponseCacheEnabled() {
+        return responseCacheEnabled;
+    }
+
+    /**
+     * @return the configured cache directory, null for the default one
+     */
+    public String getResponseCacheDirectory() {
+        return responseCacheDirectory;
+    }
+
+    public int getResponseCacheStalenessSeconds() {
+        return responseCacheStalenessSeconds;
+    }
+
+    public int getResponseCacheSegmentSize() {
+        return responseCacheSegmentSize;
+    }
+
+    public int getResponseCacheMaxSegments() {
+        return responseCacheMaxSegments;
+    }
+
+    public boolean isDeltaSyncEnabled() {
+        return deltaSyncEnabled;
+    }
+
+    public boolean isInboundDedupEnabled() {
+        return inboundDedupEnabled;
+    }
+
+    public int getInboundDedupWindowSeconds() {
+        return inboundDedupWindowSeconds;
+    }
+
+    public int getInboundDedupMaxEntries() {
+        return inboundDedupMaxEntries;
+    }
+
+    public boolean isOutboxEnabled() {
+        return outboxEnabled;
+    }
+
+    /**
+     * @return the configured journal directory, null for the default one
+     */
+    public String getOutboxDirectory() {
+        return outboxDirectory;
+    }
+
+    public FsyncPolicy getOutboxFsync() {
+        return outboxFsync;
+    }
+
+    public int getOutboxSegmentSize() {
+        return outboxSegmentSize;
+    }
+
+    public int getOutboxRetryInitialSeconds() {
+        return outboxRetryInitialSeconds;
+    }
+
+    public int getOutboxRetryMaxSeconds() {
+        return outboxRetryMaxSeconds;
+    }
+}
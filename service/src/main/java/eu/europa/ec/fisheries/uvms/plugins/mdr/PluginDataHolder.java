@@ -32,7 +32,7 @@ public abstract class PluginDataHolder {
     private final ConcurrentMap<String, String> capabilities = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, String> properties = new ConcurrentHashMap<>();
 
-    public ConcurrentMap<String, String> getSettings() {
+    ConcurrentMap<String, String> getLoadedSettings() {
         return settings;
     }
     ConcurrentMap<String, String> getCapabilities() {
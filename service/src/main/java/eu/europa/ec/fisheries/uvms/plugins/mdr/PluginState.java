@@ -0,0 +1,77 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import eu.europa.ec.fisheries.schema.exchange.service.v1.SettingListType;
+import eu.europa.ec.fisheries.schema.exchange.service.v1.SettingType;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the identity and settings of the plugin, published by the {@link StartupBean}.
+ * <p>
+ * Readers never lock : they get the current snapshot and read from it. A settings update builds a new snapshot,
+ * with its {@link PluginConfiguration} parsed once.
+ */
+public final class PluginState {
+
+    private final String registeredClassName;
+    private final String pluginResponseSubscriptionName;
+    private final Map<String, String> settings;
+    private final PluginConfiguration configuration;
+
+    PluginState(String registeredClassName, String pluginResponseSubscriptionName, Map<String, String> settings) {
+        this.registeredClassName = registeredClassName;
+        this.pluginResponseSubscriptionName = pluginResponseSubscriptionName;
+        this.settings = Collections.unmodifiableMap(new HashMap<>(settings));
+        this.configuration = new PluginConfiguration(this);
+    }
+
+    /**
+     * @return a copy of this snapshot with the given settings added or replaced, settings without a key or value are ignored
+     */
+    PluginState withSettings(SettingListType configurations) {
+        Map<String, String> updated = new HashMap<>(settings);
+        for (SettingType setting : configurations.getSetting()) {
+            if (setting.getKey() != null && setting.getValue() != null) {
+                updated.put(setting.getKey(), setting.getValue());
+            }
+        }
+        return new PluginState(registeredClassName, pluginResponseSubscriptionName, updated);
+    }
+
+    public String getRegisteredClassName() {
+        return registeredClassName;
+    }
+
+    public String getPluginResponseSubscriptionName() {
+        return pluginResponseSubscriptionName;
+    }
+
+    /**
+     * @return the value of the setting registered as {@code registeredClassName.key}, null when missing
+     */
+    public String getSetting(String key) {
+        return settings.get(registeredClassName + "." + key);
+    }
+
+    /**
+     * @return all the settings by registered key, unmodifiable
+     */
+    public Map<String, String> getSettings() {
+        return settings;
+    }
+
+    public PluginConfiguration getConfiguration() {
+        return configuration;
+    }
+}
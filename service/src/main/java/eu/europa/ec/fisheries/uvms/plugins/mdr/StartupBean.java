@@ -14,36 +14,62 @@ import eu.europa.ec.fisheries.schema.exchange.plugin.types.v1.PluginType;
 import eu.europa.ec.fisheries.schema.exchange.service.v1.CapabilityListType;
 import eu.europa.ec.fisheries.schema.exchange.service.v1.ServiceType;
 import eu.europa.ec.fisheries.schema.exchange.service.v1.SettingListType;
+import eu.europa.ec.fisheries.schema.exchange.service.v1.SettingType;
 import eu.europa.ec.fisheries.uvms.commons.message.api.MessageException;
 import eu.europa.ec.fisheries.uvms.exchange.model.constant.ExchangeModelConstants;
 import eu.europa.ec.fisheries.uvms.exchange.model.exception.ExchangeModelMarshallException;
 import eu.europa.ec.fisheries.uvms.exchange.model.mapper.ExchangeModuleRequestMapper;
 import eu.europa.ec.fisheries.uvms.plugins.mdr.mapper.ServiceMapper;
 import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.PluginToEventBusTopicProducer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.registration.RegistrationState;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.registration.RegistrationStateMachine;
 import eu.europa.ec.fisheries.uvms.plugins.mdr.service.FileHandlerBean;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
 import javax.ejb.DependsOn;
 import javax.ejb.EJB;
-import javax.ejb.Schedule;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang.StringUtils;
 
+/**
+ * Holds the plugin identity, settings and registration state.
+ * <p>
+ * The listeners read from this bean on every message, so it does not use the container write lock : the identity and the
+ * settings are an immutable {@link PluginState} swapped atomically on updates, and the other fields are volatile.
+ * <p>
+ * Registration does not hold up the deployment : the register and unregister requests are built once at startup and sent
+ * from single action timers, retried with a growing delay until Exchange accepts them, see {@link RegistrationStateMachine}.
+ * A rejection or a fault from Exchange, after a restart of Exchange for instance, starts the registration again.
+ * <p>
+ * The beans applying the settings register a {@link SettingsListener} at startup and are told of every update, whether
+ * it comes from the event bus or from {@link eu.europa.ec.fisheries.uvms.plugins.mdr.service.PluginService}.
+ */
 @Singleton
 @Startup
 @DependsOn({"PluginToEventBusTopicProducer", "FileHandlerBean"})
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
 @Slf4j
 public class StartupBean extends PluginDataHolder {
 
-    private static final int MAX_NUMBER_OF_TRIES = 10;
-    private boolean isRegistered = false;
-    private boolean isEnabled = false;
-    private boolean waitingForResponse = false;
-    private int numberOfTriesExecuted = 0;
-    private String registeredClassName = StringUtils.EMPTY;
+    private final RegistrationStateMachine registration = new RegistrationStateMachine(new Random());
+    private final AtomicReference<PluginState> state = new AtomicReference<>(new PluginState(StringUtils.EMPTY, null, Collections.<String, String>emptyMap()));
+    private final List<SettingsListener> settingsListeners = new CopyOnWriteArrayList<>();
 
     private static final String FAILED_TO_GET_SETTING_FOR_KEY = "Failed to getSetting for key: ";
     private static final String FAILED_TO_SEND_UNREGISTRATION_MESSAGE_TO = "Failed to send unregistration message to {}";
@@ -54,9 +80,12 @@ public class StartupBean extends PluginDataHolder {
     @EJB
     private FileHandlerBean fileHandler;
 
-    private CapabilityListType capabilities;
-    private SettingListType settingList;
-    private ServiceType serviceType;
+    @Resource
+    private TimerService timerService;
+
+    private volatile ServiceType serviceType;
+    private volatile String registerServiceRequest;
+    private volatile String unregisterServiceRequest;
 
     @PostConstruct
     public void startup() {
@@ -65,14 +94,16 @@ public class StartupBean extends PluginDataHolder {
         super.setPluginApplicaitonProperties(fileHandler.getPropertiesFromFile(PluginDataHolder.PLUGIN_PROPERTIES_KEY));
         super.setPluginProperties(fileHandler.getPropertiesFromFile(PluginDataHolder.PROPERTIES_KEY));
         super.setPluginCapabilities(fileHandler.getPropertiesFromFile(PluginDataHolder.CAPABILITIES_KEY));
-        registeredClassName = getPLuginApplicationProperty("application.groupid");
+        String registeredClassName = getPLuginApplicationProperty("application.groupid");
 
-        ServiceMapper.mapToMapFromProperties(super.getSettings(), super.getPluginProperties(), getRegisterClassName());
+        ServiceMapper.mapToMapFromProperties(super.getLoadedSettings(), super.getPluginProperties(), registeredClassName);
         ServiceMapper.mapToMapFromProperties(super.getCapabilities(), super.getPluginCapabilities(), null);
         ServiceMapper.mapToMapFromProperties(super.getProperties(), super.getPluginApplicaitonProperties(), null);
+        state.set(new PluginState(registeredClassName, registeredClassName + getProperties().get("application.responseTopicName"),
+                super.getLoadedSettings()));
 
-        capabilities = ServiceMapper.getCapabilitiesListTypeFromMap(super.getCapabilities());
-        settingList = ServiceMapper.getSettingsListTypeFromMap(super.getSettings());
+        CapabilityListType capabilities = ServiceMapper.getCapabilitiesListTypeFromMap(super.getCapabilities());
+        SettingListType settingList = ServiceMapper.getSettingsListTypeFromMap(super.getLoadedSettings());
 
         serviceType = ServiceMapper.getServiceType(
                 getRegisterClassName(),
@@ -80,10 +111,17 @@ public class StartupBean extends PluginDataHolder {
                 "This plugin handles sending and receiving MDR related messages to and from FLUX TL.",
                 PluginType.FLUX,
                 getPluginResponseSubscriptionName());
-        register();
+        try {
+            registerServiceRequest = ExchangeModuleRequestMapper.createRegisterServiceRequest(serviceType, capabilities, settingList);
+            unregisterServiceRequest = ExchangeModuleRequestMapper.createUnregisterServiceRequest(serviceType);
+        } catch (ExchangeModelMarshallException e) {
+            log.error("Failed to build the registration messages of {}, the plugin will not register.", getRegisterClassName(), e);
+            registration.stop();
+        }
+        scheduleRegistration();
 
         log.debug("Settings updated in plugin {}", registeredClassName);
-        for (Map.Entry<String, String> entry : super.getSettings().entrySet()) {
+        for (Map.Entry<String, String> entry : getSettings().entrySet()) {
             log.debug("Setting: KEY: {} , VALUE: {}", entry.getKey(), entry.getValue());
         }
 
@@ -93,36 +131,66 @@ public class StartupBean extends PluginDataHolder {
 
     @PreDestroy
     public void shutdown() {
+        registration.stop();
         unregister();
     }
 
-    @Schedule(second = "*/30", minute = "*", hour = "*", persistent = false)
-    public void timeout() {
-        if (!waitingForResponse && !isRegistered && numberOfTriesExecuted < MAX_NUMBER_OF_TRIES) {
-            log.info(getRegisterClassName() + " is not registered, trying to register");
-            register();
-            numberOfTriesExecuted++;
+    /**
+     * Registration attempt, the timer info is the number of the attempt.
+     */
+    @Timeout
+    public void registrationTimeout(Timer timer) {
+        if (!registration.startAttempt((Long) timer.getInfo())) {
+            return;
         }
-    }
-
-    private void register() {
         log.info("Registering to Exchange Module");
-        setWaitingForResponse(true);
         try {
-            String registerServiceRequest = ExchangeModuleRequestMapper.createRegisterServiceRequest(serviceType, capabilities, settingList);
             messageProducer.sendEventBusMessage(registerServiceRequest, ExchangeModelConstants.EXCHANGE_REGISTER_SERVICE);
-        } catch (MessageException | ExchangeModelMarshallException e) {
+        } catch (MessageException e) {
             log.error("Failed to send registration message to {}", ExchangeModelConstants.EXCHANGE_REGISTER_SERVICE, e);
-            setWaitingForResponse(false);
+            registration.sendFailed();
+        }
+        // Sends the registration again if Exchange does not answer in time.
+        scheduleRegistration();
+    }
+
+    /**
+     * Called when Exchange accepted the registration.
+     */
+    public void registrationAccepted() {
+        registration.accepted();
+        log.info("{} is registered to Exchange Module", getRegisterClassName());
+    }
+
+    /**
+     * Called when Exchange rejected the registration or reported a fault : the plugin registers again.
+     */
+    public void registrationRejected() {
+        if (registration.rejected()) {
+            log.warn("{} is not registered to Exchange Module, registering again", getRegisterClassName());
+            scheduleRegistration();
+        }
+    }
+
+    private void scheduleRegistration() {
+        PluginConfiguration configuration = getConfiguration();
+        long delay = registration.scheduleAttempt(TimeUnit.SECONDS.toMillis(configuration.getRegistrationRetryInitialSeconds()),
+                TimeUnit.SECONDS.toMillis(configuration.getRegistrationRetryMaxSeconds()));
+        if (registration.getState() == RegistrationState.STOPPED) {
+            return;
         }
+        log.debug("Next registration attempt in {} ms", delay);
+        timerService.createSingleActionTimer(delay, new TimerConfig(registration.getScheduledAttempt(), false));
     }
 
     private void unregister() {
+        if (unregisterServiceRequest == null) {
+            return;
+        }
         log.info("Unregistering from Exchange Module");
         try {
-            String unregisterServiceRequest = ExchangeModuleRequestMapper.createUnregisterServiceRequest(serviceType);
             messageProducer.sendEventBusMessage(unregisterServiceRequest, ExchangeModelConstants.EXCHANGE_REGISTER_SERVICE);
-        } catch (MessageException | ExchangeModelMarshallException e) {
+        } catch (MessageException e) {
             log.error(FAILED_TO_SEND_UNREGISTRATION_MESSAGE_TO, ExchangeModelConstants.EXCHANGE_REGISTER_SERVICE, e);
         }
     }
@@ -137,17 +205,64 @@ public class StartupBean extends PluginDataHolder {
     }
 
     private String getSetting(String key) {
-        try {
-            log.debug("Trying to get setting {} ", registeredClassName + "." + key);
-            return super.getSettings().get(registeredClassName + "." + key);
-        } catch (Exception e) {
-            log.error(FAILED_TO_GET_SETTING_FOR_KEY + key, registeredClassName, e);
-            return null;
+        return state.get().getSetting(key);
+    }
+
+    /**
+     * Stores the settings received with a SET_CONFIG request. Keys are expected in the same form as they were registered.
+     * Concurrent updates are applied one after the other, readers see either all the settings of an update or none.
+     * The {@link SettingsListener}s are then told, in the order they were added.
+     */
+    public void updateSettings(SettingListType configurations) {
+        if (configurations == null) {
+            return;
+        }
+        PluginState current;
+        do {
+            current = state.get();
+        } while (!state.compareAndSet(current, current.withSettings(configurations)));
+        for (SettingType setting : configurations.getSetting()) {
+            log.debug("Setting updated: KEY: {} , VALUE: {}", setting.getKey(), setting.getValue());
         }
+        for (SettingsListener listener : settingsListeners) {
+            try {
+                listener.reloadSettings();
+            } catch (RuntimeException e) {
+                log.error("[ERROR] Failed to apply the settings in {}.", listener, e);
+            }
+        }
+    }
+
+    /**
+     * @param listener told after every settings update, the beans depending on this one add themselves at startup
+     */
+    public void addSettingsListener(SettingsListener listener) {
+        settingsListeners.add(listener);
+    }
+
+    /**
+     * @return the current identity and settings of the plugin
+     */
+    public PluginState getState() {
+        return state.get();
+    }
+
+    /**
+     * @return all the settings by registered key, unmodifiable
+     */
+    public Map<String, String> getSettings() {
+        return state.get().getSettings();
+    }
+
+    /**
+     * @return the typed settings, parsed once per update
+     */
+    public PluginConfiguration getConfiguration() {
+        return state.get().getConfiguration();
     }
 
     public String getPluginResponseSubscriptionName() {
-        return getRegisterClassName() + getProperties().get("application.responseTopicName");
+        return state.get().getPluginResponseSubscriptionName();
     }
 
     public String getResponseTopicMessageName() {
@@ -155,7 +270,7 @@ public class StartupBean extends PluginDataHolder {
     }
 
     public String getRegisterClassName() {
-        return registeredClassName;
+        return state.get().getRegisteredClassName();
     }
 
     private String getApplicaionName() {
@@ -163,27 +278,15 @@ public class StartupBean extends PluginDataHolder {
     }
 
     public boolean isWaitingForResponse() {
-        return waitingForResponse;
-    }
-
-    public void setWaitingForResponse(boolean waitingForResponse) {
-        this.waitingForResponse = waitingForResponse;
+        return registration.getState() == RegistrationState.REGISTERING;
     }
 
     public boolean isIsRegistered() {
-        return isRegistered;
-    }
-
-    public void setIsRegistered(boolean isRegistered) {
-        this.isRegistered = isRegistered;
-    }
-
-    public boolean isIsEnabled() {
-        return isEnabled;
+        return registration.getState() == RegistrationState.REGISTERED;
     }
 
-    public void setIsEnabled(boolean isEnabled) {
-        this.isEnabled = isEnabled;
+    public RegistrationState getRegistrationState() {
+        return registration.getState();
     }
 
 }
@@ -0,0 +1,491 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.cache;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrRequestKey;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk store of FLUX MDR responses in memory-mapped, append-only segment files.
+ * <p>
+ * Records are appended to the active segment, a new segment is started when it is full and the oldest segment is deleted
+ * when more than {@code maxSegments} exist, with all the entries it still holds. An entry read from an older segment is copied
+ * forward into the active one, so the oldest segment only holds the least recently used entries : the eviction is an LRU at
+ * segment granularity and the disk usage is bounded by {@code segmentSize * maxSegments}. Segments left without entries are
+ * deleted right away.
+ * <p>
+ * Every record carries a CRC32 and its magic number is written last, so a record torn by a crash ends the recovery of its
+ * segment when the store is opened again. Responses bigger than a segment are not stored.
+ * <p>
+ * Instances are thread-safe. Lookups only hold the lock to find and promote the entry, the response is decoded outside of it :
+ * records are never overwritten and the mappings of deleted segments stay readable until they are garbage collected.
+ */
+public class MappedResponseStore implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MappedResponseStore.class);
+
+    public static final int MIN_SEGMENT_SIZE = 64 * 1024;
+
+    static final int RECORD_MAGIC = 0x4D445243;
+
+    /**
+     * Magic number, body length and CRC32 of the body.
+     */
+    private static final int RECORD_HEADER = 12;
+
+    private static final int NULL_STRING = -1;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".mdrc";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final Map<MdrRequestKey, Slot> index = new LinkedHashMap<>(16, 0.75f, true);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private long nextSegmentId;
+    private boolean closed;
+
+    /**
+     * Opens the store, reading back the entries of the segments already in the directory.
+     *
+     * @param directory the directory holding the segment files, created if missing
+     * @param segmentSize the size in bytes of a segment file, the biggest response which can be stored
+     * @param maxSegments the number of segment files kept
+     * @throws IOException when the directory or a segment cannot be opened
+     */
+    public MappedResponseStore(Path directory, int segmentSize, int maxSegments) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("A response cache segment must be at least " + MIN_SEGMENT_SIZE + " bytes!");
+        }
+        if (maxSegments < 1) {
+            throw new IllegalArgumentException("The response cache needs at least one segment!");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = maxSegments;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    /**
+     * Stores the response, replacing the previous one for the key.
+     *
+     * @param validUntil end of the data set validity, {@link MdrCachedResponse#NO_VALIDITY_END} if there is none
+     * @return false when the response is too big for a segment
+     * @throws IOException when a new segment cannot be created
+     */
+    public synchronized boolean put(MdrRequestKey key, final String response, String version, long storedAt, long validUntil) throws IOException {
+        checkOpen();
+        return append(key, version, storedAt, validUntil, encodedLength(response), target -> {
+            encoder.reset();
+            CharBuffer chars = CharBuffer.wrap(response);
+            CoderResult result = encoder.encode(chars, target, true);
+            if (result.isUnderflow()) {
+                result = encoder.flush(target);
+            }
+            return result.isUnderflow();
+        }) != null;
+    }
+
+    /**
+     * @return the response stored for the key, or null if there is none
+     * @throws IOException when the entry had to be copied to a new segment which could not be created
+     */
+    public MdrCachedResponse get(MdrRequestKey key) throws IOException {
+        Slot slot;
+        synchronized (this) {
+            checkOpen();
+            slot = index.get(key);
+            if (slot == null) {
+                return null;
+            }
+            if (slot.segment != segments.peekLast()) {
+                slot = promote(key, slot);
+            }
+        }
+        String response = StandardCharsets.UTF_8.decode(slot.payload()).toString();
+        return new MdrCachedResponse(key, response, slot.version, slot.storedAt, slot.validUntil);
+    }
+
+    public synchronized int getEntryCount() {
+        return index.size();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * @return the bytes written to the segments still on disk, live and superseded records alike
+     */
+    public synchronized long getUsedBytes() {
+        long used = 0;
+        for (Segment segment : segments) {
+            used += segment.writePosition;
+        }
+        return used;
+    }
+
+    /**
+     * Flushes the segments to disk. The store cannot be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+        segments.clear();
+        index.clear();
+    }
+
+    private Slot promote(MdrRequestKey key, Slot slot) throws IOException {
+        final ByteBuffer payload = slot.payload();
+        Slot promoted = append(key, slot.version, slot.storedAt, slot.validUntil, payload.remaining(), target -> {
+            if (target.remaining() < payload.remaining()) {
+                return false;
+            }
+            target.put(payload);
+            return true;
+        });
+        return promoted == null ? slot : promoted;
+    }
+
+    /**
+     * Appends a record to the active segment, rolling to a new segment if it does not fit. Nothing is written nor evicted when
+     * the record does not fit in an empty segment.
+     *
+     * @param payloadLength the number of bytes the payload writer writes
+     * @return the slot of the new record, or null if it does not fit in an empty segment
+     */
+    private Slot append(MdrRequestKey key, String version, long storedAt, long validUntil, int payloadLength, PayloadWriter payloadWriter) throws IOException {
+        byte[][] strings = {encode(key.getAcronym()), encode(key.getQueryType()), encode(key.getFr()), encode(version)};
+        long recordLength = recordLength(strings, payloadLength);
+        if (recordLength > segmentSize) {
+            return null;
+        }
+        Segment segment = activeSegment();
+        if (segment.writePosition + recordLength > segment.buffer.capacity()) {
+            segment = roll();
+        }
+        Slot slot = segment.append(strings, version, storedAt, validUntil, payloadWriter);
+        if (slot == null) {
+            return null;
+        }
+        register(key, slot);
+        return slot;
+    }
+
+    private void register(MdrRequestKey key, Slot slot) {
+        slot.segment.liveEntries++;
+        Slot previous = index.put(key, slot);
+        if (previous != null && --previous.segment.liveEntries == 0 && previous.segment != segments.peekLast()) {
+            segments.remove(previous.segment);
+            delete(previous.segment);
+        }
+    }
+
+    private Segment activeSegment() throws IOException {
+        Segment active = segments.peekLast();
+        return active == null ? roll() : active;
+    }
+
+    private Segment roll() throws IOException {
+        while (segments.size() >= maxSegments) {
+            evictOldest();
+        }
+        Segment segment = Segment.open(directory.resolve(SEGMENT_PREFIX + nextSegmentId + SEGMENT_SUFFIX), nextSegmentId, segmentSize);
+        nextSegmentId++;
+        segments.addLast(segment);
+        return segment;
+    }
+
+    private void evictOldest() {
+        Segment oldest = segments.pollFirst();
+        Iterator<Slot> slots = index.values().iterator();
+        int evicted = 0;
+        while (slots.hasNext()) {
+            if (slots.next().segment == oldest) {
+                slots.remove();
+                evicted++;
+            }
+        }
+        LOG.debug("Evicting response cache segment {} with {} entries.", oldest.path, evicted);
+        delete(oldest);
+    }
+
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            LOG.warn("Could not delete the response cache segment {}, it will be deleted on exit.", segment.path, e);
+            segment.path.toFile().deleteOnExit();
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Segment> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    found.add(Segment.open(file, id, 0));
+                } catch (NumberFormatException e) {
+                    LOG.warn("Ignoring unexpected file {} in the response cache directory.", file);
+                }
+            }
+        }
+        Collections.sort(found, (first, second) -> Long.compare(first.id, second.id));
+        for (Segment segment : found) {
+            segments.addLast(segment);
+            nextSegmentId = segment.id + 1;
+            segment.recover(this);
+        }
+        Iterator<Segment> iterator = segments.iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segment.liveEntries == 0 && segment != segments.peekLast()) {
+                iterator.remove();
+                delete(segment);
+            }
+        }
+        while (segments.size() > maxSegments) {
+            evictOldest();
+        }
+        Segment active = segments.peekLast();
+        if (active != null && active.buffer.capacity() != segmentSize) {
+            roll();
+        }
+        LOG.info("Response cache opened in {} with {} entries in {} segments.", directory, index.size(), segments.size());
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The response cache store is closed!");
+        }
+    }
+
+    private static long recordLength(byte[][] strings, int payloadLength) {
+        long length = RECORD_HEADER + 8 + 8 + 4 + (long) payloadLength;
+        for (byte[] string : strings) {
+            length += 4 + (string == null ? 0 : string.length);
+        }
+        return length;
+    }
+
+    /**
+     * @return the number of bytes of the response encoded in UTF-8, a malformed surrogate being replaced by one byte
+     */
+    static int encodedLength(String value) {
+        int length = 0;
+        int count = value.length();
+        for (int i = 0; i < count; i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < count && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length++;
+            } else {
+                length += 3;
+            }
+            if (length < 0) {
+                return Integer.MAX_VALUE;
+            }
+        }
+        return length;
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer body = buffer.duplicate();
+        body.limit(offset + length).position(offset);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Writes the payload at the position of the target buffer.
+     */
+    private interface PayloadWriter {
+
+        /**
+         * @return false when the payload does not fit in the remaining bytes
+         */
+        boolean write(ByteBuffer target);
+    }
+
+    /**
+     * Location and metadata of a live record.
+     */
+    private static final class Slot {
+
+        private final Segment segment;
+        private final int payloadOffset;
+        private final int payloadLength;
+        private final String version;
+        private final long storedAt;
+        private final long validUntil;
+
+        private Slot(Segment segment, int payloadOffset, int payloadLength, String version, long storedAt, long validUntil) {
+            this.segment = segment;
+            this.payloadOffset = payloadOffset;
+            this.payloadLength = payloadLength;
+            this.version = version;
+            this.storedAt = storedAt;
+            this.validUntil = validUntil;
+        }
+
+        private ByteBuffer payload() {
+            ByteBuffer payload = segment.buffer.duplicate();
+            payload.limit(payloadOffset + payloadLength).position(payloadOffset);
+            return payload.slice();
+        }
+    }
+
+    /**
+     * One mapped segment file. Only accessed under the store lock, except for reading the payload of live records.
+     */
+    private static final class Segment {
+
+        private final long id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int liveEntries;
+
+        private Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        /**
+         * @param size the size of a new segment, 0 to map an existing file with its own size
+         */
+        private static Segment open(Path path, long id, int size) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long mappedSize = size > 0 ? size : channel.size();
+                return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize));
+            }
+        }
+
+        private Slot append(byte[][] strings, String version, long storedAt, long validUntil, PayloadWriter payloadWriter) {
+            int metadataLength = 8 + 8 + 4;
+            for (byte[] string : strings) {
+                metadataLength += 4 + (string == null ? 0 : string.length);
+            }
+            int bodyOffset = writePosition + RECORD_HEADER;
+            if (bodyOffset + metadataLength > buffer.capacity()) {
+                return null;
+            }
+            ByteBuffer target = buffer.duplicate();
+            target.position(bodyOffset);
+            for (byte[] string : strings) {
+                if (string == null) {
+                    target.putInt(NULL_STRING);
+                } else {
+                    target.putInt(string.length).put(string);
+                }
+            }
+            target.putLong(storedAt).putLong(validUntil);
+            int payloadLengthOffset = target.position();
+            int payloadOffset = payloadLengthOffset + 4;
+            target.position(payloadOffset);
+            if (!payloadWriter.write(target)) {
+                return null;
+            }
+            int payloadLength = target.position() - payloadOffset;
+            int bodyLength = target.position() - bodyOffset;
+            target.putInt(payloadLengthOffset, payloadLength);
+            target.putInt(writePosition + 4, bodyLength);
+            target.putInt(writePosition + 8, crc(buffer, bodyOffset, bodyLength));
+            // Written last : the record only exists once it is complete.
+            target.putInt(writePosition, RECORD_MAGIC);
+            writePosition = bodyOffset + bodyLength;
+            return new Slot(this, payloadOffset, payloadLength, version, storedAt, validUntil);
+        }
+
+        private void recover(MappedResponseStore store) {
+            ByteBuffer reader = buffer.duplicate();
+            int position = 0;
+            while (position + RECORD_HEADER <= buffer.capacity() && reader.getInt(position) == RECORD_MAGIC) {
+                int bodyLength = reader.getInt(position + 4);
+                int bodyOffset = position + RECORD_HEADER;
+                if (bodyLength < 0 || bodyOffset + bodyLength > buffer.capacity() || reader.getInt(position + 8) != crc(buffer, bodyOffset, bodyLength)) {
+                    LOG.warn("Response cache segment {} is truncated at {}, dropping the rest of it.", path, position);
+                    break;
+                }
+                reader.position(bodyOffset);
+                MdrRequestKey key = new MdrRequestKey(readString(reader), readString(reader), readString(reader));
+                String version = readString(reader);
+                long storedAt = reader.getLong();
+                long validUntil = reader.getLong();
+                int payloadLength = reader.getInt();
+                store.register(key, new Slot(this, reader.position(), payloadLength, version, storedAt, validUntil));
+                position = bodyOffset + bodyLength;
+            }
+            writePosition = position;
+        }
+    }
+}
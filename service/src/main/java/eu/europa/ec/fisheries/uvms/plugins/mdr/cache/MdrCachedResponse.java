@@ -0,0 +1,76 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.cache;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrRequestKey;
+
+/**
+ * A FLUX MDR response read back from the {@link MappedResponseStore}, with the metadata it was stored with.
+ */
+public final class MdrCachedResponse {
+
+    /**
+     * Value of {@link #getValidUntil()} when the data set carries no validity end.
+     */
+    public static final long NO_VALIDITY_END = Long.MAX_VALUE;
+
+    private final MdrRequestKey key;
+    private final String response;
+    private final String version;
+    private final long storedAt;
+    private final long validUntil;
+
+    public MdrCachedResponse(MdrRequestKey key, String response, String version, long storedAt, long validUntil) {
+        this.key = key;
+        this.response = response;
+        this.version = version;
+        this.storedAt = storedAt;
+        this.validUntil = validUntil;
+    }
+
+    /**
+     * @param now the current time in milliseconds
+     * @param maxAgeMillis the staleness window
+     * @return true when the response is younger than the staleness window and the data set is still valid
+     */
+    public boolean isFresh(long now, long maxAgeMillis) {
+        return now - storedAt <= maxAgeMillis && now <= validUntil;
+    }
+
+    public MdrRequestKey getKey() {
+        return key;
+    }
+
+    public String getResponse() {
+        return response;
+    }
+
+    /**
+     * @return the MDRDataSet version, may be null
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public long getStoredAt() {
+        return storedAt;
+    }
+
+    public long getValidUntil() {
+        return validUntil;
+    }
+
+    @Override
+    public String toString() {
+        return "MdrCachedResponse{key=" + key + ", version=" + version + ", storedAt=" + storedAt + ", validUntil=" + validUntil
+                + ", length=" + response.length() + '}';
+    }
+}
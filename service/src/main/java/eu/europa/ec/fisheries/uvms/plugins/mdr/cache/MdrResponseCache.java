@@ -0,0 +1,175 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.cache;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.PluginConfiguration;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrRequestKey;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.PendingMdrQuery;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Optional cache of the last FLUX MDR response per acronym, query type and FR, so that repeated code list requests
+ * from Exchange are answered locally instead of going through FLUX TL again.
+ * <p>
+ * Disabled unless RESPONSE_CACHE_ENABLED is true. Responses are kept in a {@link MappedResponseStore} under
+ * RESPONSE_CACHE_DIRECTORY (by default in the server data directory) and served while they are younger than
+ * RESPONSE_CACHE_STALENESS_SECONDS and the data set validity has not ended. All settings are read again on SET_CONFIG,
+ * the segment size and count only apply when the cache is enabled again.
+ */
+@Singleton
+@Startup
+@DependsOn({"StartupBean", "PluginMetrics"})
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@Slf4j
+public class MdrResponseCache {
+
+    private static final String DEFAULT_SUBDIRECTORY = "flux-mdr-plugin/response-cache";
+
+    @EJB
+    private StartupBean startup;
+
+    @EJB
+    private PluginMetrics metrics;
+
+    private volatile MappedResponseStore store;
+    private volatile long maxAgeMillis;
+
+    @PostConstruct
+    public void init() {
+        reloadSettings();
+        startup.addSettingsListener(this::reloadSettings);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        closeStore();
+    }
+
+    /**
+     * Applies the RESPONSE_CACHE_* settings, opening or closing the store when the cache is switched on or off.
+     */
+    public synchronized void reloadSettings() {
+        PluginConfiguration configuration = startup.getConfiguration();
+        maxAgeMillis = TimeUnit.SECONDS.toMillis(configuration.getResponseCacheStalenessSeconds());
+        boolean enabled = configuration.isResponseCacheEnabled();
+        if (enabled && store == null) {
+            String configuredDirectory = configuration.getResponseCacheDirectory();
+            Path directory = Paths.get(configuredDirectory == null ? defaultDirectory() : configuredDirectory);
+            try {
+                store = new MappedResponseStore(directory,
+                        Math.max(configuration.getResponseCacheSegmentSize(), MappedResponseStore.MIN_SEGMENT_SIZE),
+                        configuration.getResponseCacheMaxSegments());
+            } catch (IOException | IllegalArgumentException e) {
+                log.error("[ERROR] Could not open the MDR response cache in {}, responses will not be cached.", directory, e);
+            }
+        } else if (!enabled) {
+            closeStore();
+        }
+        if (store != null) {
+            log.info("[INFO] MDR responses are cached for {} s.", TimeUnit.MILLISECONDS.toSeconds(maxAgeMillis));
+        }
+    }
+
+    public boolean isEnabled() {
+        return store != null;
+    }
+
+    /**
+     * @return the cached response to the query, or null when there is none or it is stale
+     */
+    public MdrCachedResponse lookup(PendingMdrQuery query) {
+        MappedResponseStore current = store;
+        MdrRequestKey key = MdrRequestKey.of(query);
+        if (current == null || key == null) {
+            return null;
+        }
+        try {
+            MdrCachedResponse cached = current.get(key);
+            boolean fresh = cached != null && cached.isFresh(System.currentTimeMillis(), maxAgeMillis);
+            metrics.cacheLookup(fresh);
+            return fresh ? cached : null;
+        } catch (IOException | IllegalStateException e) {
+            log.warn("[WARN] Could not read the MDR response cache for {}.", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Caches the response to the query.
+     *
+     * @param version the MDRDataSet version, may be null
+     * @param validityEnd the end of the MDRDataSet validity as an xsd:dateTime, may be null
+     */
+    public void store(PendingMdrQuery query, String response, String version, String validityEnd) {
+        MappedResponseStore current = store;
+        MdrRequestKey key = MdrRequestKey.of(query);
+        if (current == null || key == null) {
+            return;
+        }
+        try {
+            if (!current.put(key, response, version, System.currentTimeMillis(), parseValidityEnd(validityEnd))) {
+                log.info("[INFO] MDR response for {} is too big to be cached ({} characters).", key, response.length());
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.warn("[WARN] Could not cache the MDR response for {}.", key, e);
+        }
+    }
+
+    /**
+     * @return the validity end in milliseconds, {@link MdrCachedResponse#NO_VALIDITY_END} if it is missing or cannot be read
+     */
+    static long parseValidityEnd(String validityEnd) {
+        if (validityEnd == null || validityEnd.isEmpty()) {
+            return MdrCachedResponse.NO_VALIDITY_END;
+        }
+        try {
+            return OffsetDateTime.parse(validityEnd).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            try {
+                return LocalDateTime.parse(validityEnd).toInstant(ZoneOffset.UTC).toEpochMilli();
+            } catch (DateTimeParseException notLocal) {
+                log.debug("Ignoring unreadable MDR data set validity end {}.", validityEnd);
+                return MdrCachedResponse.NO_VALIDITY_END;
+            }
+        }
+    }
+
+    private void closeStore() {
+        MappedResponseStore current = store;
+        store = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private static String defaultDirectory() {
+        String base = System.getProperty("jboss.server.data.dir", System.getProperty("java.io.tmpdir"));
+        return Paths.get(base, DEFAULT_SUBDIRECTORY).toString();
+    }
+}
@@ -25,4 +25,8 @@ public final class MdrPluginConstants {
 	public static final String SUBSCRIPTION_NAME_AC = MDR_GROUP_ID_ARTIFACT_ID_AC;
 	public static final String MESSAGE_SELECTOR_AC  = "ServiceName='"+MDR_GROUP_ID_ARTIFACT_ID_AC+"'";
 
+	// Dedicated queues of the queue consumption mode, see jboss-ejb3.xml.
+	public static final String QUEUE_EV = "jms/queue/UVMSFluxMdrPluginEvent";
+	public static final String QUEUE_AC = "jms/queue/UVMSFluxMdrPluginAck";
+
 }
@@ -0,0 +1,119 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.consumer;
+
+import eu.europa.ec.fisheries.schema.exchange.plugin.types.v1.PluginFault;
+import eu.europa.ec.fisheries.schema.exchange.registry.v1.ExchangeRegistryMethod;
+import eu.europa.ec.fisheries.schema.exchange.registry.v1.RegisterServiceResponse;
+import eu.europa.ec.fisheries.schema.exchange.registry.v1.UnregisterServiceResponse;
+import eu.europa.ec.fisheries.uvms.exchange.model.exception.ExchangeModelMarshallException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.mapper.EventBusMessageReader;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Listener;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Stage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.jms.JMSException;
+import javax.jms.TextMessage;
+
+/**
+ * Handles the responses of Exchange to the registration of the plugin, whichever destination they are consumed from.
+ */
+@LocalBean
+@Stateless
+public class EventBusAckHandler {
+
+    final static Logger LOG = LoggerFactory.getLogger(EventBusAckHandler.class);
+
+    @EJB
+    private StartupBean startupService;
+
+    @EJB
+    private PluginMetrics metrics;
+
+    public void handle(TextMessage textMessage) {
+        LOG.info("Eventbus listener for mdr at selector: {} got a message", startupService.getPluginResponseSubscriptionName());
+        try {
+            String text = textMessage.getText();
+            metrics.messageReceived(Listener.ACK, text == null ? 0 : text.length());
+            String method = EventBusMessageReader.peekMethod(text);
+            if (method == null) {
+                PluginFault fault = read(text, PluginFault.class);
+                handlePluginFault(fault);
+                return;
+            }
+            switch (ExchangeRegistryMethod.fromValue(method)) {
+                case REGISTER_SERVICE:
+                    RegisterServiceResponse registerResponse = read(text, RegisterServiceResponse.class);
+                    setRegistrationResponse(registerResponse);
+                    break;
+                case UNREGISTER_SERVICE:
+                    UnregisterServiceResponse unregisterResponse = read(text, UnregisterServiceResponse.class);
+                    setUnRegistrationResponse(unregisterResponse);
+                    break;
+                default:
+                    LOG.error("Not supported method");
+                    break;
+            }
+
+        } catch (ExchangeModelMarshallException | JMSException | IllegalArgumentException | NullPointerException e) {
+            metrics.error(Listener.ACK, e);
+            LOG.error("[ Error when receiving message in mdr ]", e);
+        }
+    }
+
+    private <T> T read(String text, Class<T> type) throws ExchangeModelMarshallException {
+        long start = System.nanoTime();
+        T response = EventBusMessageReader.read(text, type);
+        metrics.recordLatency(Stage.UNMARSHAL, start);
+        return response;
+    }
+
+    private void setUnRegistrationResponse(UnregisterServiceResponse unregisterResponse) {
+        switch (unregisterResponse.getAck().getType()) {
+            case OK:
+                LOG.info("Unregister OK");
+                break;
+            case NOK:
+                LOG.info("Unregister NOK");
+                break;
+            default:
+                LOG.error("[ Ack type not supported ] ");
+                break;
+        }
+    }
+
+    private void setRegistrationResponse(RegisterServiceResponse registerResponse) {
+        switch (registerResponse.getAck().getType()) {
+            case OK:
+                LOG.info("Register OK");
+                startupService.registrationAccepted();
+                break;
+            case NOK:
+                LOG.info("Register NOK: " + registerResponse.getAck().getMessage());
+                startupService.registrationRejected();
+                break;
+            default:
+                LOG.error("[ Ack type not supported: ]" + registerResponse.getAck().getType());
+        }
+    }
+
+    private void handlePluginFault(PluginFault fault) {
+        LOG.error(startupService.getPluginResponseSubscriptionName() + " received fault " + fault.getCode() + " : " + fault.getMessage());
+        // Exchange lost track of the plugin, after a restart for instance.
+        startupService.registrationRejected();
+    }
+}
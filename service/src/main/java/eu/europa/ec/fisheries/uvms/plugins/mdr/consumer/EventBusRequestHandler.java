@@ -0,0 +1,111 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.consumer;
+
+import eu.europa.ec.fisheries.schema.exchange.plugin.v1.ExchangePluginMethod;
+import eu.europa.ec.fisheries.schema.exchange.plugin.v1.SetConfigRequest;
+import eu.europa.ec.fisheries.schema.exchange.plugin.v1.SetMdrPluginRequest;
+import eu.europa.ec.fisheries.uvms.exchange.model.exception.ExchangeModelMarshallException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.lifecycle.PluginLifecycle;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.mapper.EventBusMessageReader;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Listener;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Stage;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.jms.JMSException;
+import javax.jms.TextMessage;
+
+/**
+ * Handles the messages of Exchange to the plugin, whichever destination they are consumed from.
+ */
+@LocalBean
+@Stateless
+@Slf4j
+public class EventBusRequestHandler {
+
+    @EJB
+    private StartupBean startup;
+
+    @EJB
+    private PluginLifecycle lifecycle;
+
+    @EJB
+    private PluginMetrics metrics;
+
+    /**
+     * @return false when the message must be rolled back and delivered again by the broker
+     */
+    public boolean handle(TextMessage textMessage) {
+        log.debug("Eventbus listener for mdr (MessageConstants.PLUGIN_SERVICE_CLASS_NAME): {}", startup.getRegisterClassName());
+        String strRequest = null;
+        SetMdrPluginRequest fluxMdrRequest = null;
+        boolean isSetMdrReq = false;
+        try {
+            String text = textMessage.getText();
+            metrics.messageReceived(Listener.EVENT_BUS, text == null ? 0 : text.length());
+            ExchangePluginMethod method = readMethod(text);
+            switch (method) {
+                case SET_MDR_REQUEST:
+                    fluxMdrRequest = read(text, SetMdrPluginRequest.class);
+                    log.debug("\n [INFO] Got Request in MDR PLUGIN : " + fluxMdrRequest.getRequest());
+                    log.info("[INFO] Going to send sync request to : {}", fluxMdrRequest.getFr());
+                    strRequest = fluxMdrRequest.getRequest();
+                    isSetMdrReq = true;
+                    break;
+                case SET_CONFIG :
+                    SetConfigRequest setConfig = read(text, SetConfigRequest.class);
+                    startup.updateSettings(setConfig.getConfigurations());
+                    log.info("[CONFIG] Config(s) [{}] was correctly set.", setConfig.getConfigurations());
+                    break;
+                case START :
+                    lifecycle.start();
+                    log.info("[STARTED] Plugin was started!");
+                    break;
+                case STOP :
+                    lifecycle.stop();
+                    log.info("[STOPPED] Plugin was stopped!");
+                    break;
+                default:
+                    log.error("Not supported method : " + method);
+                    break;
+            }
+        } catch (NullPointerException | IllegalArgumentException | JMSException | ExchangeModelMarshallException e) {
+            metrics.error(Listener.EVENT_BUS, e);
+            log.error("[ Error when receiving message in mdr plugin" + startup.getRegisterClassName() + " ]", e);
+        }
+        if (strRequest != null) {
+            return lifecycle.submit(fluxMdrRequest.getFr(), strRequest);
+        } else if(isSetMdrReq){
+            log.warn("-->>> The request to be sent to Bridge cannot be empty! Not sending anything..");
+        }
+        return true;
+    }
+
+    private <T> T read(String text, Class<T> type) throws ExchangeModelMarshallException {
+        long start = System.nanoTime();
+        T request = EventBusMessageReader.read(text, type);
+        metrics.recordLatency(Stage.UNMARSHAL, start);
+        return request;
+    }
+
+    private ExchangePluginMethod readMethod(String text) throws ExchangeModelMarshallException {
+        String method = EventBusMessageReader.peekMethod(text);
+        if (method == null) {
+            throw new ExchangeModelMarshallException("The event bus message has no method!");
+        }
+        return ExchangePluginMethod.fromValue(method);
+    }
+}
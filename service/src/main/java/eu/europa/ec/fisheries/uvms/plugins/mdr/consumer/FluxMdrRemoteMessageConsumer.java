@@ -12,7 +12,9 @@ package eu.europa.ec.fisheries.uvms.plugins.mdr.consumer;
 
 
 import eu.europa.ec.fisheries.uvms.commons.message.api.MessageConstants;
-import eu.europa.ec.fisheries.uvms.plugins.mdr.service.ExchangePluginServiceBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.constants.FluxConnectionConstants;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Listener;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
 import lombok.extern.slf4j.Slf4j;
 
 import javax.ejb.ActivationConfigProperty;
@@ -32,18 +34,32 @@ import javax.jms.TextMessage;
 public class FluxMdrRemoteMessageConsumer implements MessageListener {
 
     @EJB
-    private ExchangePluginServiceBean exchangeService;
+    private FluxMdrResponseProcessor processor;
+
+    @EJB
+    private ResponseProcessingPipeline pipeline;
+
+    @EJB
+    private PluginMetrics metrics;
 
     @Override
     public void onMessage(Message inMessage) {
         log.info("\n\n\t[[NEW MESSAGE]] Got message (from Flux) in Flux MDR plugin queue! \n\n");
         TextMessage textMessage = (TextMessage) inMessage;
         try {
-            log.info("[START] Sending Message to Exchange Module..");
-            exchangeService.sendFLUXMDRResponseMessageToExchange(textMessage.getText());
-            log.info("[END] Message sent successfully back to Exchange Module..");
+            String fluxResponse = textMessage.getText();
+            String businessUuid = textMessage.getStringProperty(FluxConnectionConstants.BUSINESS_UUID);
+            metrics.messageReceived(Listener.FLUX_RESPONSE, fluxResponse == null ? 0 : fluxResponse.length());
+            if (!pipeline.isEnabled()) {
+                processor.process(fluxResponse, businessUuid);
+            } else if (!pipeline.process(fluxResponse, businessUuid)) {
+                // Rolling the message back would have the broker redeliver it straight away, again and again.
+                log.warn("[WARN] Flux Response processing is saturated, processing the message on the consumer thread.");
+                processor.process(fluxResponse, businessUuid);
+            }
         } catch (JMSException e1) {
+            metrics.error(Listener.FLUX_RESPONSE, e1);
             log.error("[ERROR] Error while marshalling Flux Response.", e1);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,143 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.consumer;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.cache.MdrResponseCache;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrCorrelation;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrCorrelationIndex;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrRequestCoalescer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.PendingMdrQuery;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.dedup.InboundDeduplicator;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.delta.MdrDelta;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.delta.MdrDeltaSync;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Listener;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Stage;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionPlan;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrField;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrFieldExtractor;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrMessageFields;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.service.ExchangePluginServiceBean;
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Correlates a FLUX MDR response with its query and forwards it, or its delta in delta sync mode, to Exchange.
+ * Responses with the same content as one received shortly before are dropped when inbound deduplication is enabled.
+ * Called either directly by the {@link FluxMdrRemoteMessageConsumer} or by the {@link ResponseProcessingPipeline} workers.
+ */
+@Stateless
+@LocalBean
+@Slf4j
+public class FluxMdrResponseProcessor {
+
+    private static final MdrFieldExtractor FIELD_EXTRACTOR = new MdrFieldExtractor();
+
+    private static final MdrExtractionPlan CORRELATION_PLAN = MdrExtractionPlan.of(MdrField.REFERENCED_UUID, MdrField.ACRONYM);
+
+    private static final MdrExtractionPlan RESPONSE_PLAN = MdrExtractionPlan.of(MdrField.REFERENCED_UUID, MdrField.ACRONYM, MdrField.RESPONSE_CODE,
+            MdrField.DATA_SET_VERSION, MdrField.VALIDITY_END);
+
+    private static final String OK_RESPONSE = "OK";
+
+    @EJB
+    private ExchangePluginServiceBean exchangeService;
+
+    @EJB
+    private MdrCorrelationIndex correlationIndex;
+
+    @EJB
+    private MdrRequestCoalescer requestCoalescer;
+
+    @EJB
+    private MdrResponseCache responseCache;
+
+    @EJB
+    private MdrDeltaSync deltaSync;
+
+    @EJB
+    private InboundDeduplicator deduplicator;
+
+    @EJB
+    private PluginMetrics metrics;
+
+    /**
+     * @param fluxResponse the FLUXMDRReturnMessage
+     * @param businessUuid the BUSINESS_UUID property of the received message, may be null
+     */
+    public void process(String fluxResponse, String businessUuid) {
+        PendingMdrQuery answeredQuery = correlate(fluxResponse, businessUuid);
+        if (deduplicator.isDuplicate(fluxResponse)) {
+            log.info("[INFO] Dropping Flux Response {}, the same content was already sent to Exchange.", businessUuid);
+            return;
+        }
+        MdrDelta delta = answeredQuery == null ? null : deltaSync.prepare(answeredQuery, fluxResponse);
+        log.info("[START] Sending Message to Exchange Module..");
+        boolean sent = delta == null ? exchangeService.sendFLUXMDRResponseMessageToExchange(fluxResponse)
+                : exchangeService.sendFLUXMDRResponseMessageToExchange(delta.getMessage(), delta.getMessageProperties());
+        if (!sent) {
+            // Neither the delta base nor the deduplication window is updated : when the outbox is enabled it replays the
+            // response, otherwise the response is lost as the message is not rolled back.
+            log.error("[ERROR] Flux Response {} was not sent to Exchange Module.", businessUuid);
+            return;
+        }
+        deduplicator.remember(fluxResponse);
+        if (delta != null) {
+            deltaSync.commit(answeredQuery, delta);
+        }
+        log.info("[END] Message sent successfully back to Exchange Module..");
+    }
+
+    /**
+     * @return the query answered by an OK response, null for a NOK, duplicate or unknown response
+     */
+    private PendingMdrQuery correlate(String fluxResponse, String businessUuid) {
+        MdrMessageFields fields = null;
+        String referencedQueryUuid = null;
+        try {
+            long start = System.nanoTime();
+            boolean needsResponseFields = responseCache.isEnabled() || deltaSync.isEnabled();
+            fields = FIELD_EXTRACTOR.extract(fluxResponse, needsResponseFields ? RESPONSE_PLAN : CORRELATION_PLAN);
+            metrics.recordLatency(Stage.EXTRACTION, start);
+            referencedQueryUuid = fields.get(MdrField.REFERENCED_UUID);
+        } catch (MdrExtractionException e) {
+            metrics.error(Listener.FLUX_RESPONSE, e);
+            log.warn("[WARN] Could not read the referenced query UUID of the Flux Response.", e);
+        }
+        MdrCorrelation correlation = correlationIndex.correlate(referencedQueryUuid, businessUuid, System.currentTimeMillis());
+        if (correlation.getQuery() != null) {
+            requestCoalescer.release(correlation.getQuery());
+        }
+        if (fields != null) {
+            requestCoalescer.releaseDataSet(fields.get(MdrField.ACRONYM));
+        }
+        switch (correlation.getStatus()) {
+            case MATCHED:
+                metrics.roundTrip(correlation.getRoundTripMillis());
+                log.info("[INFO] Response to MDR query {} received after {} ms.", correlation.getQuery(), correlation.getRoundTripMillis());
+                if (fields != null && OK_RESPONSE.equals(fields.get(MdrField.RESPONSE_CODE))) {
+                    responseCache.store(correlation.getQuery(), fluxResponse, fields.get(MdrField.DATA_SET_VERSION), fields.get(MdrField.VALIDITY_END));
+                    return correlation.getQuery();
+                }
+                break;
+            case DUPLICATE:
+                log.warn("[WARN] Duplicate response to MDR query {} received after {} ms.", correlation.getQuery(), correlation.getRoundTripMillis());
+                break;
+            default:
+                log.warn("[WARN] Received a response referencing unknown MDR query {} (BUSINESS_UUID : {}).", referencedQueryUuid, businessUuid);
+                break;
+        }
+        return null;
+    }
+}
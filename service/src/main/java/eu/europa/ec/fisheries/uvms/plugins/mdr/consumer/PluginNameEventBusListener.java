@@ -9,33 +9,19 @@ details. You should have received a copy of the GNU General Public License along
 
  */package eu.europa.ec.fisheries.uvms.plugins.mdr.consumer;
 
-import eu.europa.ec.fisheries.schema.exchange.plugin.v1.PluginBaseRequest;
-import eu.europa.ec.fisheries.schema.exchange.plugin.v1.SetConfigRequest;
-import eu.europa.ec.fisheries.schema.exchange.plugin.v1.SetMdrPluginRequest;
-import eu.europa.ec.fisheries.schema.exchange.plugin.v1.StartRequest;
 import eu.europa.ec.fisheries.uvms.commons.message.api.MessageConstants;
-import eu.europa.ec.fisheries.uvms.commons.message.api.MessageException;
-import eu.europa.ec.fisheries.uvms.exchange.model.exception.ExchangeModelMarshallException;
-import eu.europa.ec.fisheries.uvms.exchange.model.mapper.JAXBMarshaller;
-import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
 import eu.europa.ec.fisheries.uvms.plugins.mdr.constants.MdrPluginConstants;
-import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.FluxBridgeProducer;
-import eu.europa.ec.fisheries.uvms.plugins.mdr.service.ExchangePluginServiceBean;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang3.time.DateUtils;
 
+import javax.annotation.Resource;
 import javax.ejb.ActivationConfigProperty;
 import javax.ejb.EJB;
 import javax.ejb.MessageDriven;
+import javax.ejb.MessageDrivenContext;
 import javax.jms.Message;
 import javax.jms.MessageListener;
 import javax.jms.TextMessage;
-import javax.xml.datatype.DatatypeConfigurationException;
-import javax.xml.datatype.DatatypeFactory;
-import javax.xml.datatype.XMLGregorianCalendar;
-import java.util.*;
 
-import static eu.europa.ec.fisheries.uvms.plugins.mdr.constants.FluxConnectionConstants.*;
 
 @MessageDriven(mappedName = MessageConstants.EVENT_BUS_TOPIC, activationConfig = {
         @ActivationConfigProperty(propertyName = MessageConstants.MESSAGING_TYPE_STR,          propertyValue = MessageConstants.CONNECTION_TYPE),
@@ -50,103 +36,16 @@ import static eu.europa.ec.fisheries.uvms.plugins.mdr.constants.FluxConnectionCo
 public class PluginNameEventBusListener implements MessageListener {
 
     @EJB
-    private StartupBean startup;
+    private EventBusRequestHandler handler;
 
-    @EJB
-    private FluxBridgeProducer bridgeProducer;
-
-    @EJB
-    private ExchangePluginServiceBean exchangeService;
+    @Resource
+    private MessageDrivenContext context;
 
     @Override
     public void onMessage(Message inMessage) {
-        log.debug("Eventbus listener for mdr (MessageConstants.PLUGIN_SERVICE_CLASS_NAME): {}", startup.getRegisterClassName());
-        TextMessage textMessage = (TextMessage) inMessage;
-        String strRequest = null;
-        SetMdrPluginRequest fluxMdrRequest = null;
-        boolean isSetMdrReq = false;
-        try {
-            PluginBaseRequest request = JAXBMarshaller.unmarshallTextMessage(textMessage, PluginBaseRequest.class);
-            switch (request.getMethod()) {
-                case SET_MDR_REQUEST:
-                    fluxMdrRequest = JAXBMarshaller.unmarshallTextMessage(textMessage, SetMdrPluginRequest.class);
-                    log.debug("\n [INFO] Got Request in MDR PLUGIN : " + fluxMdrRequest.getRequest());
-                    log.info("[INFO] Going to send sync request to : {}", fluxMdrRequest.getFr());
-                    strRequest = fluxMdrRequest.getRequest();
-                    isSetMdrReq = true;
-                    break;
-                case SET_CONFIG :
-                    SetConfigRequest setConfig = JAXBMarshaller.unmarshallTextMessage(textMessage, SetConfigRequest.class);
-                    log.info("[CONFIG] Config(s) [{}] was correctly set.", setConfig.getConfigurations());
-                    break;
-                case START :
-                    StartRequest startReq = JAXBMarshaller.unmarshallTextMessage(textMessage, StartRequest.class);
-                    log.info("[STARTED] Plugin was started!");
-                    break;
-                default:
-                    log.error("Not supported method : " + " Class : " + request.getClass() + ". Method : " + request.getMethod());
-                    break;
-            }
-        } catch (NullPointerException | ExchangeModelMarshallException e) {
-            log.error("[ Error when receiving message in mdr plugin" + startup.getRegisterClassName() + " ]", e);
-        }
-        if (strRequest != null) {
-            try {
-                bridgeProducer.sendModuleMessageWithProps(strRequest, null, createMessagePropertiesMap(fluxMdrRequest.getFr()));
-            } catch (MessageException e) {
-                log.error("Error while trying to send message to bridge queue : ", e);
-            }
-        } else if(isSetMdrReq){
-            log.warn("-->>> The request to be sent to Bridge cannot be empty! Not sending anything..");
-        }
-    }
-
-    private Map<String, String> createMessagePropertiesMap(final String fr) {
-        return new HashMap<String, String>(){{
-            put(CONNECTOR_ID, CONNECTOR_ID_VAL);
-            put(FLUX_ENV_AD, FLUX_ENV_AD_VAL);
-            put(FLUX_ENV_TO, FLUX_ENV_TO_VAL);
-            put(FLUX_ENV_DF, FLUX_ENV_DF_VAL);
-            put(BUSINESS_UUID, createBusinessUUID());
-            put(FLUX_ENV_TODT, createStringDate());
-            put(FLUX_ENV_AR, FLUX_ENV_AR_VAL);
-            put(FLUX_ENV_FR, fr);
-        }};
-    }
-
-
-    private String createStringDate() {
-        GregorianCalendar gcal = (GregorianCalendar) GregorianCalendar.getInstance();
-        Date newDate = DateUtils.addHours(new Date(), 3);
-        gcal.setTime(newDate);
-        XMLGregorianCalendar xgcal;
-        try {
-            xgcal = DatatypeFactory.newInstance().newXMLGregorianCalendar(gcal);
-            return xgcal.toString();
-        } catch (DatatypeConfigurationException | NullPointerException e) {
-            log.error("Error occured while creating newXMLGregorianCalendar", e);
-            return null;
+        if (!handler.handle((TextMessage) inMessage)) {
+            log.warn("[WARN] The MDR request cannot be handled now, the message will be redelivered.");
+            context.setRollbackOnly();
         }
     }
-
-    /**
-     * BUSINESS_UUID has a prefix, a date-time combination and a serial - thus it is semi unique
-     *
-     * @return randomUUID
-     */
-    private String createBusinessUUID() {
-        return UUID.randomUUID().toString();
-    }
-
-/*    private void printMessageProperties(TextMessage fluxMsg) throws JMSException {
-        log.info("Prepared message (For Flux TL) with the following properties  : \n\n");
-        int i = 0;
-        Enumeration propertyNames = fluxMsg.getPropertyNames();
-        String propName;
-        while (propertyNames.hasMoreElements()) {
-            i++;
-            propName = (String) propertyNames.nextElement();
-            log.info(i + ". " + propName + " : " + fluxMsg.getStringProperty(propName));
-        }*/
-
 }
@@ -0,0 +1,52 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.consumer;
+
+import eu.europa.ec.fisheries.uvms.commons.message.api.MessageConstants;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.constants.MdrPluginConstants;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.Resource;
+import javax.ejb.ActivationConfigProperty;
+import javax.ejb.EJB;
+import javax.ejb.MessageDriven;
+import javax.ejb.MessageDrivenContext;
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.TextMessage;
+
+/**
+ * Queue mode counterpart of the {@link PluginNameEventBusListener} : consumes the messages of Exchange to the plugin from a
+ * dedicated queue, without selector nor durable subscription, so that the pool can grow and the plugin can run on several nodes.
+ * Inactive unless enabled in jboss-ejb3.xml.
+ */
+@MessageDriven(mappedName = MdrPluginConstants.QUEUE_EV, activationConfig = {
+        @ActivationConfigProperty(propertyName = MessageConstants.MESSAGING_TYPE_STR,   propertyValue = MessageConstants.CONNECTION_TYPE),
+        @ActivationConfigProperty(propertyName = MessageConstants.DESTINATION_TYPE_STR, propertyValue = MessageConstants.DESTINATION_TYPE_QUEUE),
+        @ActivationConfigProperty(propertyName = MessageConstants.DESTINATION_STR,      propertyValue = MdrPluginConstants.QUEUE_EV)
+})
+@Slf4j
+public class PluginNameQueueListener implements MessageListener {
+
+    @EJB
+    private EventBusRequestHandler handler;
+
+    @Resource
+    private MessageDrivenContext context;
+
+    @Override
+    public void onMessage(Message inMessage) {
+        if (!handler.handle((TextMessage) inMessage)) {
+            log.warn("[WARN] The MDR request cannot be handled now, the message will be redelivered.");
+            context.setRollbackOnly();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.consumer;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.PluginConfiguration;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Asynchronous processing of the FLUX MDR responses, enabled with RESPONSE_PIPELINE_ENABLED.
+ * <p>
+ * The {@link FluxMdrRemoteMessageConsumer} hands the message over to a {@link SizeAwareWorkerPool} built on the container
+ * managed thread factory and waits until it was processed, so the message is only acknowledged once the work is done and a
+ * crash never loses an accepted response. Responses of at least RESPONSE_PIPELINE_LARGE_THRESHOLD_CHARS characters are
+ * processed in their own lane, whose threads bound how many large code lists are held in memory at once, while the maxSession
+ * of the consumer bounds the responses in flight. When a lane is full the consumer waits at most RESPONSE_PIPELINE_SUBMIT_TIMEOUT_MS
+ * for room, which holds back the JMS sessions and so the broker, and then processes the response on its own thread. A message
+ * is never rolled back because of the load, which would make the broker redeliver it in a tight loop until it reaches the dead
+ * letter queue. A settings change builds a new pool, the previous one finishes the responses it already accepted.
+ */
+@Singleton
+@Startup
+@DependsOn({"StartupBean", "PluginMetrics"})
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@Slf4j
+public class ResponseProcessingPipeline {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 60;
+
+    @Resource
+    private ManagedThreadFactory threadFactory;
+
+    @EJB
+    private StartupBean startup;
+
+    @EJB
+    private FluxMdrResponseProcessor processor;
+
+    @EJB
+    private PluginMetrics metrics;
+
+    private volatile SizeAwareWorkerPool workers;
+    private volatile long submitTimeoutMillis;
+
+    /**
+     * Settings of the current pool, only touched under the lock of this bean.
+     */
+    private PluginConfiguration poolConfiguration;
+
+    @PostConstruct
+    public void init() {
+        reloadSettings();
+        startup.addSettingsListener(this::reloadSettings);
+        metrics.gauge("responsePipeline.smallQueueDepth", this::getSmallQueueDepth);
+        metrics.gauge("responsePipeline.largeQueueDepth", this::getLargeQueueDepth);
+        metrics.gauge("responsePipeline.rejected", this::getRejectedCount);
+    }
+
+    /**
+     * Applies the RESPONSE_PIPELINE_* settings.
+     */
+    public synchronized void reloadSettings() {
+        PluginConfiguration configuration = startup.getConfiguration();
+        submitTimeoutMillis = configuration.getResponsePipelineSubmitTimeoutMillis();
+        SizeAwareWorkerPool previous = workers;
+        if (!configuration.isResponsePipelineEnabled()) {
+            workers = null;
+            release(previous);
+            log.info("[INFO] FLUX MDR responses are processed on the consumer thread.");
+            return;
+        }
+        if (previous != null && samePool(poolConfiguration, configuration)) {
+            return;
+        }
+        int smallThreads = configuration.getResponsePipelineSmallThreads();
+        int largeThreads = configuration.getResponsePipelineLargeThreads();
+        int queueCapacity = configuration.getResponsePipelineQueueCapacity();
+        int largeThreshold = configuration.getResponsePipelineLargeThresholdChars();
+        workers = new SizeAwareWorkerPool(threadFactory, largeThreshold, smallThreads, largeThreads, queueCapacity);
+        poolConfiguration = configuration;
+        release(previous);
+        log.info("[INFO] FLUX MDR responses are processed by {} small and {} large workers (queue capacity {}, large from {} chars).",
+                smallThreads, largeThreads, queueCapacity, largeThreshold);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        SizeAwareWorkerPool current = workers;
+        if (current == null) {
+            return;
+        }
+        workers = null;
+        try {
+            if (!current.shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("[WARN] Some FLUX MDR responses were still being processed at shutdown.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return workers != null;
+    }
+
+    /**
+     * Hands the response over to the workers, waiting at most RESPONSE_PIPELINE_SUBMIT_TIMEOUT_MS for room, and waits until
+     * it was processed.
+     *
+     * @return false if the response was not accepted because the pipeline stayed saturated or is stopped
+     */
+    public boolean process(final String fluxResponse, final String businessUuid) {
+        SizeAwareWorkerPool current = workers;
+        if (current == null) {
+            return false;
+        }
+        final CountDownLatch done = new CountDownLatch(1);
+        long size = fluxResponse == null ? 0 : fluxResponse.length();
+        try {
+            if (!current.submit(() -> {
+                try {
+                    processLogged(fluxResponse, businessUuid);
+                } finally {
+                    done.countDown();
+                }
+            }, size, submitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        awaitUninterruptibly(done);
+        return true;
+    }
+
+    public int getSmallQueueDepth() {
+        SizeAwareWorkerPool current = workers;
+        return current == null ? 0 : current.getSmallQueueDepth();
+    }
+
+    public int getLargeQueueDepth() {
+        SizeAwareWorkerPool current = workers;
+        return current == null ? 0 : current.getLargeQueueDepth();
+    }
+
+    public long getRejectedCount() {
+        SizeAwareWorkerPool current = workers;
+        return current == null ? 0 : current.getRejectedCount();
+    }
+
+    private static boolean samePool(PluginConfiguration current, PluginConfiguration configuration) {
+        return current.getResponsePipelineSmallThreads() == configuration.getResponsePipelineSmallThreads()
+                && current.getResponsePipelineLargeThreads() == configuration.getResponsePipelineLargeThreads()
+                && current.getResponsePipelineQueueCapacity() == configuration.getResponsePipelineQueueCapacity()
+                && current.getResponsePipelineLargeThresholdChars() == configuration.getResponsePipelineLargeThresholdChars();
+    }
+
+    /**
+     * Stops a replaced pool without waiting : its workers finish the responses already queued.
+     */
+    private void release(SizeAwareWorkerPool previous) {
+        if (previous == null) {
+            return;
+        }
+        try {
+            previous.shutdown(0, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The message must not be acknowledged before the worker is done with it, an interrupt is only passed on afterwards.
+     */
+    private static void awaitUninterruptibly(CountDownLatch done) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void processLogged(String fluxResponse, String businessUuid) {
+        try {
+            processor.process(fluxResponse, businessUuid);
+        } catch (RuntimeException e) {
+            log.error("[ERROR] Error while processing a Flux Response.", e);
+        }
+    }
+}
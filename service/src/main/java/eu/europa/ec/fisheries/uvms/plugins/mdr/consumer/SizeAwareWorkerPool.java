@@ -0,0 +1,135 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.consumer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two bounded worker pools, one for small and one for large payloads, so that a few huge code lists
+ * cannot hold back the small ones queued behind them.
+ * <p>
+ * Each lane has a fixed number of threads and a bounded queue. A task submitted to a full lane waits for room at most the
+ * given timeout and is then refused, letting the caller push back on its own source.
+ */
+public class SizeAwareWorkerPool {
+
+    private final long largeThreshold;
+    private final Lane smallLane;
+    private final Lane largeLane;
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * @param largeThreshold payloads of at least this size go to the large lane
+     */
+    public SizeAwareWorkerPool(ThreadFactory threadFactory, long largeThreshold, int smallThreads, int largeThreads, int queueCapacity) {
+        this.largeThreshold = largeThreshold;
+        this.smallLane = new Lane(threadFactory, smallThreads, queueCapacity);
+        this.largeLane = new Lane(threadFactory, largeThreads, queueCapacity);
+    }
+
+    /**
+     * @param size the size of the payload handled by the task
+     * @return false when the lane is saturated and the task was not accepted
+     */
+    public boolean submit(Runnable task, long size) {
+        try {
+            return submit(task, size, 0, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * @param size the size of the payload handled by the task
+     * @param timeout how long to wait for room in a saturated lane
+     * @return false when the lane stayed saturated or the pool is shut down and the task was not accepted
+     */
+    public boolean submit(Runnable task, long size, long timeout, TimeUnit unit) throws InterruptedException {
+        if (!(size >= largeThreshold ? largeLane : smallLane).submit(task, timeout, unit)) {
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Refuses new tasks and waits for the accepted ones to finish.
+     *
+     * @return true if all the accepted tasks finished in time
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        smallLane.executor.shutdown();
+        largeLane.executor.shutdown();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean smallDone = smallLane.executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        boolean largeDone = largeLane.executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        return smallDone && largeDone;
+    }
+
+    public int getSmallQueueDepth() {
+        return smallLane.executor.getQueue().size();
+    }
+
+    public int getLargeQueueDepth() {
+        return largeLane.executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return smallLane.executor.getActiveCount() + largeLane.executor.getActiveCount();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Threads of a lane, with one permit per thread and per queue slot. A permit is returned once its task ran, which is
+     * just before the thread takes the next task : the queue has room for one more task per thread so that it never
+     * refuses a task holding a permit.
+     */
+    private static final class Lane {
+
+        private final ThreadPoolExecutor executor;
+        private final Semaphore room;
+
+        private Lane(ThreadFactory threadFactory, int threads, int queueCapacity) {
+            executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(queueCapacity + threads), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+            room = new Semaphore(threads + queueCapacity);
+        }
+
+        private boolean submit(final Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+            if (executor.isShutdown() || !room.tryAcquire(timeout, unit)) {
+                return false;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        room.release();
+                    }
+                });
+                return true;
+            } catch (RejectedExecutionException e) {
+                room.release();
+                return false;
+            }
+        }
+    }
+}
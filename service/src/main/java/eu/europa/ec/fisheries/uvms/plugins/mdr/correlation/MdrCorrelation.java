@@ -0,0 +1,60 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.correlation;
+
+/**
+ * Outcome of matching an inbound FLUX MDR response against the {@link MdrCorrelationIndex}.
+ */
+public class MdrCorrelation {
+
+    public enum Status {
+        /** First response for a pending query. */
+        MATCHED,
+        /** The query was already answered. */
+        DUPLICATE,
+        /** No pending query is known, it expired or was sent before a redeploy. */
+        ORPHAN
+    }
+
+    private static final MdrCorrelation ORPHAN = new MdrCorrelation(Status.ORPHAN, null, -1);
+
+    private final Status status;
+    private final PendingMdrQuery query;
+    private final long roundTripMillis;
+
+    MdrCorrelation(Status status, PendingMdrQuery query, long roundTripMillis) {
+        this.status = status;
+        this.query = query;
+        this.roundTripMillis = roundTripMillis;
+    }
+
+    static MdrCorrelation orphan() {
+        return ORPHAN;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return the query the response belongs to, null for orphans
+     */
+    public PendingMdrQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * @return the time between sending the query and receiving this response, -1 for orphans
+     */
+    public long getRoundTripMillis() {
+        return roundTripMillis;
+    }
+}
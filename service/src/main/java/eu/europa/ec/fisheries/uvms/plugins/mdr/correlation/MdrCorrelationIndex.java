@@ -0,0 +1,188 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.correlation;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * In-memory index linking the MDR queries sent to FLUX TL with the responses coming back.
+ * <p>
+ * Queries are indexed both by their MDRQuery/ID (referenced by the response document) and by the BUSINESS_UUID
+ * envelope property, so a response is matched in O(1). Answered queries are remembered until their TODT deadline
+ * to recognise duplicate responses, unanswered ones are dropped once the deadline has passed.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@Slf4j
+public class MdrCorrelationIndex {
+
+    private final ConcurrentMap<String, PendingMdrQuery> pendingByQueryUuid = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PendingMdrQuery> pendingByBusinessUuid = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PendingMdrQuery> answeredByQueryUuid = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, PendingMdrQuery> answeredByBusinessUuid = new ConcurrentHashMap<>();
+
+    private final AtomicLong matchedCount = new AtomicLong();
+    private final AtomicLong duplicateCount = new AtomicLong();
+    private final AtomicLong orphanCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    /**
+     * Indexes the query before it is sent, a response can come back before the send call returns.
+     */
+    public void register(PendingMdrQuery query) {
+        if (query.getQueryUuid() != null) {
+            pendingByQueryUuid.put(query.getQueryUuid(), query);
+        }
+        if (query.getBusinessUuid() != null) {
+            pendingByBusinessUuid.put(query.getBusinessUuid(), query);
+        }
+    }
+
+    /**
+     * Forgets a registered query that could not be sent.
+     */
+    public void deregister(PendingMdrQuery query) {
+        remove(pendingByQueryUuid, query.getQueryUuid(), query);
+        remove(pendingByBusinessUuid, query.getBusinessUuid(), query);
+    }
+
+    /**
+     * Matches a response with the query it answers.
+     *
+     * @param referencedQueryUuid the FLUXResponseDocument/ReferencedID of the response, may be null
+     * @param businessUuid the BUSINESS_UUID property of the response, may be null
+     * @param receivedAt reception time in epoch millis
+     * @return the correlation, never null
+     */
+    public MdrCorrelation correlate(String referencedQueryUuid, String businessUuid, long receivedAt) {
+        PendingMdrQuery query = take(pendingByQueryUuid, referencedQueryUuid);
+        if (query == null) {
+            query = take(pendingByBusinessUuid, businessUuid);
+        }
+        if (query != null) {
+            remove(pendingByQueryUuid, query.getQueryUuid(), query);
+            remove(pendingByBusinessUuid, query.getBusinessUuid(), query);
+            putIfKey(answeredByQueryUuid, query.getQueryUuid(), query);
+            putIfKey(answeredByBusinessUuid, query.getBusinessUuid(), query);
+            // Two concurrent responses may each take the entry through a different key, only the first one matches.
+            if (query.markAnswered()) {
+                matchedCount.incrementAndGet();
+                return new MdrCorrelation(MdrCorrelation.Status.MATCHED, query, receivedAt - query.getSentAt());
+            }
+            duplicateCount.incrementAndGet();
+            return new MdrCorrelation(MdrCorrelation.Status.DUPLICATE, query, receivedAt - query.getSentAt());
+        }
+        query = get(answeredByQueryUuid, referencedQueryUuid);
+        if (query == null) {
+            query = get(answeredByBusinessUuid, businessUuid);
+        }
+        if (query != null) {
+            duplicateCount.incrementAndGet();
+            return new MdrCorrelation(MdrCorrelation.Status.DUPLICATE, query, receivedAt - query.getSentAt());
+        }
+        orphanCount.incrementAndGet();
+        return MdrCorrelation.orphan();
+    }
+
+    /**
+     * @return the pending query with the given MDRQuery/ID or null
+     */
+    public PendingMdrQuery findPending(String queryUuid) {
+        return get(pendingByQueryUuid, queryUuid);
+    }
+
+    @Schedule(second = "*/30", minute = "*", hour = "*", persistent = false)
+    public void evictExpired() {
+        evictExpired(System.currentTimeMillis());
+    }
+
+    public void evictExpired(long now) {
+        Iterator<PendingMdrQuery> pending = pendingByBusinessUuid.values().iterator();
+        while (pending.hasNext()) {
+            PendingMdrQuery query = pending.next();
+            if (query.getExpiresAt() < now) {
+                pending.remove();
+                remove(pendingByQueryUuid, query.getQueryUuid(), query);
+                expiredCount.incrementAndGet();
+                log.warn("[WARN] No response received from FLUX for MDR query {} before its deadline.", query);
+            }
+        }
+        // Entries registered without business UUID only live in this map.
+        Iterator<PendingMdrQuery> pendingWithoutBusinessUuid = pendingByQueryUuid.values().iterator();
+        while (pendingWithoutBusinessUuid.hasNext()) {
+            PendingMdrQuery query = pendingWithoutBusinessUuid.next();
+            if (query.getExpiresAt() < now && query.getBusinessUuid() == null) {
+                pendingWithoutBusinessUuid.remove();
+                expiredCount.incrementAndGet();
+                log.warn("[WARN] No response received from FLUX for MDR query {} before its deadline.", query);
+            }
+        }
+        removeExpired(answeredByQueryUuid, now);
+        removeExpired(answeredByBusinessUuid, now);
+    }
+
+    public int getPendingCount() {
+        return Math.max(pendingByQueryUuid.size(), pendingByBusinessUuid.size());
+    }
+
+    public long getMatchedCount() {
+        return matchedCount.get();
+    }
+
+    public long getDuplicateCount() {
+        return duplicateCount.get();
+    }
+
+    public long getOrphanCount() {
+        return orphanCount.get();
+    }
+
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    private static void removeExpired(ConcurrentMap<String, PendingMdrQuery> map, long now) {
+        Iterator<PendingMdrQuery> it = map.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().getExpiresAt() < now) {
+                it.remove();
+            }
+        }
+    }
+
+    private static PendingMdrQuery take(ConcurrentMap<String, PendingMdrQuery> map, String key) {
+        return key == null ? null : map.remove(key);
+    }
+
+    private static PendingMdrQuery get(ConcurrentMap<String, PendingMdrQuery> map, String key) {
+        return key == null ? null : map.get(key);
+    }
+
+    private static void remove(ConcurrentMap<String, PendingMdrQuery> map, String key, PendingMdrQuery query) {
+        if (key != null) {
+            map.remove(key, query);
+        }
+    }
+
+    private static void putIfKey(ConcurrentMap<String, PendingMdrQuery> map, String key, PendingMdrQuery query) {
+        if (key != null) {
+            map.put(key, query);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.correlation;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.constants.FluxConnectionConstants;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Collapses identical in-flight MDR sync requests into a single outbound bridge message.
+ * <p>
+ * The first request for a {@link MdrRequestKey} (acronym, query type, FR) is sent, identical requests arriving
+ * before its response are dropped : the one response FLUX sends back is forwarded to Exchange anyway.
+ * <p>
+ * The window is bounded by the TO of the envelope rather than by the much longer TODT deadline : once FLUX TL gave up
+ * delivering the request, an identical request is sent again. It also closes on any response for the same data set,
+ * matched or not, and when the request could not be sent.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@Slf4j
+public class MdrRequestCoalescer {
+
+    /**
+     * The TO envelope property, in minutes.
+     */
+    private static final long WINDOW_MILLIS = TimeUnit.MINUTES.toMillis(Long.parseLong(FluxConnectionConstants.FLUX_ENV_TO_VAL));
+
+    private final ConcurrentMap<MdrRequestKey, PendingMdrQuery> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Registers the query as in-flight unless an identical one already is.
+     *
+     * @param query the query about to be sent
+     * @return the identical in-flight query the new one is coalesced with, or null if the query must be sent
+     */
+    public PendingMdrQuery coalesce(PendingMdrQuery query) {
+        MdrRequestKey key = MdrRequestKey.of(query);
+        if (key == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        while (true) {
+            PendingMdrQuery existing = inFlight.putIfAbsent(key, query);
+            if (existing == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            if (closesAt(existing) >= System.currentTimeMillis()) {
+                hitCount.incrementAndGet();
+                return existing;
+            }
+            inFlight.remove(key, existing);
+        }
+    }
+
+    /**
+     * Ends the in-flight period of the query : it was answered, expired or could not be sent.
+     */
+    public void release(PendingMdrQuery query) {
+        MdrRequestKey key = MdrRequestKey.of(query);
+        if (key != null) {
+            inFlight.remove(key, query);
+        }
+    }
+
+    /**
+     * Ends the in-flight period of every query for the data set, a response for it was received.
+     */
+    public void releaseDataSet(String acronym) {
+        if (acronym == null) {
+            return;
+        }
+        Iterator<MdrRequestKey> it = inFlight.keySet().iterator();
+        while (it.hasNext()) {
+            if (acronym.equals(it.next().getAcronym())) {
+                it.remove();
+            }
+        }
+    }
+
+    @Schedule(second = "*/30", minute = "*", hour = "*", persistent = false)
+    public void evictExpired() {
+        evictExpired(System.currentTimeMillis());
+    }
+
+    public void evictExpired(long now) {
+        Iterator<Map.Entry<MdrRequestKey, PendingMdrQuery>> it = inFlight.entrySet().iterator();
+        while (it.hasNext()) {
+            if (closesAt(it.next().getValue()) < now) {
+                it.remove();
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    private static long closesAt(PendingMdrQuery query) {
+        return Math.min(query.getExpiresAt(), query.getSentAt() + WINDOW_MILLIS);
+    }
+}
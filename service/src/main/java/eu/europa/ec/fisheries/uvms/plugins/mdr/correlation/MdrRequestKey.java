@@ -0,0 +1,75 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.correlation;
+
+/**
+ * Identity of an MDR sync request : two requests with the same key ask FLUX for the same answer.
+ */
+public final class MdrRequestKey {
+
+    private final String acronym;
+    private final String queryType;
+    private final String fr;
+
+    public MdrRequestKey(String acronym, String queryType, String fr) {
+        this.acronym = acronym;
+        this.queryType = queryType;
+        this.fr = fr;
+    }
+
+    /**
+     * @return the key of the query or null if its acronym is unknown
+     */
+    public static MdrRequestKey of(PendingMdrQuery query) {
+        return query.getAcronym() == null ? null : new MdrRequestKey(query.getAcronym(), query.getQueryType(), query.getFr());
+    }
+
+    public String getAcronym() {
+        return acronym;
+    }
+
+    public String getQueryType() {
+        return queryType;
+    }
+
+    public String getFr() {
+        return fr;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MdrRequestKey)) {
+            return false;
+        }
+        MdrRequestKey other = (MdrRequestKey) o;
+        return acronym.equals(other.acronym) && equalsNullSafe(queryType, other.queryType) && equalsNullSafe(fr, other.fr);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = acronym.hashCode();
+        result = 31 * result + (queryType != null ? queryType.hashCode() : 0);
+        result = 31 * result + (fr != null ? fr.hashCode() : 0);
+        return result;
+    }
+
+    private static boolean equalsNullSafe(String first, String second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
+    @Override
+    public String toString() {
+        return acronym + "/" + queryType + "/" + fr;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.correlation;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An MDR query sent to FLUX TL which is waiting for its response.
+ */
+public class PendingMdrQuery {
+
+    private final String queryUuid;
+    private final String businessUuid;
+    private final String fr;
+    private final String acronym;
+    private final String queryType;
+    private final long sentAt;
+    private final long expiresAt;
+    private final AtomicBoolean answered = new AtomicBoolean();
+
+    public PendingMdrQuery(String queryUuid, String businessUuid, String fr, String acronym, String queryType, long sentAt, long expiresAt) {
+        this.queryUuid = queryUuid;
+        this.businessUuid = businessUuid;
+        this.fr = fr;
+        this.acronym = acronym;
+        this.queryType = queryType;
+        this.sentAt = sentAt;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * @return the MDRQuery/ID of the query, referenced by FLUXResponseDocument/ReferencedID in the response
+     */
+    public String getQueryUuid() {
+        return queryUuid;
+    }
+
+    /**
+     * @return the BUSINESS_UUID envelope property the query was sent with
+     */
+    public String getBusinessUuid() {
+        return businessUuid;
+    }
+
+    public String getFr() {
+        return fr;
+    }
+
+    public String getAcronym() {
+        return acronym;
+    }
+
+    public String getQueryType() {
+        return queryType;
+    }
+
+    public long getSentAt() {
+        return sentAt;
+    }
+
+    /**
+     * @return the TODT deadline of the query in epoch millis
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * @return true for the first caller only
+     */
+    boolean markAnswered() {
+        return answered.compareAndSet(false, true);
+    }
+
+    @Override
+    public String toString() {
+        return "PendingMdrQuery{queryUuid='" + queryUuid + "', businessUuid='" + businessUuid + "', fr='" + fr
+                + "', acronym='" + acronym + "', queryType='" + queryType + "', sentAt=" + sentAt + '}';
+    }
+}
@@ -0,0 +1,118 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.dedup;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.PluginConfiguration;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionException;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Drops FLUX MDR responses whose content was already received within a time window, as happens when FLUX TL
+ * redelivers a message.
+ * <p>
+ * Disabled unless INBOUND_DEDUP_ENABLED is true. Responses are compared on their {@link MdrContentHasher} hash, so a
+ * redelivery with a new response ID or creation date is still a duplicate, while the answer to another query is not. A response is only remembered once it was forwarded,
+ * so a response whose forward failed is not dropped when FLUX sends it again. At most INBOUND_DEDUP_MAX_ENTRIES hashes are
+ * remembered for INBOUND_DEDUP_WINDOW_SECONDS. All settings are read again on SET_CONFIG, which also forgets the hashes seen so far.
+ */
+@Singleton
+@Startup
+@DependsOn({"StartupBean", "PluginMetrics"})
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@Slf4j
+public class InboundDeduplicator {
+
+    private static final MdrContentHasher CONTENT_HASHER = new MdrContentHasher();
+
+    @EJB
+    private StartupBean startup;
+
+    @EJB
+    private PluginMetrics metrics;
+
+    /**
+     * Null when deduplication is disabled.
+     */
+    private volatile SeenHashWindow seenHashes;
+
+    @PostConstruct
+    public void init() {
+        reloadSettings();
+        startup.addSettingsListener(this::reloadSettings);
+    }
+
+    /**
+     * Applies the INBOUND_DEDUP_* settings.
+     */
+    public void reloadSettings() {
+        PluginConfiguration configuration = startup.getConfiguration();
+        if (!configuration.isInboundDedupEnabled()) {
+            seenHashes = null;
+            log.info("[INFO] Inbound MDR response deduplication is disabled.");
+            return;
+        }
+        int windowSeconds = configuration.getInboundDedupWindowSeconds();
+        int maxEntries = configuration.getInboundDedupMaxEntries();
+        seenHashes = new SeenHashWindow(maxEntries, TimeUnit.SECONDS.toMillis(windowSeconds));
+        log.info("[INFO] Inbound MDR response deduplication is enabled : {} responses remembered for {} s.", maxEntries, windowSeconds);
+    }
+
+    public boolean isEnabled() {
+        return seenHashes != null;
+    }
+
+    /**
+     * Tells whether the same content was already forwarded within the window.
+     *
+     * @return true when the response is a duplicate, false when it is new, cannot be read or deduplication is off
+     */
+    public boolean isDuplicate(String response) {
+        SeenHashWindow window = seenHashes;
+        if (window == null) {
+            return false;
+        }
+        try {
+            boolean duplicate = window.contains(CONTENT_HASHER.hash(response), System.currentTimeMillis());
+            if (duplicate) {
+                metrics.duplicateDropped();
+            }
+            return duplicate;
+        } catch (MdrExtractionException e) {
+            log.warn("[WARN] Could not hash the Flux Response, it is not checked for duplicates.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Records the content of a response which was forwarded.
+     */
+    public void remember(String response) {
+        SeenHashWindow window = seenHashes;
+        if (window == null) {
+            return;
+        }
+        try {
+            window.seen(CONTENT_HASHER.hash(response), System.currentTimeMillis());
+        } catch (MdrExtractionException e) {
+            log.debug("Could not hash the Flux Response, it is not remembered.", e);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.dedup;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.xml.StaxReaders;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.xml.XmlContentHash;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streaming content hash of a FLUXMDRReturnMessage which ignores what changes between two deliveries of the same answer :
+ * the ID and CreationDateTime of the FLUXResponseDocument, and the formatting. The ReferencedID is kept, so the answer to
+ * another query, a re-sync asked on purpose for instance, is never taken for a duplicate.
+ * Element names, attributes and text of everything else are hashed in document order. Instances are stateless and thread-safe.
+ */
+public class MdrContentHasher {
+
+    private static final String RESPONSE_DOCUMENT = "FLUXResponseDocument";
+
+    private static final Set<String> VOLATILE_HEADER_FIELDS = new HashSet<>(Arrays.asList("ID", "CreationDateTime"));
+
+    private static final int HEADER_DEPTH = 2;
+    private static final int HEADER_FIELD_DEPTH = 3;
+
+    /**
+     * @return the 64 bit content hash of the response
+     * @throws MdrExtractionException when the response is not well-formed
+     */
+    public long hash(String response) throws MdrExtractionException {
+        XMLStreamReader reader = null;
+        try {
+            reader = StaxReaders.getInputFactory().createXMLStreamReader(new StringReader(response));
+            return hash(reader);
+        } catch (XMLStreamException e) {
+            throw new MdrExtractionException("Could not parse the MDR response.", e);
+        } finally {
+            StaxReaders.close(reader);
+        }
+    }
+
+    private static long hash(XMLStreamReader reader) throws XMLStreamException {
+        long hash = XmlContentHash.EMPTY;
+        int depth = 0;
+        boolean inHeader = false;
+        // Depth of the volatile header field being skipped, 0 when none.
+        int skippedDepth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                String localName = reader.getLocalName();
+                if (depth == HEADER_DEPTH) {
+                    inHeader = RESPONSE_DOCUMENT.equals(localName);
+                } else if (inHeader && depth == HEADER_FIELD_DEPTH && VOLATILE_HEADER_FIELDS.contains(localName)) {
+                    skippedDepth = depth;
+                }
+                if (skippedDepth == 0) {
+                    hash = XmlContentHash.update(hash, reader.getNamespaceURI());
+                    hash = XmlContentHash.update(hash, localName);
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        hash = XmlContentHash.update(hash, reader.getAttributeLocalName(i));
+                        hash = XmlContentHash.update(hash, reader.getAttributeValue(i));
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (skippedDepth == 0) {
+                    hash = XmlContentHash.update(hash, "/");
+                } else if (skippedDepth == depth) {
+                    skippedDepth = 0;
+                }
+                depth--;
+            } else if ((event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) && skippedDepth == 0 && !reader.isWhiteSpace()) {
+                hash = XmlContentHash.update(hash, reader.getText().trim());
+            }
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,150 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.dedup;
+
+/**
+ * Bounded set of 64 bit hashes seen within a time window, held in primitive arrays.
+ * <p>
+ * Hashes are kept in insertion order in a ring, which is also their expiry order, and indexed by an open addressing table
+ * with linear probing, at most half full. Expired hashes are dropped from the head of the ring, and when the ring is full the
+ * oldest hash is dropped before its window ends. Memory is fixed at about 24 bytes per entry, whatever the traffic.
+ * Instances are thread-safe.
+ */
+public class SeenHashWindow {
+
+    /**
+     * Marks free slots of the index, the hash 0 is stored as 1.
+     */
+    private static final long FREE = 0L;
+
+    private final long windowMillis;
+
+    private final long[] ringHashes;
+    private final long[] ringTimes;
+    private int head;
+    private int count;
+
+    private final long[] index;
+    private final int mask;
+
+    /**
+     * @param maxEntries the number of hashes kept at most
+     * @param windowMillis how long a hash is remembered
+     */
+    public SeenHashWindow(int maxEntries, long windowMillis) {
+        if (maxEntries < 1 || maxEntries > (1 << 28)) {
+            throw new IllegalArgumentException("The seen hash window must hold between 1 and 2^28 entries!");
+        }
+        this.windowMillis = windowMillis;
+        ringHashes = new long[maxEntries];
+        ringTimes = new long[maxEntries];
+        int capacity = Integer.highestOneBit(maxEntries * 2 - 1) << 1;
+        index = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Tells whether the hash was seen within the window, without recording it.
+     *
+     * @param now the current time in milliseconds, never smaller than on the previous call
+     */
+    public synchronized boolean contains(long hash, long now) {
+        expire(now);
+        return indexed(hash == FREE ? 1L : hash);
+    }
+
+    /**
+     * Records the hash unless it was already seen within the window.
+     *
+     * @param now the current time in milliseconds, never smaller than on the previous call
+     * @return true when the hash was already seen within the window
+     */
+    public synchronized boolean seen(long hash, long now) {
+        long key = hash == FREE ? 1L : hash;
+        expire(now);
+        if (indexed(key)) {
+            return true;
+        }
+        if (count == ringHashes.length) {
+            removeOldest();
+        }
+        int tail = (head + count) % ringHashes.length;
+        ringHashes[tail] = key;
+        ringTimes[tail] = now;
+        count++;
+        insert(key);
+        return false;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    private void expire(long now) {
+        while (count > 0 && now - ringTimes[head] >= windowMillis) {
+            removeOldest();
+        }
+    }
+
+    private void removeOldest() {
+        remove(ringHashes[head]);
+        head = (head + 1) % ringHashes.length;
+        count--;
+    }
+
+    private boolean indexed(long key) {
+        for (int slot = slot(key); index[slot] != FREE; slot = (slot + 1) & mask) {
+            if (index[slot] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void insert(long key) {
+        int slot = slot(key);
+        while (index[slot] != FREE) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = key;
+    }
+
+    /**
+     * Backward shift deletion : the entries following the removed one in its probe run are moved up, so no tombstone is needed.
+     */
+    private void remove(long key) {
+        int slot = slot(key);
+        while (index[slot] != key) {
+            if (index[slot] == FREE) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int free = slot;
+        int next = (free + 1) & mask;
+        while (index[next] != FREE) {
+            int home = slot(index[next]);
+            // Move the entry up unless its home slot lies cyclically in (free, next].
+            boolean homeBetween = free <= next ? free < home && home <= next : free < home || home <= next;
+            if (!homeBetween) {
+                index[free] = index[next];
+                free = next;
+            }
+            next = (next + 1) & mask;
+        }
+        index[free] = FREE;
+    }
+
+    private int slot(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.delta;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Content fingerprints of the entries of one code list response : a 64 bit hash per ContainedMDRDataNode, keyed by the entry ID.
+ * Immutable.
+ */
+public final class MdrCodeListFingerprint {
+
+    private final Map<String, Long> entries;
+
+    MdrCodeListFingerprint(Map<String, Long> entries) {
+        this.entries = Collections.unmodifiableMap(entries);
+    }
+
+    /**
+     * @return the fingerprint of the entry, or null if the code list has no such entry
+     */
+    public Long get(String entryId) {
+        return entries.get(entryId);
+    }
+
+    public Map<String, Long> getEntries() {
+        return entries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
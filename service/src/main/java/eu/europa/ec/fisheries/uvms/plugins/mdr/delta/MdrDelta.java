@@ -0,0 +1,101 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.delta;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Outcome of comparing a code list response with the fingerprints of the previous one.
+ */
+public final class MdrDelta {
+
+    /**
+     * String property set to "true" on the messages to Exchange holding a delta, absent on complete code lists.
+     */
+    public static final String DELTA_PROPERTY = "FLUX_MDR_DELTA";
+
+    private static final Map<String, String> DELTA_PROPERTIES = Collections.singletonMap(DELTA_PROPERTY, Boolean.TRUE.toString());
+
+    private final String message;
+    private final MdrCodeListFingerprint fingerprint;
+    private final boolean delta;
+    private final int added;
+    private final int changed;
+    private final int removed;
+    private final int unchanged;
+
+    MdrDelta(String message, MdrCodeListFingerprint fingerprint, boolean delta, int added, int changed, int removed, int unchanged) {
+        this.message = message;
+        this.fingerprint = fingerprint;
+        this.delta = delta;
+        this.added = added;
+        this.changed = changed;
+        this.removed = removed;
+        this.unchanged = unchanged;
+    }
+
+    /**
+     * @return the message to forward : the delta message, or the original response when there was nothing to compare with
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return the fingerprints of the response, to compare the next one with
+     */
+    public MdrCodeListFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return true when {@link #getMessage()} only holds the added and changed entries
+     */
+    public boolean isDelta() {
+        return delta;
+    }
+
+    /**
+     * @return the JMS properties announcing a delta, null for a complete code list
+     */
+    public Map<String, String> getMessageProperties() {
+        return delta ? DELTA_PROPERTIES : null;
+    }
+
+    /**
+     * @return true when the code list is identical to the previous one
+     */
+    public boolean isUnchanged() {
+        return delta && added == 0 && changed == 0 && removed == 0;
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getChanged() {
+        return changed;
+    }
+
+    public int getRemoved() {
+        return removed;
+    }
+
+    public int getUnchanged() {
+        return unchanged;
+    }
+
+    @Override
+    public String toString() {
+        return "MdrDelta{delta=" + delta + ", added=" + added + ", changed=" + changed + ", removed=" + removed + ", unchanged=" + unchanged + '}';
+    }
+}
@@ -0,0 +1,333 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.delta;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.xml.StaxReaders;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.xml.XmlContentHash;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Compares a FLUXMDRReturnMessage with the fingerprints of the previous response to the same query, in one streaming pass.
+ * <p>
+ * Every ContainedMDRDataNode is hashed (element names, attributes and text, ignoring formatting) under the text of its ID.
+ * When there is a previous fingerprint the response is copied to the delta message without the unchanged entries.
+ * The IDs of the entries which disappeared are listed as {@value #REMOVED_INSTRUCTION} processing instructions and a
+ * {@value #DELTA_INSTRUCTION} instruction with the counts closes the MDRDataSet :
+ * <pre>
+ * &lt;?flux-mdr-removed GUD?&gt;
+ * &lt;?flux-mdr-delta added="1" changed="0" removed="1" unchanged="40"?&gt;
+ * </pre>
+ * A delta without any entry and with all counts but unchanged at 0 is the "no change" marker.
+ * A JAXB reader ignores the processing instructions and would take the delta for a complete code list, so delta messages
+ * are announced by the {@link MdrDelta#DELTA_PROPERTY} message property, see {@link MdrDelta#getMessageProperties()}.
+ * <p>
+ * Instances are stateless and thread-safe.
+ */
+public class MdrDeltaComputer {
+
+    public static final String DELTA_INSTRUCTION = "flux-mdr-delta";
+    public static final String REMOVED_INSTRUCTION = "flux-mdr-removed";
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n";
+    private static final String DATA_SET = "MDRDataSet";
+    private static final String DATA_NODE = "ContainedMDRDataNode";
+    private static final String ID = "ID";
+
+    private static final int DATA_SET_DEPTH = 2;
+    private static final int DATA_NODE_DEPTH = 3;
+    private static final int ENTRY_ID_DEPTH = 4;
+
+    /**
+     * @param response the FLUXMDRReturnMessage
+     * @param previous the fingerprints of the previous response, null if there is none
+     * @return the delta, or a full message with the fingerprints when there is no previous response or no data set
+     * @throws MdrExtractionException when the response is not well-formed
+     */
+    public MdrDelta compute(String response, MdrCodeListFingerprint previous) throws MdrExtractionException {
+        XMLStreamReader reader = null;
+        try {
+            reader = StaxReaders.getInputFactory().createXMLStreamReader(new StringReader(response));
+            return compute(reader, response, previous);
+        } catch (XMLStreamException e) {
+            throw new MdrExtractionException("Could not parse the MDR response.", e);
+        } finally {
+            StaxReaders.close(reader);
+        }
+    }
+
+    private MdrDelta compute(XMLStreamReader reader, String response, MdrCodeListFingerprint previous) throws XMLStreamException {
+        boolean writing = previous != null;
+        StringBuilder message = new StringBuilder(writing ? 4096 : 0);
+        StringBuilder entry = new StringBuilder(512);
+        StringBuilder entryIdText = new StringBuilder(32);
+        Map<String, Long> fingerprints = new HashMap<>(previous == null ? 256 : previous.size() * 4 / 3 + 16);
+        if (writing) {
+            message.append(XML_DECLARATION);
+        }
+
+        int depth = 0;
+        boolean dataSetFound = false;
+        boolean inDataSet = false;
+        boolean inEntry = false;
+        boolean readingEntryId = false;
+        String entryId = null;
+        long hash = XmlContentHash.EMPTY;
+        int added = 0;
+        int changed = 0;
+        int unchanged = 0;
+        int removed = 0;
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            StringBuilder target = inEntry ? entry : message;
+            switch (event) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    String localName = reader.getLocalName();
+                    if (depth == DATA_SET_DEPTH && DATA_SET.equals(localName)) {
+                        inDataSet = true;
+                        dataSetFound = true;
+                    } else if (inDataSet && depth == DATA_NODE_DEPTH && DATA_NODE.equals(localName)) {
+                        inEntry = true;
+                        target = entry;
+                        entry.setLength(0);
+                        entryId = null;
+                        hash = XmlContentHash.EMPTY;
+                    }
+                    if (inEntry) {
+                        hash = XmlContentHash.update(hash, reader.getNamespaceURI());
+                        hash = XmlContentHash.update(hash, localName);
+                        for (int i = 0; i < reader.getAttributeCount(); i++) {
+                            hash = XmlContentHash.update(hash, reader.getAttributeLocalName(i));
+                            hash = XmlContentHash.update(hash, reader.getAttributeValue(i));
+                        }
+                        if (depth == ENTRY_ID_DEPTH && entryId == null && ID.equals(localName)) {
+                            readingEntryId = true;
+                            entryIdText.setLength(0);
+                        }
+                    }
+                    if (writing) {
+                        writeStartElement(target, reader);
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (reader.isWhiteSpace()) {
+                        // Formatting between the entries would otherwise be kept for every dropped entry.
+                        if (writing && !(inDataSet && !inEntry)) {
+                            escapeText(target, reader.getText());
+                        }
+                        break;
+                    }
+                    String text = reader.getText();
+                    if (inEntry) {
+                        hash = XmlContentHash.update(hash, text.trim());
+                        if (readingEntryId) {
+                            entryIdText.append(text);
+                        }
+                    }
+                    if (writing) {
+                        escapeText(target, text);
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (inEntry) {
+                        hash = XmlContentHash.update(hash, "/");
+                        if (readingEntryId && depth == ENTRY_ID_DEPTH) {
+                            readingEntryId = false;
+                            entryId = entryIdText.toString().trim();
+                        }
+                    }
+                    if (inDataSet && depth == DATA_SET_DEPTH) {
+                        inDataSet = false;
+                        if (writing) {
+                            removed = writeRemovedEntries(message, previous, fingerprints);
+                            message.append("<?").append(DELTA_INSTRUCTION)
+                                    .append(" added=\"").append(added)
+                                    .append("\" changed=\"").append(changed)
+                                    .append("\" removed=\"").append(removed)
+                                    .append("\" unchanged=\"").append(unchanged).append("\"?>");
+                        }
+                    }
+                    if (writing) {
+                        writeEndElement(target, reader);
+                    }
+                    if (inEntry && depth == DATA_NODE_DEPTH) {
+                        inEntry = false;
+                        String key = uniqueKey(fingerprints, entryId);
+                        fingerprints.put(key, hash);
+                        Long previousHash = previous == null ? null : previous.get(key);
+                        if (previousHash == null) {
+                            added++;
+                        } else if (previousHash != hash) {
+                            changed++;
+                        } else {
+                            unchanged++;
+                        }
+                        if (writing && (previousHash == null || previousHash != hash)) {
+                            message.append(entry);
+                        }
+                    }
+                    depth--;
+                    break;
+                case XMLStreamConstants.COMMENT:
+                    if (writing) {
+                        target.append("<!--").append(reader.getText()).append("-->");
+                    }
+                    break;
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    if (writing) {
+                        target.append("<?").append(reader.getPITarget());
+                        if (reader.getPIData() != null && !reader.getPIData().isEmpty()) {
+                            target.append(' ').append(reader.getPIData());
+                        }
+                        target.append("?>");
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        MdrCodeListFingerprint fingerprint = new MdrCodeListFingerprint(fingerprints);
+        if (!writing || !dataSetFound) {
+            return new MdrDelta(response, fingerprint, false, fingerprints.size(), 0, 0, 0);
+        }
+        return new MdrDelta(message.toString(), fingerprint, true, added, changed, removed, unchanged);
+    }
+
+    private static int writeRemovedEntries(StringBuilder message, MdrCodeListFingerprint previous, Map<String, Long> fingerprints) {
+        List<String> removed = new ArrayList<>();
+        for (String entryId : previous.getEntries().keySet()) {
+            if (!fingerprints.containsKey(entryId)) {
+                removed.add(entryId);
+            }
+        }
+        for (String entryId : removed) {
+            message.append("<?").append(REMOVED_INSTRUCTION).append(' ').append(entryId.replace("?>", "? >")).append("?>");
+        }
+        return removed.size();
+    }
+
+    /**
+     * Entries without ID are keyed on the empty string, repeated IDs (one code with several validity periods) get a counter.
+     */
+    private static String uniqueKey(Map<String, Long> fingerprints, String entryId) {
+        String key = entryId == null ? "" : entryId;
+        if (!fingerprints.containsKey(key)) {
+            return key;
+        }
+        int occurrence = 2;
+        while (fingerprints.containsKey(key + '#' + occurrence)) {
+            occurrence++;
+        }
+        return key + '#' + occurrence;
+    }
+
+    private static void writeStartElement(StringBuilder target, XMLStreamReader reader) {
+        target.append('<');
+        appendName(target, reader.getPrefix(), reader.getLocalName());
+        for (int i = 0; i < reader.getNamespaceCount(); i++) {
+            String prefix = reader.getNamespacePrefix(i);
+            target.append(" xmlns");
+            if (prefix != null && !prefix.isEmpty()) {
+                target.append(':').append(prefix);
+            }
+            target.append("=\"");
+            escapeAttribute(target, reader.getNamespaceURI(i));
+            target.append('"');
+        }
+        for (int i = 0; i < reader.getAttributeCount(); i++) {
+            target.append(' ');
+            appendName(target, reader.getAttributePrefix(i), reader.getAttributeLocalName(i));
+            target.append("=\"");
+            escapeAttribute(target, reader.getAttributeValue(i));
+            target.append('"');
+        }
+        target.append('>');
+    }
+
+    private static void writeEndElement(StringBuilder target, XMLStreamReader reader) {
+        target.append("</");
+        appendName(target, reader.getPrefix(), reader.getLocalName());
+        target.append('>');
+    }
+
+    private static void appendName(StringBuilder target, String prefix, String localName) {
+        if (prefix != null && !prefix.isEmpty()) {
+            target.append(prefix).append(':');
+        }
+        target.append(localName);
+    }
+
+    private static void escapeText(StringBuilder target, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&':
+                    target.append("&amp;");
+                    break;
+                case '<':
+                    target.append("&lt;");
+                    break;
+                case '>':
+                    target.append("&gt;");
+                    break;
+                case '\r':
+                    target.append("&#13;");
+                    break;
+                default:
+                    target.append(c);
+                    break;
+            }
+        }
+    }
+
+    private static void escapeAttribute(StringBuilder target, String value) {
+        if (value == null) {
+            return;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '&':
+                    target.append("&amp;");
+                    break;
+                case '<':
+                    target.append("&lt;");
+                    break;
+                case '"':
+                    target.append("&quot;");
+                    break;
+                case '\t':
+                    target.append("&#9;");
+                    break;
+                case '\n':
+                    target.append("&#10;");
+                    break;
+                case '\r':
+                    target.append("&#13;");
+                    break;
+                default:
+                    target.append(c);
+                    break;
+            }
+        }
+    }
+}
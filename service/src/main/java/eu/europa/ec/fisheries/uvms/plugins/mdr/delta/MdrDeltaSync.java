@@ -0,0 +1,105 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.delta;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrRequestKey;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.PendingMdrQuery;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.PostConstruct;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Delta sync mode : forwards to Exchange only the code list entries which were added or changed since the previous
+ * response to the same acronym, query type and FR, see {@link MdrDeltaComputer} for the message format.
+ * <p>
+ * Delta messages carry the {@link MdrDelta#DELTA_PROPERTY} JMS property, complete code lists do not. A consumer which does
+ * not check the property would replace its code list with the delta, so delta sync is an opt-in of the receiving side :
+ * DELTA_SYNC_ENABLED must only be set once Exchange passes the property on to the MDR module and the MDR module applies
+ * the deltas.
+ * <p>
+ * Disabled unless DELTA_SYNC_ENABLED is true, read again on SET_CONFIG. The fingerprints are kept in memory only,
+ * so the first response after a restart is always forwarded in full. They are replaced by {@link #commit(PendingMdrQuery, MdrDelta)}
+ * once the delta was handed to Exchange, so a response redelivered after a failed send is compared with the same base again.
+ */
+@Singleton
+@Startup
+@DependsOn("StartupBean")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@Slf4j
+public class MdrDeltaSync {
+
+    private static final MdrDeltaComputer DELTA_COMPUTER = new MdrDeltaComputer();
+
+    @EJB
+    private StartupBean startup;
+
+    private final ConcurrentMap<MdrRequestKey, MdrCodeListFingerprint> fingerprints = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled;
+
+    @PostConstruct
+    public void init() {
+        reloadSettings();
+        startup.addSettingsListener(this::reloadSettings);
+    }
+
+    /**
+     * Applies the DELTA_SYNC_ENABLED setting. The fingerprints are dropped when the mode is switched off.
+     */
+    public void reloadSettings() {
+        enabled = startup.getConfiguration().isDeltaSyncEnabled();
+        if (!enabled) {
+            fingerprints.clear();
+        }
+        log.info("[INFO] MDR delta sync is {}.", enabled ? "enabled" : "disabled");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return the delta of the response against the previous one, or null when delta sync is off or the response cannot be read
+     */
+    public MdrDelta prepare(PendingMdrQuery query, String response) {
+        MdrRequestKey key = MdrRequestKey.of(query);
+        if (!enabled || key == null) {
+            return null;
+        }
+        try {
+            MdrDelta delta = DELTA_COMPUTER.compute(response, fingerprints.get(key));
+            log.info("[INFO] Code list {} compared with the previous response : {}.", key, delta);
+            return delta;
+        } catch (MdrExtractionException e) {
+            log.warn("[WARN] Could not compute the delta of the response to {}, forwarding it in full.", key, e);
+            return null;
+        }
+    }
+
+    /**
+     * Keeps the fingerprints of the response as the base of the next delta.
+     */
+    public void commit(PendingMdrQuery query, MdrDelta delta) {
+        MdrRequestKey key = MdrRequestKey.of(query);
+        if (enabled && key != null) {
+            fingerprints.put(key, delta.getFingerprint());
+        }
+    }
+}
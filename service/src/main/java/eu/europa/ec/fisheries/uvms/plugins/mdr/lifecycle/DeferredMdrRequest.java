@@ -0,0 +1,66 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.lifecycle;
+
+/**
+ * MDR request received while the plugin was stopped.
+ */
+public final class DeferredMdrRequest {
+
+    /**
+     * Sequence number of a request kept in memory only.
+     */
+    public static final long NOT_JOURNALED = -1;
+
+    private final String fr;
+    private final String request;
+    private final long receivedAt;
+    private final long sequence;
+
+    public DeferredMdrRequest(String fr, String request, long receivedAt) {
+        this(fr, request, receivedAt, NOT_JOURNALED);
+    }
+
+    /**
+     * @param sequence the sequence number of the request in the deferred requests journal
+     */
+    public DeferredMdrRequest(String fr, String request, long receivedAt, long sequence) {
+        this.fr = fr;
+        this.request = request;
+        this.receivedAt = receivedAt;
+        this.sequence = sequence;
+    }
+
+    public String getFr() {
+        return fr;
+    }
+
+    public String getRequest() {
+        return request;
+    }
+
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public boolean isJournaled() {
+        return sequence != NOT_JOURNALED;
+    }
+
+    @Override
+    public String toString() {
+        return "DeferredMdrRequest{fr=" + fr + ", receivedAt=" + receivedAt + ", sequence=" + sequence + "}";
+    }
+}
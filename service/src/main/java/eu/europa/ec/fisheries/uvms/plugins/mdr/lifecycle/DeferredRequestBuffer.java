@@ -0,0 +1,117 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.lifecycle;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded FIFO of the MDR requests received while the plugin is stopped.
+ * <p>
+ * Once the capacity is reached, new requests are handled according to the {@link OverflowPolicy}, the dropped requests
+ * being handed to the drop listener. Lowering the capacity keeps the requests already buffered. Thread-safe.
+ */
+public class DeferredRequestBuffer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DeferredRequestBuffer.class);
+
+    private final Deque<DeferredMdrRequest> requests = new ArrayDeque<>();
+    private final Consumer<DeferredMdrRequest> dropListener;
+    private int capacity;
+    private OverflowPolicy overflowPolicy;
+    private long droppedCount;
+
+    public DeferredRequestBuffer(int capacity, OverflowPolicy overflowPolicy) {
+        this(capacity, overflowPolicy, request -> { });
+    }
+
+    /**
+     * @param dropListener told of every request dropped by the overflow policy
+     */
+    public DeferredRequestBuffer(int capacity, OverflowPolicy overflowPolicy, Consumer<DeferredMdrRequest> dropListener) {
+        this.dropListener = dropListener;
+        configure(capacity, overflowPolicy);
+    }
+
+    public synchronized void configure(int capacity, OverflowPolicy overflowPolicy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The deferred request buffer capacity must be at least 1!");
+        }
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Buffers the request, or applies the overflow policy when the buffer is full.
+     *
+     * @return false when the request was not buffered and must be delivered again by the broker
+     */
+    public synchronized boolean offer(DeferredMdrRequest request) {
+        if (requests.size() < capacity) {
+            requests.addLast(request);
+            return true;
+        }
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                DeferredMdrRequest oldest = requests.pollFirst();
+                requests.addLast(request);
+                droppedCount++;
+                LOG.warn("[WARN] The deferred MDR request buffer is full, dropping {}.", oldest);
+                dropListener.accept(oldest);
+                return true;
+            case DROP_NEWEST:
+                droppedCount++;
+                LOG.warn("[WARN] The deferred MDR request buffer is full, dropping {}.", request);
+                dropListener.accept(request);
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Buffers a request recovered after a restart, whatever the capacity.
+     */
+    public synchronized void restore(DeferredMdrRequest request) {
+        requests.addLast(request);
+    }
+
+    /**
+     * @return the oldest buffered request, or null when the buffer is empty
+     */
+    public synchronized DeferredMdrRequest poll() {
+        return requests.pollFirst();
+    }
+
+    /**
+     * Empties the buffer.
+     *
+     * @return the buffered requests, oldest first
+     */
+    public synchronized List<DeferredMdrRequest> drain() {
+        List<DeferredMdrRequest> drained = new ArrayList<>(requests);
+        requests.clear();
+        return drained;
+    }
+
+    public synchronized int size() {
+        return requests.size();
+    }
+
+    public synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+}
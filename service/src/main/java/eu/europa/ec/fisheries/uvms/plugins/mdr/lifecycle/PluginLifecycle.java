@@ -0,0 +1,342 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.lifecycle;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.PluginConfiguration;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.FsyncPolicy;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.OutboxEntry;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.OutboxJournal;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.OutboxTarget;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.service.FluxMdrRequestServiceBean;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Start, stop and shutdown of the plugin, as far as the MDR requests to FLUX TL are concerned.
+ * <p>
+ * The plugin is {@link PluginMode#RUNNING} after deployment. When Exchange stops it, the MDR requests are kept in a
+ * {@link DeferredRequestBuffer} of DEFERRED_REQUESTS_CAPACITY requests, DEFERRED_REQUESTS_OVERFLOW telling what happens
+ * once it is full. When Exchange starts it again, new requests are sent right away and the buffered ones are released
+ * in the background at DEFERRED_REQUESTS_RELEASE_PER_SECOND, so that a long stop does not end in a burst towards FLUX TL.
+ * <p>
+ * A deferred request is written to an {@link OutboxJournal} under DEFERRED_REQUESTS_DIRECTORY (by default in the server
+ * data directory), forced to disk before the message is acknowledged, and removed from it once it was released or dropped.
+ * The requests still in the journal after a crash or a redeploy are buffered again at startup and released right away.
+ * Should the journal be unavailable, the requests are only kept in memory.
+ * <p>
+ * On shutdown the release is stopped and the requests left in the buffer stay in the journal, to be released after the
+ * restart. Requests arriving during the shutdown are written to the journal as well, or sent when it is unavailable.
+ * The producers drain the messages they still hold in their own shutdown, which comes after this one.
+ */
+@Singleton
+@Startup
+@DependsOn({"StartupBean", "PluginMetrics", "MdrCorrelationIndex", "MdrRequestCoalescer", "MdrResponseCache", "FluxBridgeBatchProducer", "FluxBridgeRateLimiter", "ReliableOutbox"})
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@Slf4j
+public class PluginLifecycle {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+    private static final int JOURNAL_SEGMENT_SIZE = 16 * OutboxJournal.MIN_SEGMENT_SIZE;
+    private static final String DEFAULT_SUBDIRECTORY = "flux-mdr-plugin/deferred";
+    private static final String FR_PROPERTY = "FR";
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @EJB
+    private StartupBean startup;
+
+    @EJB
+    private FluxMdrRequestServiceBean requestService;
+
+    @EJB
+    private PluginMetrics metrics;
+
+    private DeferredRequestBuffer buffer;
+    private volatile OutboxJournal journal;
+    private volatile PluginMode mode = PluginMode.RUNNING;
+
+    /**
+     * Guarded by this bean. Releasing is true from the submission of a release until it decided, under the lock, to stop :
+     * a start arriving before that decision leaves it to the running release.
+     */
+    private Future<?> releaser;
+    private boolean releasing;
+
+    @PostConstruct
+    public void init() {
+        PluginConfiguration configuration = startup.getConfiguration();
+        buffer = new DeferredRequestBuffer(configuration.getDeferredRequestsCapacity(), configuration.getDeferredRequestsOverflow(),
+                request -> forget(request.getSequence()));
+        openJournal(configuration.getDeferredRequestsDirectory());
+        startup.addSettingsListener(this::reloadSettings);
+        metrics.gauge("deferredRequests.count", this::getDeferredCount);
+        metrics.gauge("deferredRequests.dropped", this::getDroppedCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        PluginMode previous;
+        Future<?> running;
+        synchronized (this) {
+            previous = mode;
+            mode = PluginMode.DRAINING;
+            running = releaser;
+        }
+        if (running != null) {
+            try {
+                running.get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("[WARN] The release of the deferred MDR requests did not stop in time.", e);
+                running.cancel(true);
+            }
+        }
+        List<DeferredMdrRequest> remaining = buffer.drain();
+        int flushed = 0;
+        for (DeferredMdrRequest request : remaining) {
+            if (request.isJournaled()) {
+                continue;
+            }
+            flushed++;
+            if (previous == PluginMode.STOPPED && requestService.recordForReplay(request.getFr(), request.getRequest())) {
+                continue;
+            }
+            send(request);
+        }
+        if (!remaining.isEmpty()) {
+            log.info("[INFO] {} deferred MDR request(s) kept in the journal until the restart, {} flushed.", remaining.size() - flushed, flushed);
+        }
+        synchronized (this) {
+            OutboxJournal current = journal;
+            journal = null;
+            if (current != null) {
+                current.close();
+            }
+        }
+    }
+
+    /**
+     * Applies the DEFERRED_REQUESTS_CAPACITY and DEFERRED_REQUESTS_OVERFLOW settings, the release rate is read on every start
+     * and DEFERRED_REQUESTS_DIRECTORY at startup only.
+     */
+    public void reloadSettings() {
+        PluginConfiguration configuration = startup.getConfiguration();
+        buffer.configure(configuration.getDeferredRequestsCapacity(), configuration.getDeferredRequestsOverflow());
+    }
+
+    /**
+     * Sends the MDR request when the plugin is running, buffers it when it is stopped and writes it to the journal
+     * during the shutdown.
+     *
+     * @return false when the buffer is full and DEFERRED_REQUESTS_OVERFLOW is REDELIVER : the message must be delivered
+     * again by the broker
+     */
+    public boolean submit(String fr, String request) {
+        if (mode != PluginMode.RUNNING) {
+            synchronized (this) {
+                if (mode == PluginMode.STOPPED) {
+                    return defer(fr, request);
+                }
+                if (mode == PluginMode.DRAINING && journal(fr, request, System.currentTimeMillis()) != DeferredMdrRequest.NOT_JOURNALED) {
+                    return true;
+                }
+            }
+        }
+        requestService.send(fr, request);
+        return true;
+    }
+
+    public synchronized void start() {
+        if (mode != PluginMode.STOPPED) {
+            return;
+        }
+        mode = PluginMode.RUNNING;
+        int deferred = buffer.size();
+        log.info("[INFO] Plugin started, releasing {} deferred MDR request(s).", deferred);
+        if (deferred > 0 && !releasing) {
+            scheduleRelease();
+        }
+    }
+
+    public synchronized void stop() {
+        if (mode != PluginMode.RUNNING) {
+            return;
+        }
+        mode = PluginMode.STOPPED;
+        log.info("[INFO] Plugin stopped, MDR requests are kept until it is started again.");
+    }
+
+    public PluginMode getMode() {
+        return mode;
+    }
+
+    public int getDeferredCount() {
+        return buffer.size();
+    }
+
+    public long getDroppedCount() {
+        return buffer.getDroppedCount();
+    }
+
+    /**
+     * Sends the buffered requests at the configured rate for as long as the plugin is running.
+     */
+    private void release() {
+        long interval = TimeUnit.SECONDS.toNanos(1) / startup.getConfiguration().getDeferredRequestsReleasePerSecond();
+        long next = System.nanoTime();
+        int released = 0;
+        while (mode == PluginMode.RUNNING && !Thread.currentThread().isInterrupted()) {
+            DeferredMdrRequest request = buffer.poll();
+            if (request == null) {
+                break;
+            }
+            send(request);
+            forget(request.getSequence());
+            released++;
+            next += interval;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+        }
+        log.info("[INFO] Released {} deferred MDR request(s), {} left.", released, buffer.size());
+        compactJournal();
+        synchronized (this) {
+            // The plugin may have been stopped and started again since the loop ended.
+            if (mode == PluginMode.RUNNING && buffer.size() > 0 && !Thread.currentThread().isInterrupted()) {
+                scheduleRelease();
+            } else {
+                releasing = false;
+            }
+        }
+    }
+
+    /**
+     * Called under the lock of this bean.
+     */
+    private void scheduleRelease() {
+        releasing = true;
+        releaser = executor.submit(this::release);
+    }
+
+    /**
+     * Buffers the request, written to the journal first so that it survives a crash once the message is acknowledged.
+     */
+    private boolean defer(String fr, String request) {
+        long receivedAt = System.currentTimeMillis();
+        long sequence = journal(fr, request, receivedAt);
+        if (buffer.offer(new DeferredMdrRequest(fr, request, receivedAt, sequence))) {
+            return true;
+        }
+        forget(sequence);
+        return false;
+    }
+
+    /**
+     * @return the sequence number of the request in the journal, {@link DeferredMdrRequest#NOT_JOURNALED} when it could not be written
+     */
+    private long journal(String fr, String request, long receivedAt) {
+        OutboxJournal current = journal;
+        if (current == null) {
+            return DeferredMdrRequest.NOT_JOURNALED;
+        }
+        try {
+            return current.append(OutboxTarget.BRIDGE, request, Collections.singletonMap(FR_PROPERTY, fr), receivedAt, OutboxJournal.NO_EXPIRY);
+        } catch (IOException | IllegalStateException e) {
+            log.error("[ERROR] Could not write the deferred MDR request to the journal, it is only kept in memory.", e);
+            return DeferredMdrRequest.NOT_JOURNALED;
+        }
+    }
+
+    /**
+     * Removes a released or dropped request from the journal.
+     */
+    private void forget(long sequence) {
+        OutboxJournal current = journal;
+        if (current == null || sequence == DeferredMdrRequest.NOT_JOURNALED) {
+            return;
+        }
+        try {
+            current.acknowledge(sequence);
+        } catch (IOException | IllegalStateException e) {
+            log.warn("[WARN] Could not remove the deferred MDR request {} from the journal, it may be sent again after a restart.", sequence, e);
+        }
+    }
+
+    /**
+     * Opens the journal and buffers the requests it still holds, to be released right away.
+     */
+    private synchronized void openJournal(String configuredDirectory) {
+        Path directory = Paths.get(configuredDirectory == null ? defaultDirectory() : configuredDirectory);
+        try {
+            journal = new OutboxJournal(directory, JOURNAL_SEGMENT_SIZE, FsyncPolicy.ALWAYS);
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("[ERROR] Could not open the deferred MDR requests journal in {}, requests received while stopped are only kept in memory.", directory, e);
+            return;
+        }
+        List<OutboxEntry> entries = journal.getPending(Integer.MAX_VALUE);
+        for (OutboxEntry entry : entries) {
+            buffer.restore(new DeferredMdrRequest(entry.getProperties().get(FR_PROPERTY), entry.getPayload(), entry.getRecordedAt(), entry.getSequence()));
+        }
+        if (!entries.isEmpty()) {
+            log.info("[INFO] Releasing {} MDR request(s) deferred before the restart.", entries.size());
+            scheduleRelease();
+        }
+    }
+
+    private void compactJournal() {
+        OutboxJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.compact();
+        } catch (IOException | IllegalStateException e) {
+            log.warn("[WARN] Could not compact the deferred MDR requests journal.", e);
+        }
+    }
+
+    private static String defaultDirectory() {
+        String base = System.getProperty("jboss.server.data.dir", System.getProperty("java.io.tmpdir"));
+        return Paths.get(base, DEFAULT_SUBDIRECTORY).toString();
+    }
+
+    private void send(DeferredMdrRequest request) {
+        try {
+            requestService.send(request.getFr(), request.getRequest());
+        } catch (RuntimeException e) {
+            log.error("[ERROR] Could not send the deferred MDR request {}.", request, e);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.lifecycle;
+
+/**
+ * Lifecycle mode of the plugin, see {@link PluginLifecycle}.
+ */
+public enum PluginMode {
+
+    /**
+     * MDR requests are sent to FLUX TL as they arrive.
+     */
+    RUNNING,
+
+    /**
+     * Stopped by Exchange : MDR requests are buffered until the plugin is started again.
+     */
+    STOPPED,
+
+    /**
+     * The plugin is shutting down : the release stops, the buffered MDR requests stay in the journal and new ones are
+     * written to it, or sent when it is unavailable.
+     */
+    DRAINING
+}
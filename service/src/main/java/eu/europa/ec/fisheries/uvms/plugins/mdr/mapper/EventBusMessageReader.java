@@ -0,0 +1,78 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.mapper;
+
+import eu.europa.ec.fisheries.uvms.exchange.model.exception.ExchangeModelMarshallException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.xml.StaxReaders;
+import java.io.StringReader;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Single pass reader for the messages the plugin receives on the event bus.
+ * <p>
+ * Instead of unmarshalling every message a first time into its base request just to read the method,
+ * the {@code method} element is peeked with a StAX reader which stops right after it. The message is then
+ * unmarshalled only once, directly into its concrete type, through the {@link JaxbUnmarshallerPool}.
+ */
+public final class EventBusMessageReader {
+
+    private static final String METHOD_TAG = "method";
+
+    private EventBusMessageReader() {
+        super();
+    }
+
+    /**
+     * Reads the {@code method} child element of the root element, skipping everything else.
+     *
+     * @param xml the event bus message
+     * @return the trimmed method value, or null if the root element has no method (ex. a PluginFault)
+     * @throws ExchangeModelMarshallException if the message is not well formed up to the method element
+     */
+    public static String peekMethod(String xml) throws ExchangeModelMarshallException {
+        if (xml == null) {
+            return null;
+        }
+        XMLStreamReader reader = null;
+        try {
+            reader = StaxReaders.getInputFactory().createXMLStreamReader(new StringReader(xml));
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    if (depth == 2 && METHOD_TAG.equals(reader.getLocalName())) {
+                        return reader.getElementText().trim();
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                    if (depth == 0) {
+                        return null;
+                    }
+                }
+            }
+            return null;
+        } catch (XMLStreamException e) {
+            throw new ExchangeModelMarshallException("Could not read the method of the event bus message.", e);
+        } finally {
+            StaxReaders.close(reader);
+        }
+    }
+
+    /**
+     * Unmarshals the message into its concrete type using the shared {@link JaxbUnmarshallerPool}.
+     */
+    public static <T> T read(String xml, Class<T> type) throws ExchangeModelMarshallException {
+        return JaxbUnmarshallerPool.getSharedPool().unmarshal(xml, type);
+    }
+}
@@ -0,0 +1,115 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.mapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Streaming counterpart of {@code ExchangeModuleRequestMapper.createFluxMdrSyncEntityResponse}.
+ * <p>
+ * Writes the SetFLUXMDRSyncMessageResponse envelope around the FLUX response straight into an output stream.
+ * The payload is copied and escaped in chunks of {@link #CHUNK_SIZE} characters, so neither the escaped payload nor the
+ * marshalled envelope is ever built as a String.
+ */
+public final class FluxMdrSyncResponseWriter {
+
+    public static final String EXCHANGE_MODULE_NAMESPACE = "urn:module.exchange.schema.fisheries.ec.europa.eu:v1";
+
+    static final int CHUNK_SIZE = 8192;
+
+    private static final String PREFIX = "ns2";
+    private static final String ROOT_TAG = "SetFLUXMDRSyncMessageResponse";
+    private static final String METHOD_TAG = "method";
+    private static final String USERNAME_TAG = "username";
+    private static final String REQUEST_TAG = "request";
+    private static final String SYNC_RESPONSE_METHOD = "SET_MDR_SYNC_MESSAGE_RESPONSE";
+
+    // XMLOutputFactory implementations are not guaranteed to be thread-safe, so every thread gets its own.
+    private static final ThreadLocal<XMLOutputFactory> OUTPUT_FACTORIES = new ThreadLocal<XMLOutputFactory>() {
+        @Override
+        protected XMLOutputFactory initialValue() {
+            return XMLOutputFactory.newInstance();
+        }
+    };
+
+    // One reusable chunk per thread.
+    private static final ThreadLocal<char[]> CHUNKS = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[CHUNK_SIZE];
+        }
+    };
+
+    private FluxMdrSyncResponseWriter() {
+        super();
+    }
+
+    /**
+     * Writes the envelope, in UTF-8, around a payload already held in memory.
+     * The output stream is flushed but not closed.
+     */
+    public static void write(String payload, String username, OutputStream out) throws XMLStreamException {
+        XMLStreamWriter writer = startEnvelope(username, out);
+        char[] chunk = CHUNKS.get();
+        int length = payload.length();
+        for (int start = 0; start < length; start += CHUNK_SIZE) {
+            int end = Math.min(length, start + CHUNK_SIZE);
+            payload.getChars(start, end, chunk, 0);
+            writer.writeCharacters(chunk, 0, end - start);
+        }
+        endEnvelope(writer);
+    }
+
+    /**
+     * Writes the envelope, in UTF-8, around a payload read from the given reader.
+     * Neither the reader nor the output stream is closed.
+     */
+    public static void write(Reader payload, String username, OutputStream out) throws XMLStreamException, IOException {
+        XMLStreamWriter writer = startEnvelope(username, out);
+        char[] chunk = CHUNKS.get();
+        int read;
+        while ((read = payload.read(chunk)) != -1) {
+            writer.writeCharacters(chunk, 0, read);
+        }
+        endEnvelope(writer);
+    }
+
+    private static XMLStreamWriter startEnvelope(String username, OutputStream out) throws XMLStreamException {
+        XMLStreamWriter writer = OUTPUT_FACTORIES.get().createXMLStreamWriter(out, StandardCharsets.UTF_8.name());
+        writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+        writer.writeStartElement(PREFIX, ROOT_TAG, EXCHANGE_MODULE_NAMESPACE);
+        writer.writeNamespace(PREFIX, EXCHANGE_MODULE_NAMESPACE);
+        writeElement(writer, METHOD_TAG, SYNC_RESPONSE_METHOD);
+        writeElement(writer, USERNAME_TAG, username);
+        writer.writeStartElement(REQUEST_TAG);
+        return writer;
+    }
+
+    private static void endEnvelope(XMLStreamWriter writer) throws XMLStreamException {
+        writer.writeEndElement();
+        writer.writeEndElement();
+        writer.writeEndDocument();
+        // Closing the stream writer releases its resources but leaves the underlying output stream open.
+        writer.close();
+    }
+
+    private static void writeElement(XMLStreamWriter writer, String name, String value) throws XMLStreamException {
+        writer.writeStartElement(name);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+    }
+}
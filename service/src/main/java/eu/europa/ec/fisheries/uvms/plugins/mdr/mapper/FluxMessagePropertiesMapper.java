@@ -0,0 +1,92 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.mapper;
+
+import static eu.europa.ec.fisheries.uvms.plugins.mdr.constants.FluxConnectionConstants.*;
+
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Builds the FLUX envelope properties set on every MDR query forwarded to the bridge.
+ * <p>
+ * The constant headers are held in an immutable template, only BUSINESS_UUID, TODT and FR are filled in per request.
+ */
+public class FluxMessagePropertiesMapper {
+
+    /**
+     * Same lexical form as the former {@code XMLGregorianCalendar.toString()} : milliseconds and the offset of the default
+     * time zone, {@code Z} for UTC. {@link DateTimeFormatter} is immutable and thread-safe.
+     */
+    private static final DateTimeFormatter TODT_FORMATTER = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSXXX").withZone(ZoneId.systemDefault());
+
+    private static final Map<String, String> ENVELOPE_TEMPLATE;
+
+    /**
+     * Large enough for the template and the per-request properties without rehashing.
+     */
+    private static final int ENVELOPE_CAPACITY = 16;
+
+    static {
+        Map<String, String> template = new HashMap<>();
+        template.put(CONNECTOR_ID, CONNECTOR_ID_VAL);
+        template.put(FLUX_ENV_AD, FLUX_ENV_AD_VAL);
+        template.put(FLUX_ENV_TO, FLUX_ENV_TO_VAL);
+        template.put(FLUX_ENV_DF, FLUX_ENV_DF_VAL);
+        template.put(FLUX_ENV_AR, FLUX_ENV_AR_VAL);
+        ENVELOPE_TEMPLATE = Collections.unmodifiableMap(template);
+    }
+
+    private FluxMessagePropertiesMapper() {
+    }
+
+    public static Map<String, String> createMessagePropertiesMap(final String fr, final String businessUuid, final Date deadline) {
+        Map<String, String> properties = new HashMap<>(ENVELOPE_CAPACITY);
+        properties.putAll(ENVELOPE_TEMPLATE);
+        properties.put(BUSINESS_UUID, businessUuid);
+        properties.put(FLUX_ENV_TODT, createStringDate(deadline));
+        properties.put(FLUX_ENV_FR, fr);
+        return properties;
+    }
+
+    /**
+     * @return the constant FLUX headers, unmodifiable
+     */
+    public static Map<String, String> getEnvelopeTemplate() {
+        return ENVELOPE_TEMPLATE;
+    }
+
+    /**
+     * @return the TODT value for the deadline, null when there is no deadline
+     */
+    public static String createStringDate(Date deadline) {
+        return deadline == null ? null : TODT_FORMATTER.format(deadline.toInstant());
+    }
+
+    /**
+     * A random (version 4) UUID drawn from {@link ThreadLocalRandom} : the value only correlates the response with the
+     * request, it does not have to be unpredictable, and unlike {@link UUID#randomUUID()} it never contends on the shared SecureRandom.
+     *
+     * @return randomUUID
+     */
+    public static String createBusinessUUID() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSigBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSigBits = (random.nextLong() & ~(0xC000000000000000L)) | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits).toString();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.mapper;
+
+import eu.europa.ec.fisheries.uvms.exchange.model.exception.ExchangeModelMarshallException;
+import java.io.StringReader;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
+
+/**
+ * Caches one {@link JAXBContext} per bound class and keeps a bounded pool of idle {@link Unmarshaller}s for each of them.
+ * <p>
+ * Creating a JAXBContext is by far the most expensive part of unmarshalling a small event bus message,
+ * so it is done only once per class. The context itself is thread-safe, unmarshallers are not :
+ * they are borrowed for a single call and handed back afterwards.
+ */
+public final class JaxbUnmarshallerPool {
+
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private static final JaxbUnmarshallerPool SHARED_POOL = new JaxbUnmarshallerPool(DEFAULT_CAPACITY);
+
+    private final int capacity;
+    private final ConcurrentMap<Class<?>, BoundClass> boundClasses = new ConcurrentHashMap<>();
+
+    public JaxbUnmarshallerPool(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The unmarshaller pool capacity must be at least 1!");
+        }
+        this.capacity = capacity;
+    }
+
+    public static JaxbUnmarshallerPool getSharedPool() {
+        return SHARED_POOL;
+    }
+
+    /**
+     * Unmarshals the document directly into the given type, whatever its root element is.
+     *
+     * @param xml the document
+     * @param type the expected type
+     * @return the unmarshalled object
+     * @throws ExchangeModelMarshallException when the context cannot be created or the document cannot be bound to the type
+     */
+    public <T> T unmarshal(String xml, Class<T> type) throws ExchangeModelMarshallException {
+        BoundClass boundClass = getBoundClass(type);
+        Unmarshaller unmarshaller = boundClass.borrow();
+        try {
+            return unmarshaller.unmarshal(new StreamSource(new StringReader(xml)), type).getValue();
+        } catch (JAXBException e) {
+            throw new ExchangeModelMarshallException("Error when unmarshalling the message into " + type.getSimpleName(), e);
+        } finally {
+            boundClass.release(unmarshaller);
+        }
+    }
+
+    int getIdleCount(Class<?> type) {
+        BoundClass boundClass = boundClasses.get(type);
+        return boundClass == null ? 0 : boundClass.idleUnmarshallers.size();
+    }
+
+    private BoundClass getBoundClass(Class<?> type) throws ExchangeModelMarshallException {
+        BoundClass boundClass = boundClasses.get(type);
+        if (boundClass != null) {
+            return boundClass;
+        }
+        try {
+            boundClass = new BoundClass(JAXBContext.newInstance(type), capacity);
+        } catch (JAXBException e) {
+            throw new ExchangeModelMarshallException("Could not create the JAXB context for " + type.getSimpleName(), e);
+        }
+        BoundClass existing = boundClasses.putIfAbsent(type, boundClass);
+        return existing != null ? existing : boundClass;
+    }
+
+    private static final class BoundClass {
+
+        private final JAXBContext context;
+        private final BlockingQueue<Unmarshaller> idleUnmarshallers;
+
+        private BoundClass(JAXBContext context, int capacity) {
+            this.context = context;
+            this.idleUnmarshallers = new ArrayBlockingQueue<>(capacity);
+        }
+
+        private Unmarshaller borrow() throws ExchangeModelMarshallException {
+            Unmarshaller unmarshaller = idleUnmarshallers.poll();
+            if (unmarshaller != null) {
+                return unmarshaller;
+            }
+            try {
+                return context.createUnmarshaller();
+            } catch (JAXBException e) {
+                throw new ExchangeModelMarshallException("Could not create an unmarshaller", e);
+            }
+        }
+
+        private void release(Unmarshaller unmarshaller) {
+            // Unmarshallers keep no state between calls as long as no listener, schema or event handler is set on them.
+            idleUnmarshallers.offer(unmarshaller);
+        }
+    }
+}
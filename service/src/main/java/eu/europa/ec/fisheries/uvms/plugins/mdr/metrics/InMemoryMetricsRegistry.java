@@ -0,0 +1,91 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Default {@link MetricsRegistry}, keeping {@link LongAdder} counters and {@link Histogram}s in memory. Gauges are read
+ * when the metrics are.
+ */
+public class InMemoryMetricsRegistry implements MetricsRegistry {
+
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Supplier<? extends Map<String, ? extends Number>>> gaugeGroups = new ConcurrentHashMap<>();
+
+    @Override
+    public void increment(String name) {
+        LongAdder counter = counters.get(name);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(name, key -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    @Override
+    public void record(String name, long value) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(name, key -> new Histogram());
+        }
+        histogram.record(value);
+    }
+
+    @Override
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    @Override
+    public void gauges(String prefix, Supplier<? extends Map<String, ? extends Number>> values) {
+        gaugeGroups.put(prefix, values);
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            snapshot.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        for (Map.Entry<String, Supplier<? extends Map<String, ? extends Number>>> group : gaugeGroups.entrySet()) {
+            for (Map.Entry<String, ? extends Number> gauge : group.getValue().get().entrySet()) {
+                snapshot.put(group.getKey() + "." + gauge.getKey(), gauge.getValue().longValue());
+            }
+        }
+        return snapshot;
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> snapshot = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> counter : counters.entrySet()) {
+            snapshot.put(counter.getKey(), counter.getValue().sum());
+        }
+        return snapshot;
+    }
+
+    @Override
+    public Map<String, HistogramSnapshot> getHistograms() {
+        Map<String, HistogramSnapshot> snapshot = new TreeMap<>();
+        for (Map.Entry<String, Histogram> histogram : histograms.entrySet()) {
+            snapshot.put(histogram.getKey(), histogram.getValue().snapshot());
+        }
+        return snapshot;
+    }
+}
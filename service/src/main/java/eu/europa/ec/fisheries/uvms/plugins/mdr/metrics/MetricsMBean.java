@@ -0,0 +1,103 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Read-only JMX view over a {@link MetricsRegistry}.
+ * <p>
+ * Every counter and gauge is exposed as a Long attribute, every histogram as one attribute per statistic
+ * ({@code <name>.count}, {@code .mean}, {@code .p50}, {@code .p90}, {@code .p99} and {@code .max}).
+ * The attribute list follows the metrics recorded so far.
+ */
+public class MetricsMBean implements DynamicMBean {
+
+    private final MetricsRegistry registry;
+
+    public MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Object value = readAttributes().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        Map<String, Object> values = readAttributes();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            if (values.containsKey(attribute)) {
+                list.add(new Attribute(attribute, values.get(attribute)));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("The plugin metrics are read-only.");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (Map.Entry<String, Object> value : readAttributes().entrySet()) {
+            attributes.add(new MBeanAttributeInfo(value.getKey(), value.getValue().getClass().getName(), value.getKey(), true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "MDR plugin metrics", attributes.toArray(new MBeanAttributeInfo[0]),
+                null, new MBeanOperationInfo[0], null);
+    }
+
+    private Map<String, Object> readAttributes() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.putAll(registry.getCounters());
+        values.putAll(registry.getGauges());
+        for (Map.Entry<String, HistogramSnapshot> histogram : registry.getHistograms().entrySet()) {
+            String name = histogram.getKey();
+            HistogramSnapshot snapshot = histogram.getValue();
+            values.put(name + ".count", snapshot.getCount());
+            values.put(name + ".mean", snapshot.getMean());
+            values.put(name + ".p50", snapshot.getP50());
+            values.put(name + ".p90", snapshot.getP90());
+            values.put(name + ".p99", snapshot.getP99());
+            values.put(name + ".max", snapshot.getMax());
+        }
+        return values;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Destination of the plugin metrics.
+ * <p>
+ * The {@link InMemoryMetricsRegistry} is used by default. Another implementation, for instance a bridge to the metrics
+ * library of the application server, can be plugged in by listing it in
+ * {@code META-INF/services/eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.MetricsRegistry}.
+ * Implementations are called on the message hot paths and must be thread-safe and cheap.
+ */
+public interface MetricsRegistry {
+
+    void increment(String name);
+
+    /**
+     * Records one value (a size, a duration...) in the histogram of the given name.
+     */
+    void record(String name, long value);
+
+    /**
+     * Registers a value read when the metrics are, a queue depth for instance. Ignored by default.
+     */
+    default void gauge(String name, LongSupplier value) {
+    }
+
+    /**
+     * Registers a group of values read when the metrics are, each reported as {@code <prefix>.<key>}. Ignored by default.
+     */
+    default void gauges(String prefix, Supplier<? extends Map<String, ? extends Number>> values) {
+    }
+
+    /**
+     * @return the current gauge values, empty if the registry does not keep them
+     */
+    default Map<String, Long> getGauges() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * @return the current counter values, empty if the registry does not keep them
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * @return the current histogram summaries, empty if the registry does not keep them
+     */
+    Map<String, HistogramSnapshot> getHistograms();
+}
@@ -0,0 +1,156 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Entry point of the plugin instrumentation.
+ * <p>
+ * Message counts and payload sizes per listener, stage latencies, errors per listener and exception class,
+ * the query to response round trip, the response cache hits, the dropped duplicate responses and the outbox replays all go to one {@link MetricsRegistry}, exposed over JMX as {@value #OBJECT_NAME}.
+ * The beans holding queues register their depths as gauges at startup.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@Slf4j
+public class PluginMetrics {
+
+    public static final String OBJECT_NAME = "eu.europa.ec.fisheries.uvms.plugins.mdr:type=Metrics";
+
+    private static final String ROUND_TRIP = "roundTrip.ms";
+    private static final String CACHE_HITS = "responseCache.hits";
+    private static final String CACHE_MISSES = "responseCache.misses";
+    private static final String DUPLICATES_DROPPED = "inboundDedup.duplicates";
+    private static final String OUTBOX_REPLAYED = "outbox.replayed";
+    private static final String OUTBOX_REPLAY_FAILURES = "outbox.replayFailures";
+
+    private MetricsRegistry registry = new InMemoryMetricsRegistry();
+
+    @PostConstruct
+    public void init() {
+        Iterator<MetricsRegistry> plugged = ServiceLoader.load(MetricsRegistry.class).iterator();
+        if (plugged.hasNext()) {
+            registry = plugged.next();
+            log.info("[INFO] Plugin metrics are recorded in {}.", registry.getClass().getName());
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(new MetricsMBean(registry), name);
+        } catch (JMException e) {
+            log.warn("[WARN] Could not expose the plugin metrics over JMX.", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            log.warn("[WARN] Could not unregister the plugin metrics MBean.", e);
+        }
+    }
+
+    /**
+     * Counts a message received by the given listener and records its size in characters.
+     */
+    public void messageReceived(Listener listener, long payloadSize) {
+        registry.increment(listener.getMessagesMetric());
+        registry.record(listener.getPayloadSizeMetric(), payloadSize);
+    }
+
+    /**
+     * @param startNanos the {@link System#nanoTime()} taken when the stage started
+     */
+    public void recordLatency(Stage stage, long startNanos) {
+        registry.record(stage.getMetricName(), TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+    }
+
+    public void error(Listener listener, Throwable error) {
+        registry.increment(listener.getErrorsPrefix() + error.getClass().getSimpleName());
+    }
+
+    public void roundTrip(long millis) {
+        registry.record(ROUND_TRIP, millis);
+    }
+
+    /**
+     * Counts a response cache lookup, stale entries count as misses.
+     */
+    public void cacheLookup(boolean hit) {
+        registry.increment(hit ? CACHE_HITS : CACHE_MISSES);
+    }
+
+    /**
+     * Counts a FLUX response dropped as a duplicate of one received earlier.
+     */
+    public void duplicateDropped() {
+        registry.increment(DUPLICATES_DROPPED);
+    }
+
+    /**
+     * Counts a message sent again from the outbox, or a failed attempt.
+     */
+    public void outboxReplay(boolean delivered) {
+        registry.increment(delivered ? OUTBOX_REPLAYED : OUTBOX_REPLAY_FAILURES);
+    }
+
+    /**
+     * Registers a value read when the metrics are.
+     */
+    public void gauge(String name, LongSupplier value) {
+        registry.gauge(name, value);
+    }
+
+    /**
+     * Registers a group of values read when the metrics are, each reported as {@code <prefix>.<key>}.
+     */
+    public void gauges(String prefix, Supplier<? extends Map<String, ? extends Number>> values) {
+        registry.gauges(prefix, values);
+    }
+
+    public Map<String, Long> getGauges() {
+        return registry.getGauges();
+    }
+
+    public Map<String, Long> getCounters() {
+        return registry.getCounters();
+    }
+
+    public Map<String, HistogramSnapshot> getHistograms() {
+        return registry.getHistograms();
+    }
+}
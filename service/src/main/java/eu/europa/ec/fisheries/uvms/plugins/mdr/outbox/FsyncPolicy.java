@@ -0,0 +1,32 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.outbox;
+
+/**
+ * When the {@link OutboxJournal} forces its writes to disk.
+ */
+public enum FsyncPolicy {
+
+    /**
+     * After every record : no message is lost on a power failure, at the cost of a disk flush per message.
+     */
+    ALWAYS,
+
+    /**
+     * On every replay round of the {@link ReliableOutbox} : a power failure loses at most the last few seconds of messages.
+     */
+    INTERVAL,
+
+    /**
+     * Left to the operating system : only a crash of the server process is survived.
+     */
+    NEVER
+}
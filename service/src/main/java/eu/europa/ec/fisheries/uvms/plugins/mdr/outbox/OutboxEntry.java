@@ -0,0 +1,74 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.outbox;
+
+import java.util.Map;
+
+/**
+ * A message recorded in the {@link OutboxJournal} and not acknowledged yet.
+ */
+public final class OutboxEntry {
+
+    private final long sequence;
+    private final OutboxTarget target;
+    private final String payload;
+    private final Map<String, String> properties;
+    private final long recordedAt;
+    private final long expiresAt;
+
+    OutboxEntry(long sequence, OutboxTarget target, String payload, Map<String, String> properties, long recordedAt, long expiresAt) {
+        this.sequence = sequence;
+        this.target = target;
+        this.payload = payload;
+        this.properties = properties;
+        this.recordedAt = recordedAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public boolean isExpired(long now) {
+        return now > expiresAt;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public OutboxTarget getTarget() {
+        return target;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    /**
+     * @return the JMS string properties of the message, empty if there are none
+     */
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    public long getRecordedAt() {
+        return recordedAt;
+    }
+
+    /**
+     * @return the time after which the message is not worth sending any more, {@link OutboxJournal#NO_EXPIRY} if there is none
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return target + "#" + sequence;
+    }
+}
@@ -0,0 +1,542 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.outbox;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.LongPredicate;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of outbound messages in memory-mapped segment files, read back when it is opened again.
+ * <p>
+ * A message is appended before it is sent and an acknowledgement record is appended once it was sent, both to the active
+ * segment. A new segment is started when the active one is full, sized to fit when a single message is bigger than a segment.
+ * Segments are only deleted oldest first, once none of their messages is pending any more : an acknowledgement is always
+ * written after its message, so it can never be deleted while the message it acknowledges is still on disk.
+ * {@link #compact()} copies the few pending messages left in the oldest segments forward into the active one, so a message
+ * stuck for long does not hold back the deletion of all the segments written after it.
+ * <p>
+ * Every record carries a CRC32 and its magic number is written last, so a record torn by a crash ends the recovery of its
+ * segment. Records are forced to disk according to the {@link FsyncPolicy}, {@link FsyncPolicy#INTERVAL} relying on {@link #sync()}.
+ * <p>
+ * Instances are thread-safe. The payloads of pending messages are decoded outside of the lock : records are never overwritten
+ * and the mappings of deleted segments stay readable until they are garbage collected.
+ */
+public class OutboxJournal implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OutboxJournal.class);
+
+    public static final int MIN_SEGMENT_SIZE = 64 * 1024;
+
+    public static final long NO_EXPIRY = Long.MAX_VALUE;
+
+    static final int RECORD_MAGIC = 0x4D44524A;
+
+    /**
+     * Magic number, body length and CRC32 of the body.
+     */
+    private static final int RECORD_HEADER = 12;
+
+    private static final byte APPEND = 1;
+    private static final byte ACKNOWLEDGE = 2;
+
+    /**
+     * Type, sequence, recording time, expiry, target and property count.
+     */
+    private static final int APPEND_METADATA = 1 + 8 + 8 + 8 + 1 + 4;
+    private static final int ACKNOWLEDGE_LENGTH = 1 + 8;
+
+    /**
+     * The oldest segment is compacted when its pending messages take less than a quarter of it.
+     */
+    private static final int COMPACTION_DIVISOR = 4;
+
+    private static final int NULL_STRING = -1;
+
+    private static final OutboxTarget[] TARGETS = OutboxTarget.values();
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".mdro";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final FsyncPolicy fsyncPolicy;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();
+    private final NavigableMap<Long, Slot> pending = new TreeMap<>();
+
+    private long nextSequence;
+    private long nextSegmentId;
+    private boolean closed;
+
+    /**
+     * Opens the journal, reading back the messages still pending in the segments already in the directory.
+     *
+     * @param directory the directory holding the segment files, created if missing
+     * @param segmentSize the size in bytes of a segment file
+     * @throws IOException when the directory or a segment cannot be opened
+     */
+    public OutboxJournal(Path directory, int segmentSize, FsyncPolicy fsyncPolicy) throws IOException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("An outbox journal segment must be at least " + MIN_SEGMENT_SIZE + " bytes!");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        Files.createDirectories(directory);
+        recover();
+    }
+
+    /**
+     * Records a message about to be sent.
+     *
+     * @param properties the JMS string properties of the message, may be null
+     * @param expiresAt the time after which the message is not worth sending any more, or {@link #NO_EXPIRY}
+     * @return the sequence number to acknowledge the message with
+     * @throws IOException when a new segment cannot be created
+     */
+    public synchronized long append(OutboxTarget target, String payload, Map<String, String> properties, long recordedAt, long expiresAt) throws IOException {
+        checkOpen();
+        long sequence = nextSequence;
+        Map<String, String> copy = properties == null ? Collections.<String, String>emptyMap() : new LinkedHashMap<>(properties);
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = APPEND_METADATA + 4 + payloadBytes.length;
+        for (Map.Entry<String, String> property : copy.entrySet()) {
+            bodyLength += stringLength(property.getKey()) + stringLength(property.getValue());
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + bodyLength);
+        record.position(RECORD_HEADER);
+        record.put(APPEND).putLong(sequence).putLong(recordedAt).putLong(expiresAt).put((byte) target.ordinal()).putInt(copy.size());
+        for (Map.Entry<String, String> property : copy.entrySet()) {
+            putString(record, property.getKey());
+            putString(record, property.getValue());
+        }
+        record.putInt(payloadBytes.length).put(payloadBytes);
+        Segment segment = write(seal(record, bodyLength));
+        int offset = segment.writePosition - record.capacity();
+        Slot slot = new Slot(sequence, target, Collections.unmodifiableMap(copy), recordedAt, expiresAt,
+                segment, offset, record.capacity(), record.capacity() - payloadBytes.length, payloadBytes.length);
+        nextSequence++;
+        pending.put(sequence, slot);
+        segment.retain(slot);
+        return sequence;
+    }
+
+    /**
+     * Records that the message was sent. Unknown or already acknowledged sequence numbers are ignored.
+     *
+     * @throws IOException when a new segment cannot be created
+     */
+    public synchronized void acknowledge(long sequence) throws IOException {
+        checkOpen();
+        if (!pending.containsKey(sequence)) {
+            return;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + ACKNOWLEDGE_LENGTH);
+        record.position(RECORD_HEADER);
+        record.put(ACKNOWLEDGE).putLong(sequence);
+        write(seal(record, ACKNOWLEDGE_LENGTH));
+        Slot slot = pending.remove(sequence);
+        slot.segment.release(slot);
+        deleteAcknowledgedSegments();
+    }
+
+    /**
+     * @param limit the number of messages returned at most
+     * @return the pending messages, oldest first
+     */
+    public List<OutboxEntry> getPending(int limit) {
+        return getPending(limit, sequence -> true);
+    }
+
+    /**
+     * @param limit the number of messages returned at most
+     * @param filter accepts the sequence numbers of the messages to return
+     * @return the pending messages accepted by the filter, oldest first
+     */
+    public List<OutboxEntry> getPending(int limit, LongPredicate filter) {
+        List<Slot> slots = new ArrayList<>(Math.min(limit, 256));
+        synchronized (this) {
+            checkOpen();
+            for (Slot slot : pending.values()) {
+                if (slots.size() == limit) {
+                    break;
+                }
+                if (filter.test(slot.sequence)) {
+                    slots.add(slot);
+                }
+            }
+        }
+        List<OutboxEntry> entries = new ArrayList<>(slots.size());
+        for (Slot slot : slots) {
+            entries.add(slot.toEntry());
+        }
+        return entries;
+    }
+
+    /**
+     * Copies the messages still pending in the oldest segments forward when they only fill a small part of them,
+     * then deletes these segments.
+     *
+     * @return the number of segments deleted
+     * @throws IOException when a new segment cannot be created
+     */
+    public synchronized int compact() throws IOException {
+        checkOpen();
+        int deleted = deleteAcknowledgedSegments();
+        // Only the segments sealed before the compaction started, the messages copied forward are not moved twice.
+        int sealed = segments.size() - 1;
+        for (int i = 0; i < sealed && segments.size() > 1; i++) {
+            Segment oldest = segments.peekFirst();
+            if (oldest.liveBytes * COMPACTION_DIVISOR > oldest.buffer.capacity()) {
+                break;
+            }
+            for (Map.Entry<Long, Slot> entry : pending.entrySet()) {
+                if (entry.getValue().segment == oldest) {
+                    entry.setValue(moveForward(entry.getValue()));
+                }
+            }
+            deleted += deleteAcknowledgedSegments();
+        }
+        if (deleted > 0) {
+            LOG.debug("Outbox journal compacted, {} segments deleted.", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Forces the segments to disk.
+     */
+    public synchronized void sync() {
+        checkOpen();
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Flushes the segments to disk. The journal cannot be used afterwards.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+        segments.clear();
+        pending.clear();
+    }
+
+    private Slot moveForward(Slot slot) throws IOException {
+        ByteBuffer record = slot.segment.buffer.duplicate();
+        record.limit(slot.offset + slot.length).position(slot.offset);
+        Segment segment = write(record.slice());
+        Slot moved = slot.moveTo(segment, segment.writePosition - slot.length);
+        slot.segment.release(slot);
+        segment.retain(moved);
+        return moved;
+    }
+
+    /**
+     * Writes the record to the active segment, rolling to a new segment if it does not fit.
+     */
+    private Segment write(ByteBuffer record) throws IOException {
+        Segment segment = segments.peekLast();
+        if (segment == null || !segment.write(record)) {
+            segment = roll(record.remaining());
+            segment.write(record);
+        }
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            segment.buffer.force();
+        }
+        return segment;
+    }
+
+    private Segment roll(int recordLength) throws IOException {
+        Segment segment = Segment.open(directory.resolve(SEGMENT_PREFIX + nextSegmentId + SEGMENT_SUFFIX), nextSegmentId,
+                Math.max(segmentSize, recordLength));
+        nextSegmentId++;
+        segments.addLast(segment);
+        return segment;
+    }
+
+    /**
+     * @return the number of segments deleted
+     */
+    private int deleteAcknowledgedSegments() {
+        int deleted = 0;
+        while (segments.size() > 1 && segments.peekFirst().liveEntries == 0) {
+            delete(segments.pollFirst());
+            deleted++;
+        }
+        return deleted;
+    }
+
+    private void delete(Segment segment) {
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException e) {
+            LOG.warn("Could not delete the outbox journal segment {}, it will be deleted on exit.", segment.path, e);
+            segment.path.toFile().deleteOnExit();
+        }
+    }
+
+    private void recover() throws IOException {
+        List<Segment> found = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    found.add(Segment.open(file, id, 0));
+                } catch (NumberFormatException e) {
+                    LOG.warn("Ignoring unexpected file {} in the outbox journal directory.", file);
+                }
+            }
+        }
+        Collections.sort(found, (first, second) -> Long.compare(first.id, second.id));
+        for (Segment segment : found) {
+            segments.addLast(segment);
+            nextSegmentId = segment.id + 1;
+            segment.recover(this);
+        }
+        for (Slot slot : pending.values()) {
+            slot.segment.retain(slot);
+        }
+        deleteAcknowledgedSegments();
+        LOG.info("Outbox journal opened in {} with {} pending messages in {} segments.", directory, pending.size(), segments.size());
+    }
+
+    private void recovered(Slot slot) {
+        pending.put(slot.sequence, slot);
+        nextSequence = Math.max(nextSequence, slot.sequence + 1);
+    }
+
+    private void recoveredAcknowledgement(long sequence) {
+        pending.remove(sequence);
+        nextSequence = Math.max(nextSequence, sequence + 1);
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("The outbox journal is closed!");
+        }
+    }
+
+    private static ByteBuffer seal(ByteBuffer record, int bodyLength) {
+        record.putInt(4, bodyLength);
+        record.putInt(8, crc(record, RECORD_HEADER, bodyLength));
+        record.putInt(0, RECORD_MAGIC);
+        record.clear();
+        return record;
+    }
+
+    private static int stringLength(String value) {
+        return 4 + (value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    private static void putString(ByteBuffer buffer, String value) {
+        if (value == null) {
+            buffer.putInt(NULL_STRING);
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == NULL_STRING) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer body = buffer.duplicate();
+        body.limit(offset + length).position(offset);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Location and metadata of a pending message.
+     */
+    private static final class Slot {
+
+        private final long sequence;
+        private final OutboxTarget target;
+        private final Map<String, String> properties;
+        private final long recordedAt;
+        private final long expiresAt;
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+        private final int payloadOffset;
+        private final int payloadLength;
+
+        /**
+         * @param payloadOffset the offset of the payload from the start of the record
+         */
+        private Slot(long sequence, OutboxTarget target, Map<String, String> properties, long recordedAt, long expiresAt,
+                     Segment segment, int offset, int length, int payloadOffset, int payloadLength) {
+            this.sequence = sequence;
+            this.target = target;
+            this.properties = properties;
+            this.recordedAt = recordedAt;
+            this.expiresAt = expiresAt;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.payloadOffset = payloadOffset;
+            this.payloadLength = payloadLength;
+        }
+
+        private Slot moveTo(Segment newSegment, int newOffset) {
+            return new Slot(sequence, target, properties, recordedAt, expiresAt, newSegment, newOffset, length, payloadOffset, payloadLength);
+        }
+
+        private OutboxEntry toEntry() {
+            ByteBuffer payload = segment.buffer.duplicate();
+            int start = offset + payloadOffset;
+            payload.limit(start + payloadLength).position(start);
+            return new OutboxEntry(sequence, target, StandardCharsets.UTF_8.decode(payload).toString(), properties, recordedAt, expiresAt);
+        }
+    }
+
+    /**
+     * One mapped segment file. Only accessed under the journal lock, except for reading the payload of pending messages.
+     */
+    private static final class Segment {
+
+        private final long id;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition;
+        private int liveEntries;
+        private long liveBytes;
+
+        private Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        /**
+         * @param size the size of a new segment, 0 to map an existing file with its own size
+         */
+        private static Segment open(Path path, long id, int size) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long mappedSize = size > 0 ? size : channel.size();
+                return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize));
+            }
+        }
+
+        private void retain(Slot slot) {
+            liveEntries++;
+            liveBytes += slot.length;
+        }
+
+        private void release(Slot slot) {
+            liveEntries--;
+            liveBytes -= slot.length;
+        }
+
+        /**
+         * @param record a sealed record, from its magic number to the end of its body
+         * @return false when the record does not fit in the remaining bytes
+         */
+        private boolean write(ByteBuffer record) {
+            int length = record.remaining();
+            if (writePosition + length > buffer.capacity()) {
+                return false;
+            }
+            ByteBuffer source = record.duplicate();
+            source.position(source.position() + 4);
+            ByteBuffer target = buffer.duplicate();
+            target.position(writePosition + 4);
+            target.put(source);
+            // Written last : the record only exists once it is complete.
+            target.putInt(writePosition, RECORD_MAGIC);
+            writePosition += length;
+            return true;
+        }
+
+        private void recover(OutboxJournal journal) {
+            ByteBuffer reader = buffer.duplicate();
+            int position = 0;
+            while (position + RECORD_HEADER <= buffer.capacity() && reader.getInt(position) == RECORD_MAGIC) {
+                int bodyLength = reader.getInt(position + 4);
+                int bodyOffset = position + RECORD_HEADER;
+                if (bodyLength < 1 || bodyOffset + bodyLength > buffer.capacity() || reader.getInt(position + 8) != crc(buffer, bodyOffset, bodyLength)) {
+                    LOG.warn("Outbox journal segment {} is truncated at {}, dropping the rest of it.", path, position);
+                    break;
+                }
+                reader.position(bodyOffset);
+                byte type = reader.get();
+                long sequence = reader.getLong();
+                if (type == ACKNOWLEDGE) {
+                    journal.recoveredAcknowledgement(sequence);
+                } else if (type == APPEND) {
+                    long recordedAt = reader.getLong();
+                    long expiresAt = reader.getLong();
+                    OutboxTarget target = TARGETS[reader.get()];
+                    int propertyCount = reader.getInt();
+                    Map<String, String> properties = new LinkedHashMap<>(Math.max(16, propertyCount * 2));
+                    for (int i = 0; i < propertyCount; i++) {
+                        properties.put(readString(reader), readString(reader));
+                    }
+                    int payloadLength = reader.getInt();
+                    journal.recovered(new Slot(sequence, target, Collections.unmodifiableMap(properties), recordedAt, expiresAt,
+                            this, position, RECORD_HEADER + bodyLength, reader.position() - position, payloadLength));
+                } else {
+                    LOG.warn("Unknown record type {} in outbox journal segment {} at {}, skipping it.", type, path, position);
+                }
+                position = bodyOffset + bodyLength;
+            }
+            writePosition = position;
+        }
+    }
+}
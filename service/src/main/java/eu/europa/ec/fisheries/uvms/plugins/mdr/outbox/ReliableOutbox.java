@@ -0,0 +1,314 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.outbox;
+
+import eu.europa.ec.fisheries.uvms.commons.message.api.MessageException;
+import eu.europa.ec.fisheries.uvms.exchange.model.exception.ExchangeModelMarshallException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.PluginConfiguration;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.service.ExchangePluginServiceBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.service.FluxMdrRequestServiceBean;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Reliable outbox of the messages sent to the bridge queue and to Exchange.
+ * <p>
+ * Disabled unless OUTBOX_ENABLED is true. Every outbound message is recorded in an {@link OutboxJournal} under OUTBOX_DIRECTORY
+ * (by default in the server data directory) before it is sent, and acknowledged once the send succeeded.
+ * <p>
+ * A message recorded with {@link #record(OutboxTarget, String, Map, long)} is in flight : it is waiting in the rate limiter or
+ * batcher or being sent, and the replay leaves it alone until the sender acknowledges it or reports with {@link #sendFailed(long)}
+ * that it could not be sent. A timer sends again the messages whose send failed, those recorded with
+ * {@link #defer(OutboxTarget, String, Map, long)} to be sent by the outbox only, and the messages found in the journal when it is
+ * opened, which were not acknowledged before a restart. The timer backs off per destination after a failure, from
+ * OUTBOX_RETRY_INITIAL_SECONDS doubling up to OUTBOX_RETRY_MAX_SECONDS, and resumes at full speed as soon as a send succeeds.
+ * Queries to FLUX whose TODT passed are dropped instead, the others are registered for correlation again when they are sent.
+ * <p>
+ * The journal is forced to disk according to OUTBOX_FSYNC (ALWAYS, INTERVAL or NEVER) and compacted on every timer round.
+ * All settings are read again on SET_CONFIG, the directory and segment size only apply when the outbox is enabled again.
+ */
+@Singleton
+@Startup
+@DependsOn({"StartupBean", "PluginMetrics"})
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@Slf4j
+public class ReliableOutbox {
+
+    /**
+     * Sequence number returned when a message could not be recorded, acknowledging it does nothing.
+     */
+    public static final long NOT_RECORDED = -1;
+
+    private static final int REPLAY_BATCH_SIZE = 500;
+    private static final String DEFAULT_SUBDIRECTORY = "flux-mdr-plugin/outbox";
+
+    @EJB
+    private StartupBean startup;
+
+    @EJB
+    private PluginMetrics metrics;
+
+    @EJB
+    private ExchangePluginServiceBean exchangeService;
+
+    @EJB
+    private FluxMdrRequestServiceBean requestService;
+
+    private volatile OutboxJournal journal;
+    private volatile FsyncPolicy fsyncPolicy = FsyncPolicy.INTERVAL;
+    private volatile long initialBackoffMillis;
+    private volatile long maxBackoffMillis;
+
+    /**
+     * Only used by the replay, under the lock of this bean.
+     */
+    private final Map<OutboxTarget, Backoff> backoffs = new EnumMap<>(OutboxTarget.class);
+
+    /**
+     * Sequence numbers of the messages in flight. Recording a message and marking it in flight, or taking the messages to
+     * replay, happen under the dispatch lock so the replay never sees a message in between.
+     */
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final Object dispatchLock = new Object();
+
+    @PostConstruct
+    public void init() {
+        for (OutboxTarget target : OutboxTarget.values()) {
+            backoffs.put(target, new Backoff());
+        }
+        reloadSettings();
+        startup.addSettingsListener(this::reloadSettings);
+        metrics.gauge("outbox.pending", this::getPendingCount);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        closeJournal();
+    }
+
+    /**
+     * Applies the OUTBOX_* settings, opening or closing the journal when the outbox is switched on or off.
+     */
+    public synchronized void reloadSettings() {
+        PluginConfiguration configuration = startup.getConfiguration();
+        initialBackoffMillis = TimeUnit.SECONDS.toMillis(configuration.getOutboxRetryInitialSeconds());
+        maxBackoffMillis = TimeUnit.SECONDS.toMillis(configuration.getOutboxRetryMaxSeconds());
+        fsyncPolicy = configuration.getOutboxFsync();
+        boolean enabled = configuration.isOutboxEnabled();
+        if (enabled && journal == null) {
+            String configuredDirectory = configuration.getOutboxDirectory();
+            Path directory = Paths.get(configuredDirectory == null ? defaultDirectory() : configuredDirectory);
+            try {
+                inFlight.clear();
+                journal = new OutboxJournal(directory, configuration.getOutboxSegmentSize(), fsyncPolicy);
+                log.info("[INFO] Outbound messages are recorded in the outbox journal {} (fsync {}).", directory, fsyncPolicy);
+            } catch (IOException | IllegalArgumentException e) {
+                log.error("[ERROR] Could not open the outbox journal in {}, outbound messages will not be sent again on failure.", directory, e);
+            }
+        } else if (!enabled && journal != null) {
+            closeJournal();
+            log.info("[INFO] Outbox disabled, the pending messages stay in the journal until it is enabled again.");
+        }
+    }
+
+    public boolean isEnabled() {
+        return journal != null;
+    }
+
+    /**
+     * Records a message about to be sent, in flight until it is acknowledged or reported with {@link #sendFailed(long)}.
+     *
+     * @param properties the JMS string properties of the message, may be null
+     * @param expiresAt the time after which the message is not worth sending any more, or {@link OutboxJournal#NO_EXPIRY}
+     * @return the sequence number to acknowledge the message with, {@link #NOT_RECORDED} when the outbox is off or failed
+     */
+    public long record(OutboxTarget target, String payload, Map<String, String> properties, long expiresAt) {
+        return append(target, payload, properties, expiresAt, true);
+    }
+
+    /**
+     * Records a message for the replay to send.
+     *
+     * @return the sequence number of the message, {@link #NOT_RECORDED} when the outbox is off or failed
+     */
+    public long defer(OutboxTarget target, String payload, Map<String, String> properties, long expiresAt) {
+        return append(target, payload, properties, expiresAt, false);
+    }
+
+    /**
+     * Records that the message was sent.
+     */
+    public void acknowledge(long sequence) {
+        OutboxJournal current = journal;
+        if (current == null || sequence == NOT_RECORDED) {
+            return;
+        }
+        try {
+            current.acknowledge(sequence);
+        } catch (IOException | IllegalStateException e) {
+            log.warn("[WARN] Could not acknowledge message {} in the outbox, it may be sent again.", sequence, e);
+        } finally {
+            inFlight.remove(sequence);
+        }
+    }
+
+    /**
+     * Hands a message which could not be sent over to the replay.
+     */
+    public void sendFailed(long sequence) {
+        inFlight.remove(sequence);
+    }
+
+    public int getPendingCount() {
+        OutboxJournal current = journal;
+        return current == null ? 0 : current.getPendingCount();
+    }
+
+    @Schedule(second = "*/5", minute = "*", hour = "*", persistent = false)
+    public void replayPending() {
+        replayPending(System.currentTimeMillis());
+    }
+
+    public synchronized void replayPending(long now) {
+        OutboxJournal current = journal;
+        if (current == null) {
+            return;
+        }
+        try {
+            List<OutboxEntry> entries;
+            synchronized (dispatchLock) {
+                entries = current.getPending(REPLAY_BATCH_SIZE, sequence -> !inFlight.contains(sequence));
+            }
+            for (OutboxEntry entry : entries) {
+                if (entry.isExpired(now)) {
+                    log.warn("[WARN] Outbox message {} expired before it could be sent, dropping it.", entry);
+                    current.acknowledge(entry.getSequence());
+                    continue;
+                }
+                Backoff backoff = backoffs.get(entry.getTarget());
+                if (now < backoff.nextAttemptAt) {
+                    continue;
+                }
+                if (resend(entry)) {
+                    current.acknowledge(entry.getSequence());
+                    backoff.reset();
+                    metrics.outboxReplay(true);
+                } else {
+                    backoff.failed(now, initialBackoffMillis, maxBackoffMillis);
+                    metrics.outboxReplay(false);
+                    log.warn("[WARN] Could not send outbox message {} again, next attempt for {} in {} ms.", entry, entry.getTarget(), backoff.delay);
+                }
+            }
+            current.compact();
+            if (fsyncPolicy == FsyncPolicy.INTERVAL) {
+                current.sync();
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.warn("[WARN] Outbox replay interrupted.", e);
+        }
+    }
+
+    /**
+     * @return true when the message is done with, sent or impossible to send
+     */
+    private boolean resend(OutboxEntry entry) {
+        try {
+            switch (entry.getTarget()) {
+                case BRIDGE:
+                    requestService.resend(entry.getPayload(), entry.getProperties(), entry.getExpiresAt());
+                    break;
+                case EXCHANGE:
+                    exchangeService.deliverFLUXMDRResponseMessageToExchange(entry.getPayload(), entry.getProperties());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown outbox target " + entry.getTarget());
+            }
+            log.info("[INFO] Outbox message {} sent again.", entry);
+            return true;
+        } catch (MessageException e) {
+            log.debug("Sending outbox message {} failed.", entry, e);
+            return false;
+        } catch (ExchangeModelMarshallException e) {
+            log.error("[ERROR] Outbox message {} cannot be mapped, dropping it.", entry, e);
+            return true;
+        }
+    }
+
+    private long append(OutboxTarget target, String payload, Map<String, String> properties, long expiresAt, boolean dispatched) {
+        OutboxJournal current = journal;
+        if (current == null) {
+            return NOT_RECORDED;
+        }
+        try {
+            synchronized (dispatchLock) {
+                long sequence = current.append(target, payload, properties, System.currentTimeMillis(), expiresAt);
+                if (dispatched) {
+                    inFlight.add(sequence);
+                }
+                return sequence;
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.warn("[WARN] Could not record the message for {} in the outbox, it will not be sent again on failure.", target, e);
+            return NOT_RECORDED;
+        }
+    }
+
+    private void closeJournal() {
+        OutboxJournal current = journal;
+        journal = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private static String defaultDirectory() {
+        String base = System.getProperty("jboss.server.data.dir", System.getProperty("java.io.tmpdir"));
+        return Paths.get(base, DEFAULT_SUBDIRECTORY).toString();
+    }
+
+    /**
+     * Exponential backoff of one destination.
+     */
+    private static final class Backoff {
+
+        private long delay;
+        private long nextAttemptAt;
+
+        private void failed(long now, long initial, long max) {
+            delay = delay == 0 ? initial : Math.min(delay * 2, max);
+            nextAttemptAt = now + delay;
+        }
+
+        private void reset() {
+            delay = 0;
+            nextAttemptAt = 0;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.producer;
+
+import eu.europa.ec.fisheries.uvms.commons.message.api.MessageException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Groups outbound text messages and sends each group inside one transacted JMS session.
+ * <p>
+ * Messages are queued by {@link #submit(String, Map)} and picked up by a single worker, which must be started with {@link #run()}.
+ * A batch is closed when it holds {@code batchSize} messages or when {@code lingerMillis} have passed since its first message.
+ * The worker keeps its connection, session and producer open between batches and only recreates them after a failure.
+ * <p>
+ * Every message gets its own result : the future completes with the JMS message id once the batch is committed.
+ * If anything goes wrong while sending or committing a batch, the batch is rolled back and its messages are sent again
+ * one per transaction, so a single bad message only fails its own future.
+ */
+public class BridgeMessageBatcher implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BridgeMessageBatcher.class);
+
+    private static final long IDLE_POLL_MILLIS = 500;
+
+    private final ConnectionFactory connectionFactory;
+    private final Destination destination;
+    private final int batchSize;
+    private final long lingerNanos;
+    private final BlockingQueue<OutboundMessage> queue;
+
+    private volatile boolean running = true;
+
+    // Only touched by the worker thread.
+    private Connection connection;
+    private Session session;
+    private MessageProducer producer;
+
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong sentCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    public BridgeMessageBatcher(ConnectionFactory connectionFactory, Destination destination, int batchSize, long lingerMillis, int queueCapacity) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be at least 1!");
+        }
+        if (lingerMillis < 0) {
+            throw new IllegalArgumentException("The linger time cannot be negative!");
+        }
+        this.connectionFactory = connectionFactory;
+        this.destination = destination;
+        this.batchSize = batchSize;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Queues a message for the next batch.
+     *
+     * @param text the message body
+     * @param properties the string properties to set on the message
+     * @return a future completed with the JMS message id, or exceptionally with a {@link MessageException}
+     */
+    public CompletableFuture<String> submit(String text, Map<String, String> properties) {
+        OutboundMessage message = new OutboundMessage(text, properties);
+        if (!running) {
+            fail(message, new MessageException("The bridge message batcher is stopped."));
+        } else if (!queue.offer(message)) {
+            fail(message, new MessageException("The bridge message queue is full (" + queue.size() + " messages waiting)."));
+        }
+        return message.result;
+    }
+
+    @Override
+    public void run() {
+        List<OutboundMessage> batch = new ArrayList<>(batchSize);
+        try {
+            while (running || !queue.isEmpty()) {
+                if (collect(batch)) {
+                    send(batch);
+                    batch.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            LOG.warn("Bridge message batcher interrupted, failing the pending messages.");
+            Thread.currentThread().interrupt();
+        } finally {
+            queue.drainTo(batch);
+            for (OutboundMessage message : batch) {
+                fail(message, new MessageException("The bridge message batcher stopped before sending the message."));
+            }
+            closeSession();
+        }
+    }
+
+    /**
+     * Stops accepting messages. The worker sends what is already queued and then returns.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    public long getSentCount() {
+        return sentCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    private boolean collect(List<OutboundMessage> batch) throws InterruptedException {
+        OutboundMessage first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return false;
+        }
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        long deadline = System.nanoTime() + lingerNanos;
+        while (batch.size() < batchSize && running) {
+            long remaining = deadline - System.nanoTime();
+            OutboundMessage next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (next == null) {
+                break;
+            }
+            batch.add(next);
+            queue.drainTo(batch, batchSize - batch.size());
+        }
+        return true;
+    }
+
+    private void send(List<OutboundMessage> batch) {
+        try {
+            sendInTransaction(batch);
+            batchCount.incrementAndGet();
+            LOG.debug("Sent a batch of {} messages to the bridge queue.", batch.size());
+        } catch (JMSException e) {
+            LOG.warn("Could not send a batch of {} messages to the bridge queue, sending them one by one.", batch.size(), e);
+            rollback();
+            for (OutboundMessage message : batch) {
+                try {
+                    sendInTransaction(Collections.singletonList(message));
+                } catch (JMSException singleError) {
+                    rollback();
+                    fail(message, new MessageException("Error while trying to send message to bridge queue.", singleError));
+                }
+            }
+        }
+    }
+
+    private void sendInTransaction(List<OutboundMessage> batch) throws JMSException {
+        Session currentSession = getSession();
+        for (OutboundMessage message : batch) {
+            TextMessage textMessage = currentSession.createTextMessage(message.text);
+            for (Map.Entry<String, String> property : message.properties.entrySet()) {
+                textMessage.setStringProperty(property.getKey(), property.getValue());
+            }
+            producer.send(textMessage);
+            message.messageId = textMessage.getJMSMessageID();
+        }
+        currentSession.commit();
+        for (OutboundMessage message : batch) {
+            sentCount.incrementAndGet();
+            message.result.complete(message.messageId);
+        }
+    }
+
+    private Session getSession() throws JMSException {
+        if (session == null) {
+            try {
+                connection = connectionFactory.createConnection();
+                session = connection.createSession(true, Session.SESSION_TRANSACTED);
+                producer = session.createProducer(destination);
+            } catch (JMSException e) {
+                closeSession();
+                throw e;
+            }
+        }
+        return session;
+    }
+
+    private void rollback() {
+        if (session != null) {
+            try {
+                session.rollback();
+                return;
+            } catch (JMSException e) {
+                LOG.debug("Could not roll back the bridge session, it will be recreated.", e);
+            }
+        }
+        closeSession();
+    }
+
+    private void closeSession() {
+        if (connection != null) {
+            try {
+                // Closing the connection closes its sessions and producers too.
+                connection.close();
+            } catch (JMSException e) {
+                LOG.debug("Could not close the bridge connection.", e);
+            }
+        }
+        connection = null;
+        session = null;
+        producer = null;
+    }
+
+    private void fail(OutboundMessage message, MessageException error) {
+        failedCount.incrementAndGet();
+        message.result.completeExceptionally(error);
+    }
+
+    private static final class OutboundMessage {
+
+        private final String text;
+        private final Map<String, String> properties;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private String messageId;
+
+        private OutboundMessage(String text, Map<String, String> properties) {
+            this.text = text;
+            this.properties = properties;
+        }
+    }
+}
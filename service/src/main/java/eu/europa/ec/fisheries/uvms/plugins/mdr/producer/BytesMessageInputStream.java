@@ -0,0 +1,54 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.producer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+
+/**
+ * Input stream over the body of a received {@link BytesMessage}, the reading counterpart of {@link BytesMessageOutputStream}.
+ */
+public class BytesMessageInputStream extends InputStream {
+
+    private final BytesMessage message;
+    private final byte[] single = new byte[1];
+
+    public BytesMessageInputStream(BytesMessage message) {
+        this.message = message;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        try {
+            if (offset == 0) {
+                return message.readBytes(bytes, length);
+            }
+            byte[] chunk = new byte[length];
+            int read = message.readBytes(chunk, length);
+            if (read > 0) {
+                System.arraycopy(chunk, 0, bytes, offset, read);
+            }
+            return read;
+        } catch (JMSException e) {
+            throw new IOException("Could not read the message body.", e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.producer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+
+/**
+ * Output stream writing into the body of a {@link BytesMessage} through a fixed size buffer.
+ * Writes larger than the buffer go straight to the message.
+ */
+public class BytesMessageOutputStream extends OutputStream {
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final BytesMessage message;
+    private final byte[] buffer;
+    private int count;
+    private long written;
+
+    public BytesMessageOutputStream(BytesMessage message) {
+        this(message, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BytesMessageOutputStream(BytesMessage message, int bufferSize) {
+        this.message = message;
+        this.buffer = new byte[bufferSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (length >= buffer.length) {
+            flushBuffer();
+            writeToMessage(bytes, offset, length);
+            return;
+        }
+        if (length > buffer.length - count) {
+            flushBuffer();
+        }
+        System.arraycopy(bytes, offset, buffer, count, length);
+        count += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flushBuffer();
+    }
+
+    /**
+     * @return the number of bytes written to the message body so far, buffered bytes excluded
+     */
+    public long getWrittenBytes() {
+        return written;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (count > 0) {
+            writeToMessage(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    private void writeToMessage(byte[] bytes, int offset, int length) throws IOException {
+        try {
+            message.writeBytes(bytes, offset, length);
+            written += length;
+        } catch (JMSException e) {
+            throw new IOException("Could not write to the message body.", e);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.producer;
+
+import eu.europa.ec.fisheries.uvms.commons.message.api.MessageConstants;
+import eu.europa.ec.fisheries.uvms.commons.message.api.MessageException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.mapper.FluxMdrSyncResponseWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.jms.BytesMessage;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.xml.stream.XMLStreamException;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sends large FLUX MDR responses to the Exchange event queue as UTF-8 {@link BytesMessage}s.
+ * <p>
+ * The envelope is written by the {@link FluxMdrSyncResponseWriter} straight into the message body through a bounded buffer,
+ * instead of being marshalled into a String first like {@link PluginToExchangeProducer} does.
+ * The body can be compressed on the way, see {@link PayloadEncoding}.
+ * <p>
+ * Like the {@link PluginToExchangeProducer} the messages go through the connection factory of the uvms-commons producers,
+ * but the connection, session and producer are kept by the bean instance and reused for the following messages, the
+ * container pool of this stateless bean being the session pool. They are closed when the instance is discarded
+ * and after a failed send, the next message opening new ones.
+ */
+@Stateless
+@LocalBean
+@Slf4j
+public class ExchangeStreamingProducer {
+
+    @Resource(mappedName = "java:/" + MessageConstants.CONNECTION_FACTORY)
+    private ConnectionFactory connectionFactory;
+
+    @Resource(mappedName = "java:/" + MessageConstants.QUEUE_EXCHANGE_EVENT)
+    private Queue exchangeQueue;
+
+    private Connection connection;
+    private Session session;
+    private MessageProducer producer;
+
+    @PreDestroy
+    public void close() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (JMSException e) {
+                log.warn("[WARN] Could not close the connection to the Exchange queue.", e);
+            }
+        }
+        connection = null;
+        session = null;
+        producer = null;
+    }
+
+    /**
+     * @param encoding how the body is encoded, announced to the consumer through {@link PayloadEncoding#CONTENT_ENCODING_PROPERTY}
+     * @param properties the JMS string properties of the message, may be null
+     * @return the JMS message id of the sent message
+     */
+    public String sendFluxMdrSyncResponse(String fluxResponse, String username, PayloadEncoding encoding, Map<String, String> properties) throws MessageException {
+        try {
+            openSession();
+            BytesMessage message = session.createBytesMessage();
+            if (properties != null) {
+                for (Map.Entry<String, String> property : properties.entrySet()) {
+                    message.setStringProperty(property.getKey(), property.getValue());
+                }
+            }
+            encoding.applyTo(message);
+            BytesMessageOutputStream body = new BytesMessageOutputStream(message);
+            try (OutputStream out = encoding.encode(body)) {
+                FluxMdrSyncResponseWriter.write(fluxResponse, username, out);
+            }
+            producer.send(message);
+            log.debug("Streamed {} characters to the Exchange queue as {} {} bytes.", fluxResponse.length(), body.getWrittenBytes(), encoding);
+            return message.getJMSMessageID();
+        } catch (JMSException | XMLStreamException | IOException e) {
+            close();
+            throw new MessageException("Could not stream the FLUX MDR response to the Exchange queue.", e);
+        }
+    }
+
+    private void openSession() throws JMSException {
+        if (connection != null) {
+            return;
+        }
+        Connection newConnection = connectionFactory.createConnection();
+        try {
+            session = newConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            producer = session.createProducer(exchangeQueue);
+        } catch (JMSException e) {
+            newConnection.close();
+            throw e;
+        }
+        connection = newConnection;
+    }
+}
@@ -0,0 +1,272 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.producer;
+
+import eu.europa.ec.fisheries.uvms.commons.message.api.MessageException;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rate limited, per destination fair scheduler for outbound messages.
+ * <p>
+ * Every destination (the FR party of the message) gets its own FIFO queue. A single worker, started with {@link #run()},
+ * takes one token from a shared {@link TokenBucket} per message and serves the destinations having pending messages
+ * in round-robin order, so a full sync towards one party cannot starve the others.
+ * The rate can be changed at any time through {@link #setRate(double, int)}.
+ */
+public class FairOutboundScheduler implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FairOutboundScheduler.class);
+
+    /**
+     * Sends one message and reports its JMS message id, or the failure, through the returned future.
+     */
+    public interface Dispatcher {
+        CompletableFuture<String> dispatch(String text, Map<String, String> properties);
+    }
+
+    private final Dispatcher dispatcher;
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    // Guarded by lock.
+    private final TokenBucket bucket;
+    private final Map<String, ArrayDeque<ScheduledMessage>> queues = new HashMap<>();
+    private final ArrayDeque<String> rotation = new ArrayDeque<>();
+    private int queuedCount;
+    private boolean running = true;
+
+    private final AtomicLong dispatchedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public FairOutboundScheduler(Dispatcher dispatcher, double ratePerSecond, int burst, int capacity) {
+        this.dispatcher = dispatcher;
+        this.capacity = capacity;
+        this.bucket = new TokenBucket(ratePerSecond, burst, System.nanoTime());
+    }
+
+    /**
+     * Queues a message behind the other messages for the same destination.
+     *
+     * @return a future completed with the result of the {@link Dispatcher}, or exceptionally when the message is rejected
+     */
+    public CompletableFuture<String> submit(String destination, String text, Map<String, String> properties) {
+        ScheduledMessage message = new ScheduledMessage(destination == null ? "" : destination, text, properties);
+        lock.lock();
+        try {
+            if (!running) {
+                return reject(message, "The outbound scheduler is stopped.");
+            }
+            if (queuedCount >= capacity) {
+                return reject(message, "The outbound queue is full (" + queuedCount + " messages waiting).");
+            }
+            ArrayDeque<ScheduledMessage> queue = queues.get(message.destination);
+            if (queue == null) {
+                queue = new ArrayDeque<>();
+                queues.put(message.destination, queue);
+                rotation.add(message.destination);
+            }
+            queue.add(message);
+            queuedCount++;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        return message.result;
+    }
+
+    public void setRate(double ratePerSecond, int burst) {
+        lock.lock();
+        try {
+            bucket.configure(ratePerSecond, burst, System.nanoTime());
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting messages. The worker still sends what is already queued, at the configured rate, and then returns.
+     */
+    public void stop() {
+        lock.lock();
+        try {
+            running = false;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            ScheduledMessage message;
+            while ((message = next()) != null) {
+                dispatch(message);
+            }
+        } catch (InterruptedException e) {
+            LOG.warn("Outbound scheduler interrupted, failing the pending messages.");
+            Thread.currentThread().interrupt();
+        } finally {
+            failPending();
+        }
+    }
+
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queuedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a snapshot of the number of waiting messages per destination
+     */
+    public Map<String, Integer> getQueueDepths() {
+        lock.lock();
+        try {
+            Map<String, Integer> depths = new HashMap<>();
+            for (Map.Entry<String, ArrayDeque<ScheduledMessage>> entry : queues.entrySet()) {
+                depths.put(entry.getKey(), entry.getValue().size());
+            }
+            return depths;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getDispatchedCount() {
+        return dispatchedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getAverageWaitMillis() {
+        long dispatched = dispatchedCount.get();
+        return dispatched == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / dispatched);
+    }
+
+    public long getMaxWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get());
+    }
+
+    private ScheduledMessage next() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                if (rotation.isEmpty()) {
+                    if (!running) {
+                        return null;
+                    }
+                    changed.await();
+                    continue;
+                }
+                long wait = bucket.reserve(System.nanoTime());
+                if (wait > 0) {
+                    changed.awaitNanos(wait);
+                    continue;
+                }
+                return pollNextDestination();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ScheduledMessage pollNextDestination() {
+        String destination = rotation.poll();
+        ArrayDeque<ScheduledMessage> queue = queues.get(destination);
+        ScheduledMessage message = queue.poll();
+        if (queue.isEmpty()) {
+            queues.remove(destination);
+        } else {
+            rotation.add(destination);
+        }
+        queuedCount--;
+        return message;
+    }
+
+    private void dispatch(final ScheduledMessage message) {
+        long waited = System.nanoTime() - message.enqueuedAt;
+        dispatchedCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+        CompletableFuture<String> sent;
+        try {
+            sent = dispatcher.dispatch(message.text, message.properties);
+        } catch (RuntimeException e) {
+            sent = new CompletableFuture<>();
+            sent.completeExceptionally(e);
+        }
+        sent.whenComplete((messageId, error) -> {
+            if (error == null) {
+                message.result.complete(messageId);
+            } else {
+                message.result.completeExceptionally(error);
+            }
+        });
+    }
+
+    private void failPending() {
+        lock.lock();
+        try {
+            running = false;
+            for (ArrayDeque<ScheduledMessage> queue : queues.values()) {
+                for (ScheduledMessage message : queue) {
+                    reject(message, "The outbound scheduler stopped before sending the message.");
+                }
+            }
+            queues.clear();
+            rotation.clear();
+            queuedCount = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CompletableFuture<String> reject(ScheduledMessage message, String reason) {
+        rejectedCount.incrementAndGet();
+        message.result.completeExceptionally(new MessageException(reason));
+        return message.result;
+    }
+
+    private static final class ScheduledMessage {
+
+        private final String destination;
+        private final String text;
+        private final Map<String, String> properties;
+        private final long enqueuedAt = System.nanoTime();
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        private ScheduledMessage(String destination, String text, Map<String, String> properties) {
+            this.destination = destination;
+            this.text = text;
+            this.properties = properties;
+        }
+    }
+}
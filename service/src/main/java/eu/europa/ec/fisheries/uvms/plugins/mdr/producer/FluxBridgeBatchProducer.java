@@ -0,0 +1,151 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.producer;
+
+import eu.europa.ec.fisheries.uvms.commons.message.api.MessageConstants;
+import eu.europa.ec.fisheries.uvms.commons.message.api.MessageException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.PluginConfiguration;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.jms.ConnectionFactory;
+import javax.jms.Queue;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Batching mode of the {@link FluxBridgeProducer}.
+ * <p>
+ * When BRIDGE_BATCHING_ENABLED is set, the messages for the bridge queue are handed to a {@link BridgeMessageBatcher}
+ * running on a managed thread, which sends them in transacted batches of BRIDGE_BATCH_SIZE messages,
+ * waiting at most BRIDGE_BATCH_LINGER_MS for a batch to fill up. A settings change starts a new batcher, the previous one
+ * sends the messages it already holds and stops.
+ */
+@Singleton
+@Startup
+@DependsOn("StartupBean")
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@Slf4j
+public class FluxBridgeBatchProducer {
+
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    @Resource(mappedName = "java:/" + MessageConstants.CONNECTION_FACTORY)
+    private ConnectionFactory connectionFactory;
+
+    @Resource(mappedName = "java:/" + MessageConstants.QUEUE_PLUGIN_BRIDGE)
+    private Queue bridgeQueue;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @EJB
+    private StartupBean startup;
+
+    private volatile BridgeMessageBatcher batcher;
+
+    /**
+     * Worker and settings of the current batcher, only touched under the lock of this bean.
+     */
+    private Future<?> worker;
+    private int batchSize;
+    private int lingerMillis;
+
+    @PostConstruct
+    public void init() {
+        reloadSettings();
+        startup.addSettingsListener(this::reloadSettings);
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        BridgeMessageBatcher current = batcher;
+        if (current == null) {
+            return;
+        }
+        batcher = null;
+        current.stop();
+        try {
+            worker.get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("[WARN] The bridge batch sender did not stop cleanly.", e);
+            worker.cancel(true);
+        }
+    }
+
+    /**
+     * Applies the BRIDGE_BATCHING_ENABLED, BRIDGE_BATCH_SIZE and BRIDGE_BATCH_LINGER_MS settings.
+     */
+    public synchronized void reloadSettings() {
+        PluginConfiguration configuration = startup.getConfiguration();
+        BridgeMessageBatcher previous = batcher;
+        if (!configuration.isBridgeBatchingEnabled()) {
+            batcher = null;
+            if (previous != null) {
+                previous.stop();
+            }
+            log.info("[INFO] Batched sending to the bridge queue is disabled.");
+            return;
+        }
+        if (previous != null && batchSize == configuration.getBridgeBatchSize() && lingerMillis == configuration.getBridgeBatchLingerMillis()) {
+            return;
+        }
+        batchSize = configuration.getBridgeBatchSize();
+        lingerMillis = configuration.getBridgeBatchLingerMillis();
+        BridgeMessageBatcher newBatcher = new BridgeMessageBatcher(connectionFactory, bridgeQueue, batchSize, lingerMillis, QUEUE_CAPACITY);
+        worker = executor.submit(newBatcher);
+        batcher = newBatcher;
+        if (previous != null) {
+            previous.stop();
+        }
+        log.info("[INFO] Sending to the bridge queue in batches of {} messages (linger {} ms).", batchSize, lingerMillis);
+    }
+
+    public boolean isEnabled() {
+        return batcher != null;
+    }
+
+    /**
+     * Queues the message for the next batch.
+     *
+     * @return a future completed with the JMS message id once the batch holding the message is committed
+     */
+    public CompletableFuture<String> send(String text, Map<String, String> properties) {
+        BridgeMessageBatcher current = batcher;
+        if (current == null) {
+            CompletableFuture<String> result = new CompletableFuture<>();
+            result.completeExceptionally(new MessageException("Batched sending to the bridge queue is not enabled."));
+            return result;
+        }
+        return current.submit(text, properties);
+    }
+
+    public int getQueueDepth() {
+        BridgeMessageBatcher current = batcher;
+        return current == null ? 0 : current.getQueueDepth();
+    }
+}
@@ -0,0 +1,163 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.producer;
+
+import eu.europa.ec.fisheries.uvms.commons.message.api.MessageException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.PluginConfiguration;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.DependsOn;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Rate limiter in front of the bridge queue, so that a full sync towards several FR parties does not trip the FLUX TL throttling.
+ * <p>
+ * Messages are queued per FR and released in round-robin order at BRIDGE_RATE_PER_SECOND messages per second,
+ * with bursts of at most BRIDGE_RATE_BURST messages. A rate of 0 (the default) disables the limiter and messages are sent
+ * directly as before. Both settings are read again on every SET_CONFIG.
+ */
+@Singleton
+@Startup
+@DependsOn({"StartupBean", "PluginMetrics", "FluxBridgeBatchProducer"})
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@Slf4j
+public class FluxBridgeRateLimiter {
+
+    private static final int DEFAULT_BURST = 10;
+    private static final int QUEUE_CAPACITY = 10000;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    @Resource
+    private ManagedExecutorService executor;
+
+    @EJB
+    private StartupBean startup;
+
+    @EJB
+    private FluxBridgeProducer bridgeProducer;
+
+    @EJB
+    private FluxBridgeBatchProducer batchProducer;
+
+    @EJB
+    private PluginMetrics metrics;
+
+    private FairOutboundScheduler scheduler;
+    private Future<?> worker;
+    private volatile boolean enabled;
+
+    @PostConstruct
+    public void init() {
+        scheduler = new FairOutboundScheduler(this::dispatch, 0, DEFAULT_BURST, QUEUE_CAPACITY);
+        worker = executor.submit(scheduler);
+        reloadSettings();
+        startup.addSettingsListener(this::reloadSettings);
+        metrics.gauge("bridgeRateLimiter.queueDepth", this::getQueueDepth);
+        metrics.gauges("bridgeRateLimiter.queueDepth", this::getQueueDepthPerFr);
+        metrics.gauge("bridgeRateLimiter.averageWait.ms", this::getAverageWaitMillis);
+        metrics.gauge("bridgeRateLimiter.maxWait.ms", this::getMaxWaitMillis);
+        metrics.gauge("bridgeRateLimiter.rejected", this::getRejectedCount);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        enabled = false;
+        scheduler.stop();
+        try {
+            worker.get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("[WARN] The bridge rate limiter did not drain in time, failing the remaining messages.", e);
+            worker.cancel(true);
+        }
+    }
+
+    /**
+     * Applies the current BRIDGE_RATE_PER_SECOND and BRIDGE_RATE_BURST settings.
+     */
+    public void reloadSettings() {
+        PluginConfiguration configuration = startup.getConfiguration();
+        int ratePerSecond = configuration.getBridgeRatePerSecond();
+        int burst = configuration.getBridgeRateBurst();
+        scheduler.setRate(ratePerSecond, burst);
+        enabled = ratePerSecond > 0;
+        if (enabled) {
+            log.info("[INFO] Sending to the bridge queue at most {} messages per second (burst {}).", ratePerSecond, burst);
+        } else {
+            log.info("[INFO] Sending to the bridge queue is not rate limited.");
+        }
+    }
+
+    /**
+     * @return true when the messages for the bridge must go through {@link #send(String, String, Map)}
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the message behind the other messages for the same FR.
+     *
+     * @return a future completed with the JMS message id once the message is sent
+     */
+    public CompletableFuture<String> send(String fr, String text, Map<String, String> properties) {
+        return scheduler.submit(fr, text, properties);
+    }
+
+    public int getQueueDepth() {
+        return scheduler.getQueueDepth();
+    }
+
+    public Map<String, Integer> getQueueDepthPerFr() {
+        return scheduler.getQueueDepths();
+    }
+
+    public long getAverageWaitMillis() {
+        return scheduler.getAverageWaitMillis();
+    }
+
+    public long getMaxWaitMillis() {
+        return scheduler.getMaxWaitMillis();
+    }
+
+    public long getRejectedCount() {
+        return scheduler.getRejectedCount();
+    }
+
+    private CompletableFuture<String> dispatch(String text, Map<String, String> properties) {
+        if (batchProducer.isEnabled()) {
+            return batchProducer.send(text, properties);
+        }
+        CompletableFuture<String> result = new CompletableFuture<>();
+        try {
+            result.complete(bridgeProducer.sendModuleMessageWithProps(text, null, properties));
+        } catch (MessageException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+}
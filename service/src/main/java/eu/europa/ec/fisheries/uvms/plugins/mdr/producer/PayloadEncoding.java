@@ -0,0 +1,92 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.producer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+/**
+ * Encoding of a {@link javax.jms.BytesMessage} body sent to Exchange.
+ * <p>
+ * The encoding travels in the {@link #CONTENT_ENCODING_PROPERTY} string property, which is absent for plain bodies.
+ * Consumers read the property with {@link #of(Message)} and wrap the body stream with {@link #decode(InputStream)}.
+ */
+public enum PayloadEncoding {
+
+    IDENTITY(null) {
+        @Override
+        public OutputStream encode(OutputStream out) {
+            return out;
+        }
+
+        @Override
+        public InputStream decode(InputStream in) {
+            return in;
+        }
+    },
+
+    GZIP("gzip") {
+        @Override
+        public OutputStream encode(OutputStream out) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+
+        @Override
+        public InputStream decode(InputStream in) throws IOException {
+            return new GZIPInputStream(in, BUFFER_SIZE);
+        }
+    };
+
+    public static final String CONTENT_ENCODING_PROPERTY = "CONTENT_ENCODING";
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final String propertyValue;
+
+    PayloadEncoding(String propertyValue) {
+        this.propertyValue = propertyValue;
+    }
+
+    /**
+     * Wraps the body stream. Closing the returned stream finishes the encoding and closes the given stream.
+     */
+    public abstract OutputStream encode(OutputStream out) throws IOException;
+
+    public abstract InputStream decode(InputStream in) throws IOException;
+
+    public void applyTo(Message message) throws JMSException {
+        if (propertyValue != null) {
+            message.setStringProperty(CONTENT_ENCODING_PROPERTY, propertyValue);
+        }
+    }
+
+    /**
+     * @return the encoding announced by the message
+     * @throws JMSException if the message announces an unknown encoding
+     */
+    public static PayloadEncoding of(Message message) throws JMSException {
+        String value = message.getStringProperty(CONTENT_ENCODING_PROPERTY);
+        if (value == null) {
+            return IDENTITY;
+        }
+        for (PayloadEncoding encoding : values()) {
+            if (value.equalsIgnoreCase(encoding.propertyValue)) {
+                return encoding;
+            }
+        }
+        throw new JMSException("Unsupported content encoding : " + value);
+    }
+}
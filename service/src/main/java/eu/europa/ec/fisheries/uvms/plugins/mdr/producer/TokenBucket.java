@@ -0,0 +1,70 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.producer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket refilled continuously at {@code ratePerSecond}, holding at most {@code burst} tokens.
+ * A rate of zero or less means no limit.
+ * <p>
+ * Not thread-safe : the {@link FairOutboundScheduler} only uses it while holding its lock.
+ */
+class TokenBucket {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private double ratePerNano;
+    private double burst;
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(double ratePerSecond, int burst, long now) {
+        this.lastRefill = now;
+        configure(ratePerSecond, burst, now);
+        this.tokens = this.burst;
+    }
+
+    void configure(double ratePerSecond, int burst, long now) {
+        refill(now);
+        this.ratePerNano = ratePerSecond > 0 ? ratePerSecond / NANOS_PER_SECOND : 0;
+        this.burst = Math.max(1, burst);
+        this.tokens = Math.min(tokens, this.burst);
+    }
+
+    boolean isLimited() {
+        return ratePerNano > 0;
+    }
+
+    /**
+     * Takes one token if available.
+     *
+     * @return 0 when a token was taken, otherwise the nanoseconds to wait before the next token is available
+     */
+    long reserve(long now) {
+        if (!isLimited()) {
+            return 0;
+        }
+        refill(now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / ratePerNano));
+    }
+
+    private void refill(long now) {
+        if (ratePerNano > 0 && now > lastRefill) {
+            tokens = Math.min(burst, tokens + (now - lastRefill) * ratePerNano);
+        }
+        lastRefill = now;
+    }
+}
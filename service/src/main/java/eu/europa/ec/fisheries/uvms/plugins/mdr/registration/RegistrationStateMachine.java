@@ -0,0 +1,130 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.registration;
+
+import java.util.Random;
+
+/**
+ * Registration state of the plugin, driven by single action timers and by the responses of Exchange.
+ * <p>
+ * Every scheduled attempt gets a number, carried by its timer. A timer only acts when its attempt is still the last one
+ * scheduled, so a response or a newer schedule makes the older timers harmless without cancelling them.
+ * An attempt sends the registration and schedules the next one, which sends it again if no response came in between.
+ * A rejection or a fault from Exchange schedules a new attempt as well : the plugin retries until it is registered.
+ * <p>
+ * The first attempt is immediate. The next ones wait for an exponential delay, from the initial delay up to the maximum,
+ * of which the upper half is random so that plugins restarted together do not register in lockstep.
+ */
+public class RegistrationStateMachine {
+
+    private static final int MAX_DOUBLINGS = 30;
+
+    private final Random random;
+
+    private RegistrationState state = RegistrationState.UNREGISTERED;
+    private long scheduledAttempt;
+    private int failedAttempts;
+
+    public RegistrationStateMachine(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Plans the next attempt, which replaces any attempt scheduled before.
+     *
+     * @return the delay before the attempt in milliseconds, 0 for the first one or after a successful registration
+     */
+    public synchronized long scheduleAttempt(long initialDelayMillis, long maxDelayMillis) {
+        scheduledAttempt++;
+        long delay = failedAttempts == 0 ? 0 : jitter(backoff(failedAttempts, initialDelayMillis, maxDelayMillis));
+        failedAttempts++;
+        return delay;
+    }
+
+    /**
+     * @return the number of the last attempt scheduled, to be carried by its timer
+     */
+    public synchronized long getScheduledAttempt() {
+        return scheduledAttempt;
+    }
+
+    /**
+     * Called when the timer of an attempt expires.
+     *
+     * @return true when the registration must be sent : the attempt is still the last one scheduled and the plugin is neither
+     * registered nor stopped
+     */
+    public synchronized boolean startAttempt(long attempt) {
+        if (attempt != scheduledAttempt || state == RegistrationState.REGISTERED || state == RegistrationState.STOPPED) {
+            return false;
+        }
+        state = RegistrationState.REGISTERING;
+        return true;
+    }
+
+    /**
+     * The registration could not be sent, the next scheduled attempt sends it again.
+     */
+    public synchronized void sendFailed() {
+        if (state == RegistrationState.REGISTERING) {
+            state = RegistrationState.UNREGISTERED;
+        }
+    }
+
+    /**
+     * Exchange accepted the registration : the scheduled attempts are dropped and the backoff starts over.
+     */
+    public synchronized void accepted() {
+        if (state == RegistrationState.STOPPED) {
+            return;
+        }
+        state = RegistrationState.REGISTERED;
+        scheduledAttempt++;
+        failedAttempts = 0;
+    }
+
+    /**
+     * Exchange rejected the registration or reported a fault.
+     *
+     * @return true when a new attempt must be scheduled
+     */
+    public synchronized boolean rejected() {
+        if (state == RegistrationState.STOPPED) {
+            return false;
+        }
+        state = RegistrationState.UNREGISTERED;
+        return true;
+    }
+
+    /**
+     * Drops the scheduled attempts for good.
+     */
+    public synchronized void stop() {
+        state = RegistrationState.STOPPED;
+        scheduledAttempt++;
+    }
+
+    public synchronized RegistrationState getState() {
+        return state;
+    }
+
+    static long backoff(int failedAttempts, long initialDelayMillis, long maxDelayMillis) {
+        long initial = Math.max(1, initialDelayMillis);
+        int doublings = Math.min(failedAttempts - 1, MAX_DOUBLINGS);
+        long delay = initial << doublings;
+        return delay > maxDelayMillis ? Math.max(initial, maxDelayMillis) : delay;
+    }
+
+    private long jitter(long delay) {
+        long half = delay / 2;
+        return delay - half + (long) (random.nextDouble() * half);
+    }
+}
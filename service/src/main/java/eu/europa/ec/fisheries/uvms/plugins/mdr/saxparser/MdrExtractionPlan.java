@@ -0,0 +1,98 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, declarative set of {@link MdrField}s to pull out of a message in a single streaming pass.
+ * The target paths are resolved once per message type so plans should be created once and shared.
+ */
+public final class MdrExtractionPlan {
+
+    /**
+     * Everything the plugin uses for routing, correlation and caching.
+     */
+    public static final MdrExtractionPlan ROUTING_FIELDS = of(MdrField.values());
+
+    private final Set<MdrField> fields;
+    private final Map<MdrType, List<Target>> targets = new EnumMap<>(MdrType.class);
+
+    private MdrExtractionPlan(Set<MdrField> fields) {
+        this.fields = Collections.unmodifiableSet(fields);
+        for (MdrType type : MdrType.values()) {
+            List<Target> typeTargets = new ArrayList<>();
+            for (MdrField field : fields) {
+                String[] path = field.getPath(type);
+                if (path != null) {
+                    typeTargets.add(new Target(field, path));
+                }
+            }
+            targets.put(type, Collections.unmodifiableList(typeTargets));
+        }
+    }
+
+    public static MdrExtractionPlan of(MdrField... fields) {
+        if (fields.length == 0) {
+            throw new IllegalArgumentException("An extraction plan needs at least one field!");
+        }
+        return new MdrExtractionPlan(EnumSet.copyOf(Arrays.asList(fields)));
+    }
+
+    public Set<MdrField> getFields() {
+        return fields;
+    }
+
+    List<Target> getTargets(MdrType type) {
+        return targets.get(type);
+    }
+
+    /**
+     * A field together with its path in one message type.
+     */
+    static final class Target {
+
+        private final MdrField field;
+        private final String[] path;
+
+        private Target(MdrField field, String[] path) {
+            this.field = field;
+            this.path = path;
+        }
+
+        MdrField getField() {
+            return field;
+        }
+
+        /**
+         * @param elementPath local names of the open elements below the root, the current element last
+         * @param depth number of valid entries in elementPath
+         */
+        boolean matches(String[] elementPath, int depth) {
+            if (depth != path.length) {
+                return false;
+            }
+            for (int i = depth - 1; i >= 0; i--) {
+                if (!path[i].equals(elementPath[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
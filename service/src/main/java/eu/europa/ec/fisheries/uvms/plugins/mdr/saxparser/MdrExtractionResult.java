@@ -0,0 +1,63 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser;
+
+/**
+ * Outcome of an MDR identifier extraction.
+ */
+public class MdrExtractionResult {
+
+    private static final MdrExtractionResult NOT_FOUND = new MdrExtractionResult(null, null, false);
+
+    private final String uuid;
+    private final String elementPath;
+    private final boolean stoppedEarly;
+
+    public MdrExtractionResult(String uuid, String elementPath, boolean stoppedEarly) {
+        this.uuid = uuid;
+        this.elementPath = elementPath;
+        this.stoppedEarly = stoppedEarly;
+    }
+
+    public static MdrExtractionResult notFound() {
+        return NOT_FOUND;
+    }
+
+    /**
+     * @return the extracted UUID or null if the document does not contain one
+     */
+    public String getUuid() {
+        return uuid;
+    }
+
+    /**
+     * @return the qualified element path of the UUID (ex. /ns3:FLUXMDRQueryMessage/ns3:MDRQuery/ID)
+     */
+    public String getElementPath() {
+        return elementPath;
+    }
+
+    /**
+     * @return true when the parsing stopped at the match instead of reading the whole document
+     */
+    public boolean isStoppedEarly() {
+        return stoppedEarly;
+    }
+
+    public boolean isFound() {
+        return uuid != null;
+    }
+
+    @Override
+    public String toString() {
+        return "MdrExtractionResult{uuid='" + uuid + "', elementPath='" + elementPath + "', stoppedEarly=" + stoppedEarly + '}';
+    }
+}
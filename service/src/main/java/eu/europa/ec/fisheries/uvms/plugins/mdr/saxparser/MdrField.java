@@ -0,0 +1,50 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Values which can be pulled out of FLUX MDR messages by a {@link MdrExtractionPlan}.
+ * Paths are element local names below the root element, separated by '/'.
+ */
+public enum MdrField {
+
+    MESSAGE_UUID("MDRQuery/ID", "FLUXResponseDocument/ID"),
+    REFERENCED_UUID(null, "FLUXResponseDocument/ReferencedID"),
+    ACRONYM("MDRQuery/SubjectMDRQueryIdentity/ID", "MDRDataSet/ID"),
+    QUERY_TYPE("MDRQuery/TypeCode", null),
+    RESPONSE_CODE(null, "FLUXResponseDocument/ResponseCode"),
+    DATA_SET_VERSION(null, "MDRDataSet/Version"),
+    VALIDITY_END(null, "MDRDataSet/ValidityDelimitedPeriod/EndDateTime/DateTime");
+
+    private final Map<MdrType, String[]> paths;
+
+    MdrField(String queryPath, String responsePath) {
+        Map<MdrType, String[]> pathsPerType = new EnumMap<>(MdrType.class);
+        if (queryPath != null) {
+            pathsPerType.put(MdrType.MDR_QUERY, queryPath.split("/"));
+        }
+        if (responsePath != null) {
+            pathsPerType.put(MdrType.MDR_RESPONSE, responsePath.split("/"));
+        }
+        paths = Collections.unmodifiableMap(pathsPerType);
+    }
+
+    /**
+     * @return the local names leading to this field in the given message type, or null if the type does not carry it
+     */
+    String[] getPath(MdrType type) {
+        return paths.get(type);
+    }
+}
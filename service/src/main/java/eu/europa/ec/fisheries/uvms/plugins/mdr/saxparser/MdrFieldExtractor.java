@@ -0,0 +1,105 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.xml.StaxReaders;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Streams a FLUX MDR query or response message once and collects the fields of a {@link MdrExtractionPlan}.
+ * <p>
+ * The message type is resolved from the root element. Reading stops as soon as every field of the plan applicable
+ * to that type was found, or at the first code list entry since no field is read from the entries : for responses only
+ * the header and the data set description are read, however big the code list is. Instances are stateless and thread-safe.
+ */
+public class MdrFieldExtractor {
+
+    private static final int INITIAL_DEPTH = 16;
+
+    private static final String DATA_NODE = "ContainedMDRDataNode";
+
+    public MdrMessageFields extract(String message, MdrExtractionPlan plan) throws MdrExtractionException {
+        try {
+            return extract(StaxReaders.getInputFactory().createXMLStreamReader(new StringReader(message)), plan);
+        } catch (XMLStreamException e) {
+            throw new MdrExtractionException("Could not parse the MDR message.", e);
+        }
+    }
+
+    public MdrMessageFields extract(byte[] message, MdrExtractionPlan plan) throws MdrExtractionException {
+        return extract(new ByteArrayInputStream(message), plan);
+    }
+
+    public MdrMessageFields extract(InputStream message, MdrExtractionPlan plan) throws MdrExtractionException {
+        try {
+            return extract(StaxReaders.getInputFactory().createXMLStreamReader(message), plan);
+        } catch (XMLStreamException e) {
+            throw new MdrExtractionException("Could not parse the MDR message.", e);
+        }
+    }
+
+    private MdrMessageFields extract(XMLStreamReader reader, MdrExtractionPlan plan) throws XMLStreamException {
+        EnumMap<MdrField, String> values = new EnumMap<>(MdrField.class);
+        try {
+            if (reader.nextTag() != XMLStreamConstants.START_ELEMENT) {
+                return new MdrMessageFields(null, values, false);
+            }
+            MdrType type = MdrType.fromRootElement(reader.getNamespaceURI(), reader.getLocalName());
+            if (type == null) {
+                return new MdrMessageFields(null, values, true);
+            }
+            List<MdrExtractionPlan.Target> targets = plan.getTargets(type);
+            String[] elementPath = new String[INITIAL_DEPTH];
+            int depth = 0;
+            while (values.size() < targets.size() && reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (depth == elementPath.length) {
+                        elementPath = Arrays.copyOf(elementPath, depth * 2);
+                    }
+                    elementPath[depth++] = reader.getLocalName();
+                    if (DATA_NODE.equals(elementPath[depth - 1])) {
+                        return new MdrMessageFields(type, values, true);
+                    }
+                    MdrExtractionPlan.Target target = findTarget(targets, values, elementPath, depth);
+                    if (target != null) {
+                        // getElementText consumes the end tag as well.
+                        values.put(target.getField(), reader.getElementText().trim());
+                        depth--;
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                }
+            }
+            return new MdrMessageFields(type, values, values.size() == targets.size() && reader.hasNext());
+        } finally {
+            StaxReaders.close(reader);
+        }
+    }
+
+    private static MdrExtractionPlan.Target findTarget(List<MdrExtractionPlan.Target> targets, EnumMap<MdrField, String> found,
+                                                       String[] elementPath, int depth) {
+        for (MdrExtractionPlan.Target target : targets) {
+            if (!found.containsKey(target.getField()) && target.matches(elementPath, depth)) {
+                return target;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,61 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Values extracted from a message by a {@link MdrExtractionPlan}.
+ */
+public class MdrMessageFields {
+
+    private final MdrType messageType;
+    private final Map<MdrField, String> values;
+    private final boolean stoppedEarly;
+
+    MdrMessageFields(MdrType messageType, EnumMap<MdrField, String> values, boolean stoppedEarly) {
+        this.messageType = messageType;
+        this.values = Collections.unmodifiableMap(values);
+        this.stoppedEarly = stoppedEarly;
+    }
+
+    /**
+     * @return the type of the message or null if it is not a FLUX MDR message
+     */
+    public MdrType getMessageType() {
+        return messageType;
+    }
+
+    /**
+     * @return the value of the field or null if it was not found (or not requested)
+     */
+    public String get(MdrField field) {
+        return values.get(field);
+    }
+
+    public Map<MdrField, String> getValues() {
+        return values;
+    }
+
+    /**
+     * @return true when every field of the plan was found before the end of the document
+     */
+    public boolean isStoppedEarly() {
+        return stoppedEarly;
+    }
+
+    @Override
+    public String toString() {
+        return "MdrMessageFields{messageType=" + messageType + ", values=" + values + ", stoppedEarly=" + stoppedEarly + '}';
+    }
+}
@@ -10,152 +10,114 @@ details. You should have received a copy of the GNU General Public License along
 */
 package eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 
-public class MdrSaxaprserAcronymExtractor extends DefaultHandler {
+/**
+ * Stateless UUID extractor which can be shared between threads (MDBs).
+ * <p>
+ * Parsers are borrowed from a {@link SaxParserPool} and the per-parse state lives in a handler bound to the calling thread,
+ * so {@link #getUuidValue()} returns the value found by the last {@link #parseDocument(String)} call of the same thread.
+ * <p>
+ * In stop-on-match mode (the default) the parse is aborted as soon as the UUID is read, without building any exception per message.
+ *
+ * @see MdrStaxUuidExtractor for the pull based fast path
+ */
+public class MdrSaxaprserAcronymExtractor implements MdrUuidExtractor {
 
     final static Logger LOG = LoggerFactory.getLogger(MdrSaxaprserAcronymExtractor.class);
 
-    private static final String FA_QUERY_UUID_CONTAINER_TAG = "ns3:MDRQuery";
+    private static final SaxParserPool SHARED_POOL = new SaxParserPool();
 
-    private static final String ID_TAG = "ID";
-    private static final String ID_TAG_FOR_SUBJ_QUER_ENTITY = "ID";
-    private static final String UUID_ATTRIBUTE = "UUID";
+    private final SaxParserPool parserPool;
 
-    private String uuid;
-    private boolean isStartOfInterestedTag;
-    private boolean isIDStart;
-    private boolean isUUIDStart;
-    private String uuidValue; // store FLUXReportDocument UUID value inside this
+    private final ThreadLocal<MdrUuidExtractionHandler> handlers;
 
-    // Three case here : FaReportMessage, FaQueryMessage, FLUXResponseMessage
-    private String CONTAINER_TAG;
-
-
-    private MdrSaxaprserAcronymExtractor() {
-        super();
+    public MdrSaxaprserAcronymExtractor(MdrType type) {
+        this(type, SHARED_POOL, true);
     }
 
-    public MdrSaxaprserAcronymExtractor(MdrType type) {
-        switch (type) {
-            case MDR_QUERY:
-                CONTAINER_TAG = FA_QUERY_UUID_CONTAINER_TAG;
-                break;
-        }
+    public MdrSaxaprserAcronymExtractor(final MdrType type, SaxParserPool parserPool, final boolean stopOnMatch) {
+        this.parserPool = parserPool;
+        handlers = new ThreadLocal<MdrUuidExtractionHandler>() {
+            @Override
+            protected MdrUuidExtractionHandler initialValue() {
+                return new MdrUuidExtractionHandler(type, stopOnMatch);
+            }
+        };
     }
 
     /**
-     * This method parse input document using SAX parser
+     * This method parse input document using a pooled SAX parser
      *
      * @param message
-     * @throws SAXException
+     * @throws SAXException when the message is not well-formed
      */
     public void parseDocument(String message) throws SAXException {
-        SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser parser;
-        try {
-            parser = factory.newSAXParser();
-            StringReader sr = new StringReader(message);
-            InputSource source = new InputSource(sr);
-            parser.parse(source, this);
-        } catch (ParserConfigurationException e) {
-            LOG.error("Parse exception while trying to parse incoming message from flux.", e);
-        } catch (IOException e) {
-            LOG.error("IOException while trying to parse incoming message from flux.", e);
-        }
+        extract(new InputSource(new StringReader(message)));
     }
 
-
+    /**
+     * Parses the message and returns the extracted UUID together with the path it was found at.
+     *
+     * @param message the FLUX MDR message
+     * @return the extraction result, never null
+     * @throws MdrExtractionException when the message is not well-formed
+     */
     @Override
-    public void startElement(String s, String s1, String elementName, Attributes attributes) throws SAXException {
-        // We need to extract UUID value for FLUXReportDocument. So, Mark when the tag is found.
-        if (CONTAINER_TAG.equals(elementName)) {
-            isStartOfInterestedTag = true;
-            LOG.debug("FLUXReportDocument tag found.");
-        }
-        if (isStartOfInterestedTag && (ID_TAG.equals(elementName) || ID_TAG_FOR_SUBJ_QUER_ENTITY.equals(elementName))) {
-            isIDStart = true;
-            LOG.debug("Found ID tag inside FLUXReportDocument tag");
-            String value = attributes.getValue("schemeID");
-            if (UUID_ATTRIBUTE.equals(value)) {
-                LOG.debug("Found UUID schemeID inside ID tag");
-                isUUIDStart = true;
-            }
-        }
-
+    public MdrExtractionResult parse(String message) throws MdrExtractionException {
+        return parse(new InputSource(new StringReader(message)));
     }
 
     @Override
-
-    public void endElement(String s, String s1, String element) {
-        if (CONTAINER_TAG.equals(element)) {
-            isStartOfInterestedTag = false;
-            LOG.debug("FLUXReportDocument tag Ended.");
-        }
-        if (ID_TAG.equals(element)) {
-            isIDStart = false;
-            isUUIDStart = false;
-            LOG.debug("ID tag Ended.");
-        }
+    public MdrExtractionResult parse(byte[] message) throws MdrExtractionException {
+        return parse(new ByteArrayInputStream(message));
     }
 
     @Override
-    public void characters(char[] ac, int i, int j) throws SAXException {
-        String tmpValue = new String(ac, i, j);
-        if (isUUIDStart) {
-            uuidValue = tmpValue;
-            throw new SAXException("Found the required value . so, stop parsing entire document");
-        }
+    public MdrExtractionResult parse(InputStream message) throws MdrExtractionException {
+        return parse(new InputSource(message));
     }
 
-
-    public String getUuid() {
-        return uuid;
-    }
-
-    public void setUuid(String uuid) {
-        this.uuid = uuid;
-    }
-
-    public boolean isStartOfInterestedTag() {
-        return isStartOfInterestedTag;
-    }
-
-    public void setStartOfInterestedTag(boolean startOfInterestedTag) {
-        isStartOfInterestedTag = startOfInterestedTag;
-    }
-
-    public boolean isIDStart() {
-        return isIDStart;
-    }
-
-    public void setIDStart(boolean IDStart) {
-        isIDStart = IDStart;
-    }
-
-    public boolean isUUIDStart() {
-        return isUUIDStart;
+    private MdrExtractionResult parse(InputSource source) throws MdrExtractionException {
+        try {
+            return extract(source);
+        } catch (SAXException e) {
+            throw new MdrExtractionException("Could not parse the MDR message.", e);
+        }
     }
 
-    public void setUUIDStart(boolean UUIDStart) {
-        isUUIDStart = UUIDStart;
+    private MdrExtractionResult extract(InputSource source) throws SAXException {
+        MdrUuidExtractionHandler handler = handlers.get();
+        handler.reset();
+        SAXParser parser = null;
+        try {
+            parser = parserPool.borrow();
+            parser.parse(source, handler);
+        } catch (StopParsingException e) {
+            // Expected in stop-on-match mode : the UUID was found.
+        } catch (ParserConfigurationException e) {
+            LOG.error("Parse exception while trying to parse incoming message from flux.", e);
+        } catch (IOException e) {
+            LOG.error("IOException while trying to parse incoming message from flux.", e);
+        } finally {
+            parserPool.release(parser);
+        }
+        return handler.toResult();
     }
 
+    /**
+     * @return the UUID found by the last parse executed by the calling thread
+     */
     public String getUuidValue() {
-        return uuidValue;
-    }
-
-    public void setUuidValue(String uuidValue) {
-        this.uuidValue = uuidValue;
+        return handlers.get().getUuidValue();
     }
 }
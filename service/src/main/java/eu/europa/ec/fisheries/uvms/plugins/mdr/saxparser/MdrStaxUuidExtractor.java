@@ -0,0 +1,108 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.xml.StaxReaders;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Pull based (StAX) fast path of the {@link MdrSaxaprserAcronymExtractor}.
+ * <p>
+ * The document is read only up to the message UUID and the reader is simply closed afterwards,
+ * so neither handler callbacks nor exceptions are needed to stop. Raw JMS payloads can be handed over
+ * as bytes or stream without decoding them into an intermediate String first.
+ */
+public class MdrStaxUuidExtractor implements MdrUuidExtractor {
+
+    private static final String ID_TAG = "ID";
+    private static final String SCHEME_ID_ATTRIBUTE = "schemeID";
+    private static final String UUID_ATTRIBUTE = "UUID";
+
+    private static final int INITIAL_DEPTH = 16;
+
+    private final MdrType type;
+
+    public MdrStaxUuidExtractor(MdrType type) {
+        this.type = type;
+    }
+
+    @Override
+    public MdrExtractionResult parse(String message) throws MdrExtractionException {
+        try {
+            return extract(StaxReaders.getInputFactory().createXMLStreamReader(new StringReader(message)));
+        } catch (XMLStreamException e) {
+            throw new MdrExtractionException("Could not parse the MDR message.", e);
+        }
+    }
+
+    @Override
+    public MdrExtractionResult parse(byte[] message) throws MdrExtractionException {
+        return parse(new ByteArrayInputStream(message));
+    }
+
+    @Override
+    public MdrExtractionResult parse(InputStream message) throws MdrExtractionException {
+        try {
+            return extract(StaxReaders.getInputFactory().createXMLStreamReader(message));
+        } catch (XMLStreamException e) {
+            throw new MdrExtractionException("Could not parse the MDR message.", e);
+        }
+    }
+
+    private MdrExtractionResult extract(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder path = new StringBuilder(128);
+        int[] pathLengths = new int[INITIAL_DEPTH];
+        int depth = 0;
+        int containerDepth = 0;
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if (depth == pathLengths.length) {
+                        pathLengths = Arrays.copyOf(pathLengths, depth * 2);
+                    }
+                    pathLengths[depth++] = path.length();
+                    appendQualifiedName(path.append('/'), reader);
+                    String localName = reader.getLocalName();
+                    if (containerDepth == 0 && type.isContainer(reader.getNamespaceURI(), localName)) {
+                        containerDepth = depth;
+                    } else if (containerDepth > 0 && ID_TAG.equals(localName)
+                            && UUID_ATTRIBUTE.equals(reader.getAttributeValue(null, SCHEME_ID_ATTRIBUTE))) {
+                        String elementPath = path.toString();
+                        return new MdrExtractionResult(reader.getElementText(), elementPath, true);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if (depth == containerDepth) {
+                        containerDepth = 0;
+                    }
+                    path.setLength(pathLengths[--depth]);
+                }
+            }
+            return MdrExtractionResult.notFound();
+        } finally {
+            StaxReaders.close(reader);
+        }
+    }
+
+    static void appendQualifiedName(StringBuilder builder, XMLStreamReader reader) {
+        String prefix = reader.getPrefix();
+        if (prefix != null && !prefix.isEmpty()) {
+            builder.append(prefix).append(':');
+        }
+        builder.append(reader.getLocalName());
+    }
+}
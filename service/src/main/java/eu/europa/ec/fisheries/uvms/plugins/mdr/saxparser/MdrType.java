@@ -10,7 +10,52 @@ details. You should have received a copy of the GNU General Public License along
 */
 package eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser;
 
+/**
+ * MDR message types together with their root element and the element which contains the message UUID.
+ * Elements are matched on namespace and local name so any prefix (ns3, q, default namespace..) is accepted.
+ */
 public enum MdrType {
-    MDR_QUERY,
-    MDR_RESPONSE
+
+    MDR_QUERY("urn:un:unece:uncefact:data:standard:FLUXMDRQueryMessage:", "FLUXMDRQueryMessage", "MDRQuery"),
+    MDR_RESPONSE("urn:un:unece:uncefact:data:standard:FLUXMDRReturnMessage:", "FLUXMDRReturnMessage", "FLUXResponseDocument");
+
+    private final String namespacePrefix;
+    private final String rootLocalName;
+    private final String containerLocalName;
+
+    MdrType(String namespacePrefix, String rootLocalName, String containerLocalName) {
+        this.namespacePrefix = namespacePrefix;
+        this.rootLocalName = rootLocalName;
+        this.containerLocalName = containerLocalName;
+    }
+
+    /**
+     * Checks whether the element is the container of the message UUID.
+     * The namespace version suffix (ex. :5) is not checked.
+     *
+     * @param namespaceUri the namespace of the element, may be null
+     * @param localName the local name of the element
+     * @return true if the element contains the message UUID
+     */
+    public boolean isContainer(String namespaceUri, String localName) {
+        return containerLocalName.equals(localName) && isOwnNamespace(namespaceUri);
+    }
+
+    /**
+     * Resolves the message type from the root element of a document.
+     *
+     * @return the matching type or null if the root element is not a FLUX MDR message
+     */
+    public static MdrType fromRootElement(String namespaceUri, String localName) {
+        for (MdrType type : values()) {
+            if (type.rootLocalName.equals(localName) && type.isOwnNamespace(namespaceUri)) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    private boolean isOwnNamespace(String namespaceUri) {
+        return namespaceUri != null && namespaceUri.startsWith(namespacePrefix);
+    }
 }
@@ -0,0 +1,118 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser;
+
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Per-parse state of the {@link MdrSaxaprserAcronymExtractor}.
+ * Instances are not thread-safe : the extractor keeps one per thread and resets it before every parse.
+ */
+class MdrUuidExtractionHandler extends DefaultHandler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MdrUuidExtractionHandler.class);
+
+    private static final String ID_TAG = "ID";
+    private static final String SCHEME_ID_ATTRIBUTE = "schemeID";
+    private static final String UUID_ATTRIBUTE = "UUID";
+
+    private static final int INITIAL_DEPTH = 16;
+
+    private final MdrType type;
+    private final boolean stopOnMatch;
+
+    private final StringBuilder path = new StringBuilder(128);
+    private int[] pathLengths = new int[INITIAL_DEPTH];
+    private int depth;
+
+    private int containerDepth;
+    private boolean isUUIDStart;
+    private String uuidValue;
+    private String uuidPath;
+    private boolean stoppedEarly;
+
+    MdrUuidExtractionHandler(MdrType type, boolean stopOnMatch) {
+        this.type = type;
+        this.stopOnMatch = stopOnMatch;
+    }
+
+    void reset() {
+        path.setLength(0);
+        depth = 0;
+        containerDepth = 0;
+        isUUIDStart = false;
+        uuidValue = null;
+        uuidPath = null;
+        stoppedEarly = false;
+    }
+
+    MdrExtractionResult toResult() {
+        return uuidValue == null ? MdrExtractionResult.notFound() : new MdrExtractionResult(uuidValue, uuidPath, stoppedEarly);
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        pushPath(qName);
+        if (containerDepth == 0 && type.isContainer(uri, localName)) {
+            containerDepth = depth;
+            LOG.debug("{} tag found.", qName);
+        }
+        if (uuidValue == null && containerDepth > 0 && ID_TAG.equals(localName) && UUID_ATTRIBUTE.equals(attributes.getValue(SCHEME_ID_ATTRIBUTE))) {
+            LOG.debug("Found UUID schemeID inside ID tag");
+            isUUIDStart = true;
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        isUUIDStart = false;
+        if (depth == containerDepth) {
+            containerDepth = 0;
+        }
+        popPath();
+    }
+
+    @Override
+    public void characters(char[] ac, int i, int j) throws SAXException {
+        if (isUUIDStart) {
+            isUUIDStart = false;
+            uuidValue = new String(ac, i, j);
+            uuidPath = path.toString();
+            if (stopOnMatch) {
+                stoppedEarly = true;
+                throw StopParsingException.INSTANCE;
+            }
+        }
+    }
+
+    private void pushPath(String elementName) {
+        if (depth == pathLengths.length) {
+            pathLengths = Arrays.copyOf(pathLengths, depth * 2);
+        }
+        pathLengths[depth++] = path.length();
+        path.append('/').append(elementName);
+    }
+
+    private void popPath() {
+        if (depth > 0) {
+            path.setLength(pathLengths[--depth]);
+        }
+    }
+
+    String getUuidValue() {
+        return uuidValue;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xml.sax.SAXException;
+
+/**
+ * Bounded pool of reusable {@link SAXParser} instances.
+ * <p>
+ * The factory is looked up once and parsers are reset and handed back after every parse, so the
+ * service-loader lookup and the parser construction are paid only when the pool is empty.
+ * Parsers borrowed while the pool is empty are created on the fly, parsers returned to a full pool are dropped.
+ * All parsers are namespace aware.
+ */
+public class SaxParserPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SaxParserPool.class);
+
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private final SAXParserFactory factory;
+    private final BlockingQueue<SAXParser> idleParsers;
+
+    public SaxParserPool() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SaxParserPool(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The SAX parser pool capacity must be at least 1!");
+        }
+        factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        idleParsers = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Takes an idle parser from the pool or creates a new one if none is available.
+     *
+     * @return a parser owned by the caller until {@link #release(SAXParser)} is called
+     * @throws ParserConfigurationException
+     * @throws SAXException
+     */
+    public SAXParser borrow() throws ParserConfigurationException, SAXException {
+        SAXParser parser = idleParsers.poll();
+        if (parser != null) {
+            return parser;
+        }
+        // SAXParserFactory is not guaranteed to be thread-safe.
+        synchronized (factory) {
+            return factory.newSAXParser();
+        }
+    }
+
+    /**
+     * Resets the parser and gives it back to the pool. Parsers which cannot be reset are discarded.
+     *
+     * @param parser the parser previously obtained through {@link #borrow()}
+     */
+    public void release(SAXParser parser) {
+        if (parser == null) {
+            return;
+        }
+        try {
+            parser.reset();
+        } catch (UnsupportedOperationException e) {
+            LOG.debug("SAX parser does not support reset, discarding it.", e);
+            return;
+        }
+        idleParsers.offer(parser);
+    }
+
+    public int getIdleCount() {
+        return idleParsers.size();
+    }
+}
@@ -0,0 +1,33 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser;
+
+import org.xml.sax.SAXException;
+
+/**
+ * Control-flow signal used to abort a SAX parse once the wanted value was found.
+ * <p>
+ * SAX offers no other way to stop a parse, so a single stack-less instance is shared and thrown :
+ * no stack trace is filled in and nothing is allocated per message.
+ */
+final class StopParsingException extends SAXException {
+
+    static final StopParsingException INSTANCE = new StopParsingException();
+
+    private StopParsingException() {
+        super("Found the required value, parsing stopped.");
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
@@ -13,7 +13,18 @@ package eu.europa.ec.fisheries.uvms.plugins.mdr.service;
 import eu.europa.ec.fisheries.uvms.commons.message.api.MessageException;
 import eu.europa.ec.fisheries.uvms.exchange.model.exception.ExchangeModelMarshallException;
 import eu.europa.ec.fisheries.uvms.exchange.model.mapper.ExchangeModuleRequestMapper;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.PluginConfiguration;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Listener;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Stage;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.OutboxJournal;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.OutboxTarget;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.ReliableOutbox;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.ExchangeStreamingProducer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.PayloadEncoding;
 import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.PluginToExchangeProducer;
+import java.util.Map;
 import javax.ejb.EJB;
 import javax.ejb.LocalBean;
 import javax.ejb.Stateless;
@@ -29,18 +40,88 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class ExchangePluginServiceBean {
 
+    private static final String FLUX_USERNAME = "flux";
+
     @EJB
     private PluginToExchangeProducer exchangeProducer;
 
-    public void sendFLUXMDRResponseMessageToExchange(String fluxMdrResponseText) {
+    @EJB
+    private ExchangeStreamingProducer streamingProducer;
+
+    @EJB
+    private StartupBean startup;
+
+    @EJB
+    private PluginMetrics metrics;
+
+    @EJB
+    private ReliableOutbox outbox;
+
+    /**
+     * Sends the response to Exchange, recording it in the outbox until it is sent.
+     *
+     * @return true when the response was sent, false when it could not be mapped or sent
+     */
+    public boolean sendFLUXMDRResponseMessageToExchange(String fluxMdrResponseText) {
+        return sendFLUXMDRResponseMessageToExchange(fluxMdrResponseText, null);
+    }
+
+    /**
+     * @param properties the JMS string properties of the message, may be null
+     * @return true when the response was sent, false when it could not be mapped or sent
+     */
+    public boolean sendFLUXMDRResponseMessageToExchange(String fluxMdrResponseText, Map<String, String> properties) {
+        long sequence = outbox.record(OutboxTarget.EXCHANGE, fluxMdrResponseText, properties, OutboxJournal.NO_EXPIRY);
         try {
-            String text = ExchangeModuleRequestMapper.createFluxMdrSyncEntityResponse(fluxMdrResponseText, "flux");
-            String messageId = exchangeProducer.sendModuleMessage(text, null);
-            log.info("FluxMdrResponse Sent to Exchange module. MessageID :" + messageId);
+            deliverFLUXMDRResponseMessageToExchange(fluxMdrResponseText, properties);
+            outbox.acknowledge(sequence);
+            return true;
         } catch (ExchangeModelMarshallException e) {
+            metrics.error(Listener.FLUX_RESPONSE, e);
             log.error("Couldn't map Mdr Entity to SetFLUXMDRSyncMessageResponse.", e);
+            // Sending it again would fail the same way.
+            outbox.acknowledge(sequence);
         } catch (MessageException e) {
-            log.error("Couldn't send SetFLUXMDRSyncMessageResponse to Exchange module", e);
+            metrics.error(Listener.FLUX_RESPONSE, e);
+            outbox.sendFailed(sequence);
+            log.error("Couldn't send SetFLUXMDRSyncMessageResponse to Exchange module{}", sequence == ReliableOutbox.NOT_RECORDED ? "." : ", it will be sent again from the outbox.", e);
+        }
+        return false;
+    }
+
+    /**
+     * Sends the response to Exchange without recording it in the outbox, used when replaying it.
+     *
+     * @param properties the JMS string properties of the message, may be null
+     * @throws ExchangeModelMarshallException when the response cannot be mapped to a SetFLUXMDRSyncMessageResponse
+     * @throws MessageException when the message cannot be sent
+     */
+    public void deliverFLUXMDRResponseMessageToExchange(String fluxMdrResponseText, Map<String, String> properties) throws ExchangeModelMarshallException, MessageException {
+        PluginConfiguration configuration = startup.getConfiguration();
+        int length = fluxMdrResponseText == null ? -1 : fluxMdrResponseText.length();
+        if (configuration.isExchangeCompressionEnabled() && length >= configuration.getExchangeCompressionThresholdChars()) {
+            sendStreamed(fluxMdrResponseText, PayloadEncoding.GZIP, properties);
+            return;
+        }
+        if (configuration.isExchangeStreamingEnabled() && length >= configuration.getExchangeStreamingThresholdChars()) {
+            sendStreamed(fluxMdrResponseText, PayloadEncoding.IDENTITY, properties);
+            return;
         }
+        long start = System.nanoTime();
+        String text = ExchangeModuleRequestMapper.createFluxMdrSyncEntityResponse(fluxMdrResponseText, FLUX_USERNAME);
+        metrics.recordLatency(Stage.MAPPING, start);
+        start = System.nanoTime();
+        String messageId = properties == null ? exchangeProducer.sendModuleMessage(text, null)
+                : exchangeProducer.sendModuleMessageWithProps(text, null, properties);
+        metrics.recordLatency(Stage.JMS_SEND, start);
+        log.info("FluxMdrResponse Sent to Exchange module. MessageID :" + messageId);
+    }
+
+    private void sendStreamed(String fluxMdrResponseText, PayloadEncoding encoding, Map<String, String> properties) throws MessageException {
+        // Mapping and sending cannot be told apart when streaming, the whole write is timed as the send.
+        long start = System.nanoTime();
+        String messageId = streamingProducer.sendFluxMdrSyncResponse(fluxMdrResponseText, FLUX_USERNAME, encoding, properties);
+        metrics.recordLatency(Stage.JMS_SEND, start);
+        log.info("FluxMdrResponse streamed to Exchange module ({}). MessageID : {}", encoding, messageId);
     }
 }
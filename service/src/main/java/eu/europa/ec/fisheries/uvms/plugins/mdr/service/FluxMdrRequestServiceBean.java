@@ -0,0 +1,192 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.service;
+
+import eu.europa.ec.fisheries.uvms.commons.message.api.MessageException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.constants.FluxConnectionConstants;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.cache.MdrCachedResponse;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.cache.MdrResponseCache;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrCorrelationIndex;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrRequestCoalescer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.PendingMdrQuery;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.mapper.FluxMessagePropertiesMapper;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Listener;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Stage;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.OutboxTarget;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.ReliableOutbox;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.FluxBridgeBatchProducer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.FluxBridgeProducer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.FluxBridgeRateLimiter;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionPlan;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrField;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrFieldExtractor;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrMessageFields;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import javax.ejb.EJB;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.time.DateUtils;
+
+/**
+ * EJB sending the MDR requests of Exchange to FLUX TL through the bridge queue.
+ * <p>
+ * Requests are answered from the response cache when possible, coalesced with an identical request still waiting for its
+ * response, recorded in the outbox and handed to the rate limiter, the batcher or the bridge producer.
+ */
+@LocalBean
+@Stateless
+@Slf4j
+public class FluxMdrRequestServiceBean {
+
+    private static final MdrFieldExtractor FIELD_EXTRACTOR = new MdrFieldExtractor();
+
+    @EJB
+    private StartupBean startup;
+
+    @EJB
+    private MdrCorrelationIndex correlationIndex;
+
+    @EJB
+    private MdrRequestCoalescer requestCoalescer;
+
+    @EJB
+    private FluxBridgeProducer bridgeProducer;
+
+    @EJB
+    private FluxBridgeBatchProducer batchProducer;
+
+    @EJB
+    private FluxBridgeRateLimiter rateLimiter;
+
+    @EJB
+    private ExchangePluginServiceBean exchangeService;
+
+    @EJB
+    private MdrResponseCache responseCache;
+
+    @EJB
+    private ReliableOutbox outbox;
+
+    @EJB
+    private PluginMetrics metrics;
+
+    /**
+     * Sends the request to the FR party, the TODT of the message starts now.
+     */
+    public void send(String fr, String request) {
+        Date deadline = DateUtils.addMinutes(new Date(), startup.getConfiguration().getFluxTodtMinutes());
+        PendingMdrQuery query = createPendingQuery(request, fr, FluxMessagePropertiesMapper.createBusinessUUID(), deadline);
+        MdrCachedResponse cached = responseCache.lookup(query);
+        if (cached != null) {
+            log.info("[INFO] Answering MDR request {} from the response cache (version {}).", query, cached.getVersion());
+            exchangeService.sendFLUXMDRResponseMessageToExchange(cached.getResponse());
+            return;
+        }
+        PendingMdrQuery inFlightQuery = requestCoalescer.coalesce(query);
+        if (inFlightQuery != null) {
+            log.info("[INFO] Identical MDR request {} is already waiting for its response, not sending it again.", inFlightQuery);
+            return;
+        }
+        Map<String, String> properties = FluxMessagePropertiesMapper.createMessagePropertiesMap(query.getFr(), query.getBusinessUuid(), deadline);
+        correlationIndex.register(query);
+        long sequence = outbox.record(OutboxTarget.BRIDGE, request, properties, deadline.getTime());
+        if (rateLimiter.isEnabled()) {
+            sendAsync(rateLimiter.send(query.getFr(), request, properties), query, sequence);
+            return;
+        }
+        if (batchProducer.isEnabled()) {
+            sendAsync(batchProducer.send(request, properties), query, sequence);
+            return;
+        }
+        long sendStart = System.nanoTime();
+        try {
+            bridgeProducer.sendModuleMessageWithProps(request, null, properties);
+            metrics.recordLatency(Stage.JMS_SEND, sendStart);
+            outbox.acknowledge(sequence);
+        } catch (MessageException e) {
+            metrics.error(Listener.EVENT_BUS, e);
+            outbox.sendFailed(sequence);
+            correlationIndex.deregister(query);
+            requestCoalescer.release(query);
+            log.error("Error while trying to send message to bridge queue : ", e);
+        }
+    }
+
+    /**
+     * Records the request in the outbox without sending it, the outbox replay sends it later on.
+     *
+     * @return false when the outbox is off or could not record the request
+     */
+    public boolean recordForReplay(String fr, String request) {
+        if (!outbox.isEnabled()) {
+            return false;
+        }
+        Date deadline = DateUtils.addMinutes(new Date(), startup.getConfiguration().getFluxTodtMinutes());
+        Map<String, String> properties = FluxMessagePropertiesMapper.createMessagePropertiesMap(fr, FluxMessagePropertiesMapper.createBusinessUUID(), deadline);
+        return outbox.defer(OutboxTarget.BRIDGE, request, properties, deadline.getTime()) != ReliableOutbox.NOT_RECORDED;
+    }
+
+    /**
+     * Sends a request of the outbox again, registered for correlation under the BUSINESS_UUID it was recorded with.
+     *
+     * @param properties the properties the request was recorded with
+     * @param expiresAt the TODT deadline of the request
+     * @throws MessageException when the request cannot be sent
+     */
+    public void resend(String request, Map<String, String> properties, long expiresAt) throws MessageException {
+        PendingMdrQuery query = createPendingQuery(request, properties.get(FluxConnectionConstants.FLUX_ENV_FR),
+                properties.get(FluxConnectionConstants.BUSINESS_UUID), new Date(expiresAt));
+        correlationIndex.register(query);
+        try {
+            bridgeProducer.sendModuleMessageWithProps(request, null, properties);
+        } catch (MessageException e) {
+            correlationIndex.deregister(query);
+            throw e;
+        }
+    }
+
+    private void sendAsync(CompletableFuture<String> sent, final PendingMdrQuery query, final long sequence) {
+        sent.whenComplete((messageId, error) -> {
+            if (error == null) {
+                outbox.acknowledge(sequence);
+            } else {
+                metrics.error(Listener.EVENT_BUS, error);
+                outbox.sendFailed(sequence);
+                correlationIndex.deregister(query);
+                requestCoalescer.release(query);
+                log.error("Error while trying to send message to bridge queue : ", error);
+            }
+        });
+    }
+
+    private PendingMdrQuery createPendingQuery(String request, String fr, String businessUuid, Date deadline) {
+        String queryUuid = null;
+        String acronym = null;
+        String queryType = null;
+        try {
+            long start = System.nanoTime();
+            MdrMessageFields fields = FIELD_EXTRACTOR.extract(request, MdrExtractionPlan.ROUTING_FIELDS);
+            metrics.recordLatency(Stage.EXTRACTION, start);
+            queryUuid = fields.get(MdrField.MESSAGE_UUID);
+            acronym = fields.get(MdrField.ACRONYM);
+            queryType = fields.get(MdrField.QUERY_TYPE);
+        } catch (MdrExtractionException e) {
+            log.warn("[WARN] Could not read the MDR query identifiers, the response will only be correlated on BUSINESS_UUID.", e);
+        }
+        return new PendingMdrQuery(queryUuid, businessUuid, fr, acronym, queryType, System.currentTimeMillis(), deadline.getTime());
+    }
+}
@@ -18,6 +18,7 @@ import eu.europa.ec.fisheries.schema.exchange.plugin.types.v1.EmailType;
 import eu.europa.ec.fisheries.schema.exchange.plugin.types.v1.PollType;
 import eu.europa.ec.fisheries.schema.exchange.service.v1.SettingListType;
 import eu.europa.ec.fisheries.uvms.plugins.mdr.StartupBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.lifecycle.PluginLifecycle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,6 +37,9 @@ public class PluginService {
     @EJB
     private StartupBean startupBean;
 
+    @EJB
+    private PluginLifecycle lifecycle;
+
     final static Logger LOG = LoggerFactory.getLogger(PluginService.class);
 
 
@@ -70,8 +74,8 @@ public class PluginService {
         try {
             for (KeyValueType values : settings.getSetting()) {
                 LOG.debug("Setting [ " + values.getKey() + " : " + values.getValue() + " ]");
-                startupBean.getSettings().put(values.getKey(), values.getValue());
             }
+            startupBean.updateSettings(settings);
             return AcknowledgeTypeType.OK;
         } catch (Exception e) {
             LOG.error("Failed to set config in {}", startupBean.getRegisterClassName(),e);
@@ -88,10 +92,9 @@ public class PluginService {
     public AcknowledgeTypeType start() {
         LOG.info(startupBean.getRegisterClassName() + ".start()");
         try {
-            startupBean.setIsEnabled(Boolean.TRUE);
+            lifecycle.start();
             return AcknowledgeTypeType.OK;
         } catch (Exception e) {
-            startupBean.setIsEnabled(Boolean.FALSE);
             LOG.error("Failed to start {}", startupBean.getRegisterClassName(),e);
             return AcknowledgeTypeType.NOK;
         }
@@ -99,17 +102,16 @@ public class PluginService {
     }
 
     /**
-     * Start the mdr. Use this to disable functionality in the mdr
+     * Stop the mdr. Use this to disable functionality in the mdr : MDR requests are kept until the mdr is started again
      *
      * @return
      */
     public AcknowledgeTypeType stop() {
         LOG.info(startupBean.getRegisterClassName() + ".stop()");
         try {
-            startupBean.setIsEnabled(Boolean.FALSE);
+            lifecycle.stop();
             return AcknowledgeTypeType.OK;
         } catch (Exception e) {
-            startupBean.setIsEnabled(Boolean.TRUE);
             LOG.error("Failed to stop {}", startupBean.getRegisterClassName(),e);
             return AcknowledgeTypeType.NOK;
         }
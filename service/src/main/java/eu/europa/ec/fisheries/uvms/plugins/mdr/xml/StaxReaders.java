@@ -0,0 +1,70 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.xml;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * StAX readers shared by the code which streams the FLUX and event bus messages.
+ * <p>
+ * The input factories are namespace aware, coalescing and refuse DTDs and external entities.
+ */
+public final class StaxReaders {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StaxReaders.class);
+
+    // XMLInputFactory implementations are not guaranteed to be thread-safe, so every thread gets its own.
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORIES = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            return createInputFactory();
+        }
+    };
+
+    private StaxReaders() {
+    }
+
+    /**
+     * @return the StAX input factory of the calling thread
+     */
+    public static XMLInputFactory getInputFactory() {
+        return INPUT_FACTORIES.get();
+    }
+
+    /**
+     * Closes the reader, logging the failure if any.
+     *
+     * @param reader the reader to close, may be null
+     */
+    public static void close(XMLStreamReader reader) {
+        if (reader == null) {
+            return;
+        }
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            LOG.debug("Could not close XML stream reader.", e);
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.TRUE);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        return factory;
+    }
+}
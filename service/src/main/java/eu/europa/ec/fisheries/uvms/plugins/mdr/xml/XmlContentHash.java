@@ -0,0 +1,42 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr.xml;
+
+/**
+ * 64 bit FNV-1a hash of XML content, fed one name, attribute value or text at a time.
+ * Every value is followed by a separator so that "ab" + "c" and "a" + "bc" do not collide.
+ */
+public final class XmlContentHash {
+
+    public static final long EMPTY = 0xcbf29ce484222325L;
+
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final int SEPARATOR = 0xFFFF;
+
+    private XmlContentHash() {
+    }
+
+    /**
+     * @param hash the hash so far, {@link #EMPTY} to start
+     * @param value the next value, null is hashed like the empty string
+     */
+    public static long update(long hash, String value) {
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                hash ^= value.charAt(i);
+                hash *= FNV_PRIME;
+            }
+        }
+        hash ^= SEPARATOR;
+        return hash * FNV_PRIME;
+    }
+}
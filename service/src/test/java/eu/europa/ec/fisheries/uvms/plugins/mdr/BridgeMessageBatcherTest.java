@@ -0,0 +1,213 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import eu.europa.ec.fisheries.uvms.commons.message.api.MessageException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.BridgeMessageBatcher;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import org.junit.After;
+import org.junit.Test;
+
+public class BridgeMessageBatcherTest {
+
+    private final FakeBroker broker = new FakeBroker();
+    private BridgeMessageBatcher batcher;
+    private Thread worker;
+
+    @After
+    public void stopWorker() throws InterruptedException {
+        if (batcher != null) {
+            batcher.stop();
+            worker.join(5000);
+        }
+    }
+
+    @Test
+    public void testMessagesAreSentInBatches() throws Exception {
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        startBatcher(2, 1000);
+        for (int i = 0; i < 5; i++) {
+            results.add(batcher.submit("message-" + i, properties("XEU", "uuid-" + i)));
+        }
+        for (CompletableFuture<String> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(5, broker.committed.size());
+        assertEquals(3, broker.commitCount);
+        assertEquals(1, broker.connectionCount);
+        assertEquals("uuid-3", broker.committed.get(3).get("BUSINESS_UUID"));
+        assertEquals("XEU", broker.committed.get(3).get("FR"));
+        assertEquals("message-3", broker.committed.get(3).get("text"));
+    }
+
+    @Test
+    public void testLingerClosesIncompleteBatch() throws Exception {
+        startBatcher(100, 10);
+        assertTrue(batcher.submit("message", properties("XEU", "uuid")).get(5, TimeUnit.SECONDS).startsWith("ID:"));
+        assertEquals(1, broker.commitCount);
+    }
+
+    @Test
+    public void testOnlyFailingMessageIsReported() throws Exception {
+        broker.poisonText = "bad";
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        batcher = new BridgeMessageBatcher(broker.factory(), null, 3, 1000, 100);
+        results.add(batcher.submit("good-1", properties("XEU", "uuid-1")));
+        results.add(batcher.submit("bad", properties("XEU", "uuid-2")));
+        results.add(batcher.submit("good-2", properties("XEU", "uuid-3")));
+        startWorker();
+
+        results.get(0).get(5, TimeUnit.SECONDS);
+        results.get(2).get(5, TimeUnit.SECONDS);
+        try {
+            results.get(1).get(5, TimeUnit.SECONDS);
+            fail("The poisoned message should have failed.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof MessageException);
+        }
+        assertEquals(2, broker.committed.size());
+        assertEquals(1, batcher.getFailedCount());
+    }
+
+    @Test
+    public void testStoppedBatcherRejectsMessages() throws Exception {
+        startBatcher(10, 0);
+        batcher.stop();
+        try {
+            batcher.submit("message", Collections.<String, String>emptyMap()).get(5, TimeUnit.SECONDS);
+            fail("A stopped batcher should not accept messages.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof MessageException);
+        }
+    }
+
+    private void startBatcher(int batchSize, long lingerMillis) {
+        batcher = new BridgeMessageBatcher(broker.factory(), null, batchSize, lingerMillis, 100);
+        startWorker();
+    }
+
+    private void startWorker() {
+        worker = new Thread(batcher, "bridge-batcher-test");
+        worker.start();
+    }
+
+    private static Map<String, String> properties(String fr, String businessUuid) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("FR", fr);
+        properties.put("BUSINESS_UUID", businessUuid);
+        return properties;
+    }
+
+    /**
+     * Minimal transacted JMS provider built from dynamic proxies : sent messages become visible on commit.
+     */
+    private static class FakeBroker {
+
+        private final List<Map<String, String>> committed = Collections.synchronizedList(new ArrayList<Map<String, String>>());
+        private final List<Map<String, String>> uncommitted = new ArrayList<>();
+        private volatile int commitCount;
+        private volatile int connectionCount;
+        private volatile String poisonText;
+        private int messageSequence;
+
+        private ConnectionFactory factory() {
+            return proxy(ConnectionFactory.class, (p, method, args) -> {
+                connectionCount++;
+                return connection();
+            });
+        }
+
+        private Connection connection() {
+            return proxy(Connection.class, (p, method, args) -> "createSession".equals(method.getName()) ? session() : null);
+        }
+
+        private Session session() {
+            return proxy(Session.class, (p, method, args) -> {
+                switch (method.getName()) {
+                    case "createTextMessage":
+                        return message((String) args[0]);
+                    case "createProducer":
+                        return producer();
+                    case "commit":
+                        commitCount++;
+                        committed.addAll(uncommitted);
+                        uncommitted.clear();
+                        return null;
+                    case "rollback":
+                        uncommitted.clear();
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private MessageProducer producer() {
+            return proxy(MessageProducer.class, (p, method, args) -> {
+                if ("send".equals(method.getName())) {
+                    TextMessage message = (TextMessage) args[args.length - 1];
+                    if (message.getText().equals(poisonText)) {
+                        throw new JMSException("Poisoned message");
+                    }
+                    Map<String, String> sent = new HashMap<>();
+                    sent.put("text", message.getText());
+                    sent.put("FR", message.getStringProperty("FR"));
+                    sent.put("BUSINESS_UUID", message.getStringProperty("BUSINESS_UUID"));
+                    uncommitted.add(sent);
+                }
+                return null;
+            });
+        }
+
+        private TextMessage message(final String text) {
+            final Map<String, String> properties = new HashMap<>();
+            final String id = "ID:" + (++messageSequence);
+            return proxy(TextMessage.class, (p, method, args) -> {
+                switch (method.getName()) {
+                    case "getText":
+                        return text;
+                    case "setStringProperty":
+                        properties.put((String) args[0], (String) args[1]);
+                        return null;
+                    case "getStringProperty":
+                        return properties.get(args[0]);
+                    case "getJMSMessageID":
+                        return id;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, java.lang.reflect.InvocationHandler handler) {
+            return (T) Proxy.newProxyInstance(FakeBroker.class.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+    }
+}
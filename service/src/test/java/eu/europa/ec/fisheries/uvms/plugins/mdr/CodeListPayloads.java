@@ -0,0 +1,80 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+/**
+ * Synthetic FLUX MDR payloads shared by the tests and, through the test jar, by the benchmarks.
+ * <p>
+ * Code lists are generated rather than read from disk so that they can be built at any size, from a few entries up to
+ * the largest lists (SPECIES, LOCATION) the plugin has to forward.
+ */
+public final class CodeListPayloads {
+
+    private CodeListPayloads() {
+    }
+
+    /**
+     * @return a FLUXMDRReturnMessage of roughly the given size in characters
+     */
+    public static String createResponseMessage(int approximateSize) {
+        return createResponseMessage(approximateSize, null);
+    }
+
+    /**
+     * @param referencedUuid the MDRQuery/ID the response answers, null for a response without ReferencedID
+     * @return a FLUXMDRReturnMessage of roughly the given size in characters
+     */
+    public static String createResponseMessage(int approximateSize, String referencedUuid) {
+        StringBuilder message = new StringBuilder(approximateSize + 1024);
+        message.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n")
+                .append("<rsm:FLUXMDRReturnMessage xmlns:rsm=\"urn:un:unece:uncefact:data:standard:FLUXMDRReturnMessage:5\" xmlns:ram=\"urn:un:unece:uncefact:data:standard:ReusableAggregateBusinessInformationEntity:20\">\n")
+                .append("    <rsm:FLUXResponseDocument>\n")
+                .append("        <ram:ID schemeID=\"UUID\">4d2f1b0a-6c1e-4a8e-9f57-2b1c3d4e5f60</ram:ID>\n");
+        if (referencedUuid != null) {
+            message.append("        <ram:ReferencedID schemeID=\"UUID\">").append(referencedUuid).append("</ram:ReferencedID>\n");
+        }
+        message.append("        <ram:ResponseCode listID=\"FLUX_GP_RESPONSE\">OK</ram:ResponseCode>\n")
+                .append("    </rsm:FLUXResponseDocument>\n")
+                .append("    <rsm:MDRDataSet>\n")
+                .append("        <ram:ID schemeID=\"INDEX\">SPECIES</ram:ID>\n");
+        int code = 0;
+        while (message.length() < approximateSize) {
+            message.append("        <ram:ContainedMDRDataNode>\n")
+                    .append("            <ram:ID schemeID=\"SPECIES\">S").append(code++).append("</ram:ID>\n")
+                    .append("            <ram:SubordinateMDRElementDataNode><ram:Name>SCIENTIFIC_NAME</ram:Name><ram:Value>Gadus morhua &amp; co</ram:Value></ram:SubordinateMDRElementDataNode>\n")
+                    .append("        </ram:ContainedMDRDataNode>\n");
+        }
+        return message.append("    </rsm:MDRDataSet>\n</rsm:FLUXMDRReturnMessage>\n").toString();
+    }
+
+    /**
+     * @return a FLUXMDRQueryMessage for the given code list
+     */
+    public static String createQueryMessage(String uuid, String acronym, String queryType) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
+                "<ns3:FLUXMDRQueryMessage xmlns=\"urn:un:unece:uncefact:data:standard:ReusableAggregateBusinessInformationEntity:20\" xmlns:ns2=\"urn:un:unece:uncefact:data:standard:UnqualifiedDataType:20\" xmlns:ns3=\"urn:un:unece:uncefact:data:standard:FLUXMDRQueryMessage:5\">\n" +
+                "    <ns3:MDRQuery>\n" +
+                "        <ID schemeID=\"UUID\">" + uuid + "</ID>\n" +
+                "        <SubmittedDateTime>\n" +
+                "            <ns2:DateTime>2018-03-08T15:17:37.022Z</ns2:DateTime>\n" +
+                "        </SubmittedDateTime>\n" +
+                "        <TypeCode listID=\"FLUX_MDR_QUERY_TYPE\">" + queryType + "</TypeCode>\n" +
+                "        <ContractualLanguageCode>EN</ContractualLanguageCode>\n" +
+                "        <SubmitterFLUXParty>\n" +
+                "            <ID>BEL</ID>\n" +
+                "        </SubmitterFLUXParty>\n" +
+                "        <SubjectMDRQueryIdentity>\n" +
+                "            <ID schemeID=\"INDEX\">" + acronym + "</ID>\n" +
+                "        </SubjectMDRQueryIdentity>\n" +
+                "    </ns3:MDRQuery>\n" +
+                "</ns3:FLUXMDRQueryMessage>\n";
+    }
+}
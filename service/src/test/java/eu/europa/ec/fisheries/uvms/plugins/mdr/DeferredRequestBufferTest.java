@@ -0,0 +1,87 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.lifecycle.DeferredMdrRequest;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.lifecycle.DeferredRequestBuffer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.lifecycle.OverflowPolicy;
+import java.util.List;
+import org.junit.Test;
+
+public class DeferredRequestBufferTest {
+
+    @Test
+    public void testRequestsAreReleasedInArrivalOrder() {
+        DeferredRequestBuffer buffer = new DeferredRequestBuffer(10, OverflowPolicy.REDELIVER);
+        buffer.offer(request("first"));
+        buffer.offer(request("second"));
+        assertEquals(2, buffer.size());
+        assertEquals("first", buffer.poll().getRequest());
+        assertEquals("second", buffer.poll().getRequest());
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    public void testFullBufferAsksForRedelivery() {
+        DeferredRequestBuffer buffer = new DeferredRequestBuffer(1, OverflowPolicy.REDELIVER);
+        assertTrue(buffer.offer(request("first")));
+        assertFalse(buffer.offer(request("second")));
+        assertEquals(1, buffer.size());
+        assertEquals(0, buffer.getDroppedCount());
+    }
+
+    @Test
+    public void testFullBufferDropsTheOldestRequest() {
+        DeferredRequestBuffer buffer = new DeferredRequestBuffer(2, OverflowPolicy.DROP_OLDEST);
+        buffer.offer(request("first"));
+        buffer.offer(request("second"));
+        assertTrue(buffer.offer(request("third")));
+        List<DeferredMdrRequest> drained = buffer.drain();
+        assertEquals(2, drained.size());
+        assertEquals("second", drained.get(0).getRequest());
+        assertEquals("third", drained.get(1).getRequest());
+        assertEquals(1, buffer.getDroppedCount());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testFullBufferDropsTheNewestRequest() {
+        DeferredRequestBuffer buffer = new DeferredRequestBuffer(1, OverflowPolicy.DROP_NEWEST);
+        buffer.offer(request("first"));
+        assertTrue(buffer.offer(request("second")));
+        assertEquals("first", buffer.poll().getRequest());
+        assertEquals(1, buffer.getDroppedCount());
+    }
+
+    @Test
+    public void testLowerCapacityKeepsTheBufferedRequests() {
+        DeferredRequestBuffer buffer = new DeferredRequestBuffer(3, OverflowPolicy.REDELIVER);
+        buffer.offer(request("first"));
+        buffer.offer(request("second"));
+        buffer.configure(1, OverflowPolicy.REDELIVER);
+        assertEquals(2, buffer.size());
+        assertFalse(buffer.offer(request("third")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCapacityMustBePositive() {
+        new DeferredRequestBuffer(0, OverflowPolicy.REDELIVER);
+    }
+
+    private static DeferredMdrRequest request(String request) {
+        return new DeferredMdrRequest("XEU", request, System.currentTimeMillis());
+    }
+}
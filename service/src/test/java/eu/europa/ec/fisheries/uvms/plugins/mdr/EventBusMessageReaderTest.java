@@ -0,0 +1,50 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import eu.europa.ec.fisheries.uvms.exchange.model.exception.ExchangeModelMarshallException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.mapper.EventBusMessageReader;
+import org.junit.Test;
+
+public class EventBusMessageReaderTest {
+
+    @Test
+    public void testPeekPluginMethod() throws ExchangeModelMarshallException {
+        String message = "<ns2:SetMdrPluginRequest xmlns:ns2=\"urn:plugin.exchange.schema.fisheries.ec.europa.eu:v1\">"
+                + "<method>SET_MDR_REQUEST</method><request>&lt;FLUXMDRQueryMessage/&gt;</request><fr>XEU</fr>"
+                + "</ns2:SetMdrPluginRequest>";
+        assertEquals("SET_MDR_REQUEST", EventBusMessageReader.peekMethod(message));
+    }
+
+    @Test
+    public void testPeekMethodNotFirstChild() throws ExchangeModelMarshallException {
+        String message = "<ns2:RegisterServiceResponse xmlns:ns2=\"urn:registry.exchange.schema.fisheries.ec.europa.eu:v1\">"
+                + "<ack><type>OK</type><method>NOT_THIS_ONE</method></ack>\n  <method> REGISTER_SERVICE </method>"
+                + "</ns2:RegisterServiceResponse>";
+        assertEquals("REGISTER_SERVICE", EventBusMessageReader.peekMethod(message));
+    }
+
+    @Test
+    public void testPeekFaultHasNoMethod() throws ExchangeModelMarshallException {
+        String message = "<ns2:PluginFault xmlns:ns2=\"urn:types.plugin.exchange.schema.fisheries.ec.europa.eu:v1\">"
+                + "<code>500</code><message>Service not registered</message></ns2:PluginFault>";
+        assertNull(EventBusMessageReader.peekMethod(message));
+        assertNull(EventBusMessageReader.peekMethod(null));
+    }
+
+    @Test(expected = ExchangeModelMarshallException.class)
+    public void testPeekMalformedMessage() throws ExchangeModelMarshallException {
+        EventBusMessageReader.peekMethod("<SetConfigRequest><configurations>");
+    }
+}
@@ -0,0 +1,121 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import eu.europa.ec.fisheries.uvms.commons.message.api.MessageException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.FairOutboundScheduler;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+public class FairOutboundSchedulerTest {
+
+    private final List<String> dispatched = Collections.synchronizedList(new ArrayList<String>());
+    private FairOutboundScheduler scheduler;
+    private Thread worker;
+
+    @After
+    public void stopWorker() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.stop();
+        }
+        if (worker != null) {
+            worker.join(5000);
+        }
+    }
+
+    @Test
+    public void testDestinationsAreServedRoundRobin() throws Exception {
+        scheduler = new FairOutboundScheduler(this::record, 0, 1, 100);
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        results.add(scheduler.submit("XEU", "XEU-1", props()));
+        results.add(scheduler.submit("XEU", "XEU-2", props()));
+        results.add(scheduler.submit("XEU", "XEU-3", props()));
+        results.add(scheduler.submit("BEL", "BEL-1", props()));
+        results.add(scheduler.submit("FRA", "FRA-1", props()));
+        assertEquals(5, scheduler.getQueueDepth());
+        assertEquals(Integer.valueOf(3), scheduler.getQueueDepths().get("XEU"));
+
+        startWorker();
+        for (CompletableFuture<String> result : results) {
+            result.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(Arrays.asList("XEU-1", "BEL-1", "FRA-1", "XEU-2", "XEU-3"), dispatched);
+        assertEquals(0, scheduler.getQueueDepth());
+        assertEquals(5, scheduler.getDispatchedCount());
+    }
+
+    @Test
+    public void testRateIsLimited() throws Exception {
+        scheduler = new FairOutboundScheduler(this::record, 20, 1, 100);
+        startWorker();
+        long start = System.nanoTime();
+        CompletableFuture<String> last = null;
+        for (int i = 0; i < 5; i++) {
+            last = scheduler.submit("XEU", "XEU-" + i, props());
+        }
+        last.get(5, TimeUnit.SECONDS);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // One token is available immediately, the four others come every 50 ms.
+        assertTrue("Sent too fast : " + elapsedMillis + " ms", elapsedMillis >= 180);
+        assertTrue(scheduler.getMaxWaitMillis() >= 150);
+    }
+
+    @Test
+    public void testRateChangeAppliesToWaitingMessages() throws Exception {
+        scheduler = new FairOutboundScheduler(this::record, 0.1, 1, 100);
+        startWorker();
+        scheduler.submit("XEU", "XEU-1", props()).get(5, TimeUnit.SECONDS);
+        CompletableFuture<String> second = scheduler.submit("XEU", "XEU-2", props());
+        Thread.sleep(50);
+        assertEquals(1, dispatched.size());
+        scheduler.setRate(0, 1);
+        second.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testFullQueueRejectsMessages() throws Exception {
+        scheduler = new FairOutboundScheduler(this::record, 0, 1, 1);
+        scheduler.submit("XEU", "XEU-1", props());
+        try {
+            scheduler.submit("BEL", "BEL-1", props()).get(5, TimeUnit.SECONDS);
+            fail("The second message should have been rejected.");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof MessageException);
+        }
+        assertEquals(1, scheduler.getRejectedCount());
+    }
+
+    private CompletableFuture<String> record(String text, Map<String, String> properties) {
+        dispatched.add(text);
+        return CompletableFuture.completedFuture("ID:" + text);
+    }
+
+    private void startWorker() {
+        worker = new Thread(scheduler, "outbound-scheduler-test");
+        worker.start();
+    }
+
+    private static Map<String, String> props() {
+        return Collections.emptyMap();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+
+import eu.europa.ec.fisheries.uvms.commons.message.api.MessageException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.constants.FluxConnectionConstants;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrCorrelation;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrCorrelationIndex;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.FluxBridgeProducer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.service.FluxMdrRequestServiceBean;
+import java.util.HashMap;
+import java.util.Map;
+import javax.jms.Destination;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FluxMdrRequestServiceBeanTest {
+
+    private static final String QUERY_UUID = "c2d3e4f5-a6b7-4c8d-9e0f-1a2b3c4d5e6f";
+
+    @Spy
+    private MdrCorrelationIndex correlationIndex = new MdrCorrelationIndex();
+
+    @Mock
+    private FluxBridgeProducer bridgeProducer;
+
+    @Mock
+    private PluginMetrics metrics;
+
+    @InjectMocks
+    private FluxMdrRequestServiceBean requestService;
+
+    private String request;
+
+    private Map<String, String> properties;
+
+    @Before
+    public void init() {
+        request = CodeListPayloads.createQueryMessage(QUERY_UUID, "FA_REASON_DEPARTURE", "OBJ_DATA_ALL");
+        properties = new HashMap<>();
+        properties.put(FluxConnectionConstants.FLUX_ENV_FR, "XEU");
+        properties.put(FluxConnectionConstants.BUSINESS_UUID, "business-uuid");
+    }
+
+    @Test
+    public void testResentRequestIsRegisteredForCorrelation() throws Exception {
+        requestService.resend(request, properties, System.currentTimeMillis() + 60000);
+        assertNotNull(correlationIndex.findPending(QUERY_UUID));
+        MdrCorrelation correlation = correlationIndex.correlate(null, "business-uuid", System.currentTimeMillis());
+        assertEquals(MdrCorrelation.Status.MATCHED, correlation.getStatus());
+        assertEquals("FA_REASON_DEPARTURE", correlation.getQuery().getAcronym());
+    }
+
+    @Test(expected = MessageException.class)
+    public void testRequestWhichCouldNotBeResentIsDeregistered() throws Exception {
+        when(bridgeProducer.sendModuleMessageWithProps(anyString(), any(Destination.class), anyMapOf(String.class, String.class)))
+                .thenThrow(new MessageException("Bridge queue unavailable"));
+        try {
+            requestService.resend(request, properties, System.currentTimeMillis() + 60000);
+        } finally {
+            assertNull(correlationIndex.findPending(QUERY_UUID));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.cache.MdrResponseCache;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.consumer.FluxMdrResponseProcessor;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrCorrelationIndex;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrRequestCoalescer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.PendingMdrQuery;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.dedup.InboundDeduplicator;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.delta.MdrDelta;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.delta.MdrDeltaComputer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.delta.MdrDeltaSync;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.service.ExchangePluginServiceBean;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class FluxMdrResponseProcessorTest {
+
+    private static final String QUERY_UUID = "a1b2c3d4-e5f6-4a7b-8c9d-0e1f2a3b4c5d";
+
+    @Mock
+    private ExchangePluginServiceBean exchangeService;
+
+    @Spy
+    private MdrCorrelationIndex correlationIndex = new MdrCorrelationIndex();
+
+    @Spy
+    private MdrRequestCoalescer requestCoalescer = new MdrRequestCoalescer();
+
+    @Mock
+    private MdrResponseCache responseCache;
+
+    @Mock
+    private MdrDeltaSync deltaSync;
+
+    @Mock
+    private InboundDeduplicator deduplicator;
+
+    @Mock
+    private PluginMetrics metrics;
+
+    @InjectMocks
+    private FluxMdrResponseProcessor processor;
+
+    private String response;
+
+    private MdrDelta delta;
+
+    @Before
+    public void init() throws Exception {
+        long now = System.currentTimeMillis();
+        PendingMdrQuery query = new PendingMdrQuery(QUERY_UUID, "business-uuid", "XEU", "SPECIES", "OBJ_DATA_ALL", now, now + 60000);
+        correlationIndex.register(query);
+        response = CodeListPayloads.createResponseMessage(4096, QUERY_UUID);
+        MdrDeltaComputer computer = new MdrDeltaComputer();
+        delta = computer.compute(response, computer.compute(response, null).getFingerprint());
+        when(deltaSync.isEnabled()).thenReturn(true);
+        when(deltaSync.prepare(query, response)).thenReturn(delta);
+    }
+
+    @Test
+    public void testDeltaBaseIsKeptWhenTheResponseIsSent() {
+        when(exchangeService.sendFLUXMDRResponseMessageToExchange(anyString(), anyMapOf(String.class, String.class))).thenReturn(true);
+        processor.process(response, "business-uuid");
+        verify(deltaSync).commit(any(PendingMdrQuery.class), any(MdrDelta.class));
+    }
+
+    @Test
+    public void testDeltaBaseIsNotKeptWhenTheSendFails() {
+        when(exchangeService.sendFLUXMDRResponseMessageToExchange(anyString(), anyMapOf(String.class, String.class))).thenReturn(false);
+        processor.process(response, "business-uuid");
+        verify(exchangeService).sendFLUXMDRResponseMessageToExchange(delta.getMessage(), delta.getMessageProperties());
+        verify(deltaSync, never()).commit(any(PendingMdrQuery.class), any(MdrDelta.class));    }
+
+    @Test
+    public void testForwardedResponseIsRemembered() {
+        when(exchangeService.sendFLUXMDRResponseMessageToExchange(anyString(), anyMapOf(String.class, String.class))).thenReturn(true);
+        processor.process(response, "business-uuid");
+        verify(deduplicator).isDuplicate(response);
+        verify(deduplicator).remember(response);
+    }
+
+    @Test
+    public void testResponseIsNotRememberedWhenTheSendFails() {
+        when(exchangeService.sendFLUXMDRResponseMessageToExchange(anyString(), anyMapOf(String.class, String.class))).thenReturn(false);
+        processor.process(response, "business-uuid");
+        verify(deduplicator).isDuplicate(response);
+        verify(deduplicator, never()).remember(anyString());
+    }
+}
@@ -0,0 +1,93 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.mapper.FluxMdrSyncResponseWriter;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.BytesMessageOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.jms.BytesMessage;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import org.junit.Test;
+
+public class FluxMdrSyncResponseWriterTest {
+
+    @Test
+    public void testEnvelopeAroundResponse() throws Exception {
+        String response = new String(MdrUuidExtractorConformanceTest.readResource("mdr/response-fa-reason-departure.xml"), StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FluxMdrSyncResponseWriter.write(response, "flux", out);
+
+        Map<String, String> envelope = readEnvelope(out.toByteArray());
+        assertEquals(FluxMdrSyncResponseWriter.EXCHANGE_MODULE_NAMESPACE + " SetFLUXMDRSyncMessageResponse", envelope.get("root"));
+        assertEquals("SET_MDR_SYNC_MESSAGE_RESPONSE", envelope.get("method"));
+        assertEquals("flux", envelope.get("username"));
+        assertEquals(response, envelope.get("request"));
+    }
+
+    @Test
+    public void testLargePayloadIsStreamedInBoundedWrites() throws Exception {
+        StringBuilder payload = new StringBuilder();
+        while (payload.length() < 500000) {
+            payload.append("<Value>Sp\u00e9cies & <code> \"x\" ").append(payload.length()).append("</Value>\n");
+        }
+        List<Integer> writes = new ArrayList<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        BytesMessageOutputStream out = new BytesMessageOutputStream(bytesMessage(body, writes), 16 * 1024);
+        FluxMdrSyncResponseWriter.write(new StringReader(payload.toString()), "flux", out);
+        out.close();
+
+        assertEquals(body.size(), out.getWrittenBytes());
+        assertEquals(payload.toString(), readEnvelope(body.toByteArray()).get("request"));
+        assertTrue(writes.size() > 1);
+        for (int size : writes) {
+            assertTrue("Unbounded write of " + size + " bytes", size <= 16 * 1024);
+        }
+    }
+
+    private static Map<String, String> readEnvelope(byte[] message) throws Exception {
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new ByteArrayInputStream(message));
+        Map<String, String> envelope = new HashMap<>();
+        reader.nextTag();
+        envelope.put("root", reader.getNamespaceURI() + " " + reader.getLocalName());
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            String name = reader.getLocalName();
+            envelope.put(name, reader.getElementText());
+        }
+        return envelope;
+    }
+
+    private static BytesMessage bytesMessage(final ByteArrayOutputStream body, final List<Integer> writes) {
+        return (BytesMessage) Proxy.newProxyInstance(FluxMdrSyncResponseWriterTest.class.getClassLoader(), new Class<?>[]{BytesMessage.class},
+                (proxy, method, args) -> {
+                    if ("writeBytes".equals(method.getName())) {
+                        byte[] bytes = (byte[]) args[0];
+                        int offset = args.length > 1 ? (Integer) args[1] : 0;
+                        int length = args.length > 1 ? (Integer) args[2] : bytes.length;
+                        body.write(bytes, offset, length);
+                        writes.add(length);
+                    }
+                    return null;
+                });
+    }
+}
@@ -0,0 +1,75 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.constants.FluxConnectionConstants;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.mapper.FluxMessagePropertiesMapper;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import javax.xml.datatype.DatatypeFactory;
+import org.junit.Test;
+
+public class FluxMessagePropertiesMapperTest {
+
+    @Test
+    public void testEnvelopeProperties() {
+        Date deadline = new Date();
+        Map<String, String> properties = FluxMessagePropertiesMapper.createMessagePropertiesMap("XEU", "business-uuid", deadline);
+        assertEquals(8, properties.size());
+        assertEquals(FluxConnectionConstants.CONNECTOR_ID_VAL, properties.get(FluxConnectionConstants.CONNECTOR_ID));
+        assertEquals(FluxConnectionConstants.FLUX_ENV_AD_VAL, properties.get(FluxConnectionConstants.FLUX_ENV_AD));
+        assertEquals(FluxConnectionConstants.FLUX_ENV_TO_VAL, properties.get(FluxConnectionConstants.FLUX_ENV_TO));
+        assertEquals(FluxConnectionConstants.FLUX_ENV_DF_VAL, properties.get(FluxConnectionConstants.FLUX_ENV_DF));
+        assertEquals(FluxConnectionConstants.FLUX_ENV_AR_VAL, properties.get(FluxConnectionConstants.FLUX_ENV_AR));
+        assertEquals("business-uuid", properties.get(FluxConnectionConstants.BUSINESS_UUID));
+        assertEquals("XEU", properties.get(FluxConnectionConstants.FLUX_ENV_FR));
+        assertEquals(FluxMessagePropertiesMapper.createStringDate(deadline), properties.get(FluxConnectionConstants.FLUX_ENV_TODT));
+        assertEquals(5, FluxMessagePropertiesMapper.getEnvelopeTemplate().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testTemplateIsImmutable() {
+        FluxMessagePropertiesMapper.getEnvelopeTemplate().put(FluxConnectionConstants.FLUX_ENV_FR, "XEU");
+    }
+
+    @Test
+    public void testTodtMatchesXmlGregorianCalendar() throws Exception {
+        long[] instants = {0L, 1520522257022L, 1520522257000L, System.currentTimeMillis()};
+        for (long instant : instants) {
+            GregorianCalendar calendar = (GregorianCalendar) GregorianCalendar.getInstance();
+            calendar.setTime(new Date(instant));
+            String expected = DatatypeFactory.newInstance().newXMLGregorianCalendar(calendar).toString();
+            assertEquals(expected, FluxMessagePropertiesMapper.createStringDate(new Date(instant)));
+        }
+        assertNull(FluxMessagePropertiesMapper.createStringDate(null));
+    }
+
+    @Test
+    public void testBusinessUuidIsRandomVersion4() {
+        Set<String> uuids = new HashSet<>();
+        for (int i = 0; i < 10000; i++) {
+            String value = FluxMessagePropertiesMapper.createBusinessUUID();
+            UUID uuid = UUID.fromString(value);
+            assertEquals(4, uuid.version());
+            assertEquals(2, uuid.variant());
+            assertEquals(value, uuid.toString());
+            assertTrue(uuids.add(value));
+        }
+    }
+}
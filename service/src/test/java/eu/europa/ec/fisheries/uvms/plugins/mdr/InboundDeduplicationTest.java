@@ -0,0 +1,136 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static eu.europa.ec.fisheries.uvms.plugins.mdr.MdrUuidExtractorConformanceTest.readResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.dedup.MdrContentHasher;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.dedup.SeenHashWindow;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+public class InboundDeduplicationTest {
+
+    private static final long WINDOW = 1000;
+
+    private final MdrContentHasher hasher = new MdrContentHasher();
+
+    @Test
+    public void testRedeliveryWithNewHeaderHasSameHash() throws Exception {
+        String response = readResponse();
+        String redelivered = response
+                .replace("4d2f1b0a-6c7e-4f89-a0b1-c2d3e4f5a6b7", "0f7c3a9e-1b2d-4e5f-8a6b-7c8d9e0f1a2b")
+                .replace("2018-03-08T15:17:39.512Z", "2018-03-09T08:00:00.000Z")
+                .replace("\n        ", "\n  ");
+        assertEquals(hasher.hash(response), hasher.hash(redelivered));
+    }
+
+    @Test
+    public void testAnswerToAnotherQueryHasAnotherHash() throws Exception {
+        String response = readResponse();
+        String otherQuery = response.replace("bd5c67a2-9dd8-4399-a2d0-b8a5d56a181f", "5e6f7a8b-9c0d-4e1f-a2b3-c4d5e6f7a8b9");
+        assertNotEquals(hasher.hash(response), hasher.hash(otherQuery));
+    }
+
+    @Test
+    public void testContentChangesChangeHash() throws Exception {
+        String response = readResponse();
+        long hash = hasher.hash(response);
+        assertNotEquals(hash, hasher.hash(response.replace("<Version>1.0</Version>", "<Version>1.1</Version>")));
+        assertNotEquals(hash, hasher.hash(response.replace(">OK</ResponseCode>", ">NOK</ResponseCode>")));
+        assertNotEquals(hash, hasher.hash(response.replace("languageID=\"EN\">EU<", "languageID=\"FR\">EU<")));
+        // Only the ID directly under the FLUXResponseDocument is ignored.
+        assertNotEquals(hash, hasher.hash(response.replace(">XEU</ID>", ">XFA</ID>")));
+    }
+
+    @Test(expected = MdrExtractionException.class)
+    public void testMalformedResponseIsRejected() throws Exception {
+        hasher.hash("<FLUXMDRReturnMessage><FLUXResponseDocument>");
+    }
+
+    @Test
+    public void testHashIsSeenWithinWindowOnly() {
+        SeenHashWindow window = new SeenHashWindow(16, WINDOW);
+        assertFalse(window.seen(42L, 0));
+        assertTrue(window.seen(42L, WINDOW - 1));
+        assertFalse(window.seen(42L, WINDOW));
+        assertTrue(window.seen(42L, WINDOW + 1));
+        assertEquals(1, window.size());
+    }
+
+    @Test
+    public void testContainsDoesNotRecordTheHash() {
+        SeenHashWindow window = new SeenHashWindow(16, WINDOW);
+        assertFalse(window.contains(42L, 0));
+        assertFalse(window.contains(42L, 1));
+        assertEquals(0, window.size());
+        window.seen(42L, 2);
+        assertTrue(window.contains(42L, 3));
+        assertFalse(window.contains(42L, WINDOW + 2));
+    }
+
+    @Test
+    public void testZeroHashIsTracked() {
+        SeenHashWindow window = new SeenHashWindow(4, WINDOW);
+        assertFalse(window.seen(0L, 0));
+        assertTrue(window.seen(0L, 1));
+    }
+
+    @Test
+    public void testOldestHashIsEvictedWhenFull() {
+        SeenHashWindow window = new SeenHashWindow(3, WINDOW);
+        window.seen(1L, 0);
+        window.seen(2L, 0);
+        window.seen(3L, 0);
+        assertFalse(window.seen(4L, 0));
+        assertEquals(3, window.size());
+        assertFalse(window.seen(1L, 0));
+        assertTrue(window.seen(3L, 0));
+        assertTrue(window.seen(4L, 0));
+    }
+
+    @Test
+    public void testWindowMatchesReferenceSet() {
+        // Colliding slots and removals in the middle of probe runs, checked against a plain set of the last hashes.
+        int capacity = 64;
+        SeenHashWindow window = new SeenHashWindow(capacity, Long.MAX_VALUE);
+        long[] recent = new long[capacity];
+        int next = 0;
+        int size = 0;
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long hash = 1 + random.nextInt(256);
+            Set<Long> reference = new HashSet<>();
+            for (int j = 0; j < size; j++) {
+                reference.add(recent[j]);
+            }
+            boolean expected = reference.contains(hash);
+            assertEquals("Hash " + hash + " at step " + i, expected, window.seen(hash, i));
+            if (!expected) {
+                recent[next] = hash;
+                next = (next + 1) % capacity;
+                size = Math.min(size + 1, capacity);
+            }
+        }
+    }
+
+    private static String readResponse() throws Exception {
+        return new String(readResource("mdr/response-fa-reason-departure.xml"), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.cache.MappedResponseStore;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.cache.MdrCachedResponse;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrRequestKey;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedResponseStoreTest {
+
+    private static final int SEGMENT_SIZE = MappedResponseStore.MIN_SEGMENT_SIZE;
+
+    private Path directory;
+
+    private MappedResponseStore store;
+
+    @Before
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("mdr-response-cache");
+        store = new MappedResponseStore(directory, SEGMENT_SIZE, 2);
+    }
+
+    @After
+    public void cleanUp() {
+        store.close();
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+
+    @Test
+    public void testStoredResponseIsReadBack() throws IOException {
+        String response = "<FLUXMDRReturnMessage>Pr\u00e9sentation</FLUXMDRReturnMessage>";
+        assertTrue(store.put(key("FA_REASON_DEPARTURE"), response, "1.0", 1000L, 2000L));
+        MdrCachedResponse cached = store.get(key("FA_REASON_DEPARTURE"));
+        assertEquals(response, cached.getResponse());
+        assertEquals("1.0", cached.getVersion());
+        assertEquals(1000L, cached.getStoredAt());
+        assertEquals(2000L, cached.getValidUntil());
+        assertNull(store.get(key("SPECIES")));
+        assertNull(store.get(new MdrRequestKey("FA_REASON_DEPARTURE", "OBJ_DATA_ALL", "XFR")));
+    }
+
+    @Test
+    public void testLatestResponseWins() throws IOException {
+        store.put(key("SPECIES"), "first", null, 1000L, MdrCachedResponse.NO_VALIDITY_END);
+        store.put(key("SPECIES"), "second", "2.0", 2000L, MdrCachedResponse.NO_VALIDITY_END);
+        assertEquals("second", store.get(key("SPECIES")).getResponse());
+        assertEquals(1, store.getEntryCount());
+    }
+
+    @Test
+    public void testEntriesSurviveReopening() throws IOException {
+        store.put(key("SPECIES"), "species", null, 1000L, MdrCachedResponse.NO_VALIDITY_END);
+        store.put(key("GEAR_TYPE"), "gear", "3.1", 1000L, MdrCachedResponse.NO_VALIDITY_END);
+        store.put(key("SPECIES"), "species updated", null, 3000L, MdrCachedResponse.NO_VALIDITY_END);
+        store.close();
+
+        store = new MappedResponseStore(directory, SEGMENT_SIZE, 2);
+        assertEquals(2, store.getEntryCount());
+        assertEquals("species updated", store.get(key("SPECIES")).getResponse());
+        assertEquals("3.1", store.get(key("GEAR_TYPE")).getVersion());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedSegmentIsEvicted() throws IOException {
+        String response = payload(SEGMENT_SIZE / 4);
+        store.put(key("A"), response, null, 0L, MdrCachedResponse.NO_VALIDITY_END);
+        store.put(key("B"), response, null, 0L, MdrCachedResponse.NO_VALIDITY_END);
+        store.put(key("C"), response, null, 0L, MdrCachedResponse.NO_VALIDITY_END);
+        store.put(key("D"), response, null, 0L, MdrCachedResponse.NO_VALIDITY_END);
+        assertEquals(2, store.getSegmentCount());
+
+        // A moves to the active segment, the first one only holds B and C.
+        assertNotNull(store.get(key("A")));
+        store.put(key("E"), response, null, 0L, MdrCachedResponse.NO_VALIDITY_END);
+        store.put(key("F"), response, null, 0L, MdrCachedResponse.NO_VALIDITY_END);
+
+        assertEquals(2, store.getSegmentCount());
+        assertNotNull(store.get(key("A")));
+        assertNull(store.get(key("B")));
+        assertNull(store.get(key("C")));
+        assertNotNull(store.get(key("D")));
+        assertNotNull(store.get(key("E")));
+        assertNotNull(store.get(key("F")));
+        assertTrue(store.getUsedBytes() <= 2L * SEGMENT_SIZE);
+    }
+
+    @Test
+    public void testResponseBiggerThanSegmentIsNotStored() throws IOException {
+        assertFalse(store.put(key("SPECIES"), payload(SEGMENT_SIZE + 1), null, 0L, MdrCachedResponse.NO_VALIDITY_END));
+        assertNull(store.get(key("SPECIES")));
+    }
+
+    @Test
+    public void testResponseBiggerThanSegmentOnceEncodedEvictsNothing() throws IOException {
+        String response = payload(SEGMENT_SIZE / 2);
+        store.put(key("A"), response, null, 0L, MdrCachedResponse.NO_VALIDITY_END);
+        store.put(key("B"), response, null, 0L, MdrCachedResponse.NO_VALIDITY_END);
+        assertEquals(2, store.getSegmentCount());
+
+        // Fewer characters than the segment size, but two bytes each in UTF-8.
+        String accented = payload(SEGMENT_SIZE / 2 + 1).replace('x', '\u00e9');
+        assertFalse(store.put(key("SPECIES"), accented, null, 0L, MdrCachedResponse.NO_VALIDITY_END));
+
+        assertNull(store.get(key("SPECIES")));
+        assertNotNull(store.get(key("A")));
+        assertNotNull(store.get(key("B")));
+    }
+
+    @Test
+    public void testNonAsciiResponseIsReadBack() throws IOException {
+        String response = "Esp\u00e8ce \u9c7c \ud83d\udc1f " + payload(SEGMENT_SIZE / 4);
+        assertTrue(store.put(key("SPECIES"), response, null, 0L, MdrCachedResponse.NO_VALIDITY_END));
+        assertEquals(response, store.get(key("SPECIES")).getResponse());
+    }
+
+    @Test
+    public void testTornRecordIsDroppedOnRecovery() throws IOException {
+        store.put(key("SPECIES"), "species", null, 0L, MdrCachedResponse.NO_VALIDITY_END);
+        long firstRecordEnd = store.getUsedBytes();
+        store.put(key("GEAR_TYPE"), "gear", null, 0L, MdrCachedResponse.NO_VALIDITY_END);
+        store.close();
+
+        File[] segments = directory.toFile().listFiles();
+        assertEquals(1, segments.length);
+        try (RandomAccessFile segment = new RandomAccessFile(segments[0], "rw")) {
+            segment.seek(firstRecordEnd + 20);
+            segment.write(segment.read() ^ 0xFF);
+        }
+
+        store = new MappedResponseStore(directory, SEGMENT_SIZE, 2);
+        assertEquals("species", store.get(key("SPECIES")).getResponse());
+        assertNull(store.get(key("GEAR_TYPE")));
+        assertTrue(store.put(key("GEAR_TYPE"), "gear", null, 0L, MdrCachedResponse.NO_VALIDITY_END));
+        assertEquals("gear", store.get(key("GEAR_TYPE")).getResponse());
+    }
+
+    @Test
+    public void testFreshness() {
+        MdrCachedResponse cached = new MdrCachedResponse(key("SPECIES"), "species", "1.0", 1000L, 5000L);
+        assertTrue(cached.isFresh(2000L, 1000L));
+        assertFalse(cached.isFresh(2001L, 1000L));
+        assertFalse(cached.isFresh(5001L, 10000L));
+    }
+
+    private static MdrRequestKey key(String acronym) {
+        return new MdrRequestKey(acronym, "OBJ_DATA_ALL", "XEU");
+    }
+
+    private static String payload(int length) {
+        StringBuilder payload = new StringBuilder(length);
+        while (payload.length() < length) {
+            payload.append('x');
+        }
+        return payload.toString();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrCorrelation;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrCorrelationIndex;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.PendingMdrQuery;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MdrCorrelationIndexTest {
+
+    private static final long SENT_AT = 1_000_000L;
+    private static final long DEADLINE = SENT_AT + 3 * 3600 * 1000L;
+
+    private MdrCorrelationIndex index;
+
+    private PendingMdrQuery query;
+
+    @Before
+    public void init() {
+        index = new MdrCorrelationIndex();
+        query = new PendingMdrQuery("query-uuid", "business-uuid", "XEU", "FA_REASON_DEPARTURE", "OBJ_DATA_ALL", SENT_AT, DEADLINE);
+        index.register(query);
+    }
+
+    @Test
+    public void testMatchOnReferencedQueryUuid() {
+        MdrCorrelation correlation = index.correlate("query-uuid", null, SENT_AT + 1500);
+        assertEquals(MdrCorrelation.Status.MATCHED, correlation.getStatus());
+        assertSame(query, correlation.getQuery());
+        assertEquals(1500, correlation.getRoundTripMillis());
+        assertEquals(0, index.getPendingCount());
+    }
+
+    @Test
+    public void testMatchOnBusinessUuid() {
+        assertEquals(MdrCorrelation.Status.MATCHED, index.correlate(null, "business-uuid", SENT_AT + 10).getStatus());
+    }
+
+    @Test
+    public void testDuplicateResponse() {
+        index.correlate("query-uuid", null, SENT_AT + 10);
+        MdrCorrelation duplicate = index.correlate(null, "business-uuid", SENT_AT + 20);
+        assertEquals(MdrCorrelation.Status.DUPLICATE, duplicate.getStatus());
+        assertSame(query, duplicate.getQuery());
+        assertEquals(1, index.getMatchedCount());
+        assertEquals(1, index.getDuplicateCount());
+    }
+
+    @Test
+    public void testOrphanResponse() {
+        MdrCorrelation orphan = index.correlate("unknown", "unknown", SENT_AT + 10);
+        assertEquals(MdrCorrelation.Status.ORPHAN, orphan.getStatus());
+        assertNull(orphan.getQuery());
+        assertEquals(1, index.getOrphanCount());
+    }
+
+    @Test
+    public void testDeregisteredQueryIsNotMatched() {
+        index.deregister(query);
+        assertEquals(0, index.getPendingCount());
+        assertEquals(MdrCorrelation.Status.ORPHAN, index.correlate("query-uuid", "business-uuid", SENT_AT + 10).getStatus());
+    }
+
+    @Test
+    public void testExpiredQueryIsEvicted() {
+        index.evictExpired(DEADLINE - 1);
+        assertEquals(1, index.getPendingCount());
+        index.evictExpired(DEADLINE + 1);
+        assertEquals(0, index.getPendingCount());
+        assertEquals(1, index.getExpiredCount());
+        assertEquals(MdrCorrelation.Status.ORPHAN, index.correlate("query-uuid", null, DEADLINE + 2).getStatus());
+    }
+
+    @Test
+    public void testAnsweredQueryIsForgottenAfterDeadline() {
+        index.correlate("query-uuid", null, SENT_AT + 10);
+        index.evictExpired(DEADLINE + 1);
+        assertEquals(MdrCorrelation.Status.ORPHAN, index.correlate("query-uuid", null, DEADLINE + 2).getStatus());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static eu.europa.ec.fisheries.uvms.plugins.mdr.MdrUuidExtractorConformanceTest.readResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.delta.MdrCodeListFingerprint;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.delta.MdrDelta;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.delta.MdrDeltaComputer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionPlan;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrField;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrFieldExtractor;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrMessageFields;
+import java.nio.charset.StandardCharsets;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MdrDeltaComputerTest {
+
+    private MdrDeltaComputer computer;
+
+    @Before
+    public void init() {
+        computer = new MdrDeltaComputer();
+    }
+
+    @Test
+    public void testFirstResponseIsForwardedInFull() throws Exception {
+        String response = new String(readResource("mdr/response-fa-reason-departure.xml"), StandardCharsets.UTF_8);
+        MdrDelta delta = computer.compute(response, null);
+        assertFalse(delta.isDelta());
+        assertNull(delta.getMessageProperties());
+        assertSame(response, delta.getMessage());
+        assertEquals(3, delta.getFingerprint().size());
+    }
+
+    @Test
+    public void testIdenticalResponseGivesNoChangeMarker() throws Exception {
+        String response = new String(readResource("mdr/response-fa-reason-departure.xml"), StandardCharsets.UTF_8);
+        MdrCodeListFingerprint previous = computer.compute(response, null).getFingerprint();
+        MdrDelta delta = computer.compute(response, previous);
+        assertTrue(delta.isUnchanged());
+        assertEquals(3, delta.getUnchanged());
+        assertFalse(delta.getMessage().contains("ContainedMDRDataNode"));
+        assertTrue(delta.getMessage().contains("<?flux-mdr-delta added=\"0\" changed=\"0\" removed=\"0\" unchanged=\"3\"?>"));
+
+        // The header and the data set description are kept and the delta is well-formed.
+        MdrMessageFields fields = new MdrFieldExtractor().extract(delta.getMessage(), MdrExtractionPlan.ROUTING_FIELDS);
+        assertEquals("bd5c67a2-9dd8-4399-a2d0-b8a5d56a181f", fields.get(MdrField.REFERENCED_UUID));
+        assertEquals("FA_REASON_DEPARTURE", fields.get(MdrField.ACRONYM));
+        assertEquals("1.0", fields.get(MdrField.DATA_SET_VERSION));
+    }
+
+    @Test
+    public void testOnlyChangedEntriesAreForwarded() throws Exception {
+        MdrCodeListFingerprint previous = computer.compute(codeList("FIS=Fishing", "GUD=Guard duty", "SHE=Shelter"), null).getFingerprint();
+        MdrDelta delta = computer.compute(codeList("FIS=Fishing", "GUD=Guard duty & patrol", "REF=Refuelling"), previous);
+
+        assertTrue(delta.isDelta());
+        assertEquals("true", delta.getMessageProperties().get(MdrDelta.DELTA_PROPERTY));
+        assertFalse(delta.isUnchanged());
+        assertEquals(1, delta.getAdded());
+        assertEquals(1, delta.getChanged());
+        assertEquals(1, delta.getRemoved());
+        assertEquals(1, delta.getUnchanged());
+        String message = delta.getMessage();
+        assertFalse(message.contains(">FIS<"));
+        assertTrue(message.contains("Guard duty &amp; patrol"));
+        assertTrue(message.contains(">REF<"));
+        assertTrue(message.contains("<?flux-mdr-removed SHE?>"));
+        assertEquals(3, delta.getFingerprint().size());
+        new MdrFieldExtractor().extract(message, MdrExtractionPlan.ROUTING_FIELDS);
+    }
+
+    @Test
+    public void testFormattingIsNotAChange() throws Exception {
+        String response = codeList("FIS=Fishing", "GUD=Guard duty");
+        MdrCodeListFingerprint previous = computer.compute(response, null).getFingerprint();
+        assertTrue(computer.compute(response.replace("\n", "").replace("    ", "\t"), previous).isUnchanged());
+    }
+
+    @Test
+    public void testRepeatedCodesAreComparedPerOccurrence() throws Exception {
+        MdrCodeListFingerprint previous = computer.compute(codeList("FIS=Fishing", "FIS=Fishing until 2020"), null).getFingerprint();
+        assertEquals(2, previous.size());
+        MdrDelta delta = computer.compute(codeList("FIS=Fishing", "FIS=Fishing until 2021"), previous);
+        assertEquals(1, delta.getUnchanged());
+        assertEquals(1, delta.getChanged());
+    }
+
+    private static String codeList(String... entries) {
+        StringBuilder message = new StringBuilder()
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n")
+                .append("<rsm:FLUXMDRReturnMessage xmlns:rsm=\"urn:un:unece:uncefact:data:standard:FLUXMDRReturnMessage:5\" xmlns=\"urn:un:unece:uncefact:data:standard:ReusableAggregateBusinessInformationEntity:20\">\n")
+                .append("    <rsm:FLUXResponseDocument>\n")
+                .append("        <ID schemeID=\"UUID\">4d2f1b0a-6c1e-4a8e-9f57-2b1c3d4e5f60</ID>\n")
+                .append("        <ResponseCode listID=\"FLUX_GP_RESPONSE\">OK</ResponseCode>\n")
+                .append("    </rsm:FLUXResponseDocument>\n")
+                .append("    <rsm:MDRDataSet>\n")
+                .append("        <ID schemeID=\"INDEX\">FA_REASON_DEPARTURE</ID>\n");
+        for (String entry : entries) {
+            String[] codeAndDescription = entry.split("=");
+            message.append("        <ContainedMDRDataNode>\n")
+                    .append("            <ID schemeID=\"FA_REASON_DEPARTURE\">").append(codeAndDescription[0]).append("</ID>\n")
+                    .append("            <SubordinateMDRElementDataNode>\n")
+                    .append("                <Name>description</Name>\n")
+                    .append("                <Value>").append(codeAndDescription[1].replace("&", "&amp;")).append("</Value>\n")
+                    .append("            </SubordinateMDRElementDataNode>\n")
+                    .append("        </ContainedMDRDataNode>\n");
+        }
+        return message.append("    </rsm:MDRDataSet>\n</rsm:FLUXMDRReturnMessage>\n").toString();
+    }
+}
@@ -0,0 +1,111 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static eu.europa.ec.fisheries.uvms.plugins.mdr.MdrUuidExtractorConformanceTest.readResource;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionPlan;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrField;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrFieldExtractor;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrMessageFields;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrSaxaprserAcronymExtractor;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrStaxUuidExtractor;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrType;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MdrFieldExtractorTest {
+
+    private MdrFieldExtractor extractor;
+
+    @Before
+    public void init() {
+        extractor = new MdrFieldExtractor();
+    }
+
+    @Test
+    public void testQueryFields() throws Exception {
+        MdrMessageFields fields = extractor.extract(readResource("mdr/query-ns3-prefix.xml"), MdrExtractionPlan.ROUTING_FIELDS);
+        assertEquals(MdrType.MDR_QUERY, fields.getMessageType());
+        assertEquals("bd5c67a2-9dd8-4399-a2d0-b8a5d56a181f", fields.get(MdrField.MESSAGE_UUID));
+        assertEquals("FA_REASON_DEPARTURE", fields.get(MdrField.ACRONYM));
+        assertEquals("OBJ_DATA_ALL", fields.get(MdrField.QUERY_TYPE));
+        assertNull(fields.get(MdrField.REFERENCED_UUID));
+        assertTrue(fields.isStoppedEarly());
+    }
+
+    @Test
+    public void testQueryFieldsIgnoreNestedIds() throws Exception {
+        MdrMessageFields fields = extractor.extract(readResource("mdr/query-default-namespace.xml"), MdrExtractionPlan.ROUTING_FIELDS);
+        assertEquals("6a7e3f52-5e3d-4c1b-8d7c-0c2b0d3b9f10", fields.get(MdrField.MESSAGE_UUID));
+        assertEquals("FA_REASON_DEPARTURE", fields.get(MdrField.ACRONYM));
+    }
+
+    @Test
+    public void testResponseFields() throws Exception {
+        MdrMessageFields fields = extractor.extract(readResource("mdr/response-fa-reason-departure.xml"), MdrExtractionPlan.ROUTING_FIELDS);
+        assertEquals(MdrType.MDR_RESPONSE, fields.getMessageType());
+        assertEquals("4d2f1b0a-6c7e-4f89-a0b1-c2d3e4f5a6b7", fields.get(MdrField.MESSAGE_UUID));
+        assertEquals("bd5c67a2-9dd8-4399-a2d0-b8a5d56a181f", fields.get(MdrField.REFERENCED_UUID));
+        assertEquals("OK", fields.get(MdrField.RESPONSE_CODE));
+        assertEquals("FA_REASON_DEPARTURE", fields.get(MdrField.ACRONYM));
+        assertNull(fields.get(MdrField.QUERY_TYPE));
+        assertEquals("1.0", fields.get(MdrField.DATA_SET_VERSION));
+        assertEquals("2099-12-31T00:00:00Z", fields.get(MdrField.VALIDITY_END));
+        // The code list entries after the data set description are not read.
+        assertTrue(fields.isStoppedEarly());
+    }
+
+    @Test
+    public void testMissingFieldDoesNotScanTheCodeList() throws Exception {
+        String response = new String(readResource("mdr/response-fa-reason-departure.xml"), "UTF-8").replace("<Version>1.0</Version>", "");
+        MdrMessageFields fields = extractor.extract(response, MdrExtractionPlan.of(MdrField.DATA_SET_VERSION, MdrField.REFERENCED_UUID));
+        assertNull(fields.get(MdrField.DATA_SET_VERSION));
+        assertEquals("bd5c67a2-9dd8-4399-a2d0-b8a5d56a181f", fields.get(MdrField.REFERENCED_UUID));
+        assertTrue(fields.isStoppedEarly());
+    }
+
+    @Test
+    public void testNokResponseWithoutDataSet() throws Exception {
+        MdrMessageFields fields = extractor.extract(readResource("mdr/response-nok.xml"), MdrExtractionPlan.ROUTING_FIELDS);
+        assertEquals("a1b2c3d4-e5f6-4a7b-8c9d-0e1f2a3b4c5d", fields.get(MdrField.MESSAGE_UUID));
+        assertEquals("NOK", fields.get(MdrField.RESPONSE_CODE));
+        assertNull(fields.get(MdrField.ACRONYM));
+        assertFalse(fields.isStoppedEarly());
+    }
+
+    @Test
+    public void testSingleFieldPlan() throws Exception {
+        MdrExtractionPlan plan = MdrExtractionPlan.of(MdrField.REFERENCED_UUID);
+        MdrMessageFields fields = extractor.extract(readResource("mdr/response-fa-reason-departure.xml"), plan);
+        assertEquals(1, fields.getValues().size());
+        assertEquals("bd5c67a2-9dd8-4399-a2d0-b8a5d56a181f", fields.get(MdrField.REFERENCED_UUID));
+    }
+
+    @Test
+    public void testUnknownMessage() throws Exception {
+        MdrMessageFields fields = extractor.extract("<root><ID>1</ID></root>", MdrExtractionPlan.ROUTING_FIELDS);
+        assertNull(fields.getMessageType());
+        assertTrue(fields.getValues().isEmpty());
+    }
+
+    @Test
+    public void testResponseUuidExtractors() throws Exception {
+        byte[] response = readResource("mdr/response-fa-reason-departure.xml");
+        assertEquals("4d2f1b0a-6c7e-4f89-a0b1-c2d3e4f5a6b7", new MdrSaxaprserAcronymExtractor(MdrType.MDR_RESPONSE).parse(response).getUuid());
+        assertEquals("4d2f1b0a-6c7e-4f89-a0b1-c2d3e4f5a6b7", new MdrStaxUuidExtractor(MdrType.MDR_RESPONSE).parse(response).getUuid());
+        assertEquals("a1b2c3d4-e5f6-4a7b-8c9d-0e1f2a3b4c5d", new MdrStaxUuidExtractor(MdrType.MDR_RESPONSE).parse(readResource("mdr/response-nok.xml")).getUuid());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.constants.FluxConnectionConstants;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.MdrRequestCoalescer;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.correlation.PendingMdrQuery;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MdrRequestCoalescerTest {
+
+    private MdrRequestCoalescer coalescer;
+
+    @Before
+    public void init() {
+        coalescer = new MdrRequestCoalescer();
+    }
+
+    @Test
+    public void testIdenticalRequestIsCoalesced() {
+        PendingMdrQuery first = query("uuid-1", "FA_REASON_DEPARTURE", "XEU", 60000);
+        assertNull(coalescer.coalesce(first));
+        assertSame(first, coalescer.coalesce(query("uuid-2", "FA_REASON_DEPARTURE", "XEU", 60000)));
+        assertEquals(1, coalescer.getHitCount());
+        assertEquals(1, coalescer.getMissCount());
+    }
+
+    @Test
+    public void testDifferentDestinationIsNotCoalesced() {
+        assertNull(coalescer.coalesce(query("uuid-1", "FA_REASON_DEPARTURE", "XEU", 60000)));
+        assertNull(coalescer.coalesce(query("uuid-2", "FA_REASON_DEPARTURE", "BEL", 60000)));
+        assertNull(coalescer.coalesce(query("uuid-3", "SPECIES", "XEU", 60000)));
+        assertEquals(3, coalescer.getInFlightCount());
+    }
+
+    @Test
+    public void testReleasedRequestIsSentAgain() {
+        PendingMdrQuery first = query("uuid-1", "FA_REASON_DEPARTURE", "XEU", 60000);
+        coalescer.coalesce(first);
+        coalescer.release(first);
+        assertNull(coalescer.coalesce(query("uuid-2", "FA_REASON_DEPARTURE", "XEU", 60000)));
+    }
+
+    @Test
+    public void testExpiredRequestIsReplaced() {
+        coalescer.coalesce(query("uuid-1", "FA_REASON_DEPARTURE", "XEU", -1));
+        PendingMdrQuery second = query("uuid-2", "FA_REASON_DEPARTURE", "XEU", 60000);
+        assertNull(coalescer.coalesce(second));
+        assertSame(second, coalescer.coalesce(query("uuid-3", "FA_REASON_DEPARTURE", "XEU", 60000)));
+    }
+
+    @Test
+    public void testWindowIsBoundedByTheDeliveryTimeout() {
+        long now = System.currentTimeMillis();
+        long timeout = TimeUnit.MINUTES.toMillis(Long.parseLong(FluxConnectionConstants.FLUX_ENV_TO_VAL));
+        long todt = now + TimeUnit.HOURS.toMillis(3);
+        PendingMdrQuery undelivered = new PendingMdrQuery("uuid-1", "business-1", "XEU", "FA_REASON_DEPARTURE", "OBJ_DATA_ALL", now - timeout - 1, todt);
+        coalescer.coalesce(undelivered);
+        coalescer.evictExpired(now);
+        assertEquals(0, coalescer.getInFlightCount());
+
+        coalescer.coalesce(undelivered);
+        PendingMdrQuery retry = new PendingMdrQuery("uuid-2", "business-2", "XEU", "FA_REASON_DEPARTURE", "OBJ_DATA_ALL", now, todt);
+        assertNull(coalescer.coalesce(retry));
+        assertSame(retry, coalescer.coalesce(query("uuid-3", "FA_REASON_DEPARTURE", "XEU", 60000)));
+    }
+
+    @Test
+    public void testResponseForTheDataSetReleasesTheRequests() {
+        coalescer.coalesce(query("uuid-1", "FA_REASON_DEPARTURE", "XEU", 60000));
+        coalescer.coalesce(query("uuid-2", "FA_REASON_DEPARTURE", "BEL", 60000));
+        coalescer.coalesce(query("uuid-3", "SPECIES", "XEU", 60000));
+        coalescer.releaseDataSet("FA_REASON_DEPARTURE");
+        assertEquals(1, coalescer.getInFlightCount());
+        assertNull(coalescer.coalesce(query("uuid-4", "FA_REASON_DEPARTURE", "XEU", 60000)));
+    }
+
+    @Test
+    public void testRequestWithoutAcronymIsNeverCoalesced() {
+        assertNull(coalescer.coalesce(query("uuid-1", null, "XEU", 60000)));
+        assertNull(coalescer.coalesce(query("uuid-2", null, "XEU", 60000)));
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    private static PendingMdrQuery query(String uuid, String acronym, String fr, long timeToLive) {
+        long now = System.currentTimeMillis();
+        return new PendingMdrQuery(uuid, "business-" + uuid, fr, acronym, "OBJ_DATA_ALL", now, now + timeToLive);
+    }
+}
@@ -10,10 +10,16 @@ details. You should have received a copy of the GNU General Public License along
 */
 package eu.europa.ec.fisheries.uvms.plugins.mdr;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionResult;
 import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrSaxaprserAcronymExtractor;
 import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrType;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.SaxParserPool;
 import java.io.PrintStream;
 import lombok.SneakyThrows;
 import org.junit.Before;
@@ -39,20 +45,36 @@ public class MdrSaxParserTest {
     }
 
     @Test
-    public void testMdrQueryUUIDExtraction(){
-        String messageGuid = null;
-        try {
-            mdrSaxExtractor.parseDocument(mdrSample);
-        } catch (SAXException e) {
-            // below message would be thrown once value is found.
-            if (e instanceof SAXException){
-                messageGuid = mdrSaxExtractor.getUuidValue();
-            }
-        }
+    public void testMdrQueryUUIDExtraction() throws SAXException {
+        mdrSaxExtractor.parseDocument(mdrSample);
+        String messageGuid = mdrSaxExtractor.getUuidValue();
         logger.println("FaQuery GUID : " + messageGuid);
         assertNotNull(messageGuid);
     }
 
+    @Test
+    public void testMdrQueryUUIDExtractionResult() throws MdrExtractionException {
+        MdrExtractionResult result = mdrSaxExtractor.parse(mdrSample);
+        assertEquals("bd5c67a2-9dd8-4399-a2d0-b8a5d56a181f", result.getUuid());
+        assertEquals("/ns3:FLUXMDRQueryMessage/ns3:MDRQuery/ID", result.getElementPath());
+        assertTrue(result.isStoppedEarly());
+    }
+
+    @Test
+    public void testMdrQueryUUIDExtractionWithoutStopOnMatch() throws MdrExtractionException {
+        MdrSaxaprserAcronymExtractor fullParseExtractor = new MdrSaxaprserAcronymExtractor(MdrType.MDR_QUERY, new SaxParserPool(1), false);
+        MdrExtractionResult result = fullParseExtractor.parse(mdrSample);
+        assertEquals("bd5c67a2-9dd8-4399-a2d0-b8a5d56a181f", result.getUuid());
+        assertFalse(result.isStoppedEarly());
+    }
+
+    @Test
+    public void testExtractorIsReusable() throws MdrExtractionException {
+        String otherSample = mdrSample.replace("bd5c67a2-9dd8-4399-a2d0-b8a5d56a181f", "2f0c2d1a-7a0e-4a31-9e55-6f3e8c1d5b77");
+        assertEquals("bd5c67a2-9dd8-4399-a2d0-b8a5d56a181f", mdrSaxExtractor.parse(mdrSample).getUuid());
+        assertEquals("2f0c2d1a-7a0e-4a31-9e55-6f3e8c1d5b77", mdrSaxExtractor.parse(otherSample).getUuid());
+    }
+
 
     private String getMockedMessage() {
         return "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n" +
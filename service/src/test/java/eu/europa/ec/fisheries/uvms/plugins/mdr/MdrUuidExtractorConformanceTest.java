@@ -0,0 +1,130 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionException;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrExtractionResult;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrSaxaprserAcronymExtractor;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrStaxUuidExtractor;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrType;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.saxparser.MdrUuidExtractor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks the StAX fast path against the SAX implementation on a corpus of MDR query and response messages.
+ */
+public class MdrUuidExtractorConformanceTest {
+
+    private static final Map<String, String> QUERY_CORPUS = new LinkedHashMap<>();
+
+    static {
+        QUERY_CORPUS.put("mdr/query-ns3-prefix.xml", "bd5c67a2-9dd8-4399-a2d0-b8a5d56a181f");
+        QUERY_CORPUS.put("mdr/query-custom-prefix.xml", "0f4a8a44-31c4-4e8c-9d0f-2b2a9a1c7e51");
+        QUERY_CORPUS.put("mdr/query-default-namespace.xml", "6a7e3f52-5e3d-4c1b-8d7c-0c2b0d3b9f10");
+        QUERY_CORPUS.put("mdr/query-non-ascii.xml", "9e0d7c61-8a3b-4f2e-b1c4-5d6e7f809a1b");
+        QUERY_CORPUS.put("mdr/query-foreign-ns3-prefix.xml", null);
+        QUERY_CORPUS.put("mdr/query-without-uuid.xml", null);
+        QUERY_CORPUS.put("mdr/response-fa-reason-departure.xml", null);
+        QUERY_CORPUS.put("mdr/response-nok.xml", null);
+    }
+
+    private MdrUuidExtractor saxExtractor;
+
+    private MdrUuidExtractor staxExtractor;
+
+    @Before
+    public void init() {
+        saxExtractor = new MdrSaxaprserAcronymExtractor(MdrType.MDR_QUERY);
+        staxExtractor = new MdrStaxUuidExtractor(MdrType.MDR_QUERY);
+    }
+
+    @Test
+    public void testQueryCorpusExpectedUuids() throws Exception {
+        for (Map.Entry<String, String> entry : QUERY_CORPUS.entrySet()) {
+            byte[] message = readResource(entry.getKey());
+            assertEquals(entry.getKey(), entry.getValue(), staxExtractor.parse(message).getUuid());
+            assertEquals(entry.getKey(), entry.getValue(), saxExtractor.parse(message).getUuid());
+        }
+    }
+
+    @Test
+    public void testFastPathMatchesSaxOnAllInputs() throws Exception {
+        for (String resource : QUERY_CORPUS.keySet()) {
+            byte[] message = readResource(resource);
+            String text = new String(message, StandardCharsets.UTF_8);
+            MdrExtractionResult reference = saxExtractor.parse(text);
+            assertSameResult(resource + " (String)", reference, staxExtractor.parse(text));
+            assertSameResult(resource + " (byte[])", reference, staxExtractor.parse(message));
+            assertSameResult(resource + " (InputStream)", reference, staxExtractor.parse(new ByteArrayInputStream(message)));
+            assertSameResult(resource + " (SAX byte[])", reference, saxExtractor.parse(message));
+        }
+    }
+
+    @Test
+    public void testFastPathMatchesSaxForResponses() throws Exception {
+        MdrUuidExtractor saxResponseExtractor = new MdrSaxaprserAcronymExtractor(MdrType.MDR_RESPONSE);
+        MdrUuidExtractor staxResponseExtractor = new MdrStaxUuidExtractor(MdrType.MDR_RESPONSE);
+        for (String resource : QUERY_CORPUS.keySet()) {
+            byte[] message = readResource(resource);
+            assertSameResult(resource, saxResponseExtractor.parse(message), staxResponseExtractor.parse(message));
+        }
+        assertEquals("/rsp:FLUXMDRReturnMessage/rsp:FLUXResponseDocument/ram:ID",
+                staxResponseExtractor.parse(readResource("mdr/response-nok.xml")).getElementPath());
+    }
+
+    @Test
+    public void testElementPathKeepsDocumentPrefixes() throws Exception {
+        MdrExtractionResult result = staxExtractor.parse(readResource("mdr/query-custom-prefix.xml"));
+        assertEquals("/q:FLUXMDRQueryMessage/q:MDRQuery/ram:ID", result.getElementPath());
+        result = staxExtractor.parse(readResource("mdr/query-default-namespace.xml"));
+        assertEquals("/FLUXMDRQueryMessage/MDRQuery/ram:ID", result.getElementPath());
+    }
+
+    @Test(expected = MdrExtractionException.class)
+    public void testFastPathRejectsMalformedMessage() throws Exception {
+        staxExtractor.parse("<ns3:FLUXMDRQueryMessage><ns3:MDRQuery>".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = MdrExtractionException.class)
+    public void testSaxRejectsMalformedMessage() throws Exception {
+        saxExtractor.parse("<ns3:FLUXMDRQueryMessage><ns3:MDRQuery>".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void assertSameResult(String message, MdrExtractionResult expected, MdrExtractionResult actual) {
+        assertEquals(message, expected.getUuid(), actual.getUuid());
+        assertEquals(message, expected.getElementPath(), actual.getElementPath());
+        assertEquals(message, expected.isFound(), actual.isFound());
+    }
+
+    static byte[] readResource(String name) throws IOException {
+        try (InputStream in = MdrUuidExtractorConformanceTest.class.getClassLoader().getResourceAsStream(name)) {
+            assertNotNull("Missing test resource " + name, in);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
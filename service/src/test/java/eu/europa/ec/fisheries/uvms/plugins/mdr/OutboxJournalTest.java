@@ -0,0 +1,154 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.FsyncPolicy;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.OutboxEntry;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.OutboxJournal;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.OutboxTarget;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class OutboxJournalTest {
+
+    private static final int SEGMENT_SIZE = OutboxJournal.MIN_SEGMENT_SIZE;
+
+    private Path directory;
+
+    private OutboxJournal journal;
+
+    @Before
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("mdr-outbox");
+        journal = new OutboxJournal(directory, SEGMENT_SIZE, FsyncPolicy.NEVER);
+    }
+
+    @After
+    public void cleanUp() {
+        journal.close();
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+
+    @Test
+    public void testPendingMessagesAreReadBack() throws IOException {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("FR", "XEU");
+        properties.put("TODT", null);
+        long query = journal.append(OutboxTarget.BRIDGE, "<FLUXMDRQueryMessage>Pr\u00e9sentation</FLUXMDRQueryMessage>", properties, 1000L, 5000L);
+        long response = journal.append(OutboxTarget.EXCHANGE, "<FLUXMDRReturnMessage/>", null, 2000L, OutboxJournal.NO_EXPIRY);
+
+        List<OutboxEntry> pending = journal.getPending(10);
+        assertEquals(2, pending.size());
+        OutboxEntry first = pending.get(0);
+        assertEquals(query, first.getSequence());
+        assertEquals(OutboxTarget.BRIDGE, first.getTarget());
+        assertEquals("<FLUXMDRQueryMessage>Pr\u00e9sentation</FLUXMDRQueryMessage>", first.getPayload());
+        assertEquals(properties, first.getProperties());
+        assertEquals(1000L, first.getRecordedAt());
+        assertTrue(first.isExpired(5001L));
+        assertEquals(response, pending.get(1).getSequence());
+        assertTrue(pending.get(1).getProperties().isEmpty());
+        assertEquals(1, journal.getPending(1).size());
+    }
+
+    @Test
+    public void testOnlyUnacknowledgedMessagesSurviveReopening() throws IOException {
+        long first = journal.append(OutboxTarget.EXCHANGE, "first", null, 0L, OutboxJournal.NO_EXPIRY);
+        long second = journal.append(OutboxTarget.EXCHANGE, "second", null, 0L, OutboxJournal.NO_EXPIRY);
+        journal.acknowledge(first);
+        journal.close();
+
+        journal = new OutboxJournal(directory, SEGMENT_SIZE, FsyncPolicy.NEVER);
+        List<OutboxEntry> pending = journal.getPending(10);
+        assertEquals(1, pending.size());
+        assertEquals(second, pending.get(0).getSequence());
+        assertEquals("second", pending.get(0).getPayload());
+        // Sequence numbers are not reused.
+        assertTrue(journal.append(OutboxTarget.EXCHANGE, "third", null, 0L, OutboxJournal.NO_EXPIRY) > second);
+    }
+
+    @Test
+    public void testAcknowledgedSegmentsAreDeleted() throws IOException {
+        String payload = payload(SEGMENT_SIZE / 3);
+        long[] sequences = new long[6];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = journal.append(OutboxTarget.EXCHANGE, payload, null, 0L, OutboxJournal.NO_EXPIRY);
+        }
+        assertEquals(3, journal.getSegmentCount());
+        // The second segment stays while the first one holds a pending message.
+        journal.acknowledge(sequences[2]);
+        journal.acknowledge(sequences[3]);
+        assertEquals(3, journal.getSegmentCount());
+        journal.acknowledge(sequences[0]);
+        journal.acknowledge(sequences[1]);
+        assertEquals(1, journal.getSegmentCount());
+        assertEquals(2, journal.getPendingCount());
+    }
+
+    @Test
+    public void testCompactionMovesStuckMessageForward() throws IOException {
+        String payload = payload(SEGMENT_SIZE / 3);
+        long stuck = journal.append(OutboxTarget.BRIDGE, "stuck", null, 0L, OutboxJournal.NO_EXPIRY);
+        for (int i = 0; i < 6; i++) {
+            journal.acknowledge(journal.append(OutboxTarget.EXCHANGE, payload, null, 0L, OutboxJournal.NO_EXPIRY));
+        }
+        assertTrue(journal.getSegmentCount() > 2);
+
+        assertTrue(journal.compact() >= 2);
+        assertEquals(1, journal.getSegmentCount());
+        journal.close();
+
+        journal = new OutboxJournal(directory, SEGMENT_SIZE, FsyncPolicy.NEVER);
+        List<OutboxEntry> pending = journal.getPending(10);
+        assertEquals(1, pending.size());
+        assertEquals(stuck, pending.get(0).getSequence());
+        assertEquals("stuck", pending.get(0).getPayload());
+    }
+
+    @Test
+    public void testMessageBiggerThanSegmentIsRecorded() throws IOException {
+        String payload = payload(SEGMENT_SIZE * 2);
+        long sequence = journal.append(OutboxTarget.EXCHANGE, payload, null, 0L, OutboxJournal.NO_EXPIRY);
+        journal.append(OutboxTarget.EXCHANGE, "next", null, 0L, OutboxJournal.NO_EXPIRY);
+        journal.close();
+
+        journal = new OutboxJournal(directory, SEGMENT_SIZE, FsyncPolicy.NEVER);
+        List<OutboxEntry> pending = journal.getPending(10);
+        assertEquals(sequence, pending.get(0).getSequence());
+        assertEquals(payload, pending.get(0).getPayload());
+        assertEquals("next", pending.get(1).getPayload());
+    }
+
+    private static String payload(int length) {
+        StringBuilder payload = new StringBuilder(length);
+        while (payload.length() < length) {
+            payload.append('x');
+        }
+        return payload.toString();
+    }
+}
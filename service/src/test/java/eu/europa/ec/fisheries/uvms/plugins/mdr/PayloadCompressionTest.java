@@ -0,0 +1,133 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.mapper.FluxMdrSyncResponseWriter;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.BytesMessageInputStream;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.BytesMessageOutputStream;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.producer.PayloadEncoding;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+import org.junit.Test;
+
+/**
+ * Round trip of sample code lists through the compressed Exchange payload.
+ */
+public class PayloadCompressionTest {
+
+    @Test
+    public void testCompressedRoundTripOnSampleCodeLists() throws Exception {
+        Map<String, String> codeLists = new LinkedHashMap<>();
+        codeLists.put("FA_REASON_DEPARTURE", new String(MdrUuidExtractorConformanceTest.readResource("mdr/response-fa-reason-departure.xml"), StandardCharsets.UTF_8));
+        codeLists.put("SPECIES 100K", CodeListPayloads.createResponseMessage(100 * 1024));
+        codeLists.put("SPECIES 5M", CodeListPayloads.createResponseMessage(5 * 1024 * 1024));
+
+        for (Map.Entry<String, String> codeList : codeLists.entrySet()) {
+            FakeBytesMessage plain = send(codeList.getValue(), PayloadEncoding.IDENTITY);
+            FakeBytesMessage compressed = send(codeList.getValue(), PayloadEncoding.GZIP);
+            assertEquals(codeList.getKey(), codeList.getValue(), receive(plain.message));
+            assertEquals(codeList.getKey(), codeList.getValue(), receive(compressed.message));
+
+            double ratio = (double) compressed.body.size() / plain.body.size();
+            if (plain.body.size() > 64 * 1024) {
+                assertTrue(codeList.getKey() + " compressed to " + ratio, ratio < 0.2);
+            }
+        }
+    }
+
+    @Test
+    public void testPlainMessageHasNoEncodingProperty() throws Exception {
+        FakeBytesMessage plain = send("<FLUXMDRReturnMessage/>", PayloadEncoding.IDENTITY);
+        assertNull(plain.message.getStringProperty(PayloadEncoding.CONTENT_ENCODING_PROPERTY));
+        assertEquals(PayloadEncoding.IDENTITY, PayloadEncoding.of(plain.message));
+        assertEquals(PayloadEncoding.GZIP, PayloadEncoding.of(send("<FLUXMDRReturnMessage/>", PayloadEncoding.GZIP).message));
+    }
+
+    @Test(expected = JMSException.class)
+    public void testUnknownEncodingIsRejected() throws Exception {
+        FakeBytesMessage message = new FakeBytesMessage();
+        message.message.setStringProperty(PayloadEncoding.CONTENT_ENCODING_PROPERTY, "lz4");
+        PayloadEncoding.of(message.message);
+    }
+
+    private static FakeBytesMessage send(String response, PayloadEncoding encoding) throws Exception {
+        FakeBytesMessage message = new FakeBytesMessage();
+        encoding.applyTo(message.message);
+        try (OutputStream out = encoding.encode(new BytesMessageOutputStream(message.message))) {
+            FluxMdrSyncResponseWriter.write(response, "flux", out);
+        }
+        return message;
+    }
+
+    private static String receive(BytesMessage message) throws Exception {
+        try (InputStream in = PayloadEncoding.of(message).decode(new BytesMessageInputStream(message))) {
+            XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            reader.nextTag();
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                String value = reader.getElementText();
+                if ("request".equals(name)) {
+                    return value;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * BytesMessage keeping its body in memory : written bytes become readable once writing is done.
+     */
+    private static class FakeBytesMessage {
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        private final Map<String, String> properties = new HashMap<>();
+        private ByteArrayInputStream reader;
+
+        private final BytesMessage message = (BytesMessage) Proxy.newProxyInstance(PayloadCompressionTest.class.getClassLoader(),
+                new Class<?>[]{BytesMessage.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "writeBytes":
+                            byte[] bytes = (byte[]) args[0];
+                            body.write(bytes, args.length > 1 ? (Integer) args[1] : 0, args.length > 1 ? (Integer) args[2] : bytes.length);
+                            return null;
+                        case "readBytes":
+                            if (reader == null) {
+                                reader = new ByteArrayInputStream(body.toByteArray());
+                            }
+                            int length = args.length > 1 ? (Integer) args[1] : ((byte[]) args[0]).length;
+                            return reader.read((byte[]) args[0], 0, length);
+                        case "setStringProperty":
+                            properties.put((String) args[0], (String) args[1]);
+                            return null;
+                        case "getStringProperty":
+                            return properties.get(args[0]);
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
@@ -0,0 +1,105 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import eu.europa.ec.fisheries.schema.exchange.service.v1.SettingListType;
+import eu.europa.ec.fisheries.schema.exchange.service.v1.SettingType;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.FsyncPolicy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class PluginConfigurationTest {
+
+    private static final String CLASS_NAME = "eu.europa.ec.fisheries.uvms.plugins.flux.mdr";
+
+    @Test
+    public void testDefaultsWhenNothingIsSet() {
+        PluginConfiguration configuration = new PluginState(CLASS_NAME, null, Collections.<String, String>emptyMap()).getConfiguration();
+        assertEquals(180, configuration.getFluxTodtMinutes());
+        assertFalse(configuration.isBridgeBatchingEnabled());
+        assertEquals(50, configuration.getBridgeBatchSize());
+        assertEquals(0, configuration.getBridgeRatePerSecond());
+        assertEquals(10, configuration.getBridgeRateBurst());
+        assertNull(configuration.getResponseCacheDirectory());
+        assertSame(FsyncPolicy.INTERVAL, configuration.getOutboxFsync());
+    }
+
+    @Test
+    public void testValuesAreParsed() {
+        PluginConfiguration configuration = configuration(
+                PluginConfiguration.BRIDGE_BATCHING_ENABLED, " true ",
+                PluginConfiguration.BRIDGE_BATCH_SIZE, "200",
+                PluginConfiguration.OUTBOX_DIRECTORY, " /var/outbox ",
+                PluginConfiguration.OUTBOX_FSYNC, "always");
+        assertTrue(configuration.isBridgeBatchingEnabled());
+        assertEquals(200, configuration.getBridgeBatchSize());
+        assertEquals("/var/outbox", configuration.getOutboxDirectory());
+        assertSame(FsyncPolicy.ALWAYS, configuration.getOutboxFsync());
+    }
+
+    @Test
+    public void testInvalidValuesFallBackToTheDefault() {
+        PluginConfiguration configuration = configuration(
+                PluginConfiguration.BRIDGE_BATCH_SIZE, "0",
+                PluginConfiguration.BRIDGE_RATE_PER_SECOND, "fast",
+                PluginConfiguration.INBOUND_DEDUP_MAX_ENTRIES, String.valueOf(Integer.MAX_VALUE),
+                PluginConfiguration.OUTBOX_FSYNC, "SOMETIMES");
+        assertEquals(50, configuration.getBridgeBatchSize());
+        assertEquals(0, configuration.getBridgeRatePerSecond());
+        assertEquals(4096, configuration.getInboundDedupMaxEntries());
+        assertSame(FsyncPolicy.INTERVAL, configuration.getOutboxFsync());
+    }
+
+    @Test
+    public void testRetryMaximumIsNeverBelowTheInitialDelay() {
+        PluginConfiguration configuration = configuration(
+                PluginConfiguration.OUTBOX_RETRY_INITIAL_SECONDS, "30",
+                PluginConfiguration.OUTBOX_RETRY_MAX_SECONDS, "10");
+        assertEquals(30, configuration.getOutboxRetryMaxSeconds());
+    }
+
+    @Test
+    public void testUpdateBuildsANewConfiguration() {
+        PluginState state = new PluginState(CLASS_NAME, null, settings(PluginConfiguration.BRIDGE_RATE_PER_SECOND, "10"));
+        SettingListType update = new SettingListType();
+        SettingType setting = new SettingType();
+        setting.setKey(CLASS_NAME + "." + PluginConfiguration.BRIDGE_RATE_PER_SECOND);
+        setting.setValue("25");
+        update.getSetting().add(setting);
+
+        PluginState updated = state.withSettings(update);
+
+        assertNotSame(state.getConfiguration(), updated.getConfiguration());
+        assertEquals(10, state.getConfiguration().getBridgeRatePerSecond());
+        assertEquals(25, updated.getConfiguration().getBridgeRatePerSecond());
+    }
+
+    private static PluginConfiguration configuration(String... keysAndValues) {
+        return new PluginState(CLASS_NAME, null, settings(keysAndValues)).getConfiguration();
+    }
+
+    private static Map<String, String> settings(String... keysAndValues) {
+        Map<String, String> settings = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            settings.put(CLASS_NAME + "." + keysAndValues[i], keysAndValues[i + 1]);
+        }
+        return settings;
+    }
+}
@@ -0,0 +1,220 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.lifecycle.PluginLifecycle;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.FsyncPolicy;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.OutboxJournal;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.service.FluxMdrRequestServiceBean;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PluginLifecycleTest {
+
+    private static final String CLASS_NAME = "eu.europa.ec.fisheries.uvms.plugins.flux.mdr";
+
+    @Mock
+    private StartupBean startup;
+
+    @Mock
+    private FluxMdrRequestServiceBean requestService;
+
+    @Mock
+    private ManagedExecutorService executor;
+
+    @Mock
+    private PluginMetrics metrics;
+
+    @InjectMocks
+    private PluginLifecycle lifecycle;
+
+    /**
+     * The same bean deployed again after a crash of the first one.
+     */
+    @InjectMocks
+    private PluginLifecycle restarted;
+
+    private Path directory;
+
+    @Before
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("mdr-deferred");
+    }
+
+    @After
+    public void cleanUp() {
+        restarted.shutdown();
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+
+    @Test
+    public void testStoppedRequestsSurviveARestart() throws IOException {
+        configure("10", "REDELIVER");
+        lifecycle.init();
+        lifecycle.stop();
+        assertTrue(lifecycle.submit("XEU", "first"));
+        assertTrue(lifecycle.submit("XFR", "second"));
+        verify(requestService, never()).send(anyString(), anyString());
+
+        restarted.init();
+        assertEquals(2, restarted.getDeferredCount());
+        ArgumentCaptor<Runnable> release = ArgumentCaptor.forClass(Runnable.class);
+        verify(executor).submit(release.capture());
+        release.getValue().run();
+
+        verify(requestService).send("XEU", "first");
+        verify(requestService).send("XFR", "second");
+        assertEquals(0, restarted.getDeferredCount());
+        assertEquals(0, pendingInJournal());
+    }
+
+    @Test
+    public void testDroppedRequestIsRemovedFromTheJournal() throws IOException {
+        configure("1", "DROP_NEWEST");
+        lifecycle.init();
+        lifecycle.stop();
+        assertTrue(lifecycle.submit("XEU", "first"));
+        assertTrue(lifecycle.submit("XEU", "second"));
+        assertEquals(1, lifecycle.getDroppedCount());
+        assertEquals(1, pendingInJournal());
+
+        restarted.init();
+        assertEquals(1, restarted.getDeferredCount());
+    }
+
+    @Test
+    public void testRefusedRequestIsNotJournaled() throws IOException {
+        configure("1", "REDELIVER");
+        lifecycle.init();
+        lifecycle.stop();
+        assertTrue(lifecycle.submit("XEU", "first"));
+        assertFalse(lifecycle.submit("XEU", "second"));
+
+        restarted.init();
+        assertEquals(1, restarted.getDeferredCount());
+    }
+
+    @Test
+    public void testStopAndStartWhileTheReleaseEnds() throws Exception {
+        final ExecutorService threads = Executors.newSingleThreadExecutor();
+        when(executor.submit(any(Runnable.class))).thenAnswer(new Answer<Future<?>>() {
+            @Override
+            public Future<?> answer(InvocationOnMock invocation) {
+                threads.submit((Runnable) invocation.getArguments()[0]);
+                // A release always looks unfinished, as it does between the end of its loop and its return.
+                return mock(Future.class);
+            }
+        });
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch proceed = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws InterruptedException {
+                sending.countDown();
+                proceed.await(5, TimeUnit.SECONDS);
+                return null;
+            }
+        }).when(requestService).send("XEU", "first");
+        configure("10", "REDELIVER");
+        restarted.init();
+        restarted.stop();
+        assertTrue(restarted.submit("XEU", "first"));
+        assertTrue(restarted.submit("XEU", "second"));
+        assertTrue(restarted.submit("XEU", "third"));
+
+        restarted.start();
+        assertTrue(sending.await(5, TimeUnit.SECONDS));
+        restarted.stop();
+        proceed.countDown();
+        threads.submit(new Runnable() {
+            @Override
+            public void run() {
+                // Waits for the end of the release stopped above.
+            }
+        }).get(5, TimeUnit.SECONDS);
+        restarted.start();
+        restarted.stop();
+        restarted.start();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (restarted.getDeferredCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(0, restarted.getDeferredCount());
+        verify(requestService).send("XEU", "second");
+        verify(requestService).send("XEU", "third");
+    }
+
+    @Test
+    public void testRunningPluginSendsRightAway() {
+        configure("10", "REDELIVER");
+        restarted.init();
+        assertTrue(restarted.submit("XEU", "request"));
+        verify(requestService).send("XEU", "request");
+        verify(executor, never()).submit(any(Runnable.class));
+    }
+
+    private void configure(String capacity, String overflow) {
+        Map<String, String> settings = new HashMap<>();
+        settings.put(CLASS_NAME + "." + PluginConfiguration.DEFERRED_REQUESTS_CAPACITY, capacity);
+        settings.put(CLASS_NAME + "." + PluginConfiguration.DEFERRED_REQUESTS_OVERFLOW, overflow);
+        settings.put(CLASS_NAME + "." + PluginConfiguration.DEFERRED_REQUESTS_DIRECTORY, directory.toString());
+        settings.put(CLASS_NAME + "." + PluginConfiguration.DEFERRED_REQUESTS_RELEASE_PER_SECOND, "10000");
+        when(startup.getConfiguration()).thenReturn(new PluginState(CLASS_NAME, null, settings).getConfiguration());
+    }
+
+    private int pendingInJournal() throws IOException {
+        try (OutboxJournal journal = new OutboxJournal(directory, OutboxJournal.MIN_SEGMENT_SIZE, FsyncPolicy.NEVER)) {
+            return journal.getPendingCount();
+        }
+    }
+}
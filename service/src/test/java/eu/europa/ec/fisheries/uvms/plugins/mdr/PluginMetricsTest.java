@@ -0,0 +1,96 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.Histogram;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.HistogramSnapshot;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.InMemoryMetricsRegistry;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.MetricsMBean;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanAttributeInfo;
+import org.junit.Test;
+
+public class PluginMetricsTest {
+
+    @Test
+    public void testHistogramPercentiles() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 10000; value++) {
+            histogram.record(value);
+        }
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(5000.5, snapshot.getMean(), 0.001);
+        assertEquals(10000, snapshot.getMax());
+        assertWithinPrecision(5000, snapshot.getP50());
+        assertWithinPrecision(9000, snapshot.getP90());
+        assertWithinPrecision(9900, snapshot.getP99());
+    }
+
+    @Test
+    public void testHistogramExtremes() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        histogram.record(0);
+        histogram.record(Long.MAX_VALUE);
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(3, snapshot.getCount());
+        assertEquals(0, snapshot.getP50());
+        assertEquals(Long.MAX_VALUE, snapshot.getMax());
+        assertEquals(Long.MAX_VALUE, snapshot.getP99());
+        assertEquals(0, new Histogram().snapshot().getP99());
+    }
+
+    @Test
+    public void testMBeanExposesCountersAndHistograms() throws Exception {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        registry.increment("fluxResponse.messages");
+        registry.increment("fluxResponse.messages");
+        registry.record("latency.jmsSend.us", 250);
+        MetricsMBean mbean = new MetricsMBean(registry);
+
+        assertEquals(2L, mbean.getAttribute("fluxResponse.messages"));
+        assertEquals(1L, mbean.getAttribute("latency.jmsSend.us.count"));
+        assertEquals(250L, mbean.getAttribute("latency.jmsSend.us.max"));
+        assertEquals(7, mbean.getMBeanInfo().getAttributes().length);
+        for (MBeanAttributeInfo attribute : mbean.getMBeanInfo().getAttributes()) {
+            assertTrue(attribute.isReadable());
+        }
+    }
+
+    @Test
+    public void testMBeanReadsGaugesOnEveryCall() throws Exception {
+        InMemoryMetricsRegistry registry = new InMemoryMetricsRegistry();
+        final AtomicLong depth = new AtomicLong(3);
+        registry.gauge("outbox.pending", depth::get);
+        registry.gauges("bridgeRateLimiter.queueDepth", () -> Collections.singletonMap("XEU", 2));
+        MetricsMBean mbean = new MetricsMBean(registry);
+
+        assertEquals(3L, mbean.getAttribute("outbox.pending"));
+        assertEquals(2L, mbean.getAttribute("bridgeRateLimiter.queueDepth.XEU"));
+        depth.set(0);
+        assertEquals(0L, mbean.getAttribute("outbox.pending"));
+    }
+
+    @Test(expected = AttributeNotFoundException.class)
+    public void testUnknownAttribute() throws Exception {
+        new MetricsMBean(new InMemoryMetricsRegistry()).getAttribute("eventBus.messages");
+    }
+
+    private static void assertWithinPrecision(long expected, long actual) {
+        assertTrue("Expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 16 + 1);
+    }
+}
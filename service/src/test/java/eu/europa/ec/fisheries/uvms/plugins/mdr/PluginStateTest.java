@@ -0,0 +1,78 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import eu.europa.ec.fisheries.schema.exchange.service.v1.SettingListType;
+import eu.europa.ec.fisheries.schema.exchange.service.v1.SettingType;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.Test;
+
+public class PluginStateTest {
+
+    private static final String CLASS_NAME = "eu.europa.ec.fisheries.uvms.plugins.flux.mdr";
+
+    @Test
+    public void testSettingsAreReadByRegisteredKey() {
+        PluginState state = new PluginState(CLASS_NAME, CLASS_NAME + "PLUGIN_RESPONSE", settings("BRIDGE_RATE_PER_SECOND", "10"));
+        assertEquals("10", state.getSetting("BRIDGE_RATE_PER_SECOND"));
+        assertNull(state.getSetting("BRIDGE_RATE_BURST"));
+        assertEquals(CLASS_NAME + "PLUGIN_RESPONSE", state.getPluginResponseSubscriptionName());
+    }
+
+    @Test
+    public void testUpdateLeavesThePreviousSnapshotUnchanged() {
+        Map<String, String> loaded = settings("BRIDGE_RATE_PER_SECOND", "10");
+        PluginState state = new PluginState(CLASS_NAME, null, loaded);
+        loaded.clear();
+
+        PluginState updated = state.withSettings(settingList(CLASS_NAME + ".BRIDGE_RATE_PER_SECOND", "20", CLASS_NAME + ".BRIDGE_RATE_BURST", "5"));
+
+        assertEquals("10", state.getSetting("BRIDGE_RATE_PER_SECOND"));
+        assertNull(state.getSetting("BRIDGE_RATE_BURST"));
+        assertEquals("20", updated.getSetting("BRIDGE_RATE_PER_SECOND"));
+        assertEquals("5", updated.getSetting("BRIDGE_RATE_BURST"));
+        assertEquals(CLASS_NAME, updated.getRegisteredClassName());
+    }
+
+    @Test
+    public void testIncompleteSettingsAreIgnored() {
+        PluginState state = new PluginState(CLASS_NAME, null, settings("BRIDGE_RATE_PER_SECOND", "10"));
+        PluginState updated = state.withSettings(settingList(CLASS_NAME + ".BRIDGE_RATE_PER_SECOND", null, null, "5"));
+        assertEquals("10", updated.getSetting("BRIDGE_RATE_PER_SECOND"));
+        assertEquals(1, updated.getSettings().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testSettingsAreUnmodifiable() {
+        new PluginState(CLASS_NAME, null, settings("BRIDGE_RATE_PER_SECOND", "10")).getSettings().put("key", "value");
+    }
+
+    private static Map<String, String> settings(String key, String value) {
+        Map<String, String> settings = new HashMap<>();
+        settings.put(CLASS_NAME + "." + key, value);
+        return settings;
+    }
+
+    private static SettingListType settingList(String... keysAndValues) {
+        SettingListType settingList = new SettingListType();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            SettingType setting = new SettingType();
+            setting.setKey(keysAndValues[i]);
+            setting.setValue(keysAndValues[i + 1]);
+            settingList.getSetting().add(setting);
+        }
+        return settingList;
+    }
+}
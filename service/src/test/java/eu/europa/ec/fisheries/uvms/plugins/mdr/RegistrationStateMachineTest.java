@@ -0,0 +1,120 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.registration.RegistrationState;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.registration.RegistrationStateMachine;
+import java.util.Random;
+import org.junit.Test;
+
+public class RegistrationStateMachineTest {
+
+    private static final long INITIAL = 1000;
+    private static final long MAX = 8000;
+
+    @Test
+    public void testFirstAttemptIsImmediate() {
+        RegistrationStateMachine registration = new RegistrationStateMachine(fixedRandom(0.5));
+        assertEquals(0, registration.scheduleAttempt(INITIAL, MAX));
+        assertTrue(registration.startAttempt(registration.getScheduledAttempt()));
+        assertEquals(RegistrationState.REGISTERING, registration.getState());
+    }
+
+    @Test
+    public void testOnlyTheLastScheduledAttemptIsStarted() {
+        RegistrationStateMachine registration = new RegistrationStateMachine(fixedRandom(0.5));
+        registration.scheduleAttempt(INITIAL, MAX);
+        long first = registration.getScheduledAttempt();
+        registration.scheduleAttempt(INITIAL, MAX);
+        assertFalse(registration.startAttempt(first));
+        assertTrue(registration.startAttempt(registration.getScheduledAttempt()));
+    }
+
+    @Test
+    public void testDelayGrowsUpToTheMaximum() {
+        RegistrationStateMachine registration = new RegistrationStateMachine(fixedRandom(0.999999));
+        registration.scheduleAttempt(INITIAL, MAX);
+        long previous = 0;
+        for (int i = 0; i < 10; i++) {
+            long delay = registration.scheduleAttempt(INITIAL, MAX);
+            assertTrue(delay >= previous);
+            assertTrue(delay <= MAX);
+            previous = delay;
+        }
+        assertTrue(previous > MAX - 10);
+    }
+
+    @Test
+    public void testJitterKeepsTheUpperHalfOfTheDelay() {
+        RegistrationStateMachine low = new RegistrationStateMachine(fixedRandom(0));
+        RegistrationStateMachine high = new RegistrationStateMachine(fixedRandom(0.999999));
+        low.scheduleAttempt(INITIAL, MAX);
+        high.scheduleAttempt(INITIAL, MAX);
+        low.scheduleAttempt(INITIAL, MAX);
+        high.scheduleAttempt(INITIAL, MAX);
+        // Third attempt : 2 seconds before jitter.
+        assertEquals(1000, low.scheduleAttempt(INITIAL, MAX));
+        assertTrue(high.scheduleAttempt(INITIAL, MAX) >= 1999);
+    }
+
+    @Test
+    public void testAcceptedDropsPendingAttemptsAndResetsTheBackoff() {
+        RegistrationStateMachine registration = new RegistrationStateMachine(fixedRandom(0.5));
+        registration.scheduleAttempt(INITIAL, MAX);
+        registration.startAttempt(registration.getScheduledAttempt());
+        registration.scheduleAttempt(INITIAL, MAX);
+        long pending = registration.getScheduledAttempt();
+
+        registration.accepted();
+
+        assertEquals(RegistrationState.REGISTERED, registration.getState());
+        assertFalse(registration.startAttempt(pending));
+        assertTrue(registration.rejected());
+        assertEquals(RegistrationState.UNREGISTERED, registration.getState());
+        assertEquals(0, registration.scheduleAttempt(INITIAL, MAX));
+        assertTrue(registration.startAttempt(registration.getScheduledAttempt()));
+    }
+
+    @Test
+    public void testFailedSendWaitsForTheNextAttempt() {
+        RegistrationStateMachine registration = new RegistrationStateMachine(fixedRandom(0.5));
+        registration.scheduleAttempt(INITIAL, MAX);
+        registration.startAttempt(registration.getScheduledAttempt());
+        registration.sendFailed();
+        assertEquals(RegistrationState.UNREGISTERED, registration.getState());
+        assertTrue(registration.scheduleAttempt(INITIAL, MAX) > 0);
+    }
+
+    @Test
+    public void testStoppedMachineIgnoresEverything() {
+        RegistrationStateMachine registration = new RegistrationStateMachine(fixedRandom(0.5));
+        registration.scheduleAttempt(INITIAL, MAX);
+        long pending = registration.getScheduledAttempt();
+        registration.stop();
+        assertFalse(registration.startAttempt(pending));
+        assertFalse(registration.rejected());
+        registration.accepted();
+        assertEquals(RegistrationState.STOPPED, registration.getState());
+    }
+
+    private static Random fixedRandom(final double value) {
+        return new Random() {
+            @Override
+            public double nextDouble() {
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,128 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyMapOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.OutboxJournal;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.OutboxTarget;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.outbox.ReliableOutbox;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.service.ExchangePluginServiceBean;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.service.FluxMdrRequestServiceBean;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ReliableOutboxTest {
+
+    private static final String CLASS_NAME = "eu.europa.ec.fisheries.uvms.plugins.flux.mdr";
+
+    private static final Map<String, String> PROPERTIES = Collections.singletonMap("FR", "XEU");
+
+    @Mock
+    private StartupBean startup;
+
+    @Mock
+    private PluginMetrics metrics;
+
+    @Mock
+    private ExchangePluginServiceBean exchangeService;
+
+    @Mock
+    private FluxMdrRequestServiceBean requestService;
+
+    @InjectMocks
+    private ReliableOutbox outbox;
+
+    private Path directory;
+
+    @Before
+    public void init() throws IOException {
+        directory = Files.createTempDirectory("mdr-outbox");
+        enable(true);
+        outbox.init();
+    }
+
+    @After
+    public void cleanUp() {
+        outbox.shutdown();
+        File[] files = directory.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.toFile().delete();
+    }
+
+    @Test
+    public void testMessageInFlightIsNotReplayed() throws Exception {
+        outbox.record(OutboxTarget.BRIDGE, "request", PROPERTIES, OutboxJournal.NO_EXPIRY);
+        outbox.replayPending(System.currentTimeMillis() + 3600 * 1000L);
+        verify(requestService, never()).resend(anyString(), anyMapOf(String.class, String.class), anyLong());
+        assertEquals(1, outbox.getPendingCount());
+    }
+
+    @Test
+    public void testFailedMessageIsReplayed() throws Exception {
+        long sequence = outbox.record(OutboxTarget.BRIDGE, "request", PROPERTIES, OutboxJournal.NO_EXPIRY);
+        outbox.sendFailed(sequence);
+        outbox.replayPending(System.currentTimeMillis());
+        verify(requestService).resend("request", PROPERTIES, OutboxJournal.NO_EXPIRY);
+        assertEquals(0, outbox.getPendingCount());
+    }
+
+    @Test
+    public void testDeferredMessageIsReplayed() throws Exception {
+        outbox.defer(OutboxTarget.EXCHANGE, "response", null, OutboxJournal.NO_EXPIRY);
+        outbox.replayPending(System.currentTimeMillis());
+        verify(exchangeService).deliverFLUXMDRResponseMessageToExchange("response", Collections.<String, String>emptyMap());
+        assertEquals(0, outbox.getPendingCount());
+    }
+
+    @Test
+    public void testUnacknowledgedMessageIsReplayedOnceTheJournalIsOpenedAgain() throws Exception {
+        outbox.record(OutboxTarget.BRIDGE, "request", PROPERTIES, OutboxJournal.NO_EXPIRY);
+        enable(false);
+        outbox.reloadSettings();
+        enable(true);
+        outbox.reloadSettings();
+        outbox.replayPending(System.currentTimeMillis());
+        verify(requestService).resend("request", PROPERTIES, OutboxJournal.NO_EXPIRY);
+    }
+
+    private void enable(boolean enabled) {
+        Map<String, String> settings = new HashMap<>();
+        settings.put(CLASS_NAME + "." + PluginConfiguration.OUTBOX_ENABLED, Boolean.toString(enabled));
+        settings.put(CLASS_NAME + "." + PluginConfiguration.OUTBOX_DIRECTORY, directory.toString());
+        settings.put(CLASS_NAME + "." + PluginConfiguration.OUTBOX_FSYNC, "NEVER");
+        when(startup.getConfiguration()).thenReturn(new PluginState(CLASS_NAME, null, settings).getConfiguration());
+    }
+}
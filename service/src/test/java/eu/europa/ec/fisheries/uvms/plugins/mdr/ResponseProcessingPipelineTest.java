@@ -0,0 +1,96 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.consumer.FluxMdrResponseProcessor;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.consumer.ResponseProcessingPipeline;
+import eu.europa.ec.fisheries.uvms.plugins.mdr.metrics.PluginMetrics;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ResponseProcessingPipelineTest {
+
+    private static final String CLASS_NAME = "eu.europa.ec.fisheries.uvms.plugins.flux.mdr";
+
+    @Mock
+    private StartupBean startup;
+
+    @Mock
+    private ManagedThreadFactory threadFactory;
+
+    @Mock
+    private FluxMdrResponseProcessor processor;
+
+    @Mock
+    private PluginMetrics metrics;
+
+    @InjectMocks
+    private ResponseProcessingPipeline pipeline;
+
+    @Before
+    public void init() {
+        Map<String, String> settings = new HashMap<>();
+        settings.put(CLASS_NAME + "." + PluginConfiguration.RESPONSE_PIPELINE_ENABLED, "true");
+        when(startup.getConfiguration()).thenReturn(new PluginState(CLASS_NAME, null, settings).getConfiguration());
+        when(threadFactory.newThread(any(Runnable.class))).thenAnswer(new Answer<Thread>() {
+            @Override
+            public Thread answer(InvocationOnMock invocation) {
+                return new Thread((Runnable) invocation.getArguments()[0]);
+            }
+        });
+        pipeline.init();
+    }
+
+    @After
+    public void shutdown() {
+        pipeline.shutdown();
+    }
+
+    @Test
+    public void testResponseIsProcessedBeforeTheMessageIsAcknowledged() {
+        final AtomicBoolean processed = new AtomicBoolean();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws InterruptedException {
+                Thread.sleep(100);
+                processed.set(true);
+                return null;
+            }
+        }).when(processor).process("response", "uuid");
+
+        assertTrue(pipeline.process("response", "uuid"));
+        assertTrue(processed.get());
+    }
+
+    @Test
+    public void testEmptyMessageIsHandedOver() {
+        assertTrue(pipeline.process(null, "uuid"));
+        verify(processor).process(null, "uuid");
+    }
+}
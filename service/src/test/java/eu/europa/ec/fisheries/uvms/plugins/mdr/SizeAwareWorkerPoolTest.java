@@ -0,0 +1,124 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import eu.europa.ec.fisheries.uvms.plugins.mdr.consumer.SizeAwareWorkerPool;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class SizeAwareWorkerPoolTest {
+
+    private static final int LARGE = 1000;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final SizeAwareWorkerPool pool = new SizeAwareWorkerPool(Executors.defaultThreadFactory(), LARGE, 1, 1, 1);
+
+    @After
+    public void shutdown() throws InterruptedException {
+        release.countDown();
+        pool.shutdown(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testSmallPayloadsAreNotStuckBehindLargeOnes() throws InterruptedException {
+        assertTrue(pool.submit(this::block, LARGE));
+        assertTrue(pool.submit(this::block, LARGE * 50));
+        final CountDownLatch smallDone = new CountDownLatch(2);
+        assertTrue(pool.submit(smallDone::countDown, 10));
+        assertTrue(pool.submit(smallDone::countDown, 10));
+        assertTrue(smallDone.await(5, TimeUnit.SECONDS));
+        assertEquals(1, pool.getLargeQueueDepth());
+    }
+
+    @Test
+    public void testSaturatedLaneRefusesTasks() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        assertTrue(pool.submit(() -> {
+            started.countDown();
+            block();
+        }, 10));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(pool.submit(this::block, 10));
+        assertFalse(pool.submit(this::block, 10));
+        assertEquals(1, pool.getRejectedCount());
+        assertEquals(1, pool.getSmallQueueDepth());
+        // The other lane still has room.
+        assertTrue(pool.submit(this::block, LARGE));
+    }
+
+    @Test
+    public void testBlockingSubmitWaitsForRoom() throws InterruptedException {
+        assertTrue(pool.submit(this::block, 10));
+        assertTrue(pool.submit(this::block, 10));
+        assertFalse(pool.submit(this::block, 10, 50, TimeUnit.MILLISECONDS));
+        final CountDownLatch done = new CountDownLatch(1);
+        new Thread(() -> {
+            sleep(100);
+            release.countDown();
+        }).start();
+        assertTrue(pool.submit(done::countDown, 10, 5, TimeUnit.SECONDS));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSaturatedPoolLosesNoTask() throws InterruptedException {
+        final int submitters = 8;
+        final int tasksPerSubmitter = 200;
+        final AtomicInteger processed = new AtomicInteger();
+        final AtomicInteger refused = new AtomicInteger();
+        ExecutorService producers = Executors.newFixedThreadPool(submitters);
+        for (int i = 0; i < submitters; i++) {
+            producers.execute(() -> {
+                for (int j = 0; j < tasksPerSubmitter; j++) {
+                    try {
+                        if (!pool.submit(processed::incrementAndGet, j % 2 == 0 ? 10 : LARGE, 5, TimeUnit.SECONDS)) {
+                            refused.incrementAndGet();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            });
+        }
+        producers.shutdown();
+        assertTrue(producers.awaitTermination(30, TimeUnit.SECONDS));
+        assertTrue(pool.shutdown(5, TimeUnit.SECONDS));
+        assertEquals(0, refused.get());
+        assertEquals(0, pool.getRejectedCount());
+        assertEquals(submitters * tasksPerSubmitter, processed.get());
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void block() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
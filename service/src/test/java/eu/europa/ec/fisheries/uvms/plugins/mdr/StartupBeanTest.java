@@ -0,0 +1,59 @@
+/*
+Developed by the European Commission - Directorate General for Maritime Affairs and Fisheries @ European Union, 2015-2016.
+
+This file is part of the Integrated Fisheries Data Management (IFDM) Suite. The IFDM Suite is free software: you can redistribute it
+and/or modify it under the terms of the GNU General Public License as published by the Free Software Foundation, either version 3 of
+the License, or any later version. The IFDM Suite is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License for more
+details. You should have received a copy of the GNU General Public License along with the IFDM Suite. If not, see <http://www.gnu.org/licenses/>.
+
+*/
+package eu.europa.ec.fisheries.uvms.plugins.mdr;
+
+import static org.junit.Assert.assertEquals;
+
+import eu.europa.ec.fisheries.schema.exchange.service.v1.SettingListType;
+import eu.europa.ec.fisheries.schema.exchange.service.v1.SettingType;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class StartupBeanTest {
+
+    private final StartupBean startup = new StartupBean();
+
+    @Test
+    public void testListenersSeeTheUpdatedSettings() {
+        final List<String> seen = new ArrayList<>();
+        startup.addSettingsListener(() -> seen.add("first:" + startup.getState().getSetting("BRIDGE_RATE_PER_SECOND")));
+        startup.addSettingsListener(() -> seen.add("second:" + startup.getState().getSetting("BRIDGE_RATE_PER_SECOND")));
+
+        startup.updateSettings(settingList(".BRIDGE_RATE_PER_SECOND", "20"));
+
+        assertEquals(2, seen.size());
+        assertEquals("first:20", seen.get(0));
+        assertEquals("second:20", seen.get(1));
+    }
+
+    @Test
+    public void testFailingListenerDoesNotStopTheOthers() {
+        final List<String> seen = new ArrayList<>();
+        startup.addSettingsListener(() -> {
+            throw new IllegalStateException("broken");
+        });
+        startup.addSettingsListener(() -> seen.add("reloaded"));
+
+        startup.updateSettings(settingList(".BRIDGE_RATE_PER_SECOND", "20"));
+
+        assertEquals(1, seen.size());
+    }
+
+    private static SettingListType settingList(String key, String value) {
+        SettingType setting = new SettingType();
+        setting.setKey(key);
+        setting.setValue(value);
+        SettingListType settings = new SettingListType();
+        settings.getSetting().add(setting);
+        return settings;
+    }
+}